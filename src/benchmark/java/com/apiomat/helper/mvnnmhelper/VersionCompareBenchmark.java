@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares parsing and comparing versions with {@link PackedVersion} to the former regex based parseNumbers and the
+ * comparison of eight ints
+ *
+ * @author thum
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class VersionCompareBenchmark
+{
+	private static final Pattern PATTERN_FULLVERSION = Pattern.compile( "^(\\d+).(\\d+).(\\d+).(\\d+).*" );
+	private static final Pattern PATTERN_MEDIUMVERSION = Pattern.compile( "^(\\d+).(\\d+).(\\d+).*" );
+	private static final Pattern PATTERN_SMALLVERSION = Pattern.compile( "^(\\d+).(\\d+).*" );
+
+	private final String[ ] versions =
+		new String[ ] { "2.5.0", "3.3.0-SNAPSHOT", "3.3.0.1", "2.4", "3.10.2", "1.0.0", "3.3.1-rc1", "999.999.999" };
+	private final long[ ] packed = new long[ this.versions.length ];
+	private final int[ ][ ] numbers = new int[ this.versions.length ][ ];
+
+	/** prepares the parsed versions */
+	public VersionCompareBenchmark( )
+	{
+		for ( int i = 0; i < this.versions.length; i++ )
+		{
+			this.packed[ i ] = PackedVersion.parse( this.versions[ i ] );
+			this.numbers[ i ] = legacyParseNumbers( this.versions[ i ] );
+		}
+	}
+
+	/** @return the number of newer pairs, parsed with the regular expressions */
+	@Benchmark
+	public int legacyParseAndCompare( )
+	{
+		int newer = 0;
+		for ( final String v1 : this.versions )
+		{
+			final int[ ] a = legacyParseNumbers( v1 );
+			for ( final String v2 : this.versions )
+			{
+				final int[ ] b = legacyParseNumbers( v2 );
+				if ( legacyIsNewer( a[ 0 ], a[ 1 ], a[ 2 ], a[ 3 ], b[ 0 ], b[ 1 ], b[ 2 ], b[ 3 ] ) )
+				{
+					newer++;
+				}
+			}
+		}
+		return newer;
+	}
+
+	/** @return the number of newer pairs, parsed into packed versions */
+	@Benchmark
+	public int packedParseAndCompare( )
+	{
+		int newer = 0;
+		for ( final String v1 : this.versions )
+		{
+			final long a = PackedVersion.parse( v1 );
+			for ( final String v2 : this.versions )
+			{
+				if ( PackedVersion.compare( PackedVersion.parse( v2 ), a ) > 0 )
+				{
+					newer++;
+				}
+			}
+		}
+		return newer;
+	}
+
+	/** @return the number of newer pairs of already parsed versions, compared as eight ints */
+	@Benchmark
+	public int legacyCompare( )
+	{
+		int newer = 0;
+		for ( final int[ ] a : this.numbers )
+		{
+			for ( final int[ ] b : this.numbers )
+			{
+				if ( legacyIsNewer( a[ 0 ], a[ 1 ], a[ 2 ], a[ 3 ], b[ 0 ], b[ 1 ], b[ 2 ], b[ 3 ] ) )
+				{
+					newer++;
+				}
+			}
+		}
+		return newer;
+	}
+
+	/** @return the number of newer pairs of already packed versions */
+	@Benchmark
+	public int packedCompare( )
+	{
+		int newer = 0;
+		for ( final long a : this.packed )
+		{
+			for ( final long b : this.packed )
+			{
+				if ( PackedVersion.compare( b, a ) > 0 )
+				{
+					newer++;
+				}
+			}
+		}
+		return newer;
+	}
+
+	/* the implementation before the packed versions */
+
+	private static boolean legacyIsNewer( final int major1, final int minor1, final int hotfix1,
+		final int patchLevel1, final int major2, final int minor2, final int hotfix2, final int patchLevel2 )
+	{
+		return major2 > major1 ||
+			major2 == major1 && minor2 > minor1 ||
+			major2 == major1 && minor2 == minor1 && hotfix2 > hotfix1 ||
+			major2 == major1 && minor2 == minor1 && hotfix2 == hotfix1 && patchLevel2 > patchLevel1;
+	}
+
+	private static int[ ] legacyParseNumbers( final String versionString )
+	{
+		Matcher m = PATTERN_FULLVERSION.matcher( versionString );
+		if ( m.matches( ) )
+		{
+			return new int[ ] { Integer.parseInt( m.group( 1 ) ), Integer.parseInt( m.group( 2 ) ),
+				Integer.parseInt( m.group( 3 ) ), Integer.parseInt( m.group( 4 ) ) };
+		}
+		m = PATTERN_MEDIUMVERSION.matcher( versionString );
+		if ( m.matches( ) )
+		{
+			return new int[ ] { Integer.parseInt( m.group( 1 ) ), Integer.parseInt( m.group( 2 ) ),
+				Integer.parseInt( m.group( 3 ) ), 0 };
+		}
+		m = PATTERN_SMALLVERSION.matcher( versionString );
+		if ( m.matches( ) )
+		{
+			return new int[ ] { Integer.parseInt( m.group( 1 ) ), Integer.parseInt( m.group( 2 ) ), 0, 0 };
+		}
+		return null;
+	}
+}
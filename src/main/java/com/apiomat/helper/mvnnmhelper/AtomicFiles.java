@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes files so that readers, like concurrent builds or CI jobs, never see a partially written file
+ *
+ * @author thum
+ */
+public final class AtomicFiles
+{
+	private AtomicFiles( )
+	{
+	}
+
+	/**
+	 * Writes the content to a temporary file next to the file and moves it over the file; the move is atomic where
+	 * the file system supports it
+	 *
+	 * @param file the file, replaced if it exists; missing parent directories are created
+	 * @param content the content, written as UTF-8
+	 * @throws IOException
+	 */
+	public static void write( final File file, final String content ) throws IOException
+	{
+		final File dir = file.getAbsoluteFile( ).getParentFile( );
+		FileUtils.forceMkdir( dir );
+		/* a temporary file of its own, another build may write the same file at the same time */
+		final File tmpFile = File.createTempFile( "." + file.getName( ) + ".", ".nmtmp", dir );
+		try
+		{
+			FileUtils.writeStringToFile( tmpFile, content, StandardCharsets.UTF_8 );
+			try
+			{
+				Files.move( tmpFile.toPath( ), file.toPath( ), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE );
+			}
+			catch ( final AtomicMoveNotSupportedException e )
+			{
+				Files.move( tmpFile.toPath( ), file.toPath( ), StandardCopyOption.REPLACE_EXISTING );
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists( tmpFile.toPath( ) );
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Adds and removes library entries of an Eclipse .classpath file in a single pass. Entries are recognized regardless
+ * of the order of their attributes, the quotes and the whitespace used; everything else is kept as it is.
+ *
+ * @author thum
+ */
+public final class ClasspathEditor
+{
+	private static final Pattern ENTRY =
+		Pattern.compile( "<classpathentry\\b([^>]*?)(?:/>|>.*?</classpathentry\\s*>)", Pattern.DOTALL );
+	private static final Pattern END = Pattern.compile( "</classpath\\s*>" );
+	private static final String LIB_DIR = "lib/";
+
+	private ClasspathEditor( )
+	{
+	}
+
+	/**
+	 * @param content the content of the .classpath file
+	 * @param libsToRemove the names of the jars in the lib folder whose entries are removed
+	 * @param libsToAdd the names of the jars in the lib folder which get an entry if they do not have one yet
+	 * @return the new content, the same instance if nothing changed
+	 */
+	public static String edit( final String content, final Collection<String> libsToRemove,
+		final Collection<String> libsToAdd )
+	{
+		final Set<String> pathsToRemove = new HashSet<>( );
+		libsToRemove.forEach( lib -> pathsToRemove.add( LIB_DIR + lib ) );
+		final List<int[ ]> comments = XmlText.commentRanges( content );
+
+		final StringBuilder out = new StringBuilder( content.length( ) + 64 * libsToAdd.size( ) );
+		final Set<String> present = new HashSet<>( );
+		String entryIndent = null;
+		boolean changed = false;
+		int copied = 0;
+		final Matcher matcher = ENTRY.matcher( content );
+		while ( matcher.find( ) )
+		{
+			if ( XmlText.isInside( comments, matcher.start( ) ) )
+			{
+				continue;
+			}
+			final Map<String, String> attributes = XmlText.attributes( matcher.group( 1 ) );
+			final String path = attributes.get( "path" );
+			final boolean lib = "lib".equals( attributes.get( "kind" ) ) && path != null;
+			if ( lib && pathsToRemove.contains( path ) )
+			{
+				final int[ ] range = XmlText.removalRange( content, matcher.start( ), matcher.end( ) );
+				out.append( content, copied, range[ 0 ] );
+				copied = range[ 1 ];
+				changed = true;
+				continue;
+			}
+			if ( lib )
+			{
+				present.add( path );
+			}
+			if ( entryIndent == null )
+			{
+				entryIndent = XmlText.indentBefore( content, matcher.start( ) );
+			}
+		}
+
+		final Set<String> missing = new LinkedHashSet<>( );
+		for ( final String lib : libsToAdd )
+		{
+			if ( present.contains( LIB_DIR + lib ) == false )
+			{
+				missing.add( LIB_DIR + lib );
+			}
+		}
+		/* the last closing tag which is not commented out */
+		final Matcher end = END.matcher( content );
+		int endPos = -1;
+		while ( end.find( ) )
+		{
+			if ( end.start( ) >= copied && XmlText.isInside( comments, end.start( ) ) == false )
+			{
+				endPos = end.start( );
+			}
+		}
+		if ( missing.isEmpty( ) == false && endPos >= 0 )
+		{
+			final String endIndent = XmlText.indentBefore( content, endPos );
+			if ( endIndent == null )
+			{
+				/* single line file, keep it on one line */
+				out.append( content, copied, endPos );
+				missing.forEach( path -> out.append( entry( path ) ) );
+				copied = endPos;
+			}
+			else
+			{
+				final String newLine = XmlText.newLine( content );
+				final String indent = entryIndent != null ? entryIndent : endIndent + "\t";
+				final int lineStart = endPos - endIndent.length( );
+				out.append( content, copied, lineStart );
+				missing.forEach( path -> out.append( indent ).append( entry( path ) ).append( newLine ) );
+				copied = lineStart;
+			}
+			changed = true;
+		}
+		if ( changed == false )
+		{
+			return content;
+		}
+		out.append( content, copied, content.length( ) );
+		return out.toString( );
+	}
+
+	private static String entry( final String path )
+	{
+		return "<classpathentry kind=\"lib\" path=\"" + path + "\"/>";
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Disables the deprecated beforeGet method in the hook classes of a module for 3.3.0. Only files named like
+ * *HooksNonTransient*.java are read, and only files mentioning beforeGet at all are matched against the pattern; the
+ * files are processed on a pool of worker threads.
+ *
+ * @author thum
+ */
+public class HookClassRewriter
+{
+	/* AOM-5650 matches all beforeGet-Methods with Override annotation except the ones with String as type of the first
+	 * parameter */
+	private final static Pattern PTTRN_OLD_BEFORE_GET =
+		Pattern.compile( "(@Override[\\s]+public void beforeGet\\()(?![\\s]+(String|java.lang.String)[\\s]+)" );
+	private final static String BEFORE_GET = "beforeGet";
+
+	private final int threads;
+
+	/**
+	 * @param threads the maximum number of files processed in parallel
+	 */
+	public HookClassRewriter( final int threads )
+	{
+		this.threads = Math.max( 1, threads );
+	}
+
+	/**
+	 * @param nmDir the native module source directory
+	 * @return the hook classes below the given directory, sorted by path
+	 * @throws IOException
+	 */
+	public static List<Path> findHookClasses( final File nmDir ) throws IOException
+	{
+		if ( nmDir.isDirectory( ) == false )
+		{
+			return Collections.emptyList( );
+		}
+		try (final Stream<Path> paths = Files.walk( nmDir.toPath( ) ))
+		{
+			/* check the name first, so that other files are never opened */
+			return paths.filter( path -> isHookClass( path.getFileName( ).toString( ) ) )
+				.filter( Files::isRegularFile ).sorted( ).collect( Collectors.toList( ) );
+		}
+	}
+
+	private static boolean isHookClass( final String fileName )
+	{
+		return fileName.endsWith( ".java" ) && fileName.contains( "HooksNonTransient" );
+	}
+
+	/**
+	 * @param nmDir the native module source directory
+	 * @return whether any hook class still contains the deprecated beforeGet method
+	 * @throws IOException
+	 */
+	public static boolean needsRewrite( final File nmDir ) throws IOException
+	{
+		for ( final Path file : findHookClasses( nmDir ) )
+		{
+			if ( mentionsBeforeGet( file ) &&
+				PTTRN_OLD_BEFORE_GET.matcher( new String( Files.readAllBytes( file ), StandardCharsets.UTF_8 ) )
+					.find( ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Plans the rewrite of all hook classes below the given directory. The files are read and rewritten in parallel,
+	 * the plan itself is only changed by the calling thread.
+	 *
+	 * @param nmDir the native module source directory
+	 * @param plan the plan to add the writes to
+	 * @throws IOException if a hook class could not be read
+	 */
+	public void plan( final File nmDir, final UpdatePlan plan ) throws IOException
+	{
+		final List<Path> files = findHookClasses( nmDir );
+		final List<String> contents = new ArrayList<>( );
+		if ( files.size( ) <= 1 || this.threads == 1 )
+		{
+			for ( final Path file : files )
+			{
+				contents.add( rewrite( file.toFile( ), plan ) );
+			}
+		}
+		else
+		{
+			final AtomicInteger threadNo = new AtomicInteger( );
+			final ExecutorService pool = Executors.newFixedThreadPool( Math.min( this.threads, files.size( ) ), r -> {
+				final Thread thread = new Thread( r, "nm-hook-rewrite-" + threadNo.incrementAndGet( ) );
+				thread.setDaemon( true );
+				return thread;
+			} );
+			try
+			{
+				final List<Future<String>> futures = new ArrayList<>( );
+				for ( final Path file : files )
+				{
+					futures.add( pool.submit( ( ) -> rewrite( file.toFile( ), plan ) ) );
+				}
+				for ( final Future<String> future : futures )
+				{
+					contents.add( future.get( ) );
+				}
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread( ).interrupt( );
+				throw new IOException( "Interrupted while rewriting hook classes", e );
+			}
+			catch ( final ExecutionException e )
+			{
+				throw e.getCause( ) instanceof IOException ? ( IOException ) e.getCause( ) :
+					new IOException( "Could not rewrite hook classes", e.getCause( ) );
+			}
+			finally
+			{
+				pool.shutdownNow( );
+			}
+		}
+		for ( int i = 0; i < files.size( ); i++ )
+		{
+			if ( contents.get( i ) != null )
+			{
+				plan.write( files.get( i ).toFile( ), contents.get( i ), "disable deprecated beforeGet" );
+			}
+		}
+	}
+
+	/** @return the new content of the file, null if it does not have to be changed; only reads from the plan */
+	private static String rewrite( final File file, final UpdatePlan plan ) throws IOException
+	{
+		if ( plan.exists( file ) == false ||
+			plan.isChanged( file ) == false && mentionsBeforeGet( file.toPath( ) ) == false )
+		{
+			return null;
+		}
+		final String content = plan.read( file );
+		final String newContent = rewrite( content );
+		return content.equals( newContent ) ? null : newContent;
+	}
+
+	/** reads the file line by line and stops at the first mention of beforeGet */
+	private static boolean mentionsBeforeGet( final Path file ) throws IOException
+	{
+		try (final BufferedReader reader =
+			new BufferedReader( new InputStreamReader( Files.newInputStream( file ), StandardCharsets.UTF_8 ) ))
+		{
+			String line;
+			while ( ( line = reader.readLine( ) ) != null )
+			{
+				if ( line.contains( BEFORE_GET ) )
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/** Fixes the deprecated beforeGet hook method. This code was taken from Yambas RegisterMetaModelTask */
+	static String rewrite( final String classContent )
+	{
+		if ( StringUtils.isBlank( classContent ) || classContent.contains( BEFORE_GET ) == false )
+		{
+			return classContent;
+		}
+		final Matcher beforeGetMatcher = PTTRN_OLD_BEFORE_GET.matcher( classContent );
+		if ( beforeGetMatcher.find( ) == false )
+		{
+			return classContent;
+		}
+		/* replace it */
+		return beforeGetMatcher.replaceAll( beforeGetMatcher.group( ).replaceAll( "@Override",
+			"/** Removed deprecated beforeGet from overridden hook methods since Yambas 3.3.\n    " +
+				"Use beforeGet( String id, com.apiomat.nativemodule.Request r ) */" ) );
+	}
+}
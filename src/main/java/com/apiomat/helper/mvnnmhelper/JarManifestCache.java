@@ -0,0 +1,274 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Caches the main attributes of jar manifests, keyed by the path, size and modification time of the jar. The cache may
+ * be persisted to a file, so jars are only opened again if they changed since the last build. Jars missing in the
+ * cache are read in parallel.
+ *
+ * Instances are thread safe and may be shared by several modules.
+ *
+ * @author thum
+ */
+public class JarManifestCache
+{
+	private static final int FORMAT_VERSION = 1;
+
+	/** cached manifest of a single jar */
+	private static final class Entry
+	{
+		private final long length;
+		private final long lastModified;
+		private final Map<String, String> attributes;
+
+		Entry( final long length, final long lastModified, final Map<String, String> attributes )
+		{
+			this.length = length;
+			this.lastModified = lastModified;
+			this.attributes = Collections.unmodifiableMap( attributes );
+		}
+
+		boolean matches( final File jar )
+		{
+			return jar.length( ) == this.length && jar.lastModified( ) == this.lastModified;
+		}
+	}
+
+	private final File cacheFile;
+	private final int threads;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>( );
+	private final AtomicBoolean dirty = new AtomicBoolean( );
+
+	private JarManifestCache( final File cacheFile, final int threads )
+	{
+		this.cacheFile = cacheFile;
+		this.threads = Math.max( 1, threads );
+	}
+
+	/**
+	 * @return a cache which is not persisted
+	 */
+	public static JarManifestCache inMemory( )
+	{
+		return new JarManifestCache( null, Runtime.getRuntime( ).availableProcessors( ) );
+	}
+
+	/**
+	 * Loads the cache from the given file; a missing or unreadable file results in an empty cache
+	 *
+	 * @param cacheFile the file the cache is persisted to
+	 * @param threads the maximum number of jars read in parallel
+	 * @return the cache
+	 */
+	public static JarManifestCache load( final File cacheFile, final int threads )
+	{
+		final JarManifestCache cache = new JarManifestCache( cacheFile, threads );
+		if ( cacheFile.isFile( ) )
+		{
+			try
+			{
+				final JSONObject json =
+					new JSONObject( FileUtils.readFileToString( cacheFile, StandardCharsets.UTF_8 ) );
+				if ( json.optInt( "version" ) == FORMAT_VERSION )
+				{
+					final JSONObject jars = json.getJSONObject( "jars" );
+					for ( final String path : jars.keySet( ) )
+					{
+						final JSONObject jar = jars.getJSONObject( path );
+						final JSONObject attributesJson = jar.getJSONObject( "attributes" );
+						final Map<String, String> attributes = new LinkedHashMap<>( );
+						for ( final String name : attributesJson.keySet( ) )
+						{
+							attributes.put( name, attributesJson.getString( name ) );
+						}
+						cache.entries.put( path,
+							new Entry( jar.getLong( "length" ), jar.getLong( "lastModified" ), attributes ) );
+					}
+				}
+			}
+			catch ( final IOException | JSONException e )
+			{
+				/* start with an empty cache, it is rewritten on save */
+				cache.entries.clear( );
+				cache.dirty.set( true );
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * @param jar the jar
+	 * @return the main attributes of the manifest of the jar, empty if the jar has no manifest or is not readable
+	 */
+	public Map<String, String> getMainAttributes( final File jar )
+	{
+		final String key = jar.getAbsolutePath( );
+		final Entry entry = this.entries.get( key );
+		if ( entry != null && entry.matches( jar ) )
+		{
+			return entry.attributes;
+		}
+		final long length = jar.length( );
+		final long lastModified = jar.lastModified( );
+		final Entry newEntry = new Entry( length, lastModified, readMainAttributes( jar ) );
+		this.entries.put( key, newEntry );
+		this.dirty.set( true );
+		return newEntry.attributes;
+	}
+
+	/**
+	 * Returns the main attributes of the given jars; jars missing in the cache are read in parallel
+	 *
+	 * @param jars the jars
+	 * @return the main attributes for each jar, in the order of the given jars
+	 * @throws IOException if reading was interrupted
+	 */
+	public Map<File, Map<String, String>> getMainAttributes( final Collection<File> jars ) throws IOException
+	{
+		final List<File> misses = new ArrayList<>( );
+		for ( final File jar : jars )
+		{
+			final Entry entry = this.entries.get( jar.getAbsolutePath( ) );
+			if ( entry == null || entry.matches( jar ) == false )
+			{
+				misses.add( jar );
+			}
+		}
+		if ( misses.size( ) > 1 && this.threads > 1 )
+		{
+			readInParallel( misses );
+		}
+		final Map<File, Map<String, String>> result = new LinkedHashMap<>( );
+		for ( final File jar : jars )
+		{
+			result.put( jar, getMainAttributes( jar ) );
+		}
+		return result;
+	}
+
+	private void readInParallel( final List<File> jars ) throws IOException
+	{
+		final AtomicInteger threadNo = new AtomicInteger( );
+		final ExecutorService pool = Executors.newFixedThreadPool( Math.min( this.threads, jars.size( ) ), r -> {
+			final Thread thread = new Thread( r, "nm-manifest-scan-" + threadNo.incrementAndGet( ) );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		try
+		{
+			final List<Future<Map<String, String>>> futures = new ArrayList<>( );
+			for ( final File jar : jars )
+			{
+				futures.add( pool.submit( ( ) -> getMainAttributes( jar ) ) );
+			}
+			for ( final Future<Map<String, String>> future : futures )
+			{
+				future.get( );
+			}
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new IOException( "Interrupted while reading jar manifests", e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new IOException( "Could not read jar manifests", e.getCause( ) );
+		}
+		finally
+		{
+			pool.shutdownNow( );
+		}
+	}
+
+	private static Map<String, String> readMainAttributes( final File jar )
+	{
+		final Map<String, String> attributes = new LinkedHashMap<>( );
+		try (final JarFile jarFile = new JarFile( jar ))
+		{
+			final Manifest mf = jarFile.getManifest( );
+			if ( mf != null && mf.getMainAttributes( ) != null )
+			{
+				for ( final Map.Entry<Object, Object> attribute : mf.getMainAttributes( ).entrySet( ) )
+				{
+					attributes.put( ( ( Attributes.Name ) attribute.getKey( ) ).toString( ),
+						String.valueOf( attribute.getValue( ) ) );
+				}
+			}
+		}
+		catch ( final IOException e )
+		{
+			/* Ignore, not a readable jar */
+		}
+		return attributes;
+	}
+
+	/**
+	 * Writes the cache to its file if it changed; entries of jars which no longer exist are dropped
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void save( ) throws IOException
+	{
+		if ( this.cacheFile == null || this.dirty.getAndSet( false ) == false )
+		{
+			return;
+		}
+		final JSONObject jars = new JSONObject( );
+		for ( final Map.Entry<String, Entry> entry : this.entries.entrySet( ) )
+		{
+			if ( new File( entry.getKey( ) ).exists( ) )
+			{
+				final JSONObject jar = new JSONObject( );
+				jar.put( "length", entry.getValue( ).length );
+				jar.put( "lastModified", entry.getValue( ).lastModified );
+				jar.put( "attributes", new JSONObject( entry.getValue( ).attributes ) );
+				jars.put( entry.getKey( ), jar );
+			}
+		}
+		final JSONObject json = new JSONObject( );
+		json.put( "version", FORMAT_VERSION );
+		json.put( "jars", jars );
+
+		/* concurrent builds never read a partially written cache */
+		AtomicFiles.write( this.cacheFile, json.toString( ) );
+	}
+}
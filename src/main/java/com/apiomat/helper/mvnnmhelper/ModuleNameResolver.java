@@ -0,0 +1,181 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Resolves the name of the module of a project if it is not configured. The resolved name is stored in the context of
+ * the project, so all goals executed on the project during a build resolve it only once.
+ *
+ * @author thum
+ */
+public final class ModuleNameResolver
+{
+	private static final String CONTEXT_KEY = ModuleNameResolver.class.getName( ) + ":";
+
+	/** where the module name came from */
+	public enum Source
+	{
+		/** the moduleName parameter or the name in the pom.xml */
+		PARAMETER,
+		/** the moduleName in the sdk.properties */
+		SDK_PROPERTIES,
+		/** the module main class named like the artifactId */
+		MODULE_CLASS,
+		/** the artifactId */
+		ARTIFACT_ID
+	}
+
+	/** a resolved module name */
+	public static final class Resolution
+	{
+		private final String name;
+		private final Source source;
+
+		Resolution( final String name, final Source source )
+		{
+			this.name = name;
+			this.source = source;
+		}
+
+		/**
+		 * @return the module name
+		 */
+		public String getName( )
+		{
+			return this.name;
+		}
+
+		/**
+		 * @return where the module name came from
+		 */
+		public Source getSource( )
+		{
+			return this.source;
+		}
+
+		@Override
+		public String toString( )
+		{
+			return this.name + " (" + this.source + ")";
+		}
+	}
+
+	private ModuleNameResolver( )
+	{
+	}
+
+	/**
+	 * Resolves the module name, or returns the name already resolved for the project
+	 *
+	 * @param project the project
+	 * @param configuredName the configured module name; used if set
+	 * @param sourceDirectory the source directory of the project
+	 * @param log the log to report the resolved name to
+	 * @return the module name and its source
+	 */
+	public static Resolution resolve( final MavenProject project, final String configuredName,
+		final File sourceDirectory, final Log log )
+	{
+		if ( StringUtils.isNotEmpty( configuredName ) )
+		{
+			return new Resolution( configuredName, Source.PARAMETER );
+		}
+		final String key = CONTEXT_KEY + sourceDirectory;
+		synchronized ( project )
+		{
+			final Object cached = project.getContextValue( key );
+			if ( cached instanceof Resolution )
+			{
+				return ( Resolution ) cached;
+			}
+			final Resolution resolution = resolve( project.getBasedir( ), sourceDirectory, project.getArtifactId( ) );
+			if ( resolution.getSource( ) != Source.ARTIFACT_ID )
+			{
+				log.info( "Found moduleName over " +
+					( resolution.getSource( ) == Source.SDK_PROPERTIES ? "sdk.properties" : "File" ) + ": " +
+					resolution.getName( ) );
+			}
+			project.setContextValue( key, resolution );
+			return resolution;
+		}
+	}
+
+	/**
+	 * Resolves the module name from the sdk.properties, the module main class or the artifactId
+	 *
+	 * @param baseDir the base directory of the project
+	 * @param sourceDirectory the source directory of the project
+	 * @param artifactId the artifactId of the project
+	 * @return the module name and its source
+	 */
+	public static Resolution resolve( final File baseDir, final File sourceDirectory, final String artifactId )
+	{
+		/* first fallback: try to load moduleName from sdk.properties file if exist */
+		final File sdkPropsFile = new File( baseDir, "sdk.properties" );
+		if ( sdkPropsFile.isFile( ) )
+		{
+			final Properties props = new Properties( );
+			try (final InputStream in = FileUtils.openInputStream( sdkPropsFile ))
+			{
+				props.load( in );
+			}
+			catch ( final IOException e )
+			{
+				/* Ignore, try the next option */
+			}
+			if ( StringUtils.isNotEmpty( props.getProperty( "moduleName" ) ) )
+			{
+				return new Resolution( props.getProperty( "moduleName" ), Source.SDK_PROPERTIES );
+			}
+		}
+		if ( StringUtils.isEmpty( artifactId ) )
+		{
+			return new Resolution( artifactId, Source.ARTIFACT_ID );
+		}
+		/* second fallback: find something that looks like the module main class */
+		final String lcArtifactId = artifactId.toLowerCase( Locale.ROOT );
+		final String lcArtifactIdDotJava = lcArtifactId + ".java";
+		final File[ ] filesInDir = new File(
+			new File( new File( new File( sourceDirectory, "com" ), "apiomat" ), "nativemodule" ), lcArtifactId )
+				.listFiles( File::isFile );
+		if ( filesInDir != null )
+		{
+			for ( final File fileInDir : filesInDir )
+			{
+				final String fName = fileInDir.getName( );
+				if ( fName.toLowerCase( Locale.ROOT ).equals( lcArtifactIdDotJava ) )
+				{
+					return new Resolution( fName.substring( 0, fName.length( ) - ".java".length( ) ),
+						Source.MODULE_CLASS );
+				}
+			}
+		}
+		/* no name in pom, no property specified, no sdk properties, no module main, very last option: try the
+		 * artifactId (may misbehave, but better than nothing) */
+		return new Resolution( artifactId, Source.ARTIFACT_ID );
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.artifact.versioning.ComparableVersion;
+
+/**
+ * A version including its qualifier, like 3.3.0, 3.3.0-SNAPSHOT, 3.3.0-rc1 or 3.3.0.Final. Versions are ordered like
+ * Maven's {@link ComparableVersion} orders them, so 3.3.0-SNAPSHOT is older than 3.3.0. Versions without qualifier
+ * whose numbers fit into a {@link PackedVersion} are compared packed, which is only faster, not different.
+ *
+ * Parsed versions are interned, so parsing the same version for many modules returns the same instance.
+ *
+ * @author thum
+ */
+public final class NMVersion implements Comparable<NMVersion>
+{
+	/** versions interned at most, protects against unbounded growth if arbitrary strings are parsed */
+	private static final int MAX_INTERNED = 4096;
+	private static final Map<String, NMVersion> INTERNED = new ConcurrentHashMap<>( );
+
+	private final String text;
+	private final ComparableVersion comparable;
+	/** the numbers if the version has no qualifier and fits into a packed version, otherwise INVALID */
+	private final long packed;
+	/** the numbers the version starts with */
+	private final int[ ] numbers;
+
+	private NMVersion( final String text, final int[ ] numbers )
+	{
+		this.text = text;
+		this.comparable = new ComparableVersion( text );
+		this.numbers = numbers;
+		this.packed =
+			isPlainNumbers( text ) && PackedVersion.fits( numbers[ 0 ], numbers[ 1 ], numbers[ 2 ], numbers[ 3 ] ) ?
+				PackedVersion.of( numbers ) : PackedVersion.INVALID;
+	}
+
+	/**
+	 * @param version the version string
+	 * @return the version, null if the string does not start with a number
+	 */
+	public static NMVersion parse( final String version )
+	{
+		if ( version == null )
+		{
+			return null;
+		}
+		final String trimmed = version.trim( );
+		NMVersion parsed = INTERNED.get( trimmed );
+		if ( parsed == null )
+		{
+			final int[ ] numbers = VersionCompareHelper.parseNumbers( trimmed, 1 );
+			if ( numbers == null )
+			{
+				return null;
+			}
+			parsed = new NMVersion( trimmed, numbers );
+			if ( INTERNED.size( ) < MAX_INTERNED )
+			{
+				final NMVersion existing = INTERNED.putIfAbsent( trimmed, parsed );
+				parsed = existing != null ? existing : parsed;
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * @param version the version string
+	 * @return the version
+	 * @throws IllegalArgumentException if the string does not start with a number
+	 */
+	public static NMVersion of( final String version )
+	{
+		final NMVersion parsed = parse( version );
+		if ( parsed == null )
+		{
+			throw new IllegalArgumentException( "Not a version: " + version );
+		}
+		return parsed;
+	}
+
+	/**
+	 * @param numbers major, minor, hotfix and patch level; missing numbers are 0
+	 * @return the version
+	 */
+	public static NMVersion of( final int[ ] numbers )
+	{
+		final StringBuilder sb = new StringBuilder( );
+		for ( int i = 0; i < 4; i++ )
+		{
+			final int number = i < numbers.length ? numbers[ i ] : 0;
+			if ( i < 3 || number != 0 )
+			{
+				sb.append( i == 0 ? "" : "." ).append( number );
+			}
+		}
+		return of( sb.toString( ) );
+	}
+
+	/** @return whether the version only consists of up to four numbers separated by dots */
+	private static boolean isPlainNumbers( final String text )
+	{
+		int dots = 0;
+		boolean digit = false;
+		for ( int i = 0; i < text.length( ); i++ )
+		{
+			final char c = text.charAt( i );
+			if ( c == '.' && digit && dots < 3 )
+			{
+				dots++;
+				digit = false;
+			}
+			else if ( c >= '0' && c <= '9' )
+			{
+				digit = true;
+			}
+			else
+			{
+				return false;
+			}
+		}
+		return digit;
+	}
+
+	/**
+	 * @return the major, minor, hotfix version and patch level the version starts with, ignoring the qualifier
+	 */
+	public int[ ] getNumbers( )
+	{
+		return this.numbers.clone( );
+	}
+
+	/**
+	 * @return whether this is a snapshot version
+	 */
+	public boolean isSnapshot( )
+	{
+		return this.text.endsWith( "-SNAPSHOT" );
+	}
+
+	/**
+	 * @return the release this version is a snapshot of, this version if it is no snapshot
+	 */
+	public NMVersion getRelease( )
+	{
+		return isSnapshot( ) ? of( this.text.substring( 0, this.text.length( ) - "-SNAPSHOT".length( ) ) ) : this;
+	}
+
+	/**
+	 * @param other another version
+	 * @return whether this version is newer than the other one
+	 */
+	public boolean isNewerThan( final NMVersion other )
+	{
+		return compareTo( other ) > 0;
+	}
+
+	/**
+	 * @param other another version
+	 * @return whether this version is older than the other one
+	 */
+	public boolean isOlderThan( final NMVersion other )
+	{
+		return compareTo( other ) < 0;
+	}
+
+	@Override
+	public int compareTo( final NMVersion other )
+	{
+		if ( this == other )
+		{
+			return 0;
+		}
+		if ( this.packed != PackedVersion.INVALID && other.packed != PackedVersion.INVALID )
+		{
+			return PackedVersion.compare( this.packed, other.packed );
+		}
+		return this.comparable.compareTo( other.comparable );
+	}
+
+	@Override
+	public boolean equals( final Object obj )
+	{
+		return obj instanceof NMVersion && compareTo( ( NMVersion ) obj ) == 0;
+	}
+
+	@Override
+	public int hashCode( )
+	{
+		return this.comparable.hashCode( );
+	}
+
+	@Override
+	public String toString( )
+	{
+		return this.text;
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A range of {@link NMVersion}s written like Maven version ranges: [2.5,3.3) contains 2.5 up to but excluding 3.3,
+ * (,2.5] everything up to 2.5, [3.3,) everything from 3.3 on, [3.3] exactly 3.3; several ranges may be combined,
+ * separated by commas, like (,2.0],[2.5,). A single version without brackets means exactly that version.
+ *
+ * @author thum
+ */
+public final class NMVersionRange
+{
+	/** a single interval of versions; a null bound is unbounded */
+	private static final class Interval
+	{
+		private final NMVersion lower;
+		private final boolean lowerInclusive;
+		private final NMVersion upper;
+		private final boolean upperInclusive;
+
+		Interval( final NMVersion lower, final boolean lowerInclusive, final NMVersion upper,
+			final boolean upperInclusive )
+		{
+			this.lower = lower;
+			this.lowerInclusive = lowerInclusive;
+			this.upper = upper;
+			this.upperInclusive = upperInclusive;
+		}
+
+		boolean contains( final NMVersion version )
+		{
+			if ( this.lower != null )
+			{
+				final int cmp = version.compareTo( this.lower );
+				if ( cmp < 0 || cmp == 0 && this.lowerInclusive == false )
+				{
+					return false;
+				}
+			}
+			if ( this.upper != null )
+			{
+				final int cmp = version.compareTo( this.upper );
+				if ( cmp > 0 || cmp == 0 && this.upperInclusive == false )
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String toString( )
+		{
+			if ( this.lower != null && this.lower.equals( this.upper ) && this.lowerInclusive && this.upperInclusive )
+			{
+				return "[" + this.lower + "]";
+			}
+			return ( this.lowerInclusive ? "[" : "(" ) + ( this.lower == null ? "" : this.lower ) + "," +
+				( this.upper == null ? "" : this.upper ) + ( this.upperInclusive ? "]" : ")" );
+		}
+	}
+
+	private final List<Interval> intervals;
+
+	private NMVersionRange( final List<Interval> intervals )
+	{
+		this.intervals = Collections.unmodifiableList( intervals );
+	}
+
+	/**
+	 * @param from the version to update from, null for no lower bound
+	 * @param to the version to update to, null for no upper bound; an update to a snapshot migrates to its release
+	 * @return the range of versions newer than from and not newer than to, the versions an update has to migrate to
+	 */
+	public static NMVersionRange between( final NMVersion from, final NMVersion to )
+	{
+		final NMVersion upper = to == null ? null : to.getRelease( );
+		return new NMVersionRange( Collections.singletonList( new Interval( from, false, upper, upper != null ) ) );
+	}
+
+	/**
+	 * @param spec the range, like [2.5,3.3)
+	 * @return the range
+	 * @throws IllegalArgumentException if the range is malformed
+	 */
+	public static NMVersionRange parse( final String spec )
+	{
+		final String trimmed = spec == null ? "" : spec.trim( );
+		if ( trimmed.isEmpty( ) )
+		{
+			throw new IllegalArgumentException( "Empty version range" );
+		}
+		final List<Interval> intervals = new ArrayList<>( );
+		if ( trimmed.charAt( 0 ) != '[' && trimmed.charAt( 0 ) != '(' )
+		{
+			final NMVersion version = version( trimmed, spec );
+			intervals.add( new Interval( version, true, version, true ) );
+			return new NMVersionRange( intervals );
+		}
+		int pos = 0;
+		while ( pos < trimmed.length( ) )
+		{
+			final char open = trimmed.charAt( pos );
+			if ( open != '[' && open != '(' )
+			{
+				throw new IllegalArgumentException(
+					"Expected [ or ( at position " + pos + " of version range " + spec );
+			}
+			final int close = indexOfClose( trimmed, pos + 1 );
+			if ( close < 0 )
+			{
+				throw new IllegalArgumentException( "Unclosed version range " + spec );
+			}
+			intervals.add( interval( open, trimmed.substring( pos + 1, close ).trim( ), trimmed.charAt( close ),
+				spec ) );
+			pos = close + 1;
+			while ( pos < trimmed.length( ) &&
+				( Character.isWhitespace( trimmed.charAt( pos ) ) || trimmed.charAt( pos ) == ',' ) )
+			{
+				pos++;
+			}
+		}
+		return new NMVersionRange( intervals );
+	}
+
+	private static int indexOfClose( final String spec, final int from )
+	{
+		for ( int i = from; i < spec.length( ); i++ )
+		{
+			if ( spec.charAt( i ) == ']' || spec.charAt( i ) == ')' )
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static Interval interval( final char open, final String bounds, final char close, final String spec )
+	{
+		final int comma = bounds.indexOf( ',' );
+		if ( comma < 0 )
+		{
+			if ( open != '[' || close != ']' )
+			{
+				throw new IllegalArgumentException( "A single version has to be written as [x.y] in " + spec );
+			}
+			final NMVersion version = version( bounds, spec );
+			return new Interval( version, true, version, true );
+		}
+		final String lower = bounds.substring( 0, comma ).trim( );
+		final String upper = bounds.substring( comma + 1 ).trim( );
+		final Interval interval = new Interval( lower.isEmpty( ) ? null : version( lower, spec ), open == '[',
+			upper.isEmpty( ) ? null : version( upper, spec ), close == ']' );
+		if ( interval.lower != null && interval.upper != null && interval.lower.isNewerThan( interval.upper ) )
+		{
+			throw new IllegalArgumentException( "Lower bound is newer than upper bound in version range " + spec );
+		}
+		return interval;
+	}
+
+	private static NMVersion version( final String version, final String spec )
+	{
+		final NMVersion parsed = NMVersion.parse( version );
+		if ( parsed == null )
+		{
+			throw new IllegalArgumentException( "Invalid version " + version + " in version range " + spec );
+		}
+		return parsed;
+	}
+
+	/**
+	 * @param version a version
+	 * @return whether the version is within the range
+	 */
+	public boolean contains( final NMVersion version )
+	{
+		for ( final Interval interval : this.intervals )
+		{
+			if ( interval.contains( version ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString( )
+	{
+		final StringBuilder sb = new StringBuilder( );
+		for ( final Interval interval : this.intervals )
+		{
+			sb.append( sb.length( ) == 0 ? "" : "," ).append( interval );
+		}
+		return sb.toString( );
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+/**
+ * Version numbers (major, minor, hotfix, patch) packed into a single long, 16 bits per number with major in the highest
+ * bits. Packed versions compare like the version numbers, so comparing two versions is a single long comparison, and
+ * neither parsing nor comparing allocates anything.
+ *
+ * @author thum
+ */
+public final class PackedVersion
+{
+	/** returned by {@link #parse(CharSequence)} if the string is no version */
+	public static final long INVALID = -1L;
+
+	/** the highest number a version may consist of; all numbers at 0xFFFF would collide with {@link #INVALID} */
+	public static final int MAX_NUMBER = 0xFFFE;
+
+	private static final int LANE_BITS = 16;
+	private static final long LANE_MASK = 0xFFFFL;
+
+	private PackedVersion( )
+	{
+	}
+
+	/**
+	 * @param major major version
+	 * @param minor minor version
+	 * @param hotfix hotfix version
+	 * @param patch patch level
+	 * @return the packed version
+	 * @throws IllegalArgumentException if a number is negative or greater than {@link #MAX_NUMBER}
+	 */
+	public static long of( final int major, final int minor, final int hotfix, final int patch )
+	{
+		return lane( major ) << 3 * LANE_BITS | lane( minor ) << 2 * LANE_BITS | lane( hotfix ) << LANE_BITS |
+			lane( patch );
+	}
+
+	/**
+	 * @param numbers major, minor, hotfix and patch level; missing numbers are 0
+	 * @return the packed version
+	 * @throws IllegalArgumentException if a number is negative or greater than {@link #MAX_NUMBER}
+	 */
+	public static long of( final int[ ] numbers )
+	{
+		return of( numbers.length > 0 ? numbers[ 0 ] : 0, numbers.length > 1 ? numbers[ 1 ] : 0,
+			numbers.length > 2 ? numbers[ 2 ] : 0, numbers.length > 3 ? numbers[ 3 ] : 0 );
+	}
+
+	/**
+	 * @param major major version
+	 * @param minor minor version
+	 * @param hotfix hotfix version
+	 * @param patch patch level
+	 * @return whether all numbers fit into the lanes of a packed version, see {@link #MAX_NUMBER}
+	 */
+	public static boolean fits( final int major, final int minor, final int hotfix, final int patch )
+	{
+		return ( major | minor | hotfix | patch ) >= 0 &&
+			Math.max( Math.max( major, minor ), Math.max( hotfix, patch ) ) <= MAX_NUMBER;
+	}
+
+	private static long lane( final int number )
+	{
+		if ( number < 0 || number > MAX_NUMBER )
+		{
+			throw new IllegalArgumentException( "Version number out of range: " + number );
+		}
+		return number;
+	}
+
+	/**
+	 * Parses a version like 3.3.0 or 2.5.0.1-SNAPSHOT. The string has to start with at least two numbers, separated by
+	 * a single non-digit character; up to four numbers are read and everything after them is ignored, just like
+	 * {@link VersionCompareHelper#parseNumbers(String)} always did.
+	 *
+	 * @param version the version string
+	 * @return the packed version, {@link #INVALID} if the string is no version or a number is out of range
+	 */
+	public static long parse( final CharSequence version )
+	{
+		if ( version == null )
+		{
+			return INVALID;
+		}
+		final int length = version.length( );
+		long packed = 0;
+		int numbers = 0;
+		int pos = 0;
+		while ( numbers < 4 )
+		{
+			int number = 0;
+			final int start = pos;
+			while ( pos < length )
+			{
+				final char c = version.charAt( pos );
+				if ( c < '0' || c > '9' )
+				{
+					break;
+				}
+				number = number * 10 + ( c - '0' );
+				if ( number > MAX_NUMBER )
+				{
+					return INVALID;
+				}
+				pos++;
+			}
+			if ( pos == start )
+			{
+				break;
+			}
+			packed |= ( long ) number << ( 3 - numbers ) * LANE_BITS;
+			numbers++;
+			/* skip the separator */
+			pos++;
+		}
+		return numbers < 2 ? INVALID : packed;
+	}
+
+	/**
+	 * @param v1 a packed version
+	 * @param v2 another packed version
+	 * @return a negative number, zero or a positive number if the first version is older, equal or newer than the
+	 *         second
+	 */
+	public static int compare( final long v1, final long v2 )
+	{
+		/* all lanes are unsigned, so the sign bit belongs to major */
+		return Long.compareUnsigned( v1, v2 );
+	}
+
+	/**
+	 * @param version a packed version
+	 * @return the major version
+	 */
+	public static int major( final long version )
+	{
+		return ( int ) ( version >>> 3 * LANE_BITS & LANE_MASK );
+	}
+
+	/**
+	 * @param version a packed version
+	 * @return the minor version
+	 */
+	public static int minor( final long version )
+	{
+		return ( int ) ( version >>> 2 * LANE_BITS & LANE_MASK );
+	}
+
+	/**
+	 * @param version a packed version
+	 * @return the hotfix version
+	 */
+	public static int hotfix( final long version )
+	{
+		return ( int ) ( version >>> LANE_BITS & LANE_MASK );
+	}
+
+	/**
+	 * @param version a packed version
+	 * @return the patch level
+	 */
+	public static int patch( final long version )
+	{
+		return ( int ) ( version & LANE_MASK );
+	}
+
+	/**
+	 * @param version a packed version
+	 * @return major, minor, hotfix and patch level
+	 */
+	public static int[ ] toArray( final long version )
+	{
+		return new int[ ] { major( version ), minor( version ), hotfix( version ), patch( version ) };
+	}
+
+	/**
+	 * @param version a packed version
+	 * @return the version as string, without the patch level if it is 0
+	 */
+	public static String toString( final long version )
+	{
+		final StringBuilder sb = new StringBuilder( ).append( major( version ) ).append( '.' )
+			.append( minor( version ) ).append( '.' ).append( hotfix( version ) );
+		if ( patch( version ) != 0 )
+		{
+			sb.append( '.' ).append( patch( version ) );
+		}
+		return sb.toString( );
+	}
+}
@@ -0,0 +1,1335 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.logging.Log;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Rewrites the pom.xml of a module for 3.3.0 in a single streaming (StAX) pass. All parts of the document which are
+ * not changed keep their formatting and comments; only single plugins, profiles and dependencies are buffered to
+ * decide whether they have to be changed or removed.
+ *
+ * The rewriter is stateless and may be shared between threads.
+ *
+ * @author thum
+ */
+public class Pom330Rewriter
+{
+	private static final String DEFAULT_INDENT = "    ";
+
+	private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY =
+		ThreadLocal.withInitial( Pom330Rewriter::createInputFactory );
+
+	private final String moduleName;
+	private final List<Dependency> libsToChange;
+	private final Log log;
+
+	/* indexes built once per rewriter, so matching a dependency does not depend on the number of libraries */
+	private final SuffixIndex<String> libsToRemove = new SuffixIndex<>( );
+	private final Map<String, Dependency> libsToChangeByKey = new HashMap<>( );
+	private final SuffixIndex<File> usedLibsBySuffix = new SuffixIndex<>( );
+	private final Map<String, File> usedLibsByName = new HashMap<>( );
+
+	/**
+	 * @param moduleName the module name, set as name of the project if it has none
+	 * @param libsToChange the dependencies which have to be contained with scope provided
+	 * @param libNames the names of the jars whose system dependencies have to be removed
+	 * @param usedLibs the used module libraries, whose system dependencies get renamed to versioned jars
+	 * @param log the log
+	 */
+	public Pom330Rewriter( final String moduleName, final List<Dependency> libsToChange, final String[ ] libNames,
+		final List<File> usedLibs, final Log log )
+	{
+		this.moduleName = moduleName;
+		this.libsToChange = Objects.requireNonNull( libsToChange );
+		this.log = Objects.requireNonNull( log );
+
+		for ( final String libName : libNames )
+		{
+			this.libsToRemove.add( libName, libName );
+		}
+		for ( final Dependency dep : libsToChange )
+		{
+			this.libsToChangeByKey.putIfAbsent( dep.getGroupId( ) + ":" + dep.getArtifactId( ), dep );
+		}
+		for ( final File usedLib : usedLibs )
+		{
+			this.usedLibsBySuffix.add( usedLib.getName( ), usedLib );
+			this.usedLibsByName.putIfAbsent( usedLib.getName( ).toLowerCase( Locale.ROOT ), usedLib );
+		}
+	}
+
+	/**
+	 * The result of a rewrite
+	 */
+	public static final class Result
+	{
+		private final boolean pom;
+		private final String content;
+		private final boolean changed;
+		private final Map<File, File> renamedLibs;
+
+		Result( final boolean pom, final String content, final boolean changed, final Map<File, File> renamedLibs )
+		{
+			this.pom = pom;
+			this.content = content;
+			this.changed = changed;
+			this.renamedLibs = Collections.unmodifiableMap( renamedLibs );
+		}
+
+		/**
+		 * @return whether the document was a pom.xml with a project root element
+		 */
+		public boolean isPom( )
+		{
+			return this.pom;
+		}
+
+		/**
+		 * @return the rewritten content
+		 */
+		public String getContent( )
+		{
+			return this.content;
+		}
+
+		/**
+		 * @return whether the content was changed
+		 */
+		public boolean isChanged( )
+		{
+			return this.changed;
+		}
+
+		/**
+		 * @return the used module libraries which have to be renamed (old file to new file)
+		 */
+		public Map<File, File> getRenamedLibs( )
+		{
+			return this.renamedLibs;
+		}
+	}
+
+	/**
+	 * Rewrites the given pom.xml file; the file is only written if its content changed
+	 *
+	 * @param pomFile the pom.xml
+	 * @return the used module libraries which have to be renamed (old file to new file)
+	 * @throws IOException
+	 * @throws XMLStreamException if the pom.xml could not be parsed
+	 */
+	public Map<File, File> rewrite( final File pomFile ) throws IOException, XMLStreamException
+	{
+		final String content = FileUtils.readFileToString( pomFile, StandardCharsets.UTF_8 );
+		final Result result = rewrite( content );
+		if ( result.isPom( ) == false )
+		{
+			this.log.error( "Updating pom.xml failed, probably corrupted pom.xml?" );
+		}
+		else if ( result.isChanged( ) )
+		{
+			FileUtils.write( pomFile, result.getContent( ), StandardCharsets.UTF_8 );
+		}
+		return result.getRenamedLibs( );
+	}
+
+	/**
+	 * Rewrites the given pom.xml content
+	 *
+	 * @param content the content of the pom.xml
+	 * @return the result
+	 * @throws XMLStreamException if the content could not be parsed
+	 */
+	public Result rewrite( final String content ) throws XMLStreamException
+	{
+		return new Pass( content ).run( );
+	}
+
+	private static XMLInputFactory createInputFactory( )
+	{
+		final XMLInputFactory factory = XMLInputFactory.newInstance( );
+		factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+		factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+		factory.setProperty( XMLInputFactory.IS_COALESCING, false );
+		/* keep CDATA sections instead of reporting them as escaped text */
+		final String reportCdata = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+		if ( factory.isPropertySupported( reportCdata ) )
+		{
+			factory.setProperty( reportCdata, true );
+		}
+		return factory;
+	}
+
+	/* ------------------------------------------------------------------------------------------------------------
+	 * 3.3.0 transformations
+	 * ------------------------------------------------------------------------------------------------------------ */
+
+	private boolean isLibToRemove( final String systemPath )
+	{
+		return this.libsToRemove.findSuffixOf( systemPath ) != null;
+	}
+
+	private boolean isLibToChange( final String groupId, final String artifactId )
+	{
+		return this.libsToChangeByKey.containsKey( groupId + ":" + artifactId );
+	}
+
+	private File findUsedLib( final String systemPath )
+	{
+		return this.usedLibsBySuffix.findSuffixOf( systemPath );
+	}
+
+	private File findUsedLibByName( final String fileName )
+	{
+		return this.usedLibsByName.get( fileName.toLowerCase( Locale.ROOT ) );
+	}
+
+	private static boolean isAntrunPluginToRemove( final Element plugin )
+	{
+		final Element first = plugin.firstElement( );
+		if ( first == null || "artifactId".equals( first.name ) == false ||
+			"maven-antrun-plugin".equals( first.text( ) ) == false )
+		{
+			return false;
+		}
+		for ( final Element ant : plugin.descendants( "ant" ) )
+		{
+			if ( ant.children.isEmpty( ) && ant.attributes.size( ) == 2 &&
+				"build.xml".equals( ant.attribute( "antfile" ) ) &&
+				"${ant.target}".equals( ant.attribute( "target" ) ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void updateCopyDependencies( final Element plugin )
+	{
+		Element configuration = null;
+		boolean found = false;
+		for ( final Element executions : plugin.children( "executions" ) )
+		{
+			for ( final Element execution : executions.children( "execution" ) )
+			{
+				for ( final Element goals : execution.children( "goals" ) )
+				{
+					for ( final Element goal : goals.children( "goal" ) )
+					{
+						found |= "copy-dependencies".equals( goal.text( ) );
+					}
+				}
+				if ( found )
+				{
+					configuration = execution.child( "configuration" );
+					break;
+				}
+			}
+			if ( found )
+			{
+				break;
+			}
+		}
+		if ( configuration == null )
+		{
+			return;
+		}
+		final StringBuilder content = new StringBuilder( );
+		for ( final Dependency lib : this.libsToChange )
+		{
+			content.append( content.length( ) > 0 ? "," : "" ).append( lib.getArtifactId( ) );
+		}
+		final Element exclusion = configuration.child( "excludeArtifactIds" );
+		if ( exclusion == null )
+		{
+			configuration.appendChild( new Element( "excludeArtifactIds" ).withText( content.toString( ) ) );
+			return;
+		}
+		final String currentContent = exclusion.textContent( );
+		if ( StringUtils.isBlank( currentContent ) )
+		{
+			/* empty exclusion, repair it */
+			exclusion.setText( content.toString( ) );
+		}
+		else if ( currentContent.equals( content.toString( ) ) == false )
+		{
+			/* add each missing lib to the exclusion */
+			final StringBuilder repaired = new StringBuilder( currentContent );
+			for ( final Dependency lib : this.libsToChange )
+			{
+				if ( currentContent.contains( lib.getArtifactId( ) ) == false )
+				{
+					repaired.append( ',' ).append( lib.getArtifactId( ) );
+				}
+			}
+			if ( repaired.length( ) != currentContent.length( ) )
+			{
+				exclusion.setText( repaired.toString( ) );
+			}
+		}
+	}
+
+	private void renameToVersionedLib( final Element systemPathElement, final String systemPath,
+		final String artifactId, final String version, final File usedLib, final Map<File, File> renamedLibs )
+	{
+		String newSystemPath = systemPath.substring( 0, systemPath.length( ) - 4 );
+		if ( newSystemPath.contains( version ) == false &&
+			newSystemPath.toLowerCase( ).endsWith( artifactId.toLowerCase( ) ) )
+		{
+			newSystemPath = newSystemPath + "-" + version + ".jar";
+			this.log.info( "Rename artifact " + artifactId + " systempath from " + systemPath + " to " +
+				newSystemPath + " in pom.xml" );
+			systemPathElement.setText( newSystemPath );
+			renamedLibs.put( usedLib, new File( usedLib.getParentFile( ), new File( newSystemPath ).getName( ) ) );
+		}
+		else if ( systemPath.toLowerCase( ).endsWith( ( artifactId + "-" + version + ".jar" ).toLowerCase( ) ) )
+		{
+			/* AOM-5541 new lib already exists, check whether an orphaned unversioned used module lib exists */
+			final File orphanedLib = findUsedLibByName( artifactId + ".jar" );
+			if ( orphanedLib != null )
+			{
+				renamedLibs.put( orphanedLib, usedLib );
+			}
+		}
+	}
+
+	private Element createNmPlugin( )
+	{
+		this.log.info( "Append aom-nm plugin child" );
+		// TODO 5582 must be set to actual version name when released, 1.0.0-SNAPSHOT is just provisionally
+		return new Element( "plugin" )
+			.withChild( new Element( "groupId" ).withText( "com.apiomat.helper" ) )
+			.withChild( new Element( "artifactId" ).withText( "nm-maven-plugin" ) )
+			.withChild( new Element( "version" ).withText( "1.0.0-SNAPSHOT" ) )
+			.withChild( new Element( "executions" ).withChild( new Element( "execution" )
+				.withChild( new Element( "goals" ).withChild( new Element( "goal" ).withText( "package" ) ) ) ) );
+	}
+
+	private List<Element> createMissingDependencies( final Set<String> alreadyContainedAsProvided )
+	{
+		final List<Element> missing = new ArrayList<>( );
+		for ( final Dependency dep : this.libsToChange )
+		{
+			if ( alreadyContainedAsProvided.contains( dep.getGroupId( ) + ":" + dep.getArtifactId( ) ) == false )
+			{
+				this.log.info( "Adding child " + dep.getArtifactId( ) );
+				missing.add( new Element( "dependency" )
+					.withChild( new Element( "groupId" ).withText( dep.getGroupId( ) ) )
+					.withChild( new Element( "artifactId" ).withText( dep.getArtifactId( ) ) )
+					.withChild( new Element( "version" ).withText( dep.getVersion( ) ) )
+					.withChild( new Element( "scope" ).withText( dep.getScope( ) ) ) );
+			}
+		}
+		return missing;
+	}
+
+	/**
+	 * Finds the value whose key is a suffix of a given string, like a jar name at the end of a system path. Keys are
+	 * grouped by their length, so a lookup costs one hash lookup per distinct key length instead of one comparison per
+	 * key. If several keys match, the value added first wins.
+	 */
+	static final class SuffixIndex<T>
+	{
+		private final Map<Integer, Map<String, Integer>> keysByLength = new TreeMap<>( );
+		private final List<T> values = new ArrayList<>( );
+
+		void add( final String key, final T value )
+		{
+			if ( this.keysByLength.computeIfAbsent( key.length( ), l -> new HashMap<>( ) )
+				.putIfAbsent( key, this.values.size( ) ) == null )
+			{
+				this.values.add( value );
+			}
+		}
+
+		T findSuffixOf( final String string )
+		{
+			int first = Integer.MAX_VALUE;
+			for ( final Map.Entry<Integer, Map<String, Integer>> keys : this.keysByLength.entrySet( ) )
+			{
+				if ( keys.getKey( ) > string.length( ) )
+				{
+					break;
+				}
+				final Integer index = keys.getValue( ).get( string.substring( string.length( ) - keys.getKey( ) ) );
+				if ( index != null && index < first )
+				{
+					first = index;
+				}
+			}
+			return first == Integer.MAX_VALUE ? null : this.values.get( first );
+		}
+	}
+
+	/* ------------------------------------------------------------------------------------------------------------
+	 * streaming pass
+	 * ------------------------------------------------------------------------------------------------------------ */
+
+	private enum Kind
+	{
+		OTHER, PROJECT, BUILD, PLUGINS, PROFILES, DEPENDENCIES
+	}
+
+	/** an element which has been started but not yet ended in the output */
+	private static final class Frame
+	{
+		final Frame parent;
+		final String name;
+		final Kind kind;
+		/* indentation of the line of this element, null if unknown */
+		final String indent;
+		/* indentation of the child elements, null until the first child on its own line was seen */
+		String childIndent;
+
+		Frame( final Frame parent, final String name, final Kind kind, final String indent )
+		{
+			this.parent = parent;
+			this.name = name;
+			this.kind = kind;
+			this.indent = indent;
+		}
+	}
+
+	/** state of a single rewrite */
+	private final class Pass
+	{
+		private final String source;
+		private final StringBuilder out;
+		private final String newLine;
+		private final Deque<Frame> stack = new ArrayDeque<>( );
+		private final StringBuilder pendingWhitespace = new StringBuilder( );
+		private final Map<File, File> renamedLibs = new HashMap<>( );
+		private final Set<String> alreadyContainedAsProvided = new HashSet<>( );
+		private Frame project;
+		private boolean startTagOpen;
+		private boolean rootEnded;
+		private boolean nameSeen;
+		private boolean buildSeen;
+		private boolean pluginsSeen;
+		private boolean dependenciesSeen;
+		private boolean nmPluginSeen;
+		private boolean copyDependenciesHandled;
+		private boolean antrunRemoved;
+
+		Pass( final String source )
+		{
+			this.source = source;
+			this.out = new StringBuilder( source.length( ) + 1024 );
+			this.newLine = source.contains( "\r\n" ) ? "\r\n" : "\n";
+		}
+
+		Result run( ) throws XMLStreamException
+		{
+			final int rootStart = findRootStart( this.source );
+			final String toParse = this.source.startsWith( "\uFEFF" ) ? this.source.substring( 1 ) : this.source;
+			final XMLStreamReader reader = INPUT_FACTORY.get( ).createXMLStreamReader( new StringReader( toParse ) );
+			try
+			{
+				while ( this.rootEnded == false && reader.hasNext( ) )
+				{
+					switch ( reader.next( ) )
+					{
+						case XMLStreamConstants.START_ELEMENT:
+							if ( this.stack.isEmpty( ) )
+							{
+								if ( "project".equals( reader.getLocalName( ) ) == false )
+								{
+									return new Result( false, this.source, false, this.renamedLibs );
+								}
+								startRoot( rootStart );
+							}
+							else
+							{
+								startElement( reader );
+							}
+							break;
+						case XMLStreamConstants.END_ELEMENT:
+							endElement( );
+							break;
+						case XMLStreamConstants.CHARACTERS:
+						case XMLStreamConstants.SPACE:
+							characters( reader.getText( ) );
+							break;
+						case XMLStreamConstants.CDATA:
+							content( new Text( reader.getText( ), true ) );
+							break;
+						case XMLStreamConstants.COMMENT:
+							content( new Comment( reader.getText( ) ) );
+							break;
+						case XMLStreamConstants.PROCESSING_INSTRUCTION:
+							content( new ProcessingInstruction( reader.getPITarget( ), reader.getPIData( ) ) );
+							break;
+						default:
+							/* the prolog and epilog are copied as they are */
+							break;
+					}
+				}
+			}
+			finally
+			{
+				reader.close( );
+			}
+			final String result = this.out.toString( );
+			return new Result( true, result, result.equals( this.source ) == false, this.renamedLibs );
+		}
+
+		private void startRoot( final int rootStart )
+		{
+			final int rootEnd = findTagEnd( this.source, rootStart );
+			this.out.append( this.source, 0, rootStart );
+			if ( this.source.charAt( rootEnd - 1 ) == '/' )
+			{
+				/* <project/> gets opened, so the missing elements can be added */
+				this.out.append( this.source, rootStart, rootEnd - 1 ).append( '>' );
+			}
+			else
+			{
+				this.out.append( this.source, rootStart, rootEnd + 1 );
+			}
+			this.project = new Frame( null, "project", Kind.PROJECT, "" );
+			this.stack.push( this.project );
+		}
+
+		private void startElement( final XMLStreamReader reader ) throws XMLStreamException
+		{
+			closeStartTag( );
+			final Frame parent = this.stack.peek( );
+			final String indent = lineIndent( this.pendingWhitespace );
+			if ( parent.childIndent == null && indent != null )
+			{
+				parent.childIndent = indent;
+			}
+			final String name = reader.getLocalName( );
+			Kind kind = Kind.OTHER;
+			switch ( parent.kind )
+			{
+				case PROJECT:
+					if ( "version".equals( name ) )
+					{
+						final Element version = readElement( reader );
+						if ( "1".equals( version.text( ) ) )
+						{
+							version.setText( "1.0.0" );
+						}
+						content( version );
+						return;
+					}
+					this.nameSeen |= "name".equals( name );
+					if ( "build".equals( name ) && this.buildSeen == false )
+					{
+						this.buildSeen = true;
+						kind = Kind.BUILD;
+					}
+					else if ( "profiles".equals( name ) )
+					{
+						kind = Kind.PROFILES;
+					}
+					else if ( "dependencies".equals( name ) && this.dependenciesSeen == false )
+					{
+						this.dependenciesSeen = true;
+						kind = Kind.DEPENDENCIES;
+					}
+					break;
+				case BUILD:
+					if ( "plugins".equals( name ) && this.pluginsSeen == false )
+					{
+						this.pluginsSeen = true;
+						kind = Kind.PLUGINS;
+					}
+					break;
+				case PLUGINS:
+					if ( "plugin".equals( name ) )
+					{
+						buffered( readElement( reader ), this::keepPlugin );
+						return;
+					}
+					break;
+				case PROFILES:
+					if ( "profile".equals( name ) )
+					{
+						buffered( readElement( reader ), this::keepProfile );
+						return;
+					}
+					break;
+				case DEPENDENCIES:
+					if ( "dependency".equals( name ) )
+					{
+						buffered( readElement( reader ), this::keepDependency );
+						return;
+					}
+					break;
+				default:
+					break;
+			}
+			flushWhitespace( );
+			final Element element = startTag( reader );
+			this.out.append( '<' ).append( element.name );
+			writeAttributes( element );
+			this.startTagOpen = true;
+			this.stack.push( new Frame( parent, element.name, kind, indent ) );
+		}
+
+		private void endElement( )
+		{
+			final Frame frame = this.stack.pop( );
+			if ( this.startTagOpen && this.pendingWhitespace.length( ) == 0 && frame.kind == Kind.OTHER )
+			{
+				this.startTagOpen = false;
+				this.out.append( "/>" );
+				return;
+			}
+			closeStartTag( );
+			final List<Element> toAppend = new ArrayList<>( );
+			switch ( frame.kind )
+			{
+				case PLUGINS:
+					if ( this.nmPluginSeen == false )
+					{
+						toAppend.add( createNmPlugin( ) );
+						this.nmPluginSeen = true;
+					}
+					break;
+				case BUILD:
+					if ( this.pluginsSeen == false )
+					{
+						toAppend.add( new Element( "plugins" ).withChild( createNmPlugin( ) ) );
+						this.pluginsSeen = true;
+						this.nmPluginSeen = true;
+					}
+					break;
+				case DEPENDENCIES:
+					toAppend.addAll( createMissingDependencies( this.alreadyContainedAsProvided ) );
+					break;
+				case PROJECT:
+					if ( this.nameSeen == false )
+					{
+						toAppend.add( new Element( "name" ).withText( Pom330Rewriter.this.moduleName ) );
+					}
+					if ( this.buildSeen == false )
+					{
+						final Element plugins = new Element( "plugins" ).withChild( createNmPlugin( ) );
+						toAppend.add( new Element( "build" ).withChild( plugins ) );
+					}
+					if ( this.dependenciesSeen == false )
+					{
+						final Element dependencies = new Element( "dependencies" );
+						createMissingDependencies( this.alreadyContainedAsProvided ).forEach( dependencies::withChild );
+						toAppend.add( dependencies );
+					}
+					break;
+				default:
+					break;
+			}
+			if ( toAppend.isEmpty( ) == false )
+			{
+				final String childIndent = childIndent( frame );
+				for ( final Element element : toAppend )
+				{
+					this.out.append( this.newLine ).append( childIndent );
+					writeNew( element, childIndent );
+				}
+				if ( this.pendingWhitespace.length( ) == 0 )
+				{
+					this.out.append( this.newLine ).append( indent( frame ) );
+				}
+			}
+			flushWhitespace( );
+			this.out.append( "</" ).append( frame.name ).append( '>' );
+			if ( frame.kind == Kind.PROJECT )
+			{
+				this.rootEnded = true;
+				this.out.append( this.source, findEpilogStart( this.source ), this.source.length( ) );
+			}
+		}
+
+		private void characters( final String text )
+		{
+			if ( this.stack.isEmpty( ) )
+			{
+				return;
+			}
+			closeStartTag( );
+			if ( StringUtils.isWhitespace( text ) )
+			{
+				/* whitespace is kept back, as it is dropped together with a removed element */
+				this.pendingWhitespace.append( text );
+			}
+			else
+			{
+				flushWhitespace( );
+				appendText( escape( text, false ) );
+			}
+		}
+
+		private void content( final Node node )
+		{
+			if ( this.stack.isEmpty( ) )
+			{
+				return;
+			}
+			closeStartTag( );
+			flushWhitespace( );
+			write( node );
+		}
+
+		private void buffered( final Element element, final Predicate<Element> keep )
+		{
+			if ( keep.test( element ) )
+			{
+				content( element );
+			}
+			else
+			{
+				this.pendingWhitespace.setLength( 0 );
+			}
+		}
+
+		private boolean keepPlugin( final Element plugin )
+		{
+			final String artifactId = plugin.childText( "artifactId" );
+			if ( this.copyDependenciesHandled == false && "maven-dependency-plugin".equals( artifactId ) )
+			{
+				this.copyDependenciesHandled = true;
+				updateCopyDependencies( plugin );
+			}
+			this.nmPluginSeen |= "nm-maven-plugin".equals( artifactId );
+			if ( this.antrunRemoved == false && "maven-antrun-plugin".equals( artifactId ) &&
+				isAntrunPluginToRemove( plugin ) )
+			{
+				/* AOM-5541 remove obsolete antrun plugin */
+				this.antrunRemoved = true;
+				return false;
+			}
+			return true;
+		}
+
+		/** AOM-5541 removes obsolete ant targets */
+		private boolean keepProfile( final Element profile )
+		{
+			final String id = profile.childText( "id" );
+			return ( profile.textContent( ).contains( "ant.target" ) &&
+				( "release".equals( id ) || "unrelease".equals( id ) ) ) == false;
+		}
+
+		private boolean keepDependency( final Element dependency )
+		{
+			if ( dependency.children.isEmpty( ) )
+			{
+				return false;
+			}
+			/* a single pass over the children, keeping the first occurrence of each element like child( ) does */
+			Element groupIdElement = null;
+			Element artifactIdElement = null;
+			Element versionElement = null;
+			Element scopeElement = null;
+			Element systemPathElement = null;
+			for ( final Node child : dependency.children )
+			{
+				if ( child instanceof Element == false )
+				{
+					continue;
+				}
+				final Element element = ( Element ) child;
+				switch ( element.name )
+				{
+					case "groupId":
+						groupIdElement = groupIdElement == null ? element : groupIdElement;
+						break;
+					case "artifactId":
+						artifactIdElement = artifactIdElement == null ? element : artifactIdElement;
+						break;
+					case "version":
+						versionElement = versionElement == null ? element : versionElement;
+						break;
+					case "scope":
+						scopeElement = scopeElement == null ? element : scopeElement;
+						break;
+					case "systemPath":
+						systemPathElement = systemPathElement == null ? element : systemPathElement;
+						break;
+					default:
+						break;
+				}
+			}
+			final String groupId = groupIdElement == null ? null : groupIdElement.text( );
+			final String artifactId = artifactIdElement == null ? null : artifactIdElement.text( );
+			final String version = versionElement == null ? null : versionElement.text( );
+			final String scope = scopeElement == null ? null : scopeElement.text( );
+			final String systemPath = systemPathElement == null ? null : systemPathElement.text( );
+
+			if ( "system".equals( scope ) && systemPath != null && isLibToRemove( systemPath ) )
+			{
+				return false;
+			}
+			if ( "provided".equals( scope ) && groupId != null && artifactId != null &&
+				isLibToChange( groupId, artifactId ) )
+			{
+				this.alreadyContainedAsProvided.add( groupId + ":" + artifactId );
+			}
+			if ( systemPath != null && artifactId != null && version != null )
+			{
+				final File usedLib = findUsedLib( systemPath );
+				if ( usedLib != null )
+				{
+					renameToVersionedLib( systemPathElement, systemPath, artifactId, version, usedLib,
+						this.renamedLibs );
+				}
+			}
+			return true;
+		}
+
+		private void closeStartTag( )
+		{
+			if ( this.startTagOpen )
+			{
+				this.startTagOpen = false;
+				this.out.append( '>' );
+			}
+		}
+
+		private void flushWhitespace( )
+		{
+			appendText( this.pendingWhitespace );
+			this.pendingWhitespace.setLength( 0 );
+		}
+
+		private String indent( final Frame frame )
+		{
+			if ( frame.indent != null )
+			{
+				return frame.indent;
+			}
+			return frame.parent == null ? "" : childIndent( frame.parent );
+		}
+
+		private String childIndent( final Frame frame )
+		{
+			return frame.childIndent != null ? frame.childIndent : indent( frame ) + indentUnit( );
+		}
+
+		private String indentUnit( )
+		{
+			final String projectIndent = this.project.childIndent;
+			return StringUtils.isEmpty( projectIndent ) ? DEFAULT_INDENT : projectIndent;
+		}
+
+		private void write( final Node node )
+		{
+			if ( node instanceof Text )
+			{
+				final Text text = ( Text ) node;
+				appendText( text.cdata ? "<![CDATA[" + text.text + "]]>" : escape( text.text, false ) );
+			}
+			else if ( node instanceof Comment )
+			{
+				appendText( "<!--" + ( ( Comment ) node ).text + "-->" );
+			}
+			else if ( node instanceof ProcessingInstruction )
+			{
+				final ProcessingInstruction pi = ( ProcessingInstruction ) node;
+				appendText( "<?" + pi.target + ( StringUtils.isEmpty( pi.data ) ? "" : " " + pi.data ) + "?>" );
+			}
+			else
+			{
+				final Element element = ( Element ) node;
+				this.out.append( '<' ).append( element.name );
+				writeAttributes( element );
+				if ( element.children.isEmpty( ) )
+				{
+					this.out.append( "/>" );
+					return;
+				}
+				this.out.append( '>' );
+				for ( final Node child : element.children )
+				{
+					write( child );
+				}
+				this.out.append( "</" ).append( element.name ).append( '>' );
+			}
+		}
+
+		/** writes a newly created element, indenting its child elements */
+		private void writeNew( final Element element, final String indent )
+		{
+			this.out.append( '<' ).append( element.name ).append( '>' );
+			final String childIndent = indent + indentUnit( );
+			boolean hasElements = false;
+			for ( final Node child : element.children )
+			{
+				if ( child instanceof Element )
+				{
+					hasElements = true;
+					this.out.append( this.newLine ).append( childIndent );
+					writeNew( ( Element ) child, childIndent );
+				}
+				else
+				{
+					write( child );
+				}
+			}
+			if ( hasElements )
+			{
+				this.out.append( this.newLine ).append( indent );
+			}
+			this.out.append( "</" ).append( element.name ).append( '>' );
+		}
+
+		private void writeAttributes( final Element element )
+		{
+			for ( final String[ ] attribute : element.attributes )
+			{
+				this.out.append( ' ' ).append( attribute[ 0 ] ).append( "=\"" ).append( escape( attribute[ 1 ], true ) )
+					.append( '"' );
+			}
+		}
+
+		/** appends parsed text, restoring the line separators of the source */
+		private void appendText( final CharSequence text )
+		{
+			if ( "\n".equals( this.newLine ) )
+			{
+				this.out.append( text );
+				return;
+			}
+			for ( int i = 0; i < text.length( ); i++ )
+			{
+				final char c = text.charAt( i );
+				if ( c == '\n' )
+				{
+					this.out.append( this.newLine );
+				}
+				else
+				{
+					this.out.append( c );
+				}
+			}
+		}
+	}
+
+	/* ------------------------------------------------------------------------------------------------------------
+	 * buffered subtrees
+	 * ------------------------------------------------------------------------------------------------------------ */
+
+	private abstract static class Node
+	{
+		/* marker for the nodes of a buffered subtree */
+	}
+
+	private static final class Text extends Node
+	{
+		final String text;
+		final boolean cdata;
+
+		Text( final String text, final boolean cdata )
+		{
+			this.text = text;
+			this.cdata = cdata;
+		}
+	}
+
+	private static final class Comment extends Node
+	{
+		final String text;
+
+		Comment( final String text )
+		{
+			this.text = text;
+		}
+	}
+
+	private static final class ProcessingInstruction extends Node
+	{
+		final String target;
+		final String data;
+
+		ProcessingInstruction( final String target, final String data )
+		{
+			this.target = target;
+			this.data = data;
+		}
+	}
+
+	private static final class Element extends Node
+	{
+		final String name;
+		/* qualified name and value, including namespace declarations */
+		final List<String[ ]> attributes = new ArrayList<>( );
+		final List<Node> children = new ArrayList<>( );
+
+		Element( final String name )
+		{
+			this.name = name;
+		}
+
+		Element withChild( final Node child )
+		{
+			this.children.add( child );
+			return this;
+		}
+
+		Element withText( final String text )
+		{
+			return withChild( new Text( text, false ) );
+		}
+
+		String attribute( final String name )
+		{
+			for ( final String[ ] attribute : this.attributes )
+			{
+				if ( attribute[ 0 ].equals( name ) )
+				{
+					return attribute[ 1 ];
+				}
+			}
+			return null;
+		}
+
+		Element firstElement( )
+		{
+			for ( final Node child : this.children )
+			{
+				if ( child instanceof Element )
+				{
+					return ( Element ) child;
+				}
+			}
+			return null;
+		}
+
+		Element child( final String childName )
+		{
+			for ( final Node child : this.children )
+			{
+				if ( child instanceof Element && ( ( Element ) child ).name.equals( childName ) )
+				{
+					return ( Element ) child;
+				}
+			}
+			return null;
+		}
+
+		List<Element> children( final String childName )
+		{
+			final List<Element> result = new ArrayList<>( );
+			for ( final Node child : this.children )
+			{
+				if ( child instanceof Element && ( ( Element ) child ).name.equals( childName ) )
+				{
+					result.add( ( Element ) child );
+				}
+			}
+			return result;
+		}
+
+		List<Element> descendants( final String descendantName )
+		{
+			final List<Element> result = new ArrayList<>( );
+			for ( final Node child : this.children )
+			{
+				if ( child instanceof Element )
+				{
+					final Element element = ( Element ) child;
+					if ( element.name.equals( descendantName ) )
+					{
+						result.add( element );
+					}
+					result.addAll( element.descendants( descendantName ) );
+				}
+			}
+			return result;
+		}
+
+		/** @return the trimmed text of the child element with the given name, null if there is none */
+		String childText( final String childName )
+		{
+			final Element child = child( childName );
+			return child == null ? null : child.text( );
+		}
+
+		/** @return the trimmed text directly contained in this element */
+		String text( )
+		{
+			final StringBuilder text = new StringBuilder( );
+			for ( final Node child : this.children )
+			{
+				if ( child instanceof Text )
+				{
+					text.append( ( ( Text ) child ).text );
+				}
+			}
+			return text.toString( ).trim( );
+		}
+
+		/** @return the text of this element and all its descendants, without comments */
+		String textContent( )
+		{
+			final StringBuilder text = new StringBuilder( );
+			for ( final Node child : this.children )
+			{
+				if ( child instanceof Text )
+				{
+					text.append( ( ( Text ) child ).text );
+				}
+				else if ( child instanceof Element )
+				{
+					text.append( ( ( Element ) child ).textContent( ) );
+				}
+			}
+			return text.toString( );
+		}
+
+		void setText( final String text )
+		{
+			this.children.removeIf( child -> child instanceof Text );
+			this.children.add( 0, new Text( text, false ) );
+		}
+
+		/** appends a child element with the indentation of the existing children */
+		void appendChild( final Element element )
+		{
+			String childIndent = null;
+			for ( int i = 1; i < this.children.size( ) && childIndent == null; i++ )
+			{
+				if ( this.children.get( i ) instanceof Element && this.children.get( i - 1 ) instanceof Text )
+				{
+					childIndent = lineIndent( ( ( Text ) this.children.get( i - 1 ) ).text );
+				}
+			}
+			final int last = this.children.size( ) - 1;
+			final boolean trailingWhitespace = last >= 0 && this.children.get( last ) instanceof Text &&
+				StringUtils.isWhitespace( ( ( Text ) this.children.get( last ) ).text );
+			final int index = trailingWhitespace ? last : this.children.size( );
+			if ( childIndent != null )
+			{
+				this.children.add( index, new Text( "\n" + childIndent, false ) );
+				this.children.add( index + 1, element );
+			}
+			else
+			{
+				this.children.add( index, element );
+			}
+		}
+	}
+
+	private static Element startTag( final XMLStreamReader reader )
+	{
+		final Element element = new Element( qualifiedName( reader.getPrefix( ), reader.getLocalName( ) ) );
+		for ( int i = 0; i < reader.getNamespaceCount( ); i++ )
+		{
+			final String prefix = reader.getNamespacePrefix( i );
+			element.attributes.add( new String[ ] { StringUtils.isEmpty( prefix ) ? "xmlns" : "xmlns:" + prefix,
+				reader.getNamespaceURI( i ) } );
+		}
+		for ( int i = 0; i < reader.getAttributeCount( ); i++ )
+		{
+			element.attributes.add( new String[ ] {
+				qualifiedName( reader.getAttributePrefix( i ), reader.getAttributeLocalName( i ) ),
+				reader.getAttributeValue( i ) } );
+		}
+		return element;
+	}
+
+	/** reads the subtree of the current start element */
+	private static Element readElement( final XMLStreamReader reader ) throws XMLStreamException
+	{
+		final Element element = startTag( reader );
+		while ( true )
+		{
+			switch ( reader.next( ) )
+			{
+				case XMLStreamConstants.START_ELEMENT:
+					element.children.add( readElement( reader ) );
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					return element;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+					final int last = element.children.size( ) - 1;
+					if ( last >= 0 && element.children.get( last ) instanceof Text &&
+						( ( Text ) element.children.get( last ) ).cdata == false )
+					{
+						/* the parser may split text into several events */
+						final Text previous = ( Text ) element.children.remove( last );
+						element.children.add( new Text( previous.text + reader.getText( ), false ) );
+					}
+					else
+					{
+						element.children.add( new Text( reader.getText( ), false ) );
+					}
+					break;
+				case XMLStreamConstants.CDATA:
+					element.children.add( new Text( reader.getText( ), true ) );
+					break;
+				case XMLStreamConstants.COMMENT:
+					element.children.add( new Comment( reader.getText( ) ) );
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					element.children.add( new ProcessingInstruction( reader.getPITarget( ), reader.getPIData( ) ) );
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	private static String qualifiedName( final String prefix, final String localName )
+	{
+		return StringUtils.isEmpty( prefix ) ? localName : prefix + ":" + localName;
+	}
+
+	/** @return the indentation after the last line break of the given whitespace, null if it has no line break */
+	private static String lineIndent( final CharSequence whitespace )
+	{
+		final String text = whitespace.toString( );
+		final int lineBreak = text.lastIndexOf( '\n' );
+		return lineBreak < 0 ? null : text.substring( lineBreak + 1 );
+	}
+
+	private static String escape( final String text, final boolean attribute )
+	{
+		final StringBuilder escaped = new StringBuilder( text.length( ) + 16 );
+		for ( int i = 0; i < text.length( ); i++ )
+		{
+			final char c = text.charAt( i );
+			if ( c == '&' )
+			{
+				escaped.append( "&amp;" );
+			}
+			else if ( c == '<' )
+			{
+				escaped.append( "&lt;" );
+			}
+			else if ( c == '>' && i >= 2 && text.charAt( i - 1 ) == ']' && text.charAt( i - 2 ) == ']' )
+			{
+				escaped.append( "&gt;" );
+			}
+			else if ( c == '"' && attribute )
+			{
+				escaped.append( "&quot;" );
+			}
+			else
+			{
+				escaped.append( c );
+			}
+		}
+		return escaped.toString( );
+	}
+
+	/** @return the index of the root element's start tag, skipping the XML declaration, comments and doctype */
+	private static int findRootStart( final String source )
+	{
+		int i = 0;
+		while ( i < source.length( ) )
+		{
+			if ( source.startsWith( "<?", i ) )
+			{
+				i = source.indexOf( "?>", i ) + 2;
+			}
+			else if ( source.startsWith( "<!--", i ) )
+			{
+				i = source.indexOf( "-->", i ) + 3;
+			}
+			else if ( source.startsWith( "<!", i ) )
+			{
+				/* doctype, possibly with an internal subset */
+				final int subset = source.indexOf( '[', i );
+				final int end = source.indexOf( '>', i );
+				i = ( subset >= 0 && subset < end ? source.indexOf( '>', source.indexOf( "]", subset ) ) : end ) + 1;
+			}
+			else if ( source.charAt( i ) == '<' )
+			{
+				return i;
+			}
+			else
+			{
+				i++;
+			}
+		}
+		throw new IllegalArgumentException( "No root element found" );
+	}
+
+	/** @return the index of the '>' closing the tag starting at the given index */
+	private static int findTagEnd( final String source, final int tagStart )
+	{
+		char quote = 0;
+		for ( int i = tagStart; i < source.length( ); i++ )
+		{
+			final char c = source.charAt( i );
+			if ( quote != 0 )
+			{
+				quote = c == quote ? 0 : quote;
+			}
+			else if ( c == '"' || c == '\'' )
+			{
+				quote = c;
+			}
+			else if ( c == '>' )
+			{
+				return i;
+			}
+		}
+		throw new IllegalArgumentException( "Unterminated start tag" );
+	}
+
+	/** @return the index after the end of the root element */
+	private static int findEpilogStart( final String source )
+	{
+		final int rootStart = findRootStart( source );
+		final int rootTagEnd = findTagEnd( source, rootStart );
+		if ( source.charAt( rootTagEnd - 1 ) == '/' )
+		{
+			return rootTagEnd + 1;
+		}
+		/* the epilog may only contain comments, processing instructions and whitespace */
+		int end = source.lastIndexOf( "</" );
+		while ( end > rootTagEnd && isInEpilogComment( source, end ) )
+		{
+			end = source.lastIndexOf( "</", end - 1 );
+		}
+		return source.indexOf( '>', end ) + 1;
+	}
+
+	private static boolean isInEpilogComment( final String source, final int index )
+	{
+		final int commentStart = source.lastIndexOf( "<!--", index );
+		return commentStart >= 0 && source.indexOf( "-->", commentStart ) > index;
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Adds and removes system scoped dependencies on jars of the lib folder in a pom.xml in a single pass. Dependencies
+ * are recognized by their systemPath regardless of whitespace and of the position of the element; everything else is
+ * kept as it is.
+ *
+ * @author thum
+ */
+public final class PomDependencyEditor
+{
+	private static final Pattern SYSTEM_PATH =
+		Pattern.compile( "<systemPath\\s*>\\s*(.*?)\\s*</systemPath\\s*>", Pattern.DOTALL );
+	private static final Pattern DEPENDENCIES_END = Pattern.compile( "</dependencies\\s*>" );
+	private static final Pattern DEPENDENCIES_EMPTY = Pattern.compile( "<dependencies\\s*/>" );
+	private static final Pattern PROJECT_END = Pattern.compile( "</project\\s*>" );
+	private static final String LIB_DIR = "/lib/";
+	private static final int INSERT_INTO_DEPENDENCIES = 0;
+	private static final int REPLACE_EMPTY_DEPENDENCIES = 1;
+	private static final int INSERT_INTO_PROJECT = 2;
+
+	private PomDependencyEditor( )
+	{
+	}
+
+	/**
+	 * @param content the content of the pom.xml
+	 * @param libsToRemove the names of the jars in the lib folder whose system dependencies are removed, wherever they
+	 *        are declared
+	 * @param libsToAdd the names of the jars in the lib folder which are added as system dependencies of the project if
+	 *        they are not declared yet
+	 * @return the new content, the same instance if nothing changed
+	 */
+	public static String edit( final String content, final Collection<String> libsToRemove,
+		final Collection<String> libsToAdd )
+	{
+		final List<int[ ]> comments = XmlText.commentRanges( content );
+		/* dependencies of plugins, profiles and the dependency management are not the ones of the project */
+		final List<int[ ]> notProject = new ArrayList<>( comments );
+		notProject.addAll( XmlText.elementRanges( content, "dependencyManagement", comments ) );
+		notProject.addAll( XmlText.elementRanges( content, "build", comments ) );
+		notProject.addAll( XmlText.elementRanges( content, "profiles", comments ) );
+
+		final Set<String> toRemove = new HashSet<>( libsToRemove );
+		final Set<String> present = new HashSet<>( );
+		final List<int[ ]> removals = new ArrayList<>( );
+		String dependencyIndent = null;
+		for ( final int[ ] dependency : XmlText.elementRanges( content, "dependency", comments ) )
+		{
+			final String lib = getLibName( content.substring( dependency[ 0 ], dependency[ 1 ] ) );
+			if ( lib != null && toRemove.contains( lib ) )
+			{
+				removals.add( XmlText.removalRange( content, dependency[ 0 ], dependency[ 1 ] ) );
+			}
+			else if ( XmlText.isInside( notProject, dependency[ 0 ] ) == false )
+			{
+				if ( lib != null )
+				{
+					present.add( lib );
+				}
+				if ( dependencyIndent == null )
+				{
+					dependencyIndent = XmlText.indentBefore( content, dependency[ 0 ] );
+				}
+			}
+		}
+
+		final Set<String> missing = new LinkedHashSet<>( );
+		for ( final String lib : libsToAdd )
+		{
+			if ( present.contains( lib ) == false )
+			{
+				missing.add( lib );
+			}
+		}
+		/* start and end of the replaced text, the insertion itself is kept apart */
+		int[ ] insertionRange = null;
+		String insertion = null;
+		if ( missing.isEmpty( ) == false )
+		{
+			final int[ ] found = findInsertion( content, notProject );
+			if ( found != null )
+			{
+				final String newLine = XmlText.newLine( content );
+				/* the indentation of the tag the dependencies are inserted at, null if the pom is not formatted */
+				final String tagIndent = XmlText.indentBefore( content, found[ 0 ] );
+				final boolean formatted = tagIndent != null;
+				final int lineStart = formatted ? found[ 0 ] - tagIndent.length( ) : found[ 0 ];
+				if ( found[ 2 ] == INSERT_INTO_DEPENDENCIES )
+				{
+					insertionRange = new int[ ] { lineStart, lineStart };
+					insertion = dependencies( missing,
+						formatted ? dependencyIndent != null ? dependencyIndent : tagIndent + "\t" : null, newLine );
+				}
+				else if ( found[ 2 ] == REPLACE_EMPTY_DEPENDENCIES )
+				{
+					insertionRange = new int[ ] { found[ 0 ], found[ 1 ] };
+					insertion = "<dependencies>" + ( formatted ? newLine : "" ) +
+						dependencies( missing, formatted ? tagIndent + "\t" : null, newLine ) +
+						( formatted ? tagIndent : "" ) + "</dependencies>";
+				}
+				else
+				{
+					final String indent = formatted ? tagIndent + "\t" : "";
+					insertionRange = new int[ ] { lineStart, lineStart };
+					insertion = indent + "<dependencies>" + ( formatted ? newLine : "" ) +
+						dependencies( missing, formatted ? indent + "\t" : null, newLine ) +
+						indent + "</dependencies>" + ( formatted ? newLine : "" );
+				}
+			}
+		}
+		if ( removals.isEmpty( ) && insertion == null )
+		{
+			return content;
+		}
+
+		/* removals and the insertion never overlap, so they are applied in the order of their position */
+		final StringBuilder out =
+			new StringBuilder( content.length( ) + ( insertion == null ? 0 : insertion.length( ) ) );
+		int copied = 0;
+		boolean inserted = insertion == null;
+		for ( final int[ ] removal : removals )
+		{
+			if ( inserted == false && insertionRange[ 0 ] < removal[ 0 ] )
+			{
+				out.append( content, copied, insertionRange[ 0 ] ).append( insertion );
+				copied = insertionRange[ 1 ];
+				inserted = true;
+			}
+			out.append( content, copied, removal[ 0 ] );
+			copied = removal[ 1 ];
+		}
+		if ( inserted == false )
+		{
+			out.append( content, copied, insertionRange[ 0 ] ).append( insertion );
+			copied = insertionRange[ 1 ];
+		}
+		out.append( content, copied, content.length( ) );
+		return out.toString( );
+	}
+
+	/**
+	 * @return start and end of the text to insert the dependencies at and how to insert them, null if the pom has no
+	 *         place for them
+	 */
+	private static int[ ] findInsertion( final String content, final List<int[ ]> notProject )
+	{
+		final int[ ] dependenciesEnd = find( DEPENDENCIES_END, content, notProject, false );
+		if ( dependenciesEnd != null )
+		{
+			return new int[ ] { dependenciesEnd[ 0 ], dependenciesEnd[ 0 ], INSERT_INTO_DEPENDENCIES };
+		}
+		final int[ ] emptyDependencies = find( DEPENDENCIES_EMPTY, content, notProject, false );
+		if ( emptyDependencies != null )
+		{
+			return new int[ ] { emptyDependencies[ 0 ], emptyDependencies[ 1 ], REPLACE_EMPTY_DEPENDENCIES };
+		}
+		final int[ ] projectEnd = find( PROJECT_END, content, notProject, true );
+		return projectEnd == null ? null : new int[ ] { projectEnd[ 0 ], projectEnd[ 0 ], INSERT_INTO_PROJECT };
+	}
+
+	/** @return the range of the first (or last) match outside the excluded ranges */
+	private static int[ ] find( final Pattern pattern, final String content, final List<int[ ]> excluded,
+		final boolean last )
+	{
+		final Matcher matcher = pattern.matcher( content );
+		int[ ] found = null;
+		while ( matcher.find( ) )
+		{
+			if ( XmlText.isInside( excluded, matcher.start( ) ) == false )
+			{
+				found = new int[ ] { matcher.start( ), matcher.end( ) };
+				if ( last == false )
+				{
+					break;
+				}
+			}
+		}
+		return found;
+	}
+
+	/** @return the name of the jar in the lib folder the dependency points to, null if it is none */
+	private static String getLibName( final String dependency )
+	{
+		final Matcher matcher = SYSTEM_PATH.matcher( dependency );
+		if ( matcher.find( ) == false )
+		{
+			return null;
+		}
+		final String systemPath = "/" + matcher.group( 1 ).replace( '\\', '/' );
+		final int libDir = systemPath.lastIndexOf( LIB_DIR );
+		return libDir < 0 ? null : systemPath.substring( libDir + LIB_DIR.length( ) );
+	}
+
+	private static String dependencies( final Collection<String> libs, final String indent, final String newLine )
+	{
+		final StringBuilder block = new StringBuilder( );
+		for ( final String lib : libs )
+		{
+			final String[ ] data = getNameAndVersion( lib );
+			if ( indent == null )
+			{
+				block.append( "<dependency><groupId>" ).append( data[ 0 ] ).append( "</groupId><artifactId>" )
+					.append( data[ 0 ] ).append( "</artifactId><version>" ).append( data[ 1 ] )
+					.append( "</version><scope>system</scope><systemPath>${project.basedir}/lib/" ).append( lib )
+					.append( "</systemPath></dependency>" );
+				continue;
+			}
+			final String childIndent = indent + "\t";
+			block.append( indent ).append( "<dependency>" ).append( newLine )
+				.append( childIndent ).append( "<groupId>" ).append( data[ 0 ] ).append( "</groupId>" )
+				.append( newLine )
+				.append( childIndent ).append( "<artifactId>" ).append( data[ 0 ] ).append( "</artifactId>" )
+				.append( newLine )
+				.append( childIndent ).append( "<version>" ).append( data[ 1 ] ).append( "</version>" )
+				.append( newLine )
+				.append( childIndent ).append( "<scope>system</scope>" ).append( newLine )
+				.append( childIndent ).append( "<systemPath>${project.basedir}/lib/" ).append( lib )
+				.append( "</systemPath>" ).append( newLine )
+				.append( indent ).append( "</dependency>" ).append( newLine );
+		}
+		return block.toString( );
+	}
+
+	/**
+	 * extracts the version and the name of the library from the given string
+	 *
+	 * @param fileNameWithEnding
+	 * @return a string array with the lib name (without version and file-ending) on first position and the version on
+	 *         the second position of the array
+	 */
+	static String[ ] getNameAndVersion( final String fileNameWithEnding )
+	{
+		String fileNameWithoutEnding =
+			fileNameWithEnding.substring( 0, fileNameWithEnding.lastIndexOf( '.' ) );
+		final int verStart = fileNameWithoutEnding.lastIndexOf( '-' );
+
+		final String fileVersion =
+			verStart == -1 ? "1.0.0" : fileNameWithoutEnding.substring( verStart + 1 );
+		if ( verStart > -1 )
+		{
+			fileNameWithoutEnding = fileNameWithoutEnding.substring( 0, verStart );
+		}
+		return new String[ ] { fileNameWithoutEnding, fileVersion };
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.Objects;
+
+/**
+ * {@link Log} which prefixes each message, e.g. with the module name when several modules are processed in parallel
+ *
+ * @author thum
+ */
+public class PrefixedLog implements Log
+{
+	private final Log delegate;
+	private final String prefix;
+
+	/**
+	 * @param delegate the log to write to
+	 * @param prefix the prefix, like "[MyModule] "
+	 */
+	public PrefixedLog( final Log delegate, final String prefix )
+	{
+		this.delegate = Objects.requireNonNull( delegate );
+		this.prefix = Objects.requireNonNull( prefix );
+	}
+
+	private CharSequence prefixed( final CharSequence content )
+	{
+		return this.prefix + content;
+	}
+
+	@Override
+	public boolean isDebugEnabled( )
+	{
+		return this.delegate.isDebugEnabled( );
+	}
+
+	@Override
+	public void debug( final CharSequence content )
+	{
+		this.delegate.debug( prefixed( content ) );
+	}
+
+	@Override
+	public void debug( final CharSequence content, final Throwable error )
+	{
+		this.delegate.debug( prefixed( content ), error );
+	}
+
+	@Override
+	public void debug( final Throwable error )
+	{
+		this.delegate.debug( prefixed( String.valueOf( error ) ), error );
+	}
+
+	@Override
+	public boolean isInfoEnabled( )
+	{
+		return this.delegate.isInfoEnabled( );
+	}
+
+	@Override
+	public void info( final CharSequence content )
+	{
+		this.delegate.info( prefixed( content ) );
+	}
+
+	@Override
+	public void info( final CharSequence content, final Throwable error )
+	{
+		this.delegate.info( prefixed( content ), error );
+	}
+
+	@Override
+	public void info( final Throwable error )
+	{
+		this.delegate.info( prefixed( String.valueOf( error ) ), error );
+	}
+
+	@Override
+	public boolean isWarnEnabled( )
+	{
+		return this.delegate.isWarnEnabled( );
+	}
+
+	@Override
+	public void warn( final CharSequence content )
+	{
+		this.delegate.warn( prefixed( content ) );
+	}
+
+	@Override
+	public void warn( final CharSequence content, final Throwable error )
+	{
+		this.delegate.warn( prefixed( content ), error );
+	}
+
+	@Override
+	public void warn( final Throwable error )
+	{
+		this.delegate.warn( prefixed( String.valueOf( error ) ), error );
+	}
+
+	@Override
+	public boolean isErrorEnabled( )
+	{
+		return this.delegate.isErrorEnabled( );
+	}
+
+	@Override
+	public void error( final CharSequence content )
+	{
+		this.delegate.error( prefixed( content ) );
+	}
+
+	@Override
+	public void error( final CharSequence content, final Throwable error )
+	{
+		this.delegate.error( prefixed( content ), error );
+	}
+
+	@Override
+	public void error( final Throwable error )
+	{
+		this.delegate.error( prefixed( String.valueOf( error ) ), error );
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs work at the end of a Maven session, after all projects were built, regardless of the order and parallelism of
+ * the reactor. The hooks are run by an {@link ExecutionListener} wrapping the listener of the session, since a plugin
+ * cannot register a lifecycle participant without being a build extension. A hook failing fails the build.
+ *
+ * @author thum
+ */
+public final class SessionEndHooks implements ExecutionListener
+{
+	/**
+	 * The work to do at the end of the session
+	 */
+	@FunctionalInterface
+	public interface Hook
+	{
+		/**
+		 * @throws Exception fails the build
+		 */
+		void run( ) throws Exception;
+	}
+
+	private final ExecutionListener delegate;
+	private final Map<String, Hook> hooks = new LinkedHashMap<>( );
+
+	private SessionEndHooks( final ExecutionListener delegate )
+	{
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Registers a hook to run at the end of the given session
+	 *
+	 * @param session the session
+	 * @param key identifies the hook; a hook already registered with the same key for the session is kept
+	 * @param hook the hook
+	 */
+	public static void register( final MavenSession session, final String key, final Hook hook )
+	{
+		final MavenExecutionRequest request = session.getRequest( );
+		synchronized ( request )
+		{
+			final SessionEndHooks hooks;
+			if ( request.getExecutionListener( ) instanceof SessionEndHooks )
+			{
+				hooks = ( SessionEndHooks ) request.getExecutionListener( );
+			}
+			else
+			{
+				hooks = new SessionEndHooks( request.getExecutionListener( ) );
+				request.setExecutionListener( hooks );
+			}
+			synchronized ( hooks.hooks )
+			{
+				hooks.hooks.putIfAbsent( key, hook );
+			}
+		}
+	}
+
+	@Override
+	public void sessionEnded( final ExecutionEvent event )
+	{
+		final Map<String, Hook> toRun;
+		synchronized ( this.hooks )
+		{
+			toRun = new LinkedHashMap<>( this.hooks );
+			this.hooks.clear( );
+		}
+		for ( final Hook hook : toRun.values( ) )
+		{
+			try
+			{
+				hook.run( );
+			}
+			catch ( final Exception e )
+			{
+				/* the build result is evaluated after the session ended, so the exception fails the build */
+				event.getSession( ).getResult( ).addException( e );
+			}
+		}
+		if ( this.delegate != null )
+		{
+			this.delegate.sessionEnded( event );
+		}
+	}
+
+	@Override
+	public void projectDiscoveryStarted( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.projectDiscoveryStarted( event );
+		}
+	}
+
+	@Override
+	public void sessionStarted( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.sessionStarted( event );
+		}
+	}
+
+	@Override
+	public void projectSkipped( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.projectSkipped( event );
+		}
+	}
+
+	@Override
+	public void projectStarted( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.projectStarted( event );
+		}
+	}
+
+	@Override
+	public void projectSucceeded( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.projectSucceeded( event );
+		}
+	}
+
+	@Override
+	public void projectFailed( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.projectFailed( event );
+		}
+	}
+
+	@Override
+	public void mojoSkipped( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.mojoSkipped( event );
+		}
+	}
+
+	@Override
+	public void mojoStarted( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.mojoStarted( event );
+		}
+	}
+
+	@Override
+	public void mojoSucceeded( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.mojoSucceeded( event );
+		}
+	}
+
+	@Override
+	public void mojoFailed( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.mojoFailed( event );
+		}
+	}
+
+	@Override
+	public void forkStarted( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.forkStarted( event );
+		}
+	}
+
+	@Override
+	public void forkSucceeded( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.forkSucceeded( event );
+		}
+	}
+
+	@Override
+	public void forkFailed( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.forkFailed( event );
+		}
+	}
+
+	@Override
+	public void forkedProjectStarted( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.forkedProjectStarted( event );
+		}
+	}
+
+	@Override
+	public void forkedProjectSucceeded( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.forkedProjectSucceeded( event );
+		}
+	}
+
+	@Override
+	public void forkedProjectFailed( final ExecutionEvent event )
+	{
+		if ( this.delegate != null )
+		{
+			this.delegate.forkedProjectFailed( event );
+		}
+	}
+}
@@ -0,0 +1,577 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The file operations of a module update, computed without touching the module. Planning works on a view of the
+ * module which already contains the planned operations, so later steps see the results of earlier ones. The plan can
+ * be written as JSON and executed later on without scanning the module again; the state of every touched file is
+ * recorded, so files which changed in the meantime are detected before anything is written.
+ *
+ * Instances are not thread safe.
+ *
+ * @author thum
+ */
+public class UpdatePlan
+{
+	private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+	/**
+	 * Type of a planned file operation
+	 */
+	public enum ActionType
+	{
+		/** deletes a file or an empty directory */
+		DELETE,
+		/** replaces the content of a text file */
+		WRITE,
+		/** renames a file */
+		MOVE
+	}
+
+	/**
+	 * A single planned file operation
+	 */
+	public static final class Action
+	{
+		private final ActionType type;
+		private final String path;
+		private final String target;
+		private final long bytes;
+		private String content;
+		private final String reason;
+
+		Action( final ActionType type, final String path, final String target, final long bytes,
+			final String content, final String reason )
+		{
+			this.type = type;
+			this.path = path;
+			this.target = target;
+			this.bytes = bytes;
+			this.content = content;
+			this.reason = reason;
+		}
+
+		/**
+		 * @return the type of the operation
+		 */
+		public ActionType getType( )
+		{
+			return this.type;
+		}
+
+		/**
+		 * @return the path of the file, relative to the module root and separated with "/"
+		 */
+		public String getPath( )
+		{
+			return this.path;
+		}
+
+		/**
+		 * @return the new path of a moved file, otherwise null
+		 */
+		public String getTarget( )
+		{
+			return this.target;
+		}
+
+		/**
+		 * @return the size of the file before the operation
+		 */
+		public long getBytes( )
+		{
+			return this.bytes;
+		}
+
+		/**
+		 * @return the size of the file after the operation
+		 */
+		public long getNewBytes( )
+		{
+			switch ( this.type )
+			{
+				case DELETE:
+					return 0;
+				case WRITE:
+					return this.content.getBytes( UTF8 ).length;
+				default:
+					return this.bytes;
+			}
+		}
+
+		/**
+		 * @return the new content of a written file, otherwise null
+		 */
+		public String getContent( )
+		{
+			return this.content;
+		}
+
+		/**
+		 * @return why the operation is needed
+		 */
+		public String getReason( )
+		{
+			return this.reason;
+		}
+	}
+
+	/** state of a file when it was first touched by the plan: whether it existed, its size and modification time */
+	private static final class FileState
+	{
+		private final boolean exists;
+		private final long length;
+		private final long lastModified;
+
+		FileState( final boolean exists, final long length, final long lastModified )
+		{
+			this.exists = exists;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		static FileState of( final File file )
+		{
+			return file.exists( ) ? new FileState( true, file.isDirectory( ) ? 0 : file.length( ),
+				file.lastModified( ) ) : new FileState( false, 0, 0 );
+		}
+
+		boolean matches( final File file )
+		{
+			final FileState current = of( file );
+			return current.exists == this.exists && current.length == this.length &&
+				current.lastModified == this.lastModified;
+		}
+	}
+
+	private final File basePath;
+	private final List<Action> actions = new ArrayList<>( );
+	private final List<String> migrations = new ArrayList<>( );
+	/* the state of the touched files on disk, in the order they were touched */
+	private final Map<String, FileState> preconditions = new LinkedHashMap<>( );
+	/* planned existence and text content of the touched files; a missing content means "as on disk" */
+	private final Map<String, Boolean> plannedExists = new HashMap<>( );
+	private final Map<String, String> plannedContent = new HashMap<>( );
+	private final Map<String, Action> writes = new HashMap<>( );
+
+	/**
+	 * @param basePath the root directory of the module
+	 */
+	public UpdatePlan( final File basePath )
+	{
+		this.basePath = Objects.requireNonNull( basePath );
+	}
+
+	/**
+	 * @return the root directory of the module
+	 */
+	public File getBasePath( )
+	{
+		return this.basePath;
+	}
+
+	/**
+	 * @return the planned operations, in the order they will be executed
+	 */
+	public List<Action> getActions( )
+	{
+		return Collections.unmodifiableList( this.actions );
+	}
+
+	/**
+	 * @return the ids of the migrations which added operations
+	 */
+	public List<String> getMigrations( )
+	{
+		return Collections.unmodifiableList( this.migrations );
+	}
+
+	/**
+	 * Records that a migration contributed to the plan
+	 *
+	 * @param id the id of the migration
+	 */
+	public void addMigration( final String id )
+	{
+		this.migrations.add( id );
+	}
+
+	/**
+	 * @return whether nothing has to be done
+	 */
+	public boolean isEmpty( )
+	{
+		return this.actions.isEmpty( );
+	}
+
+	/**
+	 * @param file a file of the module
+	 * @return whether the file exists after the operations planned so far
+	 */
+	public boolean exists( final File file )
+	{
+		final Boolean exists = this.plannedExists.get( relativize( file ) );
+		return exists == null ? file.exists( ) : exists;
+	}
+
+	/**
+	 * @param file a file of the module
+	 * @return whether an operation on the file was planned already, so its planned state differs from the disk
+	 */
+	public boolean isChanged( final File file )
+	{
+		final String path = relativize( file );
+		return this.plannedExists.containsKey( path ) || this.plannedContent.containsKey( path );
+	}
+
+	/**
+	 * @param file a text file of the module
+	 * @return the UTF-8 content of the file after the operations planned so far
+	 * @throws IOException if the file does not exist or could not be read
+	 */
+	public String read( final File file ) throws IOException
+	{
+		final String path = relativize( file );
+		if ( exists( file ) == false )
+		{
+			throw new FileNotFoundException( file.getAbsolutePath( ) );
+		}
+		final String content = this.plannedContent.get( path );
+		return content == null ? FileUtils.readFileToString( file, UTF8 ) : content;
+	}
+
+	/**
+	 * @param dir a directory of the module
+	 * @return whether the directory exists and is empty after the operations planned so far
+	 */
+	public boolean isEmptyDirectory( final File dir )
+	{
+		if ( exists( dir ) == false || dir.isDirectory( ) == false )
+		{
+			return false;
+		}
+		final String prefix = relativize( dir ) + "/";
+		for ( final Map.Entry<String, Boolean> entry : this.plannedExists.entrySet( ) )
+		{
+			if ( entry.getValue( ) && entry.getKey( ).startsWith( prefix ) )
+			{
+				return false;
+			}
+		}
+		final File[ ] children = dir.listFiles( );
+		if ( children != null )
+		{
+			for ( final File child : children )
+			{
+				if ( exists( child ) )
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Plans the deletion of a file or of a directory which is empty by then; does nothing if it does not exist
+	 *
+	 * @param file the file or directory
+	 * @param reason why it is deleted
+	 */
+	public void delete( final File file, final String reason )
+	{
+		if ( exists( file ) == false )
+		{
+			return;
+		}
+		final String path = relativize( file );
+		final String content = this.plannedContent.get( path );
+		final long bytes = content != null ? content.getBytes( UTF8 ).length : file.isDirectory( ) ? 0 : file.length( );
+		touch( path, file );
+		this.actions.add( new Action( ActionType.DELETE, path, null, bytes, null, reason ) );
+		this.plannedExists.put( path, false );
+		this.plannedContent.remove( path );
+		this.writes.remove( path );
+	}
+
+	/**
+	 * Plans to replace the content of an existing text file; does nothing if the content does not change. Several
+	 * writes of the same file are merged into one.
+	 *
+	 * @param file the file
+	 * @param content the new content
+	 * @param reason why it is changed
+	 * @throws IOException if the current content could not be read
+	 */
+	public void write( final File file, final String content, final String reason ) throws IOException
+	{
+		final String current = read( file );
+		if ( current.equals( content ) )
+		{
+			return;
+		}
+		final String path = relativize( file );
+		final Action previous = this.writes.get( path );
+		if ( previous != null )
+		{
+			previous.content = content;
+		}
+		else
+		{
+			touch( path, file );
+			final Action action = new Action( ActionType.WRITE, path, null, current.getBytes( UTF8 ).length, content,
+				reason );
+			this.actions.add( action );
+			this.writes.put( path, action );
+		}
+		this.plannedContent.put( path, content );
+	}
+
+	/**
+	 * Plans to rename a file; does nothing if it does not exist
+	 *
+	 * @param from the file
+	 * @param to the new file, which must not exist
+	 * @param reason why it is renamed
+	 */
+	public void move( final File from, final File to, final String reason )
+	{
+		if ( exists( from ) == false )
+		{
+			return;
+		}
+		if ( exists( to ) )
+		{
+			throw new IllegalStateException( "Cannot rename " + from.getName( ) + ", " + to.getName( ) + " exists" );
+		}
+		final String path = relativize( from );
+		final String target = relativize( to );
+		touch( path, from );
+		touch( target, to );
+		this.actions.add( new Action( ActionType.MOVE, path, target, from.length( ), null, reason ) );
+		this.plannedExists.put( path, false );
+		this.plannedExists.put( target, true );
+	}
+
+	private void touch( final String path, final File file )
+	{
+		if ( this.preconditions.containsKey( path ) == false && this.plannedExists.containsKey( path ) == false )
+		{
+			this.preconditions.put( path, FileState.of( file ) );
+		}
+	}
+
+	/**
+	 * @return the number of distinct files touched by the plan
+	 */
+	public int getFileCount( )
+	{
+		return this.preconditions.size( );
+	}
+
+	/**
+	 * @param type the type of operations
+	 * @return the number of planned operations of the given type
+	 */
+	public int getCount( final ActionType type )
+	{
+		return ( int ) this.actions.stream( ).filter( a -> a.getType( ) == type ).count( );
+	}
+
+	/**
+	 * @param type the type of operations
+	 * @return the bytes of the files affected by the operations of the given type; for writes the new sizes
+	 */
+	public long getBytes( final ActionType type )
+	{
+		return this.actions.stream( ).filter( a -> a.getType( ) == type )
+			.mapToLong( a -> type == ActionType.WRITE ? a.getNewBytes( ) : a.getBytes( ) ).sum( );
+	}
+
+	/**
+	 * Logs a summary and the planned operations
+	 *
+	 * @param log the log
+	 */
+	public void log( final Log log )
+	{
+		log.info( String.format( Locale.ROOT,
+			"Plan: %d files, %d deletes (%d bytes), %d writes (%d bytes), %d renames (%d bytes)", getFileCount( ),
+			getCount( ActionType.DELETE ), getBytes( ActionType.DELETE ), getCount( ActionType.WRITE ),
+			getBytes( ActionType.WRITE ), getCount( ActionType.MOVE ), getBytes( ActionType.MOVE ) ) );
+		for ( final Action action : this.actions )
+		{
+			final String target = action.getTarget( ) != null ? " -> " + action.getTarget( ) : "";
+			log.info( "  " + action.getType( ) + " " + action.getPath( ) + target + " (" + action.getReason( ) + ")" );
+		}
+	}
+
+	/**
+	 * Executes the planned operations. Before anything is changed, all touched files are checked to be in the same
+	 * state as when the plan was created.
+	 *
+	 * @param log the log
+	 * @throws IOException if a file changed since the plan was created or an operation failed
+	 */
+	public void execute( final Log log ) throws IOException
+	{
+		for ( final Map.Entry<String, FileState> precondition : this.preconditions.entrySet( ) )
+		{
+			if ( precondition.getValue( ).matches( resolve( precondition.getKey( ) ) ) == false )
+			{
+				throw new IOException( "File " + precondition.getKey( ) +
+					" changed since the plan was created, please create a new plan" );
+			}
+		}
+		for ( final Action action : this.actions )
+		{
+			final File file = resolve( action.getPath( ) );
+			switch ( action.getType( ) )
+			{
+				case DELETE:
+					final boolean directory = file.isDirectory( );
+					if ( file.delete( ) == false )
+					{
+						throw new IOException( "Could not delete " + file.getAbsolutePath( ) );
+					}
+					log.info( "Deleted " + ( directory ? "directory: " : "file: " ) + file.getAbsolutePath( ) );
+					break;
+				case WRITE:
+					AtomicFiles.write( file, action.getContent( ) );
+					log.info( "Updated file: " + file.getAbsolutePath( ) + " (" + action.getReason( ) + ")" );
+					break;
+				case MOVE:
+					FileUtils.moveFile( file, resolve( action.getTarget( ) ) );
+					log.info( "Renamed file " + file.getName( ) + " to " + resolve( action.getTarget( ) ).getName( ) );
+					break;
+				default:
+					throw new IllegalStateException( "Unknown action " + action.getType( ) );
+			}
+		}
+	}
+
+	/**
+	 * @return the plan as JSON, including the new contents of written files
+	 */
+	public JSONObject toJson( )
+	{
+		final JSONObject summary = new JSONObject( );
+		summary.put( "files", getFileCount( ) );
+		for ( final ActionType type : ActionType.values( ) )
+		{
+			final String name = type.name( ).toLowerCase( Locale.ROOT );
+			summary.put( name, getCount( type ) );
+			summary.put( name + "Bytes", getBytes( type ) );
+		}
+
+		final JSONArray actionsJson = new JSONArray( );
+		for ( final Action action : this.actions )
+		{
+			final JSONObject json = new JSONObject( );
+			json.put( "type", action.getType( ).name( ) );
+			json.put( "path", action.getPath( ) );
+			json.putOpt( "target", action.getTarget( ) );
+			json.put( "bytes", action.getBytes( ) );
+			json.put( "newBytes", action.getNewBytes( ) );
+			json.put( "reason", action.getReason( ) );
+			json.putOpt( "content", action.getContent( ) );
+			actionsJson.put( json );
+		}
+
+		final JSONArray preconditionsJson = new JSONArray( );
+		for ( final Map.Entry<String, FileState> entry : this.preconditions.entrySet( ) )
+		{
+			final JSONObject json = new JSONObject( );
+			json.put( "path", entry.getKey( ) );
+			json.put( "exists", entry.getValue( ).exists );
+			json.put( "length", entry.getValue( ).length );
+			json.put( "lastModified", entry.getValue( ).lastModified );
+			preconditionsJson.put( json );
+		}
+
+		final JSONObject json = new JSONObject( );
+		json.put( "basePath", this.basePath.getAbsolutePath( ) );
+		json.put( "migrations", new JSONArray( this.migrations ) );
+		json.put( "summary", summary );
+		json.put( "actions", actionsJson );
+		json.put( "preconditions", preconditionsJson );
+		return json;
+	}
+
+	/**
+	 * Reads a plan written by {@link #toJson()}
+	 *
+	 * @param json the plan
+	 * @return the plan
+	 */
+	public static UpdatePlan fromJson( final JSONObject json )
+	{
+		final UpdatePlan plan = new UpdatePlan( new File( json.getString( "basePath" ) ) );
+		final JSONArray migrationsJson = json.optJSONArray( "migrations" );
+		for ( int i = 0; migrationsJson != null && i < migrationsJson.length( ); i++ )
+		{
+			plan.migrations.add( migrationsJson.getString( i ) );
+		}
+		final JSONArray preconditionsJson = json.getJSONArray( "preconditions" );
+		for ( int i = 0; i < preconditionsJson.length( ); i++ )
+		{
+			final JSONObject precondition = preconditionsJson.getJSONObject( i );
+			plan.preconditions.put( precondition.getString( "path" ),
+				new FileState( precondition.getBoolean( "exists" ), precondition.getLong( "length" ),
+					precondition.getLong( "lastModified" ) ) );
+		}
+		final JSONArray actionsJson = json.getJSONArray( "actions" );
+		for ( int i = 0; i < actionsJson.length( ); i++ )
+		{
+			final JSONObject action = actionsJson.getJSONObject( i );
+			plan.actions.add( new Action( ActionType.valueOf( action.getString( "type" ) ), action.getString( "path" ),
+				action.optString( "target", null ), action.getLong( "bytes" ), action.optString( "content", null ),
+				action.optString( "reason", "" ) ) );
+		}
+		return plan;
+	}
+
+	private String relativize( final File file )
+	{
+		final String path =
+			this.basePath.getAbsoluteFile( ).toPath( ).relativize( file.getAbsoluteFile( ).toPath( ) ).toString( );
+		return path.replace( File.separatorChar, '/' );
+	}
+
+	private File resolve( final String path )
+	{
+		return new File( this.basePath, path.replace( '/', File.separatorChar ) );
+	}
+}
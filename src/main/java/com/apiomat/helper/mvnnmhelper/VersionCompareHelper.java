@@ -15,19 +15,14 @@
  */
 package com.apiomat.helper.mvnnmhelper;
 
-import java.util.regex.Pattern;
-
 /**
- * Helper class for comparing version strings
+ * Helper class for comparing version strings; versions whose numbers fit into a {@link PackedVersion} are compared
+ * packed, others, like versions with a timestamp as patch level, number by number
  *
  * @author andreas
  */
 public class VersionCompareHelper
 {
-	final static Pattern PATTERN_FULLVERSION = Pattern.compile( "^(\\d+).(\\d+).(\\d+).(\\d+).*" );
-	final static Pattern PATTERN_MEDIUMVERSION = Pattern.compile( "^(\\d+).(\\d+).(\\d+).*" );
-	final static Pattern PATTERN_SMALLVERSION = Pattern.compile( "^(\\d+).(\\d+).*" );
-
 	/**
 	 * Returns true if the given version number is older than the existing schema
 	 *
@@ -45,10 +40,7 @@ public class VersionCompareHelper
 	public static boolean isOlder( final int major1, final int minor1, final int hotfix1, final int patchLevel1,
 		final int major2, final int minor2, final int hotfix2, final int patchLevel2 )
 	{
-		return major2 < major1 ||
-			major2 == major1 && minor2 < minor1 ||
-			major2 == major1 && minor2 == minor1 && hotfix2 < hotfix1 ||
-			major2 == major1 && minor2 == minor1 && hotfix2 == hotfix1 && patchLevel2 < patchLevel1;
+		return compare( major1, minor1, hotfix1, patchLevel1, major2, minor2, hotfix2, patchLevel2 ) < 0;
 	}
 
 	/**
@@ -68,8 +60,7 @@ public class VersionCompareHelper
 	public static boolean isOlderOrEqual( final int major1, final int minor1, final int hotfix1, final int patchLevel1,
 		final int major2, final int minor2, final int hotfix2, final int patchLevel2 )
 	{
-		return isOlder( major1, minor1, hotfix1, patchLevel1, major2, minor2, hotfix2, patchLevel2 ) ||
-			isEqual( major1, minor1, hotfix1, patchLevel1, major2, minor2, hotfix2, patchLevel2 );
+		return compare( major1, minor1, hotfix1, patchLevel1, major2, minor2, hotfix2, patchLevel2 ) <= 0;
 	}
 
 	/**
@@ -109,10 +100,7 @@ public class VersionCompareHelper
 	public static boolean isNewer( final int major1, final int minor1, final int hotfix1, final int patchLevel1,
 		final int major2, final int minor2, final int hotfix2, final int patchLevel2 )
 	{
-		return major2 > major1 ||
-			major2 == major1 && minor2 > minor1 ||
-			major2 == major1 && minor2 == minor1 && hotfix2 > hotfix1 ||
-			major2 == major1 && minor2 == minor1 && hotfix2 == hotfix1 && patchLevel2 > patchLevel1;
+		return compare( major1, minor1, hotfix1, patchLevel1, major2, minor2, hotfix2, patchLevel2 ) > 0;
 	}
 
 	/**
@@ -132,54 +120,134 @@ public class VersionCompareHelper
 	public static boolean isNewerOrEqual( final int major1, final int minor1, final int hotfix1, final int patchLevel1,
 		final int major2, final int minor2, final int hotfix2, final int patchLevel2 )
 	{
-		return isNewer( major1, minor1, hotfix1, patchLevel1, major2, minor2, hotfix2, patchLevel2 ) ||
-			isEqual( major1, minor1, hotfix1, patchLevel1, major2, minor2, hotfix2, patchLevel2 );
+		return compare( major1, minor1, hotfix1, patchLevel1, major2, minor2, hotfix2, patchLevel2 ) >= 0;
+	}
+
+	/**
+	 * @return a negative number, zero or a positive number if the given version is older, equal or newer than the
+	 *         existing one
+	 */
+	private static int compare( final int major1, final int minor1, final int hotfix1, final int patchLevel1,
+		final int major2, final int minor2, final int hotfix2, final int patchLevel2 )
+	{
+		if ( PackedVersion.fits( major1, minor1, hotfix1, patchLevel1 ) &&
+			PackedVersion.fits( major2, minor2, hotfix2, patchLevel2 ) )
+		{
+			return PackedVersion.compare( PackedVersion.of( major2, minor2, hotfix2, patchLevel2 ),
+				PackedVersion.of( major1, minor1, hotfix1, patchLevel1 ) );
+		}
+		/* a number does not fit into a lane, like a timestamp as patch level */
+		if ( major1 != major2 )
+		{
+			return Integer.compare( major2, major1 );
+		}
+		if ( minor1 != minor2 )
+		{
+			return Integer.compare( minor2, minor1 );
+		}
+		if ( hotfix1 != hotfix2 )
+		{
+			return Integer.compare( hotfix2, hotfix1 );
+		}
+		return Integer.compare( patchLevel2, patchLevel1 );
+	}
+
+	/**
+	 * @param current existing/current packed version
+	 * @param given given packed version
+	 * @return TRUE if the given version is older than the current one
+	 */
+	public static boolean isOlder( final long current, final long given )
+	{
+		return PackedVersion.compare( given, current ) < 0;
+	}
+
+	/**
+	 * @param current existing/current packed version
+	 * @param given given packed version
+	 * @return TRUE if the given version is older than or equal to the current one
+	 */
+	public static boolean isOlderOrEqual( final long current, final long given )
+	{
+		return PackedVersion.compare( given, current ) <= 0;
 	}
 
 	/**
-	 * Parses a string to int array (major, minor, hofix)
+	 * @param current existing/current packed version
+	 * @param given given packed version
+	 * @return TRUE if the given version is newer than the current one
+	 */
+	public static boolean isNewer( final long current, final long given )
+	{
+		return PackedVersion.compare( given, current ) > 0;
+	}
+
+	/**
+	 * @param current existing/current packed version
+	 * @param given given packed version
+	 * @return TRUE if the given version is newer than or equal to the current one
+	 */
+	public static boolean isNewerOrEqual( final long current, final long given )
+	{
+		return PackedVersion.compare( given, current ) >= 0;
+	}
+
+	/**
+	 * Parses a string to int array (major, minor, hofix, patch), with the format of
+	 * {@link PackedVersion#parse(CharSequence)}; numbers too large for a packed version, like a timestamp as patch
+	 * level, are parsed as well
 	 *
 	 * @param versionString
-	 * @return int array (major, minor, hofix)
+	 * @return int array (major, minor, hofix, patch), null if the string is no version
 	 */
-	@SuppressWarnings( "PMD.SystemPrintln" )
 	public static int[ ] parseNumbers( final String versionString )
 	{
-		java.util.regex.Matcher m = PATTERN_FULLVERSION.matcher( versionString );
+		final long version = PackedVersion.parse( versionString );
+		return version != PackedVersion.INVALID ? PackedVersion.toArray( version ) : parseNumbers( versionString, 2 );
+	}
 
-		try
+	/**
+	 * @param versionString the version string
+	 * @param minNumbers the numbers the string has to start with at least
+	 * @return int array (major, minor, hofix, patch) of any int size, null if the string does not start with enough
+	 *         numbers
+	 */
+	static int[ ] parseNumbers( final String versionString, final int minNumbers )
+	{
+		if ( versionString == null )
 		{
-			if ( m.matches( ) )
-			{
-				final int major = Integer.parseInt( m.group( 1 ) );
-				final int minor = Integer.parseInt( m.group( 2 ) );
-				final int hotfix = Integer.parseInt( m.group( 3 ) );
-				final int patch = Integer.parseInt( m.group( 4 ) );
-				return new int[ ] { major, minor, hotfix, patch };
-			}
-
-			m = PATTERN_MEDIUMVERSION.matcher( versionString );
-			if ( m.matches( ) )
+			return null;
+		}
+		final int length = versionString.length( );
+		final int[ ] result = new int[ 4 ];
+		int numbers = 0;
+		int pos = 0;
+		while ( numbers < 4 )
+		{
+			long number = 0;
+			final int start = pos;
+			while ( pos < length )
 			{
-				final int major = Integer.parseInt( m.group( 1 ) );
-				final int minor = Integer.parseInt( m.group( 2 ) );
-				final int hotfix = Integer.parseInt( m.group( 3 ) );
-				return new int[ ] { major, minor, hotfix, 0 };
+				final char c = versionString.charAt( pos );
+				if ( c < '0' || c > '9' )
+				{
+					break;
+				}
+				number = number * 10 + ( c - '0' );
+				if ( number > Integer.MAX_VALUE )
+				{
+					return null;
+				}
+				pos++;
 			}
-
-			m = PATTERN_SMALLVERSION.matcher( versionString );
-			if ( m.matches( ) )
+			if ( pos == start )
 			{
-				final int major = Integer.parseInt( m.group( 1 ) );
-				final int minor = Integer.parseInt( m.group( 2 ) );
-				return new int[ ] { major, minor, 0, 0 };
+				break;
 			}
-			return null;
-		}
-		catch ( final Exception e )
-		{
-			System.out.println( "Could not parse version numbers of string '" + versionString + "'" );
+			result[ numbers++ ] = ( int ) number;
+			/* skip the separator */
+			pos++;
 		}
-		return null;
+		return numbers < minNumbers ? null : result;
 	}
 }
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Migrates all native modules found below a workspace directory on a bounded pool of worker threads. Each module is
+ * migrated in isolation; depending on the {@link FailurePolicy} the failure of one module does not stop the others.
+ *
+ * @author thum
+ */
+public class WorkspaceMigration
+{
+	private static final List<String> IGNORED_DIRECTORIES = Arrays.asList( "target", "bin", "node_modules" );
+
+	/**
+	 * What to do if the migration of a module fails
+	 */
+	public enum FailurePolicy
+	{
+		/** migrate all other modules, fail at the end */
+		CONTINUE,
+		/** do not start the migration of further modules, fail at the end */
+		ABORT,
+		/** migrate all other modules and only report the failures */
+		IGNORE
+	}
+
+	/**
+	 * The migration of a single module
+	 */
+	@FunctionalInterface
+	public interface ModuleStep
+	{
+		/**
+		 * @param moduleDir the root directory of the module
+		 * @param moduleName the name of the module
+		 * @param log the log, prefixed with the module name
+		 * @throws Exception if the migration failed
+		 */
+		void migrate( File moduleDir, String moduleName, Log log ) throws Exception;
+	}
+
+	/**
+	 * The result of the migration of a single module
+	 */
+	public static final class ModuleResult
+	{
+		/**
+		 * State of a module migration
+		 */
+		public enum Status
+		{
+			/** migrated successfully */
+			SUCCESS,
+			/** migration failed */
+			FAILED,
+			/** not migrated, as the migration was aborted */
+			SKIPPED
+		}
+
+		private final File moduleDir;
+		private final String moduleName;
+		private final Status status;
+		private final long durationMillis;
+		private final Throwable error;
+
+		ModuleResult( final File moduleDir, final String moduleName, final Status status, final long durationMillis,
+			final Throwable error )
+		{
+			this.moduleDir = moduleDir;
+			this.moduleName = moduleName;
+			this.status = status;
+			this.durationMillis = durationMillis;
+			this.error = error;
+		}
+
+		/**
+		 * @return the root directory of the module
+		 */
+		public File getModuleDir( )
+		{
+			return this.moduleDir;
+		}
+
+		/**
+		 * @return the name of the module, null if it could not be determined
+		 */
+		public String getModuleName( )
+		{
+			return this.moduleName;
+		}
+
+		/**
+		 * @return the state of the migration
+		 */
+		public Status getStatus( )
+		{
+			return this.status;
+		}
+
+		/**
+		 * @return the duration of the migration in milliseconds
+		 */
+		public long getDurationMillis( )
+		{
+			return this.durationMillis;
+		}
+
+		/**
+		 * @return the error if the migration failed, otherwise null
+		 */
+		public Throwable getError( )
+		{
+			return this.error;
+		}
+	}
+
+	private final Log log;
+	private final int threads;
+	private final FailurePolicy failurePolicy;
+
+	/**
+	 * @param log the log
+	 * @param threads the maximum number of modules migrated in parallel
+	 * @param failurePolicy what to do if the migration of a module fails
+	 */
+	public WorkspaceMigration( final Log log, final int threads, final FailurePolicy failurePolicy )
+	{
+		this.log = Objects.requireNonNull( log );
+		this.threads = Math.max( 1, threads );
+		this.failurePolicy = Objects.requireNonNull( failurePolicy );
+	}
+
+	/**
+	 * Finds the root directories of all native modules below the given directory. A module root contains a pom.xml
+	 * together with a sdk.properties or the native module sources; module roots are not searched for further modules.
+	 *
+	 * @param workspace the directory to search
+	 * @param maxDepth the maximum depth of directories to search, 0 only checks the workspace itself
+	 * @return the module roots, sorted by path
+	 */
+	public static List<File> discoverModules( final File workspace, final int maxDepth )
+	{
+		final List<File> modules = new ArrayList<>( );
+		discoverModules( workspace, maxDepth, modules );
+		Collections.sort( modules );
+		return modules;
+	}
+
+	private static void discoverModules( final File dir, final int remainingDepth, final List<File> modules )
+	{
+		if ( isModuleRoot( dir ) )
+		{
+			modules.add( dir );
+			return;
+		}
+		final File[ ] children = dir.listFiles( File::isDirectory );
+		if ( remainingDepth <= 0 || children == null )
+		{
+			return;
+		}
+		for ( final File child : children )
+		{
+			final String name = child.getName( );
+			if ( name.startsWith( "." ) == false && IGNORED_DIRECTORIES.contains( name ) == false )
+			{
+				discoverModules( child, remainingDepth - 1, modules );
+			}
+		}
+	}
+
+	private static boolean isModuleRoot( final File dir )
+	{
+		return new File( dir, "pom.xml" ).isFile( ) && ( new File( dir, "sdk.properties" ).isFile( ) ||
+			new File( dir, "src" + File.separator + "com" + File.separator + "apiomat" + File.separator +
+				"nativemodule" ).isDirectory( ) );
+	}
+
+	/**
+	 * Determines the name of a module from its sdk.properties, the name or the artifactId in its pom.xml or as last
+	 * option from the name of its directory
+	 *
+	 * @param moduleDir the root directory of the module
+	 * @return the module name
+	 * @throws IOException
+	 * @throws XmlPullParserException if the pom.xml is not readable
+	 */
+	public static String resolveModuleName( final File moduleDir ) throws IOException, XmlPullParserException
+	{
+		final File sdkPropsFile = new File( moduleDir, "sdk.properties" );
+		if ( sdkPropsFile.isFile( ) )
+		{
+			final Properties props = new Properties( );
+			try (final InputStream in = FileUtils.openInputStream( sdkPropsFile ))
+			{
+				props.load( in );
+			}
+			if ( StringUtils.isNotEmpty( props.getProperty( "moduleName" ) ) )
+			{
+				return props.getProperty( "moduleName" );
+			}
+		}
+		final Model model;
+		try (final InputStream in = FileUtils.openInputStream( new File( moduleDir, "pom.xml" ) ))
+		{
+			model = new MavenXpp3Reader( ).read( in );
+		}
+		if ( StringUtils.isNotEmpty( model.getName( ) ) )
+		{
+			return model.getName( );
+		}
+		return StringUtils.isNotEmpty( model.getArtifactId( ) ) ? model.getArtifactId( ) : moduleDir.getName( );
+	}
+
+	/**
+	 * Migrates the given modules
+	 *
+	 * @param modules the root directories of the modules
+	 * @param step the migration of a single module
+	 * @return the results, in the order of the given modules
+	 * @throws InterruptedException
+	 */
+	public List<ModuleResult> run( final List<File> modules, final ModuleStep step ) throws InterruptedException
+	{
+		final AtomicBoolean aborted = new AtomicBoolean( );
+		final AtomicInteger threadNo = new AtomicInteger( );
+		final int poolSize = Math.min( this.threads, Math.max( 1, modules.size( ) ) );
+		final ExecutorService pool = Executors.newFixedThreadPool( poolSize, r -> {
+			final Thread thread = new Thread( r, "nm-migration-" + threadNo.incrementAndGet( ) );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		try
+		{
+			final List<Future<ModuleResult>> futures = new ArrayList<>( );
+			for ( final File module : modules )
+			{
+				futures.add( pool.submit( ( ) -> migrate( module, step, aborted ) ) );
+			}
+			final List<ModuleResult> results = new ArrayList<>( );
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				try
+				{
+					results.add( futures.get( i ).get( ) );
+				}
+				catch ( final ExecutionException e )
+				{
+					results.add( new ModuleResult( modules.get( i ), null, ModuleResult.Status.FAILED, 0,
+						e.getCause( ) ) );
+				}
+			}
+			return results;
+		}
+		finally
+		{
+			pool.shutdownNow( );
+			pool.awaitTermination( 10, TimeUnit.SECONDS );
+		}
+	}
+
+	private ModuleResult migrate( final File module, final ModuleStep step, final AtomicBoolean aborted )
+	{
+		if ( aborted.get( ) )
+		{
+			return new ModuleResult( module, null, ModuleResult.Status.SKIPPED, 0, null );
+		}
+		final long start = System.nanoTime( );
+		String moduleName = null;
+		try
+		{
+			moduleName = resolveModuleName( module );
+			step.migrate( module, moduleName, new PrefixedLog( this.log, "[" + moduleName + "] " ) );
+			return new ModuleResult( module, moduleName, ModuleResult.Status.SUCCESS, elapsedMillis( start ), null );
+		}
+		catch ( final Exception e )
+		{
+			this.log.error( "[" + ( moduleName == null ? module.getName( ) : moduleName ) + "] Migration failed: " +
+				e.getMessage( ) );
+			if ( this.failurePolicy == FailurePolicy.ABORT )
+			{
+				aborted.set( true );
+			}
+			return new ModuleResult( module, moduleName, ModuleResult.Status.FAILED, elapsedMillis( start ), e );
+		}
+	}
+
+	/**
+	 * Logs a report of the given results
+	 *
+	 * @param results the results of {@link #run(List, ModuleStep)}
+	 * @return whether the migration has to be treated as failed according to the failure policy
+	 */
+	public boolean report( final List<ModuleResult> results )
+	{
+		int failed = 0;
+		int skipped = 0;
+		this.log.info( "-------------------------------------------------------------------------------" );
+		this.log.info( "Workspace migration report" );
+		this.log.info( "-------------------------------------------------------------------------------" );
+		for ( final ModuleResult result : results )
+		{
+			final String name = result.getModuleName( ) == null ? result.getModuleDir( ).getName( ) :
+				result.getModuleName( );
+			final String line = String.format( Locale.ROOT, "%-8s %-30s %6dms %s", result.getStatus( ), name,
+				result.getDurationMillis( ), result.getModuleDir( ).getPath( ) );
+			switch ( result.getStatus( ) )
+			{
+				case FAILED:
+					failed++;
+					this.log.error( line + ": " + result.getError( ) );
+					break;
+				case SKIPPED:
+					skipped++;
+					this.log.warn( line );
+					break;
+				default:
+					this.log.info( line );
+					break;
+			}
+		}
+		this.log.info( "-------------------------------------------------------------------------------" );
+		this.log.info( String.format( Locale.ROOT, "%d modules: %d migrated, %d failed, %d skipped", results.size( ),
+			results.size( ) - failed - skipped, failed, skipped ) );
+		return failed > 0 && this.failurePolicy != FailurePolicy.IGNORE;
+	}
+
+	private static long elapsedMillis( final long startNanos )
+	{
+		return TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - startNanos );
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for editing XML files as text, keeping everything which is not edited exactly as it is
+ *
+ * @author thum
+ */
+final class XmlText
+{
+	private static final Pattern COMMENT = Pattern.compile( "<!--.*?-->", Pattern.DOTALL );
+	private static final Pattern ATTRIBUTE = Pattern.compile( "([\\w:.-]+)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')" );
+
+	private XmlText( )
+	{
+	}
+
+	/**
+	 * @param content the XML
+	 * @return the ranges (start inclusive, end exclusive) of all comments
+	 */
+	static List<int[ ]> commentRanges( final String content )
+	{
+		final List<int[ ]> ranges = new ArrayList<>( );
+		final Matcher matcher = COMMENT.matcher( content );
+		while ( matcher.find( ) )
+		{
+			ranges.add( new int[ ] { matcher.start( ), matcher.end( ) } );
+		}
+		return ranges;
+	}
+
+	/**
+	 * @param content the XML
+	 * @param elementName the name of the element
+	 * @param excluded ranges to ignore, like comments
+	 * @return the ranges of all elements with the given name which are not within the excluded ranges; the elements
+	 *         must not be nested
+	 */
+	static List<int[ ]> elementRanges( final String content, final String elementName, final List<int[ ]> excluded )
+	{
+		final List<int[ ]> ranges = new ArrayList<>( );
+		final Matcher matcher = Pattern.compile( "<" + elementName + "\\b[^>]*?(?:/>|>.*?</" + elementName + "\\s*>)",
+			Pattern.DOTALL ).matcher( content );
+		while ( matcher.find( ) )
+		{
+			if ( isInside( excluded, matcher.start( ) ) == false )
+			{
+				ranges.add( new int[ ] { matcher.start( ), matcher.end( ) } );
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * @param ranges ranges as returned by {@link #commentRanges(String)}
+	 * @param pos a position
+	 * @return whether the position is within one of the ranges
+	 */
+	static boolean isInside( final List<int[ ]> ranges, final int pos )
+	{
+		for ( final int[ ] range : ranges )
+		{
+			if ( pos >= range[ 0 ] && pos < range[ 1 ] )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param tagContent the part of a start tag after the element name
+	 * @return the attributes, in the order they are written
+	 */
+	static Map<String, String> attributes( final CharSequence tagContent )
+	{
+		final Map<String, String> attributes = new LinkedHashMap<>( );
+		final Matcher matcher = ATTRIBUTE.matcher( tagContent );
+		while ( matcher.find( ) )
+		{
+			attributes.put( matcher.group( 1 ), matcher.group( 2 ) != null ? matcher.group( 2 ) : matcher.group( 3 ) );
+		}
+		return attributes;
+	}
+
+	/**
+	 * @param content the XML
+	 * @return the line separator used in the content
+	 */
+	static String newLine( final String content )
+	{
+		return content.contains( "\r\n" ) ? "\r\n" : "\n";
+	}
+
+	/**
+	 * @param content the XML
+	 * @param pos the start of a tag
+	 * @return the whitespace between the start of the line and the tag, null if the tag does not start its line
+	 */
+	static String indentBefore( final String content, final int pos )
+	{
+		int start = pos;
+		while ( start > 0 && ( content.charAt( start - 1 ) == ' ' || content.charAt( start - 1 ) == '\t' ) )
+		{
+			start--;
+		}
+		return start == 0 || content.charAt( start - 1 ) == '\n' ? content.substring( start, pos ) : null;
+	}
+
+	/**
+	 * @param content the XML
+	 * @param start the start of an element
+	 * @param end the end of the element
+	 * @return the range to remove for the element: its whole line if it is the only thing on it, otherwise the element
+	 */
+	static int[ ] removalRange( final String content, final int start, final int end )
+	{
+		if ( indentBefore( content, start ) == null )
+		{
+			return new int[ ] { start, end };
+		}
+		int lineEnd = end;
+		while ( lineEnd < content.length( ) &&
+			( content.charAt( lineEnd ) == ' ' || content.charAt( lineEnd ) == '\t' ) )
+		{
+			lineEnd++;
+		}
+		if ( content.startsWith( "\r\n", lineEnd ) )
+		{
+			return new int[ ] { start - indentBefore( content, start ).length( ), lineEnd + 2 };
+		}
+		if ( content.startsWith( "\n", lineEnd ) )
+		{
+			return new int[ ] { start - indentBefore( content, start ).length( ), lineEnd + 1 };
+		}
+		return new int[ ] { start, end };
+	}
+}
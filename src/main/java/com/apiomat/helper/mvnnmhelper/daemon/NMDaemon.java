@@ -0,0 +1,313 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.daemon;
+
+import com.apiomat.helper.mvnnmhelper.http.HttpTransport;
+import com.apiomat.helper.mvnnmhelper.mojos.DaemonGoals;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resident JVM executing the upload and download goals for thin clients ({@link NMDaemonClient}), so repeated
+ * invocations do not pay for class loading, TLS setup and JIT warm-up again. The daemon executes the goals of the
+ * plugin itself (see {@link DaemonGoals}) and keeps their pooled HTTP client (see {@link HttpTransport}).
+ *
+ * The daemon only listens on the loopback interface. Each request has to carry the token the daemon writes to its
+ * token file, which only the user starting the daemon may read. A request is a single JSON line
+ * {"token":"...","goal":"upload","params":{...}}; the daemon answers with a JSON line per log message, like
+ * {"level":"info","message":"..."}, and a final {"status":"ok","id":"...","metrics":{...}} or
+ * {"status":"error","id":"...","message":"..."}. The id identifies the classpath the daemon was started with, so
+ * clients replace a daemon running another version of the plugin.
+ *
+ * @author thum
+ */
+public final class NMDaemon implements Closeable
+{
+	private static final int WORKER_THREADS = 8;
+
+	private final ServerSocket serverSocket;
+	private final String token;
+	private final String id;
+	private final File tokenFile;
+	private final long idleTimeoutMillis;
+	private final ExecutorService workers;
+	private final AtomicInteger activeRequests = new AtomicInteger( );
+
+	/**
+	 * Starts listening; requests are served after {@link #serve()} or {@link #start()} is called
+	 *
+	 * @param port the port to listen on, 0 for any free port
+	 * @param tokenFile the file to write the access token to
+	 * @param idleTimeoutMillis the daemon stops after this time without requests, 0 to never stop
+	 * @param id identifies the classpath of the daemon, see {@link NMDaemonClient#classpathId(java.util.List)}
+	 * @throws IOException if the port is in use or the token file could not be written
+	 */
+	public NMDaemon( final int port, final File tokenFile, final long idleTimeoutMillis, final String id )
+		throws IOException
+	{
+		this.serverSocket = new ServerSocket( port, 50, InetAddress.getLoopbackAddress( ) );
+		this.idleTimeoutMillis = Math.max( 0, idleTimeoutMillis );
+		this.tokenFile = tokenFile;
+		this.id = id != null ? id : "";
+		final byte[ ] random = new byte[ 32 ];
+		new SecureRandom( ).nextBytes( random );
+		this.token = Base64.getUrlEncoder( ).withoutPadding( ).encodeToString( random );
+		writeToken( tokenFile, this.token );
+		final AtomicInteger threadNo = new AtomicInteger( );
+		this.workers = Executors.newFixedThreadPool( WORKER_THREADS, r -> {
+			final Thread thread = new Thread( r, "nm-daemon-" + threadNo.incrementAndGet( ) );
+			thread.setDaemon( true );
+			return thread;
+		} );
+	}
+
+	/**
+	 * Starts the daemon: java -cp ... NMDaemon [port] [tokenFile] [idleTimeoutMillis] [id]
+	 *
+	 * @param args the port, the token file, the idle timeout and the id of the classpath, all optional
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void main( final String[ ] args ) throws IOException, InterruptedException
+	{
+		final int port = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : NMDaemonClient.DEFAULT_PORT;
+		final File tokenFile = args.length > 1 ? new File( args[ 1 ] ) : NMDaemonClient.defaultTokenFile( );
+		final long idleTimeout = args.length > 2 ? Long.parseLong( args[ 2 ] ) : NMDaemonClient.DEFAULT_IDLE_TIMEOUT;
+		final String id = args.length > 3 ? args[ 3 ] : null;
+		try (final NMDaemon daemon = new NMDaemon( port, tokenFile, idleTimeout, id ))
+		{
+			daemon.serve( );
+			/* the worker threads do not keep the JVM alive, a stopped daemon finishes its running goals */
+			daemon.workers.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+		}
+	}
+
+	private static void writeToken( final File tokenFile, final String token ) throws IOException
+	{
+		FileUtils.forceMkdir( tokenFile.getAbsoluteFile( ).getParentFile( ) );
+		FileUtils.writeStringToFile( tokenFile, "", StandardCharsets.UTF_8 );
+		try
+		{
+			Files.setPosixFilePermissions( tokenFile.toPath( ),
+				EnumSet.of( PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE ) );
+		}
+		catch ( final UnsupportedOperationException e )
+		{
+			/* no POSIX file system, the user directory has to protect the token */
+		}
+		FileUtils.writeStringToFile( tokenFile, token, StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * @return the port the daemon listens on
+	 */
+	public int getPort( )
+	{
+		return this.serverSocket.getLocalPort( );
+	}
+
+	/**
+	 * Serves requests in a background thread
+	 */
+	public void start( )
+	{
+		final Thread thread = new Thread( ( ) -> {
+			try
+			{
+				serve( );
+			}
+			catch ( final IOException e )
+			{
+				/* the daemon is closed */
+			}
+		}, "nm-daemon-accept" );
+		thread.setDaemon( true );
+		thread.start( );
+	}
+
+	/**
+	 * Serves requests until the daemon is closed, stopped by a client or idle for too long
+	 *
+	 * @throws IOException
+	 */
+	public void serve( ) throws IOException
+	{
+		if ( this.idleTimeoutMillis > 0 )
+		{
+			this.serverSocket.setSoTimeout( ( int ) Math.min( Integer.MAX_VALUE, this.idleTimeoutMillis ) );
+		}
+		while ( this.serverSocket.isClosed( ) == false )
+		{
+			final Socket socket;
+			try
+			{
+				socket = this.serverSocket.accept( );
+			}
+			catch ( final SocketTimeoutException e )
+			{
+				if ( this.activeRequests.get( ) == 0 )
+				{
+					close( );
+				}
+				continue;
+			}
+			catch ( final IOException e )
+			{
+				if ( this.serverSocket.isClosed( ) )
+				{
+					return;
+				}
+				throw e;
+			}
+			this.activeRequests.incrementAndGet( );
+			try
+			{
+				this.workers.execute( ( ) -> handle( socket ) );
+			}
+			catch ( final RejectedExecutionException e )
+			{
+				/* accepted while the daemon was stopped, the client sees the closed connection */
+				this.activeRequests.decrementAndGet( );
+				socket.close( );
+			}
+		}
+	}
+
+	private void handle( final Socket socket )
+	{
+		boolean stop = false;
+		try (final Socket s = socket;
+			final BufferedReader in =
+				new BufferedReader( new InputStreamReader( s.getInputStream( ), StandardCharsets.UTF_8 ) );
+			final PrintWriter out =
+				new PrintWriter( new OutputStreamWriter( s.getOutputStream( ), StandardCharsets.UTF_8 ) ))
+		{
+			final JSONObject result = new JSONObject( );
+			try
+			{
+				final String line = in.readLine( );
+				final JSONObject request = new JSONObject( line == null ? "{}" : line );
+				if ( this.token.equals( request.optString( "token" ) ) == false )
+				{
+					throw new IOException( "Invalid token" );
+				}
+				final String goal = request.getString( "goal" );
+				final JSONObject params = request.optJSONObject( "params" );
+				final JSONObject metrics = execute( goal, params == null ? new JSONObject( ) : params,
+					new SocketLog( out, request.optBoolean( "debug" ) ) );
+				stop = "stop".equals( goal );
+				result.put( "status", "ok" );
+				result.put( "metrics", metrics );
+			}
+			catch ( final IOException | MojoExecutionException | RuntimeException e )
+			{
+				result.put( "status", "error" );
+				result.put( "message", e.getMessage( ) != null ? e.getMessage( ) : e.toString( ) );
+			}
+			result.put( "id", this.id );
+			out.println( result.toString( ) );
+			out.flush( );
+		}
+		catch ( final IOException e )
+		{
+			/* the client went away, nothing left to answer */
+		}
+		finally
+		{
+			this.activeRequests.decrementAndGet( );
+			if ( stop )
+			{
+				close( );
+			}
+		}
+	}
+
+	private JSONObject execute( final String goal, final JSONObject params, final Log log )
+		throws IOException, MojoExecutionException
+	{
+		switch ( goal )
+		{
+			case "ping":
+			case "stop":
+				log.debug( goal + " on port " + getPort( ) );
+				return null;
+			case "upload":
+			case "download":
+				return DaemonGoals.execute( goal, params, log ).toJson( );
+			default:
+				throw new IOException( "Unknown goal " + goal );
+		}
+	}
+
+	/**
+	 * Stops serving requests; running requests are finished
+	 */
+	@Override
+	public void close( )
+	{
+		try
+		{
+			this.serverSocket.close( );
+		}
+		catch ( final IOException e )
+		{
+			/* ignore, stopping anyway */
+		}
+		this.workers.shutdown( );
+		if ( this.tokenFile != null && this.token.equals( readToken( this.tokenFile ) ) )
+		{
+			/* a daemon replacing this one may have written its token already */
+			FileUtils.deleteQuietly( this.tokenFile );
+		}
+	}
+
+	private static String readToken( final File tokenFile )
+	{
+		try
+		{
+			return FileUtils.readFileToString( tokenFile, StandardCharsets.UTF_8 ).trim( );
+		}
+		catch ( final IOException e )
+		{
+			return null;
+		}
+	}
+}
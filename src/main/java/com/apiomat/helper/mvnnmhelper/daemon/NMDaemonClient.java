@@ -0,0 +1,297 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.daemon;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thin client forwarding a goal to a {@link NMDaemon} on this machine and relaying its log messages
+ *
+ * @author thum
+ */
+public class NMDaemonClient
+{
+	/** the port the daemon listens on if none is configured */
+	public static final int DEFAULT_PORT = 18573;
+
+	/** the daemon stops after three hours without requests */
+	public static final long DEFAULT_IDLE_TIMEOUT = 3 * 60 * 60 * 1000L;
+
+	private static final int CONNECT_TIMEOUT = 2000;
+	private static final long STARTUP_TIMEOUT = 20000;
+
+	private final int port;
+	private final File tokenFile;
+
+	/**
+	 * @param port the port the daemon listens on
+	 * @param tokenFile the token file written by the daemon
+	 */
+	public NMDaemonClient( final int port, final File tokenFile )
+	{
+		this.port = port;
+		this.tokenFile = tokenFile;
+	}
+
+	/**
+	 * @return the token file of the daemon if none is configured, ~/.m2/nm-daemon.token
+	 */
+	public static File defaultTokenFile( )
+	{
+		return new File( System.getProperty( "user.home" ), ".m2" + File.separator + "nm-daemon.token" );
+	}
+
+	/**
+	 * @param classpath the classpath of the plugin
+	 * @return identifies the classpath by the paths, sizes and modification times of its files, so a daemon started
+	 *         before the plugin was upgraded or rebuilt is told apart
+	 */
+	public static String classpathId( final List<File> classpath )
+	{
+		try
+		{
+			final MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+			for ( final File file : classpath )
+			{
+				digest.update( ( file.getAbsolutePath( ) + "\t" + file.length( ) + "\t" + file.lastModified( ) + "\n" )
+					.getBytes( StandardCharsets.UTF_8 ) );
+			}
+			final StringBuilder hex = new StringBuilder( );
+			for ( final byte b : digest.digest( ) )
+			{
+				hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+			}
+			return hex.toString( );
+		}
+		catch ( final NoSuchAlgorithmException e )
+		{
+			/* every JRE has to support SHA-256 */
+			throw new IllegalStateException( e );
+		}
+	}
+
+	/**
+	 * @return true if a daemon answers on the port with the current token
+	 */
+	public boolean isRunning( )
+	{
+		return runningId( ) != null;
+	}
+
+	/**
+	 * @return the id of the classpath of the daemon answering on the port with the current token, empty if the
+	 *         daemon does not tell it, null if no daemon answers
+	 */
+	public String runningId( )
+	{
+		try
+		{
+			return execute( "ping", new JSONObject( ), null ).optString( "id" );
+		}
+		catch ( final IOException e )
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Starts a daemon in a new JVM unless one with the same classpath is running already; a daemon with another
+	 * classpath, like the one of a previous version of the plugin, is stopped first
+	 *
+	 * @param classpath the classpath of the plugin
+	 * @param log the log
+	 * @throws IOException if the daemon did not start in time
+	 */
+	public void ensureRunning( final List<File> classpath, final Log log ) throws IOException
+	{
+		final String id = classpathId( classpath );
+		final String runningId = runningId( );
+		if ( id.equals( runningId ) )
+		{
+			return;
+		}
+		if ( runningId != null )
+		{
+			log.info( "Stopping nm daemon on port " + this.port + ", it runs another version of the plugin" );
+			stop( );
+		}
+		log.info( "Starting nm daemon on port " + this.port );
+		final List<String> command = new ArrayList<>( );
+		command.add( new File( System.getProperty( "java.home" ), "bin" + File.separator + "java" ).getPath( ) );
+		command.add( "-cp" );
+		final List<String> paths = new ArrayList<>( );
+		for ( final File file : classpath )
+		{
+			paths.add( file.getAbsolutePath( ) );
+		}
+		command.add( String.join( File.pathSeparator, paths ) );
+		command.add( NMDaemon.class.getName( ) );
+		command.add( String.valueOf( this.port ) );
+		command.add( this.tokenFile.getAbsolutePath( ) );
+		command.add( String.valueOf( DEFAULT_IDLE_TIMEOUT ) );
+		command.add( id );
+		final File daemonLog = new File( this.tokenFile.getAbsoluteFile( ).getParentFile( ), "nm-daemon.log" );
+		new ProcessBuilder( command ).redirectErrorStream( true )
+			.redirectOutput( ProcessBuilder.Redirect.appendTo( daemonLog ) ).start( );
+
+		/* another build may have started the same daemon in the meantime */
+		if ( awaitRunning( id, true ) == false )
+		{
+			throw new IOException( "nm daemon did not start within " + STARTUP_TIMEOUT + "ms, see " + daemonLog );
+		}
+	}
+
+	/**
+	 * Stops the daemon; the goals it is executing are finished
+	 *
+	 * @throws IOException if the daemon did not stop in time
+	 */
+	public void stop( ) throws IOException
+	{
+		try
+		{
+			execute( "stop", new JSONObject( ), null );
+		}
+		catch ( final IOException e )
+		{
+			/* stopped in the meantime */
+		}
+		if ( awaitRunning( null, false ) == false )
+		{
+			throw new IOException(
+				"nm daemon on port " + this.port + " did not stop within " + STARTUP_TIMEOUT + "ms" );
+		}
+	}
+
+	/**
+	 * @param id the id of the daemon to wait for, null for any
+	 * @param running whether to wait for the daemon to run or to stop
+	 * @return false if the daemon did not start or stop in time
+	 */
+	private boolean awaitRunning( final String id, final boolean running )
+	{
+		final long end = System.currentTimeMillis( ) + STARTUP_TIMEOUT;
+		while ( System.currentTimeMillis( ) < end )
+		{
+			final String runningId = runningId( );
+			if ( running ? runningId != null && ( id == null || id.equals( runningId ) ) : runningId == null )
+			{
+				return true;
+			}
+			try
+			{
+				Thread.sleep( 200 );
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread( ).interrupt( );
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Executes a goal in the daemon
+	 *
+	 * @param goal the goal, like upload or download
+	 * @param params the parameters of the goal
+	 * @param log the log to relay the messages of the daemon to; may be null
+	 * @return the final answer of the daemon, with the id of the daemon and the metrics of the goal
+	 * @throws IOException if the daemon is not reachable or the goal failed
+	 */
+	public JSONObject execute( final String goal, final JSONObject params, final Log log ) throws IOException
+	{
+		if ( this.tokenFile.isFile( ) == false )
+		{
+			throw new IOException( "No nm daemon token in " + this.tokenFile );
+		}
+		final JSONObject request = new JSONObject( );
+		request.put( "token", FileUtils.readFileToString( this.tokenFile, StandardCharsets.UTF_8 ).trim( ) );
+		request.put( "goal", goal );
+		request.put( "params", params );
+		request.put( "debug", log != null && log.isDebugEnabled( ) );
+
+		try (final Socket socket = new Socket( ))
+		{
+			socket.connect( new InetSocketAddress( InetAddress.getLoopbackAddress( ), this.port ), CONNECT_TIMEOUT );
+			final PrintWriter out =
+				new PrintWriter( new OutputStreamWriter( socket.getOutputStream( ), StandardCharsets.UTF_8 ) );
+			out.println( request.toString( ) );
+			out.flush( );
+			final BufferedReader in =
+				new BufferedReader( new InputStreamReader( socket.getInputStream( ), StandardCharsets.UTF_8 ) );
+			String line;
+			while ( ( line = in.readLine( ) ) != null )
+			{
+				final JSONObject message = new JSONObject( line );
+				if ( message.has( "status" ) )
+				{
+					if ( "ok".equals( message.getString( "status" ) ) == false )
+					{
+						throw new IOException( message.optString( "message", "nm daemon failed" ) );
+					}
+					return message;
+				}
+				if ( log != null )
+				{
+					relay( log, message.optString( "level" ), message.optString( "message" ) );
+				}
+			}
+			throw new IOException( "nm daemon closed the connection without a result" );
+		}
+		catch ( final JSONException e )
+		{
+			throw new IOException( "Invalid answer of the nm daemon", e );
+		}
+	}
+
+	private static void relay( final Log log, final String level, final String message )
+	{
+		switch ( level )
+		{
+			case "debug":
+				log.debug( message );
+				break;
+			case "warn":
+				log.warn( message );
+				break;
+			case "error":
+				log.error( message );
+				break;
+			default:
+				log.info( message );
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.daemon;
+
+import org.apache.maven.plugin.logging.Log;
+import org.json.JSONObject;
+
+import java.io.PrintWriter;
+
+/**
+ * {@link Log} of a daemon request, which sends each message to the client as a JSON line like
+ * {"level":"info","message":"..."}
+ *
+ * @author thum
+ */
+class SocketLog implements Log
+{
+	private final PrintWriter out;
+	private final boolean debug;
+
+	/**
+	 * @param out the writer to the client
+	 * @param debug whether the client wants debug messages
+	 */
+	SocketLog( final PrintWriter out, final boolean debug )
+	{
+		this.out = out;
+		this.debug = debug;
+	}
+
+	private void send( final String level, final CharSequence content, final Throwable error )
+	{
+		final JSONObject line = new JSONObject( );
+		line.put( "level", level );
+		line.put( "message", content == null && error != null ? String.valueOf( error ) :
+			String.valueOf( content ) + ( error != null && content != null ? ": " + error : "" ) );
+		synchronized ( this.out )
+		{
+			this.out.println( line.toString( ) );
+			this.out.flush( );
+		}
+	}
+
+	@Override
+	public boolean isDebugEnabled( )
+	{
+		return this.debug;
+	}
+
+	@Override
+	public void debug( final CharSequence content )
+	{
+		debug( content, null );
+	}
+
+	@Override
+	public void debug( final CharSequence content, final Throwable error )
+	{
+		if ( this.debug )
+		{
+			send( "debug", content, error );
+		}
+	}
+
+	@Override
+	public void debug( final Throwable error )
+	{
+		debug( null, error );
+	}
+
+	@Override
+	public boolean isInfoEnabled( )
+	{
+		return true;
+	}
+
+	@Override
+	public void info( final CharSequence content )
+	{
+		send( "info", content, null );
+	}
+
+	@Override
+	public void info( final CharSequence content, final Throwable error )
+	{
+		send( "info", content, error );
+	}
+
+	@Override
+	public void info( final Throwable error )
+	{
+		send( "info", null, error );
+	}
+
+	@Override
+	public boolean isWarnEnabled( )
+	{
+		return true;
+	}
+
+	@Override
+	public void warn( final CharSequence content )
+	{
+		send( "warn", content, null );
+	}
+
+	@Override
+	public void warn( final CharSequence content, final Throwable error )
+	{
+		send( "warn", content, error );
+	}
+
+	@Override
+	public void warn( final Throwable error )
+	{
+		send( "warn", null, error );
+	}
+
+	@Override
+	public boolean isErrorEnabled( )
+	{
+		return true;
+	}
+
+	@Override
+	public void error( final CharSequence content )
+	{
+		send( "error", content, null );
+	}
+
+	@Override
+	public void error( final CharSequence content, final Throwable error )
+	{
+		send( "error", content, error );
+	}
+
+	@Override
+	public void error( final Throwable error )
+	{
+		send( "error", null, error );
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Thrown if a request was cancelled because its deadline was exceeded. Requests failing with this exception are
+ * never retried.
+ *
+ * @author thum
+ */
+public class DeadlineExceededException extends InterruptedIOException
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param message the detail message
+	 */
+	public DeadlineExceededException( final String message )
+	{
+		super( message );
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import com.apiomat.helper.mvnnmhelper.AtomicFiles;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Machine readable results of goal executions, for CI dashboards instead of scraping the log. Each execution writes
+ * a file of its own, like
+ *
+ * <pre>
+ * {"formatVersion":1,"goal":"release","module":"MyModule","moduleVersion":"1.0.0","outcome":"success",
+ *  "statusCode":200,"elapsedMillis":412,"requests":1,"attempts":1,"retries":0,"bytes":0,"files":0,"messages":[...]}
+ * </pre>
+ *
+ * and adds its result to a summary of all executions of the build, which also contains the totals.
+ *
+ * @author thum
+ */
+public final class ExecutionReport
+{
+	private static final int FORMAT_VERSION = 1;
+
+	/** the modules of a parallel build add their results to the same summary */
+	private static final Object SUMMARY_LOCK = new Object( );
+
+	private ExecutionReport( )
+	{
+	}
+
+	/**
+	 * @param metrics the metrics of the execution
+	 * @param module the module name, null if unknown
+	 * @param version the module version, null if unknown
+	 * @param failure the error the execution failed with, null on success
+	 * @return the result of the execution
+	 */
+	public static JSONObject result( final RequestMetrics metrics, final String module, final String version,
+		final Throwable failure )
+	{
+		final JSONObject json = metrics.toJson( );
+		json.put( "formatVersion", FORMAT_VERSION );
+		json.put( "module", module == null ? JSONObject.NULL : module );
+		json.put( "moduleVersion", version == null ? JSONObject.NULL : version );
+		json.put( "outcome", failure == null ? "success" : "failure" );
+		if ( failure != null )
+		{
+			json.put( "error", String.valueOf( failure.getMessage( ) ) );
+		}
+		return json;
+	}
+
+	/**
+	 * Writes a result, replacing an older one
+	 *
+	 * @param file the file
+	 * @param result the result
+	 * @throws IOException
+	 */
+	public static void write( final File file, final JSONObject result ) throws IOException
+	{
+		/* CI never reads a partially written result */
+		AtomicFiles.write( file, result.toString( 2 ) );
+	}
+
+	/**
+	 * Adds a result to the summary of the build; the summary of an earlier build is replaced
+	 *
+	 * @param summaryFile the summary file
+	 * @param buildId identifies the build, like its start time
+	 * @param result the result of an execution
+	 * @return the updated summary
+	 * @throws IOException
+	 */
+	public static JSONObject addToSummary( final File summaryFile, final String buildId, final JSONObject result )
+		throws IOException
+	{
+		synchronized ( SUMMARY_LOCK )
+		{
+			JSONObject summary = null;
+			if ( summaryFile.isFile( ) )
+			{
+				try
+				{
+					summary = new JSONObject( FileUtils.readFileToString( summaryFile, StandardCharsets.UTF_8 ) );
+				}
+				catch ( final JSONException e )
+				{
+					/* unreadable, start a new summary */
+				}
+			}
+			if ( summary == null || buildId.equals( summary.optString( "build" ) ) == false )
+			{
+				summary = new JSONObject( );
+				summary.put( "formatVersion", FORMAT_VERSION );
+				summary.put( "build", buildId );
+				summary.put( "executions", new JSONArray( ) );
+			}
+			final JSONArray executions = summary.getJSONArray( "executions" );
+			executions.put( result );
+			summary.put( "totals", totals( executions ) );
+			write( summaryFile, summary );
+			return summary;
+		}
+	}
+
+	private static JSONObject totals( final JSONArray executions )
+	{
+		int failures = 0;
+		int requests = 0;
+		int retries = 0;
+		long bytes = 0;
+		int files = 0;
+		long elapsedMillis = 0;
+		for ( int i = 0; i < executions.length( ); i++ )
+		{
+			final JSONObject execution = executions.getJSONObject( i );
+			failures += "failure".equals( execution.optString( "outcome" ) ) ? 1 : 0;
+			requests += execution.optInt( "requests" );
+			retries += execution.optInt( "retries" );
+			bytes += execution.optLong( "bytes" );
+			files += execution.optInt( "files" );
+			elapsedMillis += execution.optLong( "elapsedMillis" );
+		}
+		final JSONObject totals = new JSONObject( );
+		totals.put( "executions", executions.length( ) );
+		totals.put( "failures", failures );
+		totals.put( "requests", requests );
+		totals.put( "retries", retries );
+		totals.put( "bytes", bytes );
+		totals.put( "files", files );
+		totals.put( "elapsedMillis", elapsedMillis );
+		return totals;
+	}
+}
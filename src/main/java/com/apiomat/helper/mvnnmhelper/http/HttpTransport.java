@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import org.apache.http.client.fluent.Executor;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.ssl.SSLContexts;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.net.HttpURLConnection;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The SSL context and HTTP client of the plugin. There is one transport per SSL configuration, shared by all goals
+ * and threads of the JVM, so connections are pooled and TLS sessions are resumed across requests. The trust-all SSL
+ * context only applies to the upload connections (see {@link #configure(HttpURLConnection)}), like the JVM default the
+ * plugin used to replace; the defaults of the JVM, which other plugins of a parallel build use, are left untouched.
+ * The pooled HTTP client of the fluent requests, which also send the credentials, always verifies certificates and
+ * host names with the system defaults.
+ *
+ * @author thum
+ */
+public final class HttpTransport
+{
+	private static final int MAX_CONNECTIONS = 200;
+	private static final int MAX_CONNECTIONS_PER_ROUTE = 100;
+
+	/** the transports by whether they trust all certificates */
+	private static final ConcurrentMap<Boolean, HttpTransport> TRANSPORTS = new ConcurrentHashMap<>( );
+
+	/** the client of all fluent requests, verifying with the javax.net.ssl system properties and the JVM defaults */
+	private static final Executor EXECUTOR = Executor.newInstance( HttpClients.custom( )
+		.setSSLSocketFactory( SSLConnectionSocketFactory.getSystemSocketFactory( ) )
+		.setMaxConnTotal( MAX_CONNECTIONS ).setMaxConnPerRoute( MAX_CONNECTIONS_PER_ROUTE ).build( ) );
+
+	/** a trust manager that does not validate certificate chains */
+	private static final TrustManager[ ] TRUST_ALL_CERTS = new TrustManager[ ] { new X509TrustManager( )
+	{
+		@Override
+		public X509Certificate[ ] getAcceptedIssuers( )
+		{
+			return new X509Certificate[ 0 ];
+		}
+
+		@Override
+		public void checkClientTrusted( final X509Certificate[ ] certs, final String authType )
+		{}
+
+		@Override
+		public void checkServerTrusted( final X509Certificate[ ] certs, final String authType )
+		{}
+	} };
+
+	private final boolean trustAll;
+	private final SSLContext sslContext;
+	private final SSLSocketFactory socketFactory;
+	private final HostnameVerifier hostnameVerifier;
+
+	private HttpTransport( final boolean trustAll )
+	{
+		this.trustAll = trustAll;
+		try
+		{
+			if ( trustAll )
+			{
+				this.sslContext = SSLContext.getInstance( "TLS" );
+				this.sslContext.init( null, TRUST_ALL_CERTS, null );
+				this.hostnameVerifier = NoopHostnameVerifier.INSTANCE;
+			}
+			else
+			{
+				/* the key and trust stores configured with the javax.net.ssl system properties */
+				this.sslContext = SSLContexts.createSystemDefault( );
+				this.hostnameVerifier = SSLConnectionSocketFactory.getDefaultHostnameVerifier( );
+			}
+		}
+		catch ( final GeneralSecurityException e )
+		{
+			throw new IllegalStateException( "Could not create the SSL context", e );
+		}
+		this.socketFactory = this.sslContext.getSocketFactory( );
+	}
+
+	/**
+	 * @return the transport for the current SSL configuration (see {@link #trustAll()})
+	 */
+	public static HttpTransport get( )
+	{
+		return TRANSPORTS.computeIfAbsent( trustAll( ), HttpTransport::new );
+	}
+
+	/**
+	 * @return false if a keyStore or the property doNotOverwriteSSLContext is set, true otherwise
+	 */
+	public static boolean trustAll( )
+	{
+		return System.getProperty( "javax.net.ssl.keyStore" ) == null &&
+			Boolean.getBoolean( "doNotOverwriteSSLContext" ) == false;
+	}
+
+	/**
+	 * @return whether the upload connections of this transport trust all certificates and host names
+	 */
+	public boolean isTrustAll( )
+	{
+		return this.trustAll;
+	}
+
+	/**
+	 * @return the executor for fluent requests, backed by the pooled HTTP client of the plugin; it verifies
+	 *         certificates and host names regardless of {@link #isTrustAll()}
+	 */
+	public Executor executor( )
+	{
+		return EXECUTOR;
+	}
+
+	/**
+	 * @return the SSL context of this transport
+	 */
+	public SSLContext getSslContext( )
+	{
+		return this.sslContext;
+	}
+
+	/**
+	 * @return the socket factory of the SSL context; all connections share its TLS session cache
+	 */
+	public SSLSocketFactory getSocketFactory( )
+	{
+		return this.socketFactory;
+	}
+
+	/**
+	 * Applies the SSL configuration to a single connection
+	 *
+	 * @param connection the connection
+	 * @return the connection
+	 */
+	public <T extends HttpURLConnection> T configure( final T connection )
+	{
+		if ( this.trustAll && connection instanceof HttpsURLConnection )
+		{
+			( ( HttpsURLConnection ) connection ).setSSLSocketFactory( this.socketFactory );
+			( ( HttpsURLConnection ) connection ).setHostnameVerifier( this.hostnameVerifier );
+		}
+		return connection;
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads whose processing by yambas (and the download chained to it) runs in the background while the build
+ * continues with other modules. The build waits for them with {@link #awaitAll(Log)} at the end of the session, and
+ * each upload reports the failures of the uploads finished so far with {@link #checkFinished(Log)}. Uploads still
+ * running when the JVM exits without having waited are awaited by a shutdown hook, which exits with an error if one
+ * of them failed, so neither a half downloaded module nor a failed upload goes unnoticed.
+ *
+ * @author thum
+ */
+public final class PendingUploads
+{
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger( );
+
+	/* polling threads mostly sleep, so there is one per pending upload */
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool( r -> {
+		final Thread thread = new Thread( r, "nm-pending-upload-" + THREAD_COUNT.incrementAndGet( ) );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
+	/* a list, several uploads may share a label and none of them may be forgotten */
+	private static final List<Map.Entry<String, Future<?>>> PENDING = new ArrayList<>( );
+
+	static
+	{
+		Runtime.getRuntime( ).addShutdownHook( new Thread( PendingUploads::awaitOnExit, "nm-pending-upload-hook" ) );
+	}
+
+	/**
+	 * The work to do in the background, like waiting for yambas and downloading the processed module
+	 */
+	@FunctionalInterface
+	public interface Task
+	{
+		/**
+		 * @throws Exception
+		 */
+		void run( ) throws Exception;
+	}
+
+	private PendingUploads( )
+	{
+	}
+
+	/**
+	 * Starts the given task in the background
+	 *
+	 * @param label the label of the upload, like the module name
+	 * @param task the task
+	 */
+	public static void submit( final String label, final Task task )
+	{
+		synchronized ( PENDING )
+		{
+			PENDING.add( new SimpleImmutableEntry<>( label, EXECUTOR.submit( ( ) -> {
+				task.run( );
+				return null;
+			} ) ) );
+		}
+	}
+
+	/**
+	 * @return the number of uploads which were not awaited yet
+	 */
+	public static int size( )
+	{
+		synchronized ( PENDING )
+		{
+			return PENDING.size( );
+		}
+	}
+
+	/**
+	 * Waits until all pending uploads are done
+	 *
+	 * @param log the log to report failed uploads to
+	 * @throws MojoExecutionException if at least one upload failed, with the failures of all uploads
+	 */
+	public static void awaitAll( final Log log ) throws MojoExecutionException
+	{
+		final List<Map.Entry<String, Future<?>>> pending;
+		synchronized ( PENDING )
+		{
+			pending = new ArrayList<>( PENDING );
+			PENDING.clear( );
+		}
+		if ( pending.isEmpty( ) == false )
+		{
+			log.info( "Waiting for " + pending.size( ) + " pending upload(s)" );
+		}
+		await( pending, log );
+	}
+
+	/**
+	 * Reports the uploads which already finished, without waiting for the others
+	 *
+	 * @param log the log to report failed uploads to
+	 * @throws MojoExecutionException if at least one finished upload failed, with the failures of all of them
+	 */
+	public static void checkFinished( final Log log ) throws MojoExecutionException
+	{
+		final List<Map.Entry<String, Future<?>>> finished = new ArrayList<>( );
+		synchronized ( PENDING )
+		{
+			for ( final Iterator<Map.Entry<String, Future<?>>> it = PENDING.iterator( ); it.hasNext( ); )
+			{
+				final Map.Entry<String, Future<?>> entry = it.next( );
+				if ( entry.getValue( ).isDone( ) )
+				{
+					finished.add( entry );
+					it.remove( );
+				}
+			}
+		}
+		await( finished, log );
+	}
+
+	private static void await( final List<Map.Entry<String, Future<?>>> pending, final Log log )
+		throws MojoExecutionException
+	{
+		final List<String> failures = new ArrayList<>( );
+		Throwable firstFailure = null;
+		for ( final Map.Entry<String, Future<?>> entry : pending )
+		{
+			try
+			{
+				entry.getValue( ).get( );
+			}
+			catch ( final ExecutionException e )
+			{
+				log.error( "Upload of " + entry.getKey( ) + " failed: " + e.getCause( ).getMessage( ) );
+				failures.add( entry.getKey( ) );
+				firstFailure = firstFailure == null ? e.getCause( ) : firstFailure;
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread( ).interrupt( );
+				throw new MojoExecutionException( "Interrupted while waiting for pending uploads", e );
+			}
+		}
+		if ( failures.isEmpty( ) == false )
+		{
+			throw new MojoExecutionException( "Upload of " + String.join( ", ", failures ) + " failed", firstFailure );
+		}
+	}
+
+	private static void awaitOnExit( )
+	{
+		final List<Map.Entry<String, Future<?>>> pending;
+		synchronized ( PENDING )
+		{
+			pending = new ArrayList<>( PENDING );
+			PENDING.clear( );
+		}
+		boolean failed = false;
+		for ( final Map.Entry<String, Future<?>> entry : pending )
+		{
+			try
+			{
+				entry.getValue( ).get( );
+			}
+			catch ( final ExecutionException e )
+			{
+				/* the build has already ended, the logger of Maven may be gone */
+				System.err.println(
+					"[ERROR] Upload of " + entry.getKey( ) + " failed: " + e.getCause( ).getMessage( ) );
+				failed = true;
+			}
+			catch ( final InterruptedException e )
+			{
+				return;
+			}
+		}
+		if ( failed )
+		{
+			/* the only way left to fail the build */
+			Runtime.getRuntime( ).halt( 1 );
+		}
+	}
+}
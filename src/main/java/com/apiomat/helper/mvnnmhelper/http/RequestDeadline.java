@@ -0,0 +1,204 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connect and read timeouts together with an optional point in time after which a request has to be cancelled.
+ * Deadlines are immutable; the deadline of a single attempt is derived with {@link #forAttempt(int)}.
+ *
+ * @author thum
+ */
+public final class RequestDeadline
+{
+	private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+	/* single daemon thread cancelling requests whose deadline expired */
+	private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor( r -> {
+		final Thread thread = new Thread( r, "nm-request-deadline" );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
+	/**
+	 * Cancels the watch of a request when closed
+	 */
+	public interface Watch extends AutoCloseable
+	{
+		@Override
+		void close( );
+	}
+
+	private final long deadlineNanos;
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+
+	private RequestDeadline( final long deadlineNanos, final int connectTimeoutMillis, final int readTimeoutMillis )
+	{
+		this.deadlineNanos = deadlineNanos;
+		this.connectTimeoutMillis = Math.max( 0, connectTimeoutMillis );
+		this.readTimeoutMillis = Math.max( 0, readTimeoutMillis );
+	}
+
+	/**
+	 * @param deadlineMillis milliseconds from now until the deadline, 0 for no deadline
+	 * @param connectTimeoutMillis connect timeout, 0 for no timeout
+	 * @param readTimeoutMillis read timeout, 0 for no timeout
+	 * @return the deadline
+	 */
+	public static RequestDeadline of( final long deadlineMillis, final int connectTimeoutMillis,
+		final int readTimeoutMillis )
+	{
+		return new RequestDeadline( deadlineMillis > 0 ? System.nanoTime( ) + TimeUnit.MILLISECONDS.toNanos(
+			deadlineMillis ) : NO_DEADLINE, connectTimeoutMillis, readTimeoutMillis );
+	}
+
+	/**
+	 * @return a deadline without any limits
+	 */
+	public static RequestDeadline none( )
+	{
+		return new RequestDeadline( NO_DEADLINE, 0, 0 );
+	}
+
+	/**
+	 * @param attemptTimeoutMillis the maximum duration of a single attempt, 0 for no limit
+	 * @return the deadline of a single attempt, which ends at the latest with this deadline
+	 */
+	public RequestDeadline forAttempt( final int attemptTimeoutMillis )
+	{
+		if ( attemptTimeoutMillis <= 0 )
+		{
+			return this;
+		}
+		final long attemptNanos = System.nanoTime( ) + TimeUnit.MILLISECONDS.toNanos( attemptTimeoutMillis );
+		if ( this.deadlineNanos != NO_DEADLINE && this.deadlineNanos - attemptNanos < 0 )
+		{
+			return this;
+		}
+		return new RequestDeadline( attemptNanos, this.connectTimeoutMillis, this.readTimeoutMillis );
+	}
+
+	/**
+	 * @return whether a deadline is set
+	 */
+	public boolean hasDeadline( )
+	{
+		return this.deadlineNanos != NO_DEADLINE;
+	}
+
+	/**
+	 * @return whether the deadline has passed
+	 */
+	public boolean isExpired( )
+	{
+		return hasDeadline( ) && this.deadlineNanos - System.nanoTime( ) <= 0;
+	}
+
+	/**
+	 * @return milliseconds until the deadline, {@link Long#MAX_VALUE} if no deadline is set
+	 */
+	public long remainingMillis( )
+	{
+		if ( hasDeadline( ) == false )
+		{
+			return Long.MAX_VALUE;
+		}
+		return Math.max( 0, TimeUnit.NANOSECONDS.toMillis( this.deadlineNanos - System.nanoTime( ) ) );
+	}
+
+	/**
+	 * @return the connect timeout, shortened to the remaining time until the deadline; 0 means no timeout
+	 */
+	public int connectTimeout( )
+	{
+		return limit( this.connectTimeoutMillis );
+	}
+
+	/**
+	 * @return the read timeout, shortened to the remaining time until the deadline; 0 means no timeout
+	 */
+	public int readTimeout( )
+	{
+		return limit( this.readTimeoutMillis );
+	}
+
+	/**
+	 * @throws DeadlineExceededException if the deadline has passed
+	 */
+	public void check( ) throws DeadlineExceededException
+	{
+		if ( isExpired( ) )
+		{
+			throw new DeadlineExceededException( "Request deadline exceeded" );
+		}
+	}
+
+	/**
+	 * Converts an error into a {@link DeadlineExceededException} if the deadline has passed (e.g. as the connection
+	 * was closed by the watchdog)
+	 *
+	 * @param e the error
+	 * @return the error to throw
+	 */
+	public IOException translate( final IOException e )
+	{
+		if ( e instanceof DeadlineExceededException || isExpired( ) == false )
+		{
+			return e;
+		}
+		final DeadlineExceededException deadlineException =
+			new DeadlineExceededException( "Request deadline exceeded: " + e.getMessage( ) );
+		deadlineException.initCause( e );
+		return deadlineException;
+	}
+
+	/**
+	 * Runs the given action (like closing the connection) when the deadline passes before the returned watch is
+	 * closed
+	 *
+	 * @param onExpiry the action cancelling the running request
+	 * @return the watch, which has to be closed when the request is done
+	 */
+	public Watch watch( final Runnable onExpiry )
+	{
+		if ( hasDeadline( ) == false )
+		{
+			return ( ) -> {
+				/* nothing to cancel */
+			};
+		}
+		final ScheduledFuture<?> future =
+			WATCHDOG.schedule( onExpiry, this.deadlineNanos - System.nanoTime( ), TimeUnit.NANOSECONDS );
+		return ( ) -> future.cancel( false );
+	}
+
+	private int limit( final int timeoutMillis )
+	{
+		if ( hasDeadline( ) == false )
+		{
+			return timeoutMillis;
+		}
+		/* never return 0 here, as it would mean an infinite timeout */
+		final long remaining = Math.max( 1, Math.min( Integer.MAX_VALUE, remainingMillis( ) ) );
+		return ( int ) ( timeoutMillis == 0 ? remaining : Math.min( timeoutMillis, remaining ) );
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the metrics of the requests done by one goal execution, like the number of attempts and retries
+ *
+ * @author thum
+ */
+public class RequestMetrics
+{
+	private final String goal;
+	private final long startMillis = System.currentTimeMillis( );
+	private final long startNanos = System.nanoTime( );
+
+	private int requests;
+	private int attempts;
+	private int retries;
+	private long retryDelayMillis;
+	private int lastStatusCode = -1;
+	private long transferredBytes;
+	private int files;
+	private final List<String> messages = new ArrayList<>( );
+
+	/**
+	 * @param goal the name of the goal the metrics are collected for
+	 */
+	public RequestMetrics( final String goal )
+	{
+		this.goal = goal;
+	}
+
+	/**
+	 * Records the start of a (possibly retried) request
+	 */
+	public synchronized void recordRequest( )
+	{
+		this.requests++;
+	}
+
+	/**
+	 * Records a single attempt of a request
+	 */
+	public synchronized void recordAttempt( )
+	{
+		this.attempts++;
+	}
+
+	/**
+	 * Records a retry and the time waited before it
+	 *
+	 * @param delayMillis the backoff before the retry
+	 */
+	public synchronized void recordRetry( final long delayMillis )
+	{
+		this.retries++;
+		this.retryDelayMillis += delayMillis;
+	}
+
+	/**
+	 * @param statusCode the HTTP status code of the last response
+	 */
+	public synchronized void recordStatusCode( final int statusCode )
+	{
+		this.lastStatusCode = statusCode;
+	}
+
+	/**
+	 * @param bytes the number of bytes up- or downloaded by a transfer
+	 */
+	public synchronized void recordTransferredBytes( final long bytes )
+	{
+		this.transferredBytes += bytes;
+	}
+
+	/**
+	 * @param count the number of files transferred, like the entries of an uploaded jar or a downloaded archive
+	 */
+	public synchronized void recordFiles( final int count )
+	{
+		this.files += count;
+	}
+
+	/**
+	 * @param message a message of yambas or about the outcome, like "Successfully released module X"
+	 */
+	public synchronized void recordMessage( final String message )
+	{
+		this.messages.add( message );
+	}
+
+	/**
+	 * Adds the metrics of the same goal executed elsewhere, like in the nm daemon
+	 *
+	 * @param json the metrics, see {@link #toJson()}; may be null
+	 */
+	public synchronized void add( final JSONObject json )
+	{
+		if ( json == null )
+		{
+			return;
+		}
+		this.requests += json.optInt( "requests" );
+		this.attempts += json.optInt( "attempts" );
+		this.retries += json.optInt( "retries" );
+		this.retryDelayMillis += json.optLong( "retryDelayMillis" );
+		this.lastStatusCode = json.optInt( "statusCode", this.lastStatusCode );
+		this.transferredBytes += json.optLong( "bytes" );
+		this.files += json.optInt( "files" );
+		final JSONArray addedMessages = json.optJSONArray( "messages" );
+		for ( int i = 0; addedMessages != null && i < addedMessages.length( ); i++ )
+		{
+			this.messages.add( addedMessages.getString( i ) );
+		}
+	}
+
+	/**
+	 * @return the name of the goal
+	 */
+	public String getGoal( )
+	{
+		return this.goal;
+	}
+
+	/**
+	 * @return the number of requests
+	 */
+	public synchronized int getRequests( )
+	{
+		return this.requests;
+	}
+
+	/**
+	 * @return the number of attempts over all requests
+	 */
+	public synchronized int getAttempts( )
+	{
+		return this.attempts;
+	}
+
+	/**
+	 * @return the number of retries over all requests
+	 */
+	public synchronized int getRetries( )
+	{
+		return this.retries;
+	}
+
+	/**
+	 * @return the milliseconds spent waiting between retries
+	 */
+	public synchronized long getRetryDelayMillis( )
+	{
+		return this.retryDelayMillis;
+	}
+
+	/**
+	 * @return the HTTP status code of the last response or -1 if none was received
+	 */
+	public synchronized int getLastStatusCode( )
+	{
+		return this.lastStatusCode;
+	}
+
+	/**
+	 * @return the number of bytes up- and downloaded
+	 */
+	public synchronized long getTransferredBytes( )
+	{
+		return this.transferredBytes;
+	}
+
+	/**
+	 * @return the number of files transferred
+	 */
+	public synchronized int getFiles( )
+	{
+		return this.files;
+	}
+
+	/**
+	 * @return the milliseconds since the metrics were created
+	 */
+	public long getElapsedMillis( )
+	{
+		return TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - this.startNanos );
+	}
+
+	/**
+	 * @return the metrics as JSON, like {"goal":"upload","requests":1,"attempts":2,"retries":1,...}
+	 */
+	public synchronized JSONObject toJson( )
+	{
+		final JSONObject json = new JSONObject( );
+		json.put( "goal", this.goal );
+		json.put( "startedAt", this.startMillis );
+		json.put( "elapsedMillis", getElapsedMillis( ) );
+		json.put( "requests", this.requests );
+		json.put( "attempts", this.attempts );
+		json.put( "retries", this.retries );
+		json.put( "retryDelayMillis", this.retryDelayMillis );
+		json.put( "statusCode", this.lastStatusCode );
+		json.put( "bytes", this.transferredBytes );
+		json.put( "files", this.files );
+		json.put( "messages", new JSONArray( this.messages ) );
+		return json;
+	}
+
+	@Override
+	public synchronized String toString( )
+	{
+		return this.goal + ": " + this.requests + " request(s), " + this.attempts + " attempt(s), " + this.retries +
+			" retr" + ( this.retries == 1 ? "y" : "ies" ) + " (" + this.retryDelayMillis + "ms backoff), " +
+			getElapsedMillis( ) + "ms total";
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.conn.ConnectionReleaseTrigger;
+import org.apache.http.entity.ContentType;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads response bodies with a limit, so a proxy answering with a huge error page does not exhaust the memory of the
+ * build. Bodies exceeding the limit are cut off and marked as truncated; for error messages, the bodies are
+ * summarized by their content type, like the title and text of an HTML page or the message of a JSON error.
+ *
+ * @author thum
+ */
+public final class ResponseBody
+{
+	/** the default limit in bytes */
+	public static final int DEFAULT_LIMIT = 64 * 1024;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final Pattern HTML_TITLE = Pattern.compile( "(?is)<title[^>]*>(.*?)</title>" );
+	private static final Pattern HTML_SKIPPED = Pattern.compile( "(?is)<(script|style|head)[^>]*>.*?</\\1>" );
+	private static final Pattern HTML_TAG = Pattern.compile( "(?s)<[^>]*>" );
+	private static final Pattern WHITESPACE = Pattern.compile( "\\s+" );
+
+	private ResponseBody( )
+	{
+	}
+
+	/**
+	 * Reads the body as text
+	 *
+	 * @param entity the body, may be null
+	 * @param limit the maximum number of bytes to read
+	 * @return the text, with a truncation marker if the body exceeds the limit
+	 * @throws IOException
+	 */
+	public static String text( final HttpEntity entity, final int limit ) throws IOException
+	{
+		if ( entity == null )
+		{
+			return "";
+		}
+		try (final InputStream in = entity.getContent( ))
+		{
+			final Body body = read( in, limit );
+			return body.text( charset( entity.getContentType( ) != null ? entity.getContentType( ).getValue( ) :
+				null ) ) + truncationMarker( body, entity.getContentLength( ) );
+		}
+	}
+
+	/**
+	 * Summarizes the body for an error message
+	 *
+	 * @param entity the body, may be null
+	 * @param limit the maximum number of bytes to read
+	 * @return the summary, empty if there is no body
+	 * @throws IOException
+	 */
+	public static String summary( final HttpEntity entity, final int limit ) throws IOException
+	{
+		if ( entity == null )
+		{
+			return "";
+		}
+		try (final InputStream in = entity.getContent( ))
+		{
+			return summary( in, entity.getContentType( ) != null ? entity.getContentType( ).getValue( ) : null,
+				entity.getContentLength( ), limit );
+		}
+	}
+
+	/**
+	 * Summarizes a body for an error message; binary bodies are not read at all. The stream is not closed.
+	 *
+	 * @param in the body, may be null
+	 * @param contentType the content type of the body, null if unknown
+	 * @param contentLength the length of the body, a negative value if unknown
+	 * @param limit the maximum number of bytes to read
+	 * @return the summary, empty if there is no body
+	 * @throws IOException
+	 */
+	public static String summary( final InputStream in, final String contentType, final long contentLength,
+		final int limit ) throws IOException
+	{
+		if ( in == null || contentLength == 0 )
+		{
+			return "";
+		}
+		final String mimeType = mimeType( contentType );
+		if ( isText( mimeType ) == false )
+		{
+			abort( in );
+			return "[" + ( contentLength > 0 ? contentLength + " bytes" : "body" ) + " of " + mimeType + "]";
+		}
+		final Body body = read( in, limit );
+		final String text = body.text( charset( contentType ) );
+		final String summary;
+		if ( mimeType.contains( "html" ) )
+		{
+			summary = summarizeHtml( text );
+		}
+		else if ( mimeType.contains( "json" ) && body.truncated == false )
+		{
+			summary = summarizeJson( text );
+		}
+		else
+		{
+			summary = text.trim( );
+		}
+		return summary + truncationMarker( body, contentLength );
+	}
+
+	private static Body read( final InputStream in, final int limit ) throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream( Math.min( limit, BUFFER_SIZE ) );
+		final byte[ ] buf = new byte[ BUFFER_SIZE ];
+		while ( out.size( ) < limit )
+		{
+			final int c = in.read( buf, 0, Math.min( buf.length, limit - out.size( ) ) );
+			if ( c == -1 )
+			{
+				return new Body( out, false );
+			}
+			out.write( buf, 0, c );
+		}
+		final boolean truncated = in.read( ) != -1;
+		if ( truncated )
+		{
+			abort( in );
+		}
+		return new Body( out, truncated );
+	}
+
+	/**
+	 * Aborts the connection of a body which is not read to its end, closing the stream would read the rest
+	 */
+	private static void abort( final InputStream in ) throws IOException
+	{
+		if ( in instanceof ConnectionReleaseTrigger )
+		{
+			( ( ConnectionReleaseTrigger ) in ).abortConnection( );
+		}
+	}
+
+	private static String truncationMarker( final Body body, final long contentLength )
+	{
+		if ( body.truncated == false )
+		{
+			return "";
+		}
+		return " ... [truncated after " + body.bytes.size( ) + ( contentLength > 0 ? " of " + contentLength : "" ) +
+			" bytes]";
+	}
+
+	private static String summarizeHtml( final String html )
+	{
+		final Matcher title = HTML_TITLE.matcher( html );
+		final String text = collapse( HTML_TAG.matcher( HTML_SKIPPED.matcher( html ).replaceAll( " " ) )
+			.replaceAll( " " ) );
+		if ( title.find( ) )
+		{
+			final String titleText = collapse( HTML_TAG.matcher( title.group( 1 ) ).replaceAll( " " ) );
+			return text.startsWith( titleText ) ? text : titleText + ": " + text;
+		}
+		return text;
+	}
+
+	private static String summarizeJson( final String json )
+	{
+		try
+		{
+			final JSONObject object = new JSONObject( json );
+			for ( final String key : new String[ ] { "message", "error_description", "error" } )
+			{
+				if ( object.optString( key ).isEmpty( ) == false )
+				{
+					return object.optString( key );
+				}
+			}
+		}
+		catch ( final JSONException e )
+		{
+			/* not an object, the body is used as it is */
+		}
+		return json.trim( );
+	}
+
+	private static String collapse( final String text )
+	{
+		return WHITESPACE.matcher( text.replace( "&nbsp;", " " ) ).replaceAll( " " ).trim( );
+	}
+
+	private static String mimeType( final String contentType )
+	{
+		if ( contentType == null || contentType.trim( ).isEmpty( ) )
+		{
+			return "text/plain";
+		}
+		final int separator = contentType.indexOf( ';' );
+		return ( separator < 0 ? contentType : contentType.substring( 0, separator ) ).trim( )
+			.toLowerCase( Locale.ENGLISH );
+	}
+
+	private static boolean isText( final String mimeType )
+	{
+		return mimeType.startsWith( "text/" ) || mimeType.contains( "json" ) || mimeType.contains( "xml" ) ||
+			mimeType.contains( "javascript" ) || mimeType.equals( "application/x-www-form-urlencoded" );
+	}
+
+	private static Charset charset( final String contentType )
+	{
+		try
+		{
+			final Charset charset = contentType != null ? ContentType.parse( contentType ).getCharset( ) : null;
+			return charset != null ? charset : StandardCharsets.UTF_8;
+		}
+		catch ( final RuntimeException e )
+		{
+			/* unknown or malformed charset */
+			return StandardCharsets.UTF_8;
+		}
+	}
+
+	/** the bytes read of a body */
+	private static final class Body
+	{
+		private final ByteArrayOutputStream bytes;
+		private final boolean truncated;
+
+		Body( final ByteArrayOutputStream bytes, final boolean truncated )
+		{
+			this.bytes = bytes;
+			this.truncated = truncated;
+		}
+
+		String text( final Charset charset )
+		{
+			return new String( this.bytes.toByteArray( ), charset );
+		}
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries requests with exponential backoff and jitter. Only idempotent requests are retried; a request is retried if
+ * it failed with one of the retryable status codes (signaled by throwing a {@link HttpResponseException}) or with a
+ * transient network error.
+ *
+ * @author thum
+ */
+public class RetryPolicy
+{
+	/**
+	 * A single attempt of a request
+	 *
+	 * @param <T> the result type
+	 */
+	@FunctionalInterface
+	public interface Attempt<T>
+	{
+		/**
+		 * @param attemptNo the number of this attempt, starting with 1
+		 * @param deadline the timeouts and deadline of this attempt
+		 * @return the result of the request
+		 * @throws IOException
+		 * @throws MojoExecutionException on errors which must not be retried
+		 */
+		T run( int attemptNo, RequestDeadline deadline ) throws IOException, MojoExecutionException;
+	}
+
+	private final int maxAttempts;
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+	private final Set<Integer> retryableStatusCodes;
+	private final int attemptTimeoutMillis;
+
+	/**
+	 * @param maxAttempts maximum number of attempts per request (1 disables retries)
+	 * @param initialBackoffMillis the backoff before the first retry, doubled for each further retry
+	 * @param maxBackoffMillis upper bound of the backoff
+	 * @param retryableStatusCodes the HTTP status codes to retry on
+	 * @param attemptTimeoutMillis maximum duration of a single attempt, 0 for no limit
+	 */
+	public RetryPolicy( final int maxAttempts, final long initialBackoffMillis, final long maxBackoffMillis,
+		final Set<Integer> retryableStatusCodes, final int attemptTimeoutMillis )
+	{
+		this.maxAttempts = Math.max( 1, maxAttempts );
+		this.initialBackoffMillis = Math.max( 0, initialBackoffMillis );
+		this.maxBackoffMillis = Math.max( this.initialBackoffMillis, maxBackoffMillis );
+		this.retryableStatusCodes = Collections.unmodifiableSet( new HashSet<>( retryableStatusCodes ) );
+		this.attemptTimeoutMillis = Math.max( 0, attemptTimeoutMillis );
+	}
+
+	/**
+	 * Parses a comma separated list of status codes, like "502,503,504"
+	 *
+	 * @param statusCodes the comma separated list
+	 * @return the set of status codes
+	 */
+	public static Set<Integer> parseStatusCodes( final String statusCodes )
+	{
+		final Set<Integer> result = new HashSet<>( );
+		if ( statusCodes != null )
+		{
+			for ( final String code : statusCodes.split( "," ) )
+			{
+				if ( code.trim( ).isEmpty( ) == false )
+				{
+					result.add( Integer.valueOf( code.trim( ) ) );
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Executes the given attempt until it succeeds, fails with an error which is not retryable, the maximum number
+	 * of attempts is reached or the deadline has passed
+	 *
+	 * @param operation name of the operation for logging, like "GET module asset"
+	 * @param idempotent whether the request may be repeated; non idempotent requests are executed exactly once
+	 * @param attempt the request to execute
+	 * @param deadline the timeouts and overall deadline of the request
+	 * @param metrics the metrics to record attempts and retries in
+	 * @param log the log
+	 * @return the result of the successful attempt
+	 * @throws IOException the error of the last attempt
+	 * @throws MojoExecutionException
+	 */
+	public <T> T execute( final String operation, final boolean idempotent, final Attempt<T> attempt,
+		final RequestDeadline deadline, final RequestMetrics metrics, final Log log )
+		throws IOException, MojoExecutionException
+	{
+		Objects.requireNonNull( attempt );
+		metrics.recordRequest( );
+		final int attempts = idempotent ? this.maxAttempts : 1;
+		for ( int attemptNo = 1;; attemptNo++ )
+		{
+			deadline.check( );
+			metrics.recordAttempt( );
+			final RequestDeadline attemptDeadline = deadline.forAttempt( this.attemptTimeoutMillis );
+			try
+			{
+				return attempt.run( attemptNo, attemptDeadline );
+			}
+			catch ( final IOException e )
+			{
+				final IOException error = deadline.translate( e );
+				if ( attemptNo >= attempts || isRetryable( error ) == false )
+				{
+					throw error;
+				}
+				final long delay = backoff( attemptNo );
+				if ( delay >= deadline.remainingMillis( ) )
+				{
+					log.warn( operation + " failed (" + e.getMessage( ) + "), no time left for a retry" );
+					throw error;
+				}
+				log.warn( operation + " failed (" + e.getMessage( ) + "), retrying in " + delay + "ms (attempt " +
+					( attemptNo + 1 ) + " of " + attempts + ")" );
+				metrics.recordRetry( delay );
+				sleep( delay );
+			}
+		}
+	}
+
+	/**
+	 * @param statusCode the HTTP status code
+	 * @return whether a response with the given status code should be retried
+	 */
+	public boolean isRetryableStatus( final int statusCode )
+	{
+		return this.retryableStatusCodes.contains( statusCode );
+	}
+
+	/**
+	 * @return maximum duration of a single attempt in milliseconds, 0 for no limit
+	 */
+	public int getAttemptTimeoutMillis( )
+	{
+		return this.attemptTimeoutMillis;
+	}
+
+	/**
+	 * @return maximum number of attempts per idempotent request
+	 */
+	public int getMaxAttempts( )
+	{
+		return this.maxAttempts;
+	}
+
+	private boolean isRetryable( final IOException e )
+	{
+		if ( e instanceof HttpResponseException )
+		{
+			return isRetryableStatus( ( ( HttpResponseException ) e ).getStatusCode( ) );
+		}
+		/* transient network errors; unknown hosts, SSL errors or exceeded deadlines will not change by retrying */
+		return e instanceof ConnectException || e instanceof ConnectTimeoutException ||
+			e instanceof SocketTimeoutException || e instanceof NoHttpResponseException ||
+			e instanceof SocketException;
+	}
+
+	/**
+	 * exponential backoff with "equal jitter": half of the delay is fixed, the other half is random
+	 */
+	long backoff( final int attemptNo )
+	{
+		final long exp = this.initialBackoffMillis << Math.min( attemptNo - 1, 20 );
+		final long delay = Math.min( this.maxBackoffMillis, exp );
+		final long half = delay / 2;
+		return half + ( half > 0 ? ThreadLocalRandom.current( ).nextLong( half + 1 ) : 0 );
+	}
+
+	private static void sleep( final long delay ) throws InterruptedIOException
+	{
+		try
+		{
+			Thread.sleep( delay );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new InterruptedIOException( "Interrupted while waiting for retry" );
+		}
+	}
+}
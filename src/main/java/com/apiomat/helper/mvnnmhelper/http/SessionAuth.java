@@ -0,0 +1,214 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import com.apiomat.helper.mvnnmhelper.trace.Span;
+import com.apiomat.helper.mvnnmhelper.trace.Tracer;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.maven.plugin.logging.Log;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The authorization of the requests of a build. Instead of sending the credentials with every request, which makes
+ * yambas check the password hash each time, the credentials are exchanged for a session token once per build session;
+ * all goals of the session, including goals executed by other goals and the goals of other reactor modules, share the
+ * token. A token rejected with 401 is exchanged again. If yambas does not support the exchange, the credentials are
+ * sent with every request like before.
+ *
+ * @author thum
+ */
+public final class SessionAuth
+{
+	/**
+	 * Thrown if yambas rejected an expired session token; the request may be repeated with a new token
+	 */
+	public static class TokenExpiredException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		TokenExpiredException( )
+		{
+			super( "Session token rejected by yambas" );
+		}
+	}
+
+	/** the tokens of the running build sessions, by session and credentials */
+	private static final Map<Object, Map<String, SessionAuth>> SESSIONS =
+		Collections.synchronizedMap( new WeakHashMap<>( ) );
+
+	/** a token is exchanged again shortly before it expires, so it does not expire during a request */
+	private static final long EXPIRY_MARGIN_MILLIS = 30000;
+
+	private final String basicAuthorization;
+	private final URI tokenUri;
+	private final String system;
+	private String tokenAuthorization;
+	private long expiresAt;
+	private boolean unsupported;
+	private int exchanges;
+
+	private SessionAuth( final String basicAuthorization, final URI tokenUri, final String system )
+	{
+		this.basicAuthorization = basicAuthorization;
+		this.tokenUri = tokenUri;
+		this.system = system;
+	}
+
+	/**
+	 * @param basicAuthorization the value of the authorization header with the credentials
+	 * @return an authorization sending the credentials with every request
+	 */
+	public static SessionAuth basic( final String basicAuthorization )
+	{
+		return new SessionAuth( basicAuthorization, null, null );
+	}
+
+	/**
+	 * @param session the build session; null to not share the token
+	 * @param tokenUri the resource to exchange the credentials for a token at
+	 * @param basicAuthorization the value of the authorization header with the credentials
+	 * @param system the system the requests are sent to
+	 * @return the authorization shared by all goals of the session with the same credentials
+	 */
+	public static SessionAuth forSession( final Object session, final URI tokenUri, final String basicAuthorization,
+		final String system )
+	{
+		if ( session == null )
+		{
+			return new SessionAuth( basicAuthorization, tokenUri, system );
+		}
+		final String key = tokenUri + "\n" + system + "\n" + basicAuthorization;
+		synchronized ( SESSIONS )
+		{
+			return SESSIONS.computeIfAbsent( session, s -> new HashMap<>( ) )
+				.computeIfAbsent( key, k -> new SessionAuth( basicAuthorization, tokenUri, system ) );
+		}
+	}
+
+	/**
+	 * Returns the value of the authorization header, exchanging the credentials for a token if there is no valid one
+	 *
+	 * @param deadline the timeouts for the exchange
+	 * @param log the log
+	 * @return the value of the authorization header, either with the session token or with the credentials
+	 */
+	public synchronized String authorization( final RequestDeadline deadline, final Log log )
+	{
+		if ( this.tokenUri == null || this.unsupported )
+		{
+			return this.basicAuthorization;
+		}
+		if ( this.tokenAuthorization != null &&
+			( this.expiresAt == 0 || System.currentTimeMillis( ) < this.expiresAt - EXPIRY_MARGIN_MILLIS ) )
+		{
+			return this.tokenAuthorization;
+		}
+		try (final Span span = Tracer.start( "session token exchange" ).setKind( Span.KIND_CLIENT ))
+		{
+			try
+			{
+				exchange( deadline );
+				log.debug( "Exchanged credentials for a session token" );
+				return this.tokenAuthorization;
+			}
+			catch ( final HttpResponseException | JSONException e )
+			{
+				span.recordError( e );
+				this.unsupported = true;
+				log.info( "Session tokens are not supported by yambas (" + e.getMessage( ) +
+					"), sending the credentials with every request" );
+			}
+			catch ( final IOException e )
+			{
+				span.recordError( e );
+				log.warn( "Could not get a session token (" + e.getMessage( ) + "), sending the credentials" );
+			}
+		}
+		return this.basicAuthorization;
+	}
+
+	private void exchange( final RequestDeadline deadline ) throws IOException
+	{
+		this.exchanges++;
+		final Request request = Request.Post( this.tokenUri ).connectTimeout( deadline.connectTimeout( ) )
+			.socketTimeout( deadline.readTimeout( ) ).addHeader( "Authorization", this.basicAuthorization )
+			.bodyForm( new BasicNameValuePair( "grant_type", "aom_customer" ) );
+		if ( this.system != null )
+		{
+			request.addHeader( "X-apiomat-system", this.system );
+		}
+		Tracer.propagate( request::addHeader );
+		final JSONObject token = HttpTransport.get( ).executor( ).execute( request ).handleResponse( response -> {
+			final int statusCode = response.getStatusLine( ).getStatusCode( );
+			if ( statusCode != 200 )
+			{
+				final String summary = ResponseBody.summary( response.getEntity( ), ResponseBody.DEFAULT_LIMIT );
+				throw new HttpResponseException( statusCode,
+					response.getStatusLine( ).getReasonPhrase( ) + ( summary.isEmpty( ) ? "" : ": " + summary ) );
+			}
+			/* a token response is small, a larger body is truncated and fails to parse */
+			return new JSONObject( ResponseBody.text( response.getEntity( ), ResponseBody.DEFAULT_LIMIT ) );
+		} );
+		this.tokenAuthorization = token.optString( "token_type", "Bearer" ) + " " + token.getString( "access_token" );
+		final long expiresIn = token.optLong( "expires_in" );
+		this.expiresAt = expiresIn > 0 ? System.currentTimeMillis( ) + TimeUnit.SECONDS.toMillis( expiresIn ) : 0;
+	}
+
+	/**
+	 * Checks whether a request was rejected because of an expired session token; the token is dropped then
+	 *
+	 * @param statusCode the status code of the response
+	 * @param authorization the authorization the request was sent with
+	 * @throws TokenExpiredException if the request has to be repeated with a new token
+	 */
+	public void checkAuthorized( final int statusCode, final String authorization ) throws TokenExpiredException
+	{
+		if ( statusCode == 401 && invalidate( authorization ) )
+		{
+			throw new TokenExpiredException( );
+		}
+	}
+
+	private synchronized boolean invalidate( final String authorization )
+	{
+		if ( authorization == null || authorization.equals( this.tokenAuthorization ) == false )
+		{
+			/* the credentials themselves were rejected, or another request already dropped the token */
+			return authorization != null && authorization.equals( this.basicAuthorization ) == false;
+		}
+		this.tokenAuthorization = null;
+		return true;
+	}
+
+	/**
+	 * @return how often the credentials were exchanged for a token
+	 */
+	synchronized int getExchanges( )
+	{
+		return this.exchanges;
+	}
+}
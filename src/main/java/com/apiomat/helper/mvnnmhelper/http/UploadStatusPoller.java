@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import com.apiomat.helper.mvnnmhelper.trace.Tracer;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.fluent.Request;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for yambas to finish processing an upload which was accepted asynchronously. The status resource answers
+ * 202 while the module is compiled, 200, 201 or 204 when it is done and an error status with the reason if it failed.
+ * Each poll asks the server to hold the request until the state changes (Prefer: wait, RFC 7240); servers without
+ * long polling answer immediately and are polled again after the Retry-After header or the configured interval.
+ *
+ * @author thum
+ */
+public final class UploadStatusPoller
+{
+	/** longest wait requested from the server per poll */
+	static final int LONG_POLL_SECONDS = 30;
+
+	private final URI statusUri;
+	private final SessionAuth auth;
+	private final long pollIntervalMillis;
+
+	/**
+	 * @param statusUri the status resource of the upload
+	 * @param auth the authorization of the polls
+	 * @param pollIntervalMillis the interval between two polls if the server does not send a Retry-After header
+	 */
+	public UploadStatusPoller( final URI statusUri, final SessionAuth auth, final long pollIntervalMillis )
+	{
+		this.statusUri = Objects.requireNonNull( statusUri );
+		this.auth = Objects.requireNonNull( auth );
+		this.pollIntervalMillis = Math.max( 1, pollIntervalMillis );
+	}
+
+	/**
+	 * Polls the status resource until the upload is processed
+	 *
+	 * @param retryPolicy the policy to retry single polls with
+	 * @param deadline the deadline of the whole wait
+	 * @param metrics the metrics to record the polls in
+	 * @param log the log
+	 * @return the number of polls
+	 * @throws IOException if a poll failed, processing the upload failed (signaled with a
+	 *         {@link HttpResponseException} containing the reason) or the deadline was exceeded
+	 * @throws MojoExecutionException
+	 */
+	public int await( final RetryPolicy retryPolicy, final RequestDeadline deadline, final RequestMetrics metrics,
+		final Log log ) throws IOException, MojoExecutionException
+	{
+		boolean tokenRenewed = false;
+		for ( int polls = 1;; polls++ )
+		{
+			final Status status;
+			try
+			{
+				status = retryPolicy.execute( "Status of upload", true,
+					( attemptNo, attemptDeadline ) -> poll( attemptDeadline, metrics, log ), deadline, metrics, log );
+			}
+			catch ( final SessionAuth.TokenExpiredException e )
+			{
+				/* the session token expired while waiting, poll again once with a new one */
+				if ( tokenRenewed )
+				{
+					throw e;
+				}
+				tokenRenewed = true;
+				continue;
+			}
+			tokenRenewed = false;
+			if ( status.statusCode != 202 )
+			{
+				log.debug( "Upload processed after " + polls + " polls" );
+				return polls;
+			}
+			final long delay = Math.min( status.retryAfterMillis >= 0 ? status.retryAfterMillis :
+				this.pollIntervalMillis, deadline.remainingMillis( ) );
+			log.debug( "Upload still processing, polling again in " + delay + "ms" );
+			sleep( delay );
+			deadline.check( );
+		}
+	}
+
+	private Status poll( final RequestDeadline attemptDeadline, final RequestMetrics metrics, final Log log )
+		throws IOException
+	{
+		/* the server must answer well before the read timeout, otherwise a held request would time out */
+		final int readTimeout = attemptDeadline.readTimeout( );
+		final long waitSeconds = readTimeout > 0 ?
+			Math.min( LONG_POLL_SECONDS, TimeUnit.MILLISECONDS.toSeconds( readTimeout / 2 ) ) : LONG_POLL_SECONDS;
+		final Request request = Request.Get( this.statusUri ).connectTimeout( attemptDeadline.connectTimeout( ) )
+			.socketTimeout( readTimeout ).addHeader( "Prefer", "wait=" + waitSeconds );
+		final String authorization = this.auth.authorization( attemptDeadline, log );
+		request.addHeader( "Authorization", authorization );
+		Tracer.propagate( request::addHeader );
+		return HttpTransport.get( ).executor( ).execute( request )
+			.handleResponse( response -> toStatus( response, authorization, metrics ) );
+	}
+
+	private Status toStatus( final HttpResponse response, final String authorization, final RequestMetrics metrics )
+		throws IOException
+	{
+		final int statusCode = response.getStatusLine( ).getStatusCode( );
+		metrics.recordStatusCode( statusCode );
+		this.auth.checkAuthorized( statusCode, authorization );
+		if ( statusCode == 202 || statusCode == 200 || statusCode == 201 || statusCode == 204 )
+		{
+			return new Status( statusCode, retryAfterMillis( response.getFirstHeader( "Retry-After" ) ) );
+		}
+		throw new HttpResponseException( statusCode, "Processing the upload failed: " +
+			response.getStatusLine( ).getReasonPhrase( ) + "(" + statusCode + ") Reason: " +
+			ResponseBody.summary( response.getEntity( ), ResponseBody.DEFAULT_LIMIT ) );
+	}
+
+	/**
+	 * @param header the Retry-After header
+	 * @return the delay in milliseconds, -1 if the header is missing or not a number of seconds
+	 */
+	static long retryAfterMillis( final Header header )
+	{
+		if ( header == null )
+		{
+			return -1;
+		}
+		try
+		{
+			return TimeUnit.SECONDS.toMillis( Math.max( 0, Long.parseLong( header.getValue( ).trim( ) ) ) );
+		}
+		catch ( final NumberFormatException e )
+		{
+			/* HTTP dates are not worth parsing here, fall back to the poll interval */
+			return -1;
+		}
+	}
+
+	private static void sleep( final long delay ) throws InterruptedIOException
+	{
+		try
+		{
+			Thread.sleep( Math.max( 0, delay ) );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new InterruptedIOException( "Interrupted while waiting for the upload to be processed" );
+		}
+	}
+
+	/** the answer of a single poll */
+	private static final class Status
+	{
+		private final int statusCode;
+		private final long retryAfterMillis;
+
+		Status( final int statusCode, final long retryAfterMillis )
+		{
+			this.statusCode = statusCode;
+			this.retryAfterMillis = retryAfterMillis;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.migration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Base class for migrations with fixed id, version and file scopes
+ *
+ * @author thum
+ */
+public abstract class AbstractMigration implements Migration
+{
+	private final String id;
+	private final int[ ] targetVersion;
+	private final int order;
+	private final String description;
+	private final Set<String> fileScopes;
+
+	/**
+	 * @param id the unique id
+	 * @param targetVersion the version this migration updates to
+	 * @param order the order among the migrations of the same version
+	 * @param description a short description
+	 * @param fileScopes the files and directories the migration touches, relative to the module root
+	 */
+	protected AbstractMigration( final String id, final int[ ] targetVersion, final int order,
+		final String description, final String... fileScopes )
+	{
+		this.id = id;
+		this.targetVersion = targetVersion.clone( );
+		this.order = order;
+		this.description = description;
+		this.fileScopes = Collections.unmodifiableSet( new LinkedHashSet<>( Arrays.asList( fileScopes ) ) );
+	}
+
+	@Override
+	public String getId( )
+	{
+		return this.id;
+	}
+
+	@Override
+	public int[ ] getTargetVersion( )
+	{
+		return this.targetVersion.clone( );
+	}
+
+	@Override
+	public int getOrder( )
+	{
+		return this.order;
+	}
+
+	@Override
+	public String getDescription( )
+	{
+		return this.description;
+	}
+
+	@Override
+	public Set<String> getFileScopes( )
+	{
+		return this.fileScopes;
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.migration;
+
+import com.apiomat.helper.mvnnmhelper.UpdatePlan;
+
+import java.io.IOException;
+
+/**
+ * Disables the deprecated beforeGet methods in hook classes for 3.3.0
+ *
+ * @author thum
+ */
+public class CleanHookClasses330 extends AbstractMigration
+{
+	/**
+	 * Constructor
+	 */
+	public CleanHookClasses330( )
+	{
+		super( "3.3.0-hook-classes", new int[ ] { 3, 3, 0 }, 1, "disable deprecated methods in hook classes",
+			"src/com/apiomat/nativemodule" );
+	}
+
+	@Override
+	public boolean isRequired( final MigrationContext context ) throws IOException
+	{
+		return context.createUpdateManager( ).needsHookClassCleanup330( );
+	}
+
+	@Override
+	public void migrate( final MigrationContext context )
+	{
+		try
+		{
+			context.createUpdateManager( ).cleanHookClassesFor330( );
+		}
+		catch ( final Exception e )
+		{
+			/* not critical, the module can still be built */
+			context.getLog( ).info( "Error cleaning Hook Classes for version 3.3.0. Reason: " + e.toString( ) );
+		}
+	}
+
+	@Override
+	public void plan( final MigrationContext context, final UpdatePlan plan ) throws IOException
+	{
+		context.createUpdateManager( ).planCleanHookClassesFor330( plan );
+	}
+}
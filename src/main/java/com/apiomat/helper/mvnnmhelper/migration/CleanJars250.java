@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.migration;
+
+import com.apiomat.helper.mvnnmhelper.UpdatePlan;
+
+import java.io.IOException;
+
+/**
+ * Replaces the jars which had been changed for 2.5.0 and updates the .classpath and pom.xml
+ *
+ * @author thum
+ */
+public class CleanJars250 extends AbstractMigration
+{
+	/**
+	 * Constructor
+	 */
+	public CleanJars250( )
+	{
+		super( "2.5.0-jars", new int[ ] { 2, 5, 0 }, 1, "replace changed jars", "lib", ".classpath", "pom.xml" );
+	}
+
+	@Override
+	public boolean isRequired( final MigrationContext context ) throws IOException
+	{
+		return context.createUpdateManager( ).needsJarCleanup250( );
+	}
+
+	@Override
+	public void migrate( final MigrationContext context ) throws IOException
+	{
+		context.createUpdateManager( ).cleanJarsFor250( );
+	}
+
+	@Override
+	public void plan( final MigrationContext context, final UpdatePlan plan ) throws IOException
+	{
+		context.createUpdateManager( ).planCleanJarsFor250( plan );
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.migration;
+
+import com.apiomat.helper.mvnnmhelper.UpdatePlan;
+
+import java.util.Set;
+
+/**
+ * A single step migrating a module to a yambas version. Migrations are discovered with the
+ * {@link java.util.ServiceLoader}, so new migrations are added by listing them in
+ * META-INF/services/com.apiomat.helper.mvnnmhelper.migration.Migration.
+ *
+ * @author thum
+ */
+public interface Migration
+{
+	/**
+	 * @return unique id of the migration, like "3.3.0-jars"
+	 */
+	String getId( );
+
+	/**
+	 * @return the yambas version this migration updates to, as (major, minor, hotfix)
+	 */
+	int[ ] getTargetVersion( );
+
+	/**
+	 * @return the order of the migration among the migrations of the same target version
+	 */
+	default int getOrder( )
+	{
+		return 0;
+	}
+
+	/**
+	 * @return a short description for the log
+	 */
+	String getDescription( );
+
+	/**
+	 * The files and directories this migration reads or writes, relative to the module root and separated with "/".
+	 * Migrations whose scopes do not overlap may run in parallel.
+	 *
+	 * @return the file scopes
+	 */
+	Set<String> getFileScopes( );
+
+	/**
+	 * Checks the precondition of this migration; migrations which are not required (e.g. because the module was
+	 * already migrated) are skipped
+	 *
+	 * @param context the module to migrate
+	 * @return whether the migration has to be executed
+	 * @throws Exception
+	 */
+	boolean isRequired( MigrationContext context ) throws Exception;
+
+	/**
+	 * Executes the migration
+	 *
+	 * @param context the module to migrate
+	 * @throws Exception
+	 */
+	void migrate( MigrationContext context ) throws Exception;
+
+	/**
+	 * Adds the file operations of this migration to the given plan without changing the module; executing the plan
+	 * has to have the same effect as {@link #migrate(MigrationContext)}, so every migration can be planned
+	 *
+	 * @param context the module to migrate
+	 * @param plan the plan, already containing the operations of the previous migrations
+	 * @throws Exception
+	 */
+	void plan( MigrationContext context, UpdatePlan plan ) throws Exception;
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.migration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ordered migrations to execute for an update, grouped into layers. The migrations of a layer have disjoint file
+ * scopes and may run in parallel; the layers are executed one after another.
+ *
+ * @author thum
+ */
+public final class MigrationChain
+{
+	private final List<List<Migration>> layers;
+
+	MigrationChain( final List<List<Migration>> layers )
+	{
+		final List<List<Migration>> copy = new ArrayList<>( );
+		for ( final List<Migration> layer : layers )
+		{
+			copy.add( Collections.unmodifiableList( new ArrayList<>( layer ) ) );
+		}
+		this.layers = Collections.unmodifiableList( copy );
+	}
+
+	/**
+	 * @return the layers of migrations
+	 */
+	public List<List<Migration>> getLayers( )
+	{
+		return this.layers;
+	}
+
+	/**
+	 * @return all migrations in execution order
+	 */
+	public List<Migration> getMigrations( )
+	{
+		final List<Migration> migrations = new ArrayList<>( );
+		this.layers.forEach( migrations::addAll );
+		return migrations;
+	}
+
+	/**
+	 * @return whether there is nothing to migrate
+	 */
+	public boolean isEmpty( )
+	{
+		return this.layers.isEmpty( );
+	}
+
+	@Override
+	public String toString( )
+	{
+		final StringBuilder sb = new StringBuilder( );
+		for ( final List<Migration> layer : this.layers )
+		{
+			sb.append( sb.length( ) > 0 ? " -> " : "" ).append( '[' );
+			for ( int i = 0; i < layer.size( ); i++ )
+			{
+				sb.append( i > 0 ? ", " : "" ).append( layer.get( i ).getId( ) );
+			}
+			sb.append( ']' );
+		}
+		return sb.toString( );
+	}
+}
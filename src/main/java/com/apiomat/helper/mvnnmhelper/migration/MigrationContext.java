@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.migration;
+
+import com.apiomat.helper.mvnnmhelper.JarManifestCache;
+import com.apiomat.helper.mvnnmhelper.ModuleUpdateManager;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * The module a {@link Migration} is executed on
+ *
+ * @author thum
+ */
+public final class MigrationContext
+{
+	private final File moduleDir;
+	private final String moduleName;
+	private final Log log;
+	private final JarManifestCache manifestCache;
+
+	/**
+	 * @param moduleDir the root directory of the module
+	 * @param moduleName the name of the module
+	 * @param log the log
+	 */
+	public MigrationContext( final File moduleDir, final String moduleName, final Log log )
+	{
+		this( moduleDir, moduleName, log, JarManifestCache.inMemory( ) );
+	}
+
+	/**
+	 * @param moduleDir the root directory of the module
+	 * @param moduleName the name of the module
+	 * @param log the log
+	 * @param manifestCache the cache for jar manifests, may be shared with other modules
+	 */
+	public MigrationContext( final File moduleDir, final String moduleName, final Log log,
+		final JarManifestCache manifestCache )
+	{
+		this.moduleDir = Objects.requireNonNull( moduleDir );
+		this.moduleName = moduleName;
+		this.log = Objects.requireNonNull( log );
+		this.manifestCache = Objects.requireNonNull( manifestCache );
+	}
+
+	/**
+	 * @return the root directory of the module
+	 */
+	public File getModuleDir( )
+	{
+		return this.moduleDir;
+	}
+
+	/**
+	 * @return the name of the module
+	 */
+	public String getModuleName( )
+	{
+		return this.moduleName;
+	}
+
+	/**
+	 * @return the log
+	 */
+	public Log getLog( )
+	{
+		return this.log;
+	}
+
+	/**
+	 * @return the cache for jar manifests
+	 */
+	public JarManifestCache getManifestCache( )
+	{
+		return this.manifestCache;
+	}
+
+	/**
+	 * @return a new update manager for the module
+	 */
+	public ModuleUpdateManager createUpdateManager( )
+	{
+		return new ModuleUpdateManager( this.moduleDir, this.moduleName, this.log, this.manifestCache );
+	}
+
+	/**
+	 * @param otherLog the log to use
+	 * @return a context for the same module using the given log
+	 */
+	public MigrationContext withLog( final Log otherLog )
+	{
+		return new MigrationContext( this.moduleDir, this.moduleName, otherLog, this.manifestCache );
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.migration;
+
+import com.apiomat.helper.mvnnmhelper.PrefixedLog;
+import com.apiomat.helper.mvnnmhelper.UpdatePlan;
+import com.apiomat.helper.mvnnmhelper.trace.Span;
+import com.apiomat.helper.mvnnmhelper.trace.Tracer;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes a {@link MigrationChain} on a module. Migrations whose precondition is already satisfied are skipped, the
+ * migrations of one layer run in parallel.
+ *
+ * @author thum
+ */
+public class MigrationEngine
+{
+	private final int threads;
+
+	/**
+	 * @param threads the maximum number of migrations executed in parallel
+	 */
+	public MigrationEngine( final int threads )
+	{
+		this.threads = Math.max( 1, threads );
+	}
+
+	/**
+	 * Executes the given migrations
+	 *
+	 * @param chain the migrations
+	 * @param context the module to migrate
+	 * @return the ids of the executed migrations
+	 * @throws MojoExecutionException if a migration failed; the following layers are not executed
+	 */
+	public List<String> run( final MigrationChain chain, final MigrationContext context )
+		throws MojoExecutionException
+	{
+		final List<String> executed = new ArrayList<>( );
+		ExecutorService pool = null;
+		try
+		{
+			for ( final List<Migration> layer : chain.getLayers( ) )
+			{
+				if ( layer.size( ) == 1 || this.threads == 1 )
+				{
+					for ( final Migration migration : layer )
+					{
+						if ( execute( migration, context, Tracer.current( ) ) )
+						{
+							executed.add( migration.getId( ) );
+						}
+					}
+					continue;
+				}
+				if ( pool == null )
+				{
+					pool = createPool( );
+				}
+				final List<Future<Boolean>> futures = new ArrayList<>( );
+				final Span parent = Tracer.current( );
+				for ( final Migration migration : layer )
+				{
+					final MigrationContext stepContext =
+						context.withLog( new PrefixedLog( context.getLog( ), "[" + migration.getId( ) + "] " ) );
+					futures.add( pool.submit( ( ) -> execute( migration, stepContext, parent ) ) );
+				}
+				MojoExecutionException failure = null;
+				for ( int i = 0; i < futures.size( ); i++ )
+				{
+					try
+					{
+						if ( futures.get( i ).get( ) )
+						{
+							executed.add( layer.get( i ).getId( ) );
+						}
+					}
+					catch ( final ExecutionException e )
+					{
+						if ( failure == null )
+						{
+							/* execute only throws MojoExecutionExceptions, but a step may fail with an Error */
+							final Throwable cause = e.getCause( );
+							failure = cause instanceof MojoExecutionException ? ( MojoExecutionException ) cause :
+								new MojoExecutionException( "Migration " + layer.get( i ).getId( ) + " failed", cause );
+						}
+					}
+					catch ( final InterruptedException e )
+					{
+						Thread.currentThread( ).interrupt( );
+						throw new MojoExecutionException( "Interrupted while migrating", e );
+					}
+				}
+				if ( failure != null )
+				{
+					throw failure;
+				}
+			}
+		}
+		finally
+		{
+			if ( pool != null )
+			{
+				pool.shutdownNow( );
+			}
+		}
+		return executed;
+	}
+
+	/**
+	 * Plans the given migrations without changing the module; the migrations are planned one after another, each on
+	 * top of the operations of the previous ones, and the precondition checks are not needed
+	 *
+	 * @param chain the migrations
+	 * @param context the module to migrate
+	 * @return the plan
+	 * @throws MojoExecutionException if a migration could not be planned
+	 */
+	public UpdatePlan plan( final MigrationChain chain, final MigrationContext context )
+		throws MojoExecutionException
+	{
+		final UpdatePlan plan = new UpdatePlan( context.getModuleDir( ) );
+		for ( final Migration migration : chain.getMigrations( ) )
+		{
+			final int actions = plan.getActions( ).size( );
+			try
+			{
+				migration.plan( context, plan );
+			}
+			catch ( final Exception e )
+			{
+				throw new MojoExecutionException( "Planning migration " + migration.getId( ) + " failed", e );
+			}
+			if ( plan.getActions( ).size( ) > actions )
+			{
+				plan.addMigration( migration.getId( ) );
+			}
+		}
+		return plan;
+	}
+
+	private static boolean execute( final Migration migration, final MigrationContext context, final Span parent )
+		throws MojoExecutionException
+	{
+		final int[ ] version = migration.getTargetVersion( );
+		final String target = version[ 0 ] + "." + version[ 1 ] + "." + version[ 2 ];
+		/* the migrations of a layer run on other threads, so the parent is passed explicitly */
+		try (final Span span = Tracer.start( "migration " + migration.getId( ), parent ))
+		{
+			span.setAttribute( "nm.target", target );
+			try
+			{
+				if ( migration.isRequired( context ) == false )
+				{
+					context.getLog( ).info(
+						"Skipping " + migration.getId( ) + " (" + target + "), already up to date" );
+					span.setAttribute( "nm.skipped", true );
+					return false;
+				}
+				context.getLog( ).info( "Updating to " + target + ": " + migration.getDescription( ) );
+				migration.migrate( context );
+				return true;
+			}
+			catch ( final MojoExecutionException e )
+			{
+				span.recordError( e );
+				throw e;
+			}
+			catch ( final Exception e )
+			{
+				span.recordError( e );
+				throw new MojoExecutionException( "Migration " + migration.getId( ) + " failed", e );
+			}
+		}
+	}
+
+	private ExecutorService createPool( )
+	{
+		final AtomicInteger threadNo = new AtomicInteger( );
+		return Executors.newFixedThreadPool( this.threads, r -> {
+			final Thread thread = new Thread( r, "nm-migration-step-" + threadNo.incrementAndGet( ) );
+			thread.setDaemon( true );
+			return thread;
+		} );
+	}
+}
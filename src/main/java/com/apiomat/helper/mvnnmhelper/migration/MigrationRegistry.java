@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.migration;
+
+import com.apiomat.helper.mvnnmhelper.NMVersion;
+import com.apiomat.helper.mvnnmhelper.NMVersionRange;
+import com.apiomat.helper.mvnnmhelper.PackedVersion;
+import com.apiomat.helper.mvnnmhelper.VersionCompareHelper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Registry of all known {@link Migration}s, which computes the chain of migrations for an update
+ *
+ * @author thum
+ */
+public final class MigrationRegistry
+{
+	private static final Comparator<Migration> ORDER = ( a, b ) -> {
+		int cmp = PackedVersion.compare( PackedVersion.of( a.getTargetVersion( ) ),
+			PackedVersion.of( b.getTargetVersion( ) ) );
+		if ( cmp != 0 )
+		{
+			return cmp;
+		}
+		cmp = Integer.compare( a.getOrder( ), b.getOrder( ) );
+		return cmp != 0 ? cmp : a.getId( ).compareTo( b.getId( ) );
+	};
+
+	private final List<Migration> migrations;
+
+	/**
+	 * @param migrations the migrations
+	 * @throws IllegalArgumentException if two migrations have the same id
+	 */
+	public MigrationRegistry( final Collection<? extends Migration> migrations )
+	{
+		final Set<String> ids = new HashSet<>( );
+		for ( final Migration migration : migrations )
+		{
+			if ( ids.add( migration.getId( ) ) == false )
+			{
+				throw new IllegalArgumentException( "Duplicate migration " + migration.getId( ) );
+			}
+		}
+		final List<Migration> sorted = new ArrayList<>( migrations );
+		sorted.sort( ORDER );
+		this.migrations = Collections.unmodifiableList( sorted );
+	}
+
+	/**
+	 * Loads all migrations registered as service
+	 *
+	 * @param classLoader the class loader to load the migrations with
+	 * @return the registry
+	 */
+	public static MigrationRegistry load( final ClassLoader classLoader )
+	{
+		final List<Migration> migrations = new ArrayList<>( );
+		ServiceLoader.load( Migration.class, classLoader ).forEach( migrations::add );
+		return new MigrationRegistry( migrations );
+	}
+
+	/**
+	 * @return all migrations, ordered by target version
+	 */
+	public List<Migration> getMigrations( )
+	{
+		return this.migrations;
+	}
+
+	/**
+	 * Computes the migrations to execute for an update. A migration is applicable if its target version is newer than
+	 * the version to update from and not newer than the version to update to.
+	 *
+	 * @param fromVersion the version to update from
+	 * @param toVersion the version to update to
+	 * @return the chain of applicable migrations
+	 */
+	public MigrationChain chain( final int[ ] fromVersion, final int[ ] toVersion )
+	{
+		/* the patch level never selected migrations */
+		return chain( PackedVersion.of( fromVersion[ 0 ], fromVersion[ 1 ], fromVersion[ 2 ], 0 ),
+			PackedVersion.of( toVersion[ 0 ], toVersion[ 1 ], toVersion[ 2 ], 0 ) );
+	}
+
+	/**
+	 * Computes the migrations to execute for an update, see {@link #chain(int[], int[])}
+	 *
+	 * @param fromVersion the packed version to update from
+	 * @param toVersion the packed version to update to
+	 * @return the chain of applicable migrations
+	 */
+	public MigrationChain chain( final long fromVersion, final long toVersion )
+	{
+		return chain( migration -> {
+			final long target = PackedVersion.of( migration.getTargetVersion( ) );
+			return VersionCompareHelper.isNewer( fromVersion, target ) &&
+				VersionCompareHelper.isNewerOrEqual( target, toVersion );
+		} );
+	}
+
+	/**
+	 * Computes the migrations to execute for an update; a migration is applicable if its target version is within the
+	 * range. The range of an update from one version to another is {@link NMVersionRange#between}.
+	 *
+	 * @param range the range of target versions to migrate to
+	 * @return the chain of applicable migrations
+	 */
+	public MigrationChain chain( final NMVersionRange range )
+	{
+		return chain( migration -> range.contains( NMVersion.of( migration.getTargetVersion( ) ) ) );
+	}
+
+	private MigrationChain chain( final Predicate<Migration> isApplicable )
+	{
+		final List<Migration> applicable = new ArrayList<>( );
+		for ( final Migration migration : this.migrations )
+		{
+			if ( isApplicable.test( migration ) )
+			{
+				applicable.add( migration );
+			}
+		}
+		/* each migration runs in the layer after the last migration before it whose files it touches */
+		final List<List<Migration>> layers = new ArrayList<>( );
+		final int[ ] layerOf = new int[ applicable.size( ) ];
+		for ( int i = 0; i < applicable.size( ); i++ )
+		{
+			int layer = 0;
+			for ( int j = 0; j < i; j++ )
+			{
+				if ( overlaps( applicable.get( i ), applicable.get( j ) ) )
+				{
+					layer = Math.max( layer, layerOf[ j ] + 1 );
+				}
+			}
+			layerOf[ i ] = layer;
+			if ( layer == layers.size( ) )
+			{
+				layers.add( new ArrayList<>( ) );
+			}
+			layers.get( layer ).add( applicable.get( i ) );
+		}
+		return new MigrationChain( layers );
+	}
+
+	/**
+	 * @return whether the file scopes of the given migrations overlap; migrations without scopes overlap with all
+	 */
+	static boolean overlaps( final Migration a, final Migration b )
+	{
+		if ( a.getFileScopes( ).isEmpty( ) || b.getFileScopes( ).isEmpty( ) )
+		{
+			return true;
+		}
+		for ( final String scopeA : a.getFileScopes( ) )
+		{
+			for ( final String scopeB : b.getFileScopes( ) )
+			{
+				if ( isWithin( scopeA, scopeB ) || isWithin( scopeB, scopeA ) )
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isWithin( final String path, final String parent )
+	{
+		return path.equals( parent ) || path.startsWith( parent.endsWith( "/" ) ? parent : parent + "/" );
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.migration;
+
+import com.apiomat.helper.mvnnmhelper.UpdatePlan;
+
+import java.io.IOException;
+
+/**
+ * Removes the static classes which are packaged into a jar since 2.5.0
+ *
+ * @author thum
+ */
+public class RemoveStaticClasses250 extends AbstractMigration
+{
+	/**
+	 * Constructor
+	 */
+	public RemoveStaticClasses250( )
+	{
+		super( "2.5.0-static-classes", new int[ ] { 2, 5, 0 }, 0, "remove static classes",
+			"src/com/apiomat/nativemodule" );
+	}
+
+	@Override
+	public boolean isRequired( final MigrationContext context )
+	{
+		return context.createUpdateManager( ).hasStaticClasses250( );
+	}
+
+	@Override
+	public void migrate( final MigrationContext context ) throws IOException
+	{
+		context.createUpdateManager( ).removeStaticClasses250( );
+	}
+
+	@Override
+	public void plan( final MigrationContext context, final UpdatePlan plan )
+	{
+		context.createUpdateManager( ).planRemoveStaticClasses250( plan );
+	}
+}
@@ -15,7 +15,14 @@
  */
 package com.apiomat.helper.mvnnmhelper.mojos;
 
-import org.apache.commons.io.FileUtils;
+import com.apiomat.helper.mvnnmhelper.ModuleNameResolver;
+import com.apiomat.helper.mvnnmhelper.SessionEndHooks;
+import com.apiomat.helper.mvnnmhelper.trace.FileSpanExporter;
+import com.apiomat.helper.mvnnmhelper.trace.OtlpSpanExporter;
+import com.apiomat.helper.mvnnmhelper.trace.Span;
+import com.apiomat.helper.mvnnmhelper.trace.SpanExporter;
+import com.apiomat.helper.mvnnmhelper.trace.Tracer;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -23,8 +30,7 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.shared.utils.StringUtils;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.Properties;
+import java.net.URI;
 
 /**
  * AbstractModuleMojo class for common module related fields and methods (like the moduleName or the project)
@@ -63,72 +69,76 @@ public abstract class AbstractModuleMojo extends AbstractMojo
 	@Parameter( defaultValue = "false", property = "nmSkip", required = false )
 	protected boolean nmSkip;
 
+	/**
+	 * The {@link MavenSession}.
+	 */
+	@Parameter( defaultValue = "${session}", readonly = true, required = true )
+	protected MavenSession session;
+
+	/**
+	 * file to append trace spans of the goals to, one OTLP JSON request per line
+	 */
+	@Parameter( property = "nmTraceFile" )
+	protected File traceFile;
+
+	/**
+	 * OTLP/HTTP endpoint to send trace spans of the goals to, like http://localhost:4318/v1/traces
+	 */
+	@Parameter( property = "nmTraceEndpoint" )
+	protected String traceEndpoint;
+
+	/**
+	 * the W3C trace context the spans of the goals are children of; defaults to the environment variable TRACEPARENT
+	 */
+	@Parameter( property = "nmTraceParent" )
+	protected String traceParent;
+
 	/**
 	 * @return either the module name from property, from pom artifact name or the artifactId
 	 */
 	protected String getOneModuleName( )
 	{
-		String oneModuleName = this.moduleName;
-		/* first check whether set from property or in pom */
-		if ( StringUtils.isEmpty( this.moduleName ) )
+		return getModuleNameResolution( ).getName( );
+	}
+
+	/**
+	 * @return the module name and where it came from; resolved once per project and build
+	 */
+	protected ModuleNameResolver.Resolution getModuleNameResolution( )
+	{
+		return ModuleNameResolver.resolve( this.project, this.moduleName, this.sourceDirectory, getLog( ) );
+	}
+
+	/**
+	 * Starts the span of a goal execution; tracing is enabled if a trace file or endpoint is configured
+	 *
+	 * @param name the name of the span
+	 * @return the span, which must be closed
+	 */
+	protected Span startTrace( final String name )
+	{
+		if ( this.traceFile != null || StringUtils.isNotBlank( this.traceEndpoint ) )
 		{
-			/* second, fallback: try to load moduleName from sdk.properties file if exist */
-			final File sdkPropsFile = new File( this.project.getBasedir( ), "sdk.properties" );
-			if ( sdkPropsFile.exists( ) )
-			{
-				try
-				{
-					final Properties props = new Properties( );
-					props.load( FileUtils.openInputStream( sdkPropsFile ) );
-					oneModuleName = props.getProperty( "moduleName" );
-					this.getLog( ).info( "Found moduleName over sdk.properties: " + oneModuleName );
-				}
-				catch ( final IOException e )
-				{
-					// e.printStackTrace( );
-				}
-			}
-			if ( StringUtils.isEmpty( oneModuleName ) )
+			final SpanExporter exporter = this.traceFile != null ? new FileSpanExporter( this.traceFile ) :
+				new OtlpSpanExporter( URI.create( this.traceEndpoint ) );
+			/* without a session, like in the nm daemon, the tracer is scoped to the goal */
+			Tracer.install( this.session != null ? this.session : this,
+				this.traceFile != null ? this.traceFile.getAbsolutePath( ) : this.traceEndpoint, exporter,
+				StringUtils.isNotBlank( this.traceParent ) ? this.traceParent : System.getenv( "TRACEPARENT" ),
+				getLog( ) );
+			if ( this.session != null )
 			{
-				/* third, fallback: try to find on FS */
-				final String lcArtifactId = this.project.getArtifactId( ).toLowerCase( );
-				final String lcArtifactIdDotJava = ( lcArtifactId + ".java" ).toLowerCase( );
-				if ( StringUtils.isEmpty( lcArtifactId ) == false )
-				{
-					final File nmModDir = new File(
-						new File( new File( new File( this.sourceDirectory, "com" ), "apiomat" ), "nativemodule" ),
-						lcArtifactId );
-					if ( nmModDir.exists( ) )
-					{
-						/* iterate over classes and try to find something that looks like the module main class */
-						final File[ ] filesInDir = nmModDir.listFiles( );
-						for ( final File fileInDir : filesInDir )
-						{
-							if ( fileInDir.isDirectory( ) )
-							{
-								continue;
-							}
-
-							if ( fileInDir.getName( ).toLowerCase( ).equals( lcArtifactIdDotJava ) )
-							{
-
-								final String fName = fileInDir.getName( );
-								oneModuleName = fName.substring( 0, fName.length( ) - ".java".length( ) );
-								this.getLog( ).info( "Found moduleName over File: " + oneModuleName );
-								break;
-							}
-						}
-					}
-				}
-			}
-			if ( StringUtils.isEmpty( oneModuleName ) )
-			{
-				/* no name in pom, no property specified, no sdk properties, no module main, very last option: try the
-				 * artifactId (may misbehave, but better than nothing) */
-				oneModuleName = this.project.getArtifactId( );
+				/* a later build of a long-lived JVM, like mvnd, must not export to the target of this one */
+				final MavenSession traced = this.session;
+				SessionEndHooks.register( traced, Tracer.class.getName( ), ( ) -> Tracer.uninstall( traced ) );
 			}
 		}
-		return oneModuleName;
+		final Span span = Tracer.start( name );
+		if ( this.project != null )
+		{
+			span.setAttribute( "maven.project", this.project.getArtifactId( ) );
+		}
+		return span;
 	}
 
 	/**
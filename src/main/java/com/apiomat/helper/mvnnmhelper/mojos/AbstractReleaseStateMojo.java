@@ -18,10 +18,10 @@ package com.apiomat.helper.mvnnmhelper.mojos;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.client.fluent.Response;
 import org.apache.http.entity.ContentType;
-import org.apache.http.util.EntityUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.utils.StringUtils;
@@ -50,30 +50,40 @@ public abstract class AbstractReleaseStateMojo extends AbstractRequestMojo
 		final JSONObject releaseObj = new JSONObject( );
 		releaseObj.put( "releaseState", isRelease ? "RELEASED" : "UNRELEASED" );
 
-		final Request request = Request.Put( getBaseUrl( ) )
-			.addHeader( "Authorization", getUserAuthHeaderValue( ) )
-			.bodyString( releaseObj.toString( ), ContentType.APPLICATION_JSON );
-		if ( StringUtils.isNotBlank( this.system ) )
-		{
-			request.addHeader( "x-apiomat-system", this.system );
-		}
+		final String baseUrl = getBaseUrl( );
+		final String operation = ( isRelease ? "Release" : "Unrelease" ) + " of module";
+		executeWithRetry( operation, true, ( attemptNo, deadline ) -> {
+			final String authHeaderValue = getUserAuthHeaderValue( );
+			final Request request = applyTimeouts( Request.Put( baseUrl ), deadline )
+				.addHeader( "Authorization", authHeaderValue )
+				.bodyString( releaseObj.toString( ), ContentType.APPLICATION_JSON );
+			if ( StringUtils.isNotBlank( this.system ) )
+			{
+				request.addHeader( "x-apiomat-system", this.system );
+			}
 
-		final Response response = request.execute( );
-		final HttpResponse httpResponse = response.returnResponse( );
-		final StatusLine status = httpResponse.getStatusLine( );
-		if ( status.getStatusCode( ) >= 200 && status.getStatusCode( ) <= 299 )
-		{
-			final String responseMessage =
-				"Successfully " + ( isRelease ? "released" : "unreleased" ) + " module " + getOneModuleName( );
-			getLog( ).info( responseMessage );
-		}
-		else
-		{
-			final String message = StringUtils.isNotBlank( status.getReasonPhrase( ) ) ? status.getReasonPhrase( )
-				: EntityUtils.toString( httpResponse.getEntity( ) );
-			throw new MojoExecutionException( "Failed to set release state for module with status " +
-				status.getStatusCode( ) + ":" + message );
-		}
+			final Response response = send( request );
+			final HttpResponse httpResponse = returnResponse( response );
+			final StatusLine status = httpResponse.getStatusLine( );
+			this.metrics.recordStatusCode( status.getStatusCode( ) );
+			checkAuthorization( status.getStatusCode( ), authHeaderValue );
+			if ( status.getStatusCode( ) < 200 || status.getStatusCode( ) > 299 )
+			{
+				final String message = errorMessage( status, httpResponse );
+				final String errorMessage = "Failed to set release state for module with status " +
+					status.getStatusCode( ) + ":" + message;
+				if ( getRetryPolicy( ).isRetryableStatus( status.getStatusCode( ) ) )
+				{
+					throw new HttpResponseException( status.getStatusCode( ), errorMessage );
+				}
+				throw new MojoExecutionException( errorMessage );
+			}
+			return null;
+		} );
+		final String responseMessage =
+			"Successfully " + ( isRelease ? "released" : "unreleased" ) + " module " + getOneModuleName( );
+		getLog( ).info( responseMessage );
+		this.metrics.recordMessage( responseMessage );
 	}
 
 	/**
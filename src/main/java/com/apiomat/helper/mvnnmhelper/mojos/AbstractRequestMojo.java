@@ -15,9 +15,31 @@
  */
 package com.apiomat.helper.mvnnmhelper.mojos;
 
+import com.apiomat.helper.mvnnmhelper.daemon.NMDaemonClient;
+import com.apiomat.helper.mvnnmhelper.http.ExecutionReport;
+import com.apiomat.helper.mvnnmhelper.http.HttpTransport;
+import com.apiomat.helper.mvnnmhelper.http.RequestDeadline;
+import com.apiomat.helper.mvnnmhelper.http.RequestMetrics;
+import com.apiomat.helper.mvnnmhelper.http.ResponseBody;
+import com.apiomat.helper.mvnnmhelper.http.RetryPolicy;
+import com.apiomat.helper.mvnnmhelper.http.SessionAuth;
+import com.apiomat.helper.mvnnmhelper.trace.Span;
+import com.apiomat.helper.mvnnmhelper.trace.Tracer;
+import com.apiomat.helper.mvnnmhelper.transfer.BandwidthLimiter;
+import com.apiomat.helper.mvnnmhelper.transfer.TransferProgress;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.maven.execution.MavenSession;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.client.fluent.Response;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
 import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MavenPluginManager;
 import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -31,16 +53,17 @@ import org.apache.maven.shared.utils.StringUtils;
 import org.codehaus.plexus.configuration.PlexusConfiguration;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.codehaus.plexus.util.xml.Xpp3DomUtils;
+import org.json.JSONObject;
 
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSession;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import java.io.File;
 import java.io.IOException;
-import java.security.cert.X509Certificate;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -81,12 +104,125 @@ public abstract class AbstractRequestMojo extends AbstractModuleMojo
 	@Parameter( property = "customerPassword", required = true )
 	protected String customerPassword;
 
+	/**
+	 * whether to suppress the intermediate progress messages of up- and downloads (e.g. for batch builds)
+	 */
+	@Parameter( defaultValue = "false", property = "nmQuiet" )
+	protected boolean quiet;
+
+	/**
+	 * minimal interval in milliseconds between two progress messages of an up- or download
+	 */
+	@Parameter( defaultValue = "2000", property = "nmProgressInterval" )
+	protected long progressInterval;
+
+	/**
+	 * bandwidth limit of up- and downloads in kilobytes per second, 0 for no limit. Concurrent transfers, like the
+	 * ones of a parallel build or of the nm daemon, share the limit equally.
+	 */
+	@Parameter( defaultValue = "0", property = "nmBandwidthLimit" )
+	protected long bandwidthLimit;
+
+	/**
+	 * maximum number of bytes read of a response body, like an error page; longer bodies are truncated
+	 */
+	@Parameter( defaultValue = "65536", property = "nmResponseBodyLimit" )
+	protected int responseBodyLimit;
+
+	/**
+	 * maximum number of attempts for idempotent requests (1 disables retries)
+	 */
+	@Parameter( defaultValue = "3", property = "nmRetryMaxAttempts" )
+	protected int retryMaxAttempts;
+
+	/**
+	 * backoff in milliseconds before the first retry, doubled for each further retry
+	 */
+	@Parameter( defaultValue = "500", property = "nmRetryBackoff" )
+	protected long retryBackoff;
+
+	/**
+	 * upper bound of the backoff between two retries in milliseconds
+	 */
+	@Parameter( defaultValue = "10000", property = "nmRetryMaxBackoff" )
+	protected long retryMaxBackoff;
+
+	/**
+	 * comma separated list of HTTP status codes which are retried
+	 */
+	@Parameter( defaultValue = "502,503,504", property = "nmRetryStatusCodes" )
+	protected String retryStatusCodes;
+
+	/**
+	 * maximum duration of a single attempt in milliseconds, 0 for no limit
+	 */
+	@Parameter( defaultValue = "0", property = "nmAttemptTimeout" )
+	protected int attemptTimeout;
+
+	/**
+	 * timeout in milliseconds for establishing a connection to yambas, 0 for no timeout
+	 */
+	@Parameter( defaultValue = "30000", property = "nmConnectTimeout" )
+	protected int connectTimeout;
+
+	/**
+	 * timeout in milliseconds while waiting for data from yambas, 0 for no timeout. Note that yambas compiles the
+	 * module before answering an upload.
+	 */
+	@Parameter( defaultValue = "300000", property = "nmReadTimeout" )
+	protected int readTimeout;
+
+	/**
+	 * overall deadline in milliseconds for all requests of this goal execution, including retries; running transfers
+	 * are cancelled when it is exceeded. 0 for no deadline
+	 */
+	@Parameter( defaultValue = "0", property = "nmRequestDeadline" )
+	protected long requestDeadline;
+
+	/**
+	 * execute uploads and downloads in a resident nm daemon, which is started on first use and keeps its HTTP
+	 * connections warm between builds; a daemon of another plugin version is replaced
+	 */
+	@Parameter( defaultValue = "false", property = "nmUseDaemon" )
+	protected boolean useDaemon;
+
+	/**
+	 * the local port of the nm daemon
+	 */
+	@Parameter( defaultValue = "18573", property = "nmDaemonPort" )
+	protected int daemonPort;
 
 	/**
-	 * The {@link MavenSession}.
+	 * exchange the credentials for a session token once per build instead of sending them with every request
 	 */
-	@Parameter( defaultValue = "${session}", readonly = true, required = true )
-	protected MavenSession session;
+	@Parameter( defaultValue = "false", property = "nmSessionToken" )
+	protected boolean sessionToken;
+
+	/**
+	 * the resource of yambas to exchange the credentials for a session token at
+	 */
+	@Parameter( defaultValue = "/yambas/oauth/token", property = "nmTokenPath" )
+	protected String tokenPath;
+
+	/**
+	 * write a machine readable result of each goal execution (status code, timings, bytes, retries, messages) and add
+	 * it to a summary of the whole build
+	 */
+	@Parameter( defaultValue = "false", property = "nmWriteResults" )
+	protected boolean writeResults;
+
+	/**
+	 * the directory to write the results of the goal executions of this module to, one file per goal
+	 */
+	@Parameter( defaultValue = "${project.build.directory}/nm-results", property = "nmResultDirectory" )
+	protected File resultDirectory;
+
+	/**
+	 * the file summarizing the results of all goal executions of the build
+	 */
+	@Parameter( defaultValue = "${session.executionRootDirectory}/target/nm-results.json",
+		property = "nmResultSummary" )
+	protected File resultSummary;
 
 	/**
 	 * The {@link PluginDescriptor}.
@@ -100,24 +236,22 @@ public abstract class AbstractRequestMojo extends AbstractModuleMojo
 	@Component
 	protected BuildPluginManager pluginManager;
 
-	// Create a trust manager that does not validate certificate chains
-	final TrustManager[ ] trustAllCerts = new TrustManager[ ] { new X509TrustManager( )
-	{
-		@Override
-		public java.security.cert.X509Certificate[ ] getAcceptedIssuers( )
-		{
-			return null;
-		}
+	/**
+	 * The Maven MavenPluginManager component, configuring goals executed outside of the build thread.
+	 */
+	@Component
+	protected MavenPluginManager mavenPluginManager;
+
+	/**
+	 * the metrics of the requests of this execution
+	 */
+	protected RequestMetrics metrics;
 
-		@Override
-		public void checkClientTrusted( final X509Certificate[] certs, final String authType )
-		{}
+	private RetryPolicy retryPolicy;
 
-		@Override
-		public void checkServerTrusted( final X509Certificate[] certs, final String authType )
-		{}
-	}
-	};
+	private RequestDeadline deadline;
+
+	private SessionAuth auth;
 
 	@Override
 	public final void execute( ) throws MojoExecutionException // , MojoFailureException
@@ -135,40 +269,94 @@ public abstract class AbstractRequestMojo extends AbstractModuleMojo
 			throw new MojoExecutionException( "Not all attributes are set!" );
 		}
 
+		this.metrics = new RequestMetrics(
+			this.mojoExecution != null ? this.mojoExecution.getGoal( ) : getClass( ).getSimpleName( ) );
+		this.retryPolicy = new RetryPolicy( this.retryMaxAttempts, this.retryBackoff, this.retryMaxBackoff,
+			RetryPolicy.parseStatusCodes( this.retryStatusCodes ), this.attemptTimeout );
+		this.deadline = RequestDeadline.of( this.requestDeadline, this.connectTimeout, this.readTimeout );
+
 		getLog( ).info( "Connecting to host '" + this.host + "' with customer '" + this.customerName + "' and system " +
 			this.system );
 
-		try
+		try (final Span span = startTrace( "nm:" + this.metrics.getGoal( ) ))
 		{
-			if ( overwriteSSLContext( ) )
+			span.setAttribute( "nm.host", this.host ).setAttribute( "nm.system", this.system );
+			Exception failure = null;
+			try
+			{
+				/* the plugin's own SSL context; the JVM defaults are shared with other plugins of a parallel build */
+				getLog( ).debug( getTransport( ).isTrustAll( ) ?
+					"Using the trust-all SSL context of the plugin for uploads..." : "Using existing SSL context..." );
+				executeRequest( );
+			}
+			catch ( final Exception e )
 			{
-				getLog( ).debug( "Setting SSL context..." );
-
-				// Install the all-trusting trust manager
-				final SSLContext sc = SSLContext.getInstance( "SSL" );
-				sc.init( null, this.trustAllCerts, new java.security.SecureRandom( ) );
-				HttpsURLConnection.setDefaultSSLSocketFactory( sc.getSocketFactory( ) );
-				// Create all-trusting host name verifier
-				final HostnameVerifier allHostsValid = new HostnameVerifier( )
+				failure = e;
+				span.recordError( e );
+				/* Maven reports the cause, the stack trace with -e */
+				throw new MojoExecutionException( e.getMessage( ), e );
+			}
+			finally
+			{
+				logMetrics( );
+				span.setAttribute( "nm.requests", this.metrics.getRequests( ) )
+					.setAttribute( "nm.retries", this.metrics.getRetries( ) )
+					.setAttribute( "nm.bytes", this.metrics.getTransferredBytes( ) );
+				if ( this.writeResults )
 				{
-					@Override
-					public boolean verify( final String hostname, final SSLSession session )
-					{
-						return true;
-					}
-				};
-				HttpsURLConnection.setDefaultHostnameVerifier( allHostsValid );
+					writeResult( failure );
+				}
 			}
-			else
+		}
+	}
+
+	private void writeResult( final Exception failure )
+	{
+		String module = null;
+		try
+		{
+			module = getOneModuleName( );
+		}
+		catch ( final RuntimeException e )
+		{
+			/* the result is written anyway, the failure of the goal is reported by Maven */
+		}
+		final JSONObject result = ExecutionReport.result( this.metrics, module,
+			this.project != null ? getModuleVersion( ) : null, failure );
+		try
+		{
+			final File file = new File( this.resultDirectory, this.metrics.getGoal( ) + ".json" );
+			ExecutionReport.write( file, result );
+			if ( this.resultSummary != null )
 			{
-				getLog( ).debug( "Using existing SSL context..." );
+				ExecutionReport.addToSummary( this.resultSummary, buildId( ), result );
 			}
-			executeRequest( );
+			getLog( ).debug( "Result written to " + file.getAbsolutePath( ) );
 		}
-		catch ( final Exception e )
+		catch ( final IOException e )
 		{
-			e.printStackTrace( );
-			throw new MojoExecutionException( e.getMessage( ), e );
+			getLog( ).warn( "Could not write the result of the goal: " + e.getMessage( ) );
+		}
+	}
+
+	/**
+	 * @return identifies the build in the summary, so the summary of an earlier build is replaced
+	 */
+	private String buildId( )
+	{
+		return this.session != null && this.session.getStartTime( ) != null ?
+			String.valueOf( this.session.getStartTime( ).getTime( ) ) : "";
+	}
+
+	private void logMetrics( )
+	{
+		if ( this.metrics.getRetries( ) > 0 )
+		{
+			getLog( ).info( "Request metrics " + this.metrics );
+		}
+		else
+		{
+			getLog( ).debug( "Request metrics " + this.metrics );
 		}
 	}
 
@@ -189,33 +377,49 @@ public abstract class AbstractRequestMojo extends AbstractModuleMojo
 	 */
 	protected void executeGoal( final String goal ) throws MojoExecutionException
 	{
-		try
+		try (final Span span = Tracer.start( "executeGoal " + goal ))
 		{
-			@SuppressWarnings( "rawtypes" )
-			final Map pluginCtx = getPluginContext( );
-
-			final PluginDescriptor pluginDescriptor = ( PluginDescriptor ) pluginCtx.get( "pluginDescriptor" );
-			final MojoDescriptor mojo = pluginDescriptor.getMojo( goal );
-			if ( mojo == null )
+			try
 			{
-				throw new MojoExecutionException( "Could not find goal '" + goal + "' in plugin " ); // +
+				this.pluginManager.executeMojo( this.session, goalExecution( goal ) );
+			}
+			catch ( final MojoExecutionException | MojoFailureException
+				| PluginConfigurationException | PluginManagerException e )
+			{
+				span.recordError( e );
+				throw new MojoExecutionException(
+					"Cloud not execute goal, please execute goal " + goal + " by yourself", e );
 			}
-			final Xpp3Dom mojoConfig = toXpp3Dom( mojo.getMojoConfiguration( ) );
-			final Xpp3Dom existingConfig =
-				toXpp3Dom( this.mojoExecution.getConfiguration( ), mojo.getParameterMap( ).keySet( ) );
-			final Xpp3Dom mergedConfiguration =
-				existingConfig != null ? Xpp3DomUtils.mergeXpp3Dom( existingConfig, mojoConfig )
-					: mojoConfig;
-			final MojoExecution exec = new MojoExecution( mojo, this.mojoExecution.getExecutionId( ) );
-			exec.setConfiguration( mergedConfiguration );
-			this.pluginManager.executeMojo( this.session, exec );
 		}
-		catch ( final MojoExecutionException | MojoFailureException
-			| PluginConfigurationException | PluginManagerException e )
+	}
+
+	/**
+	 * Creates the execution of a goal in this plugin, configured with the parameters of this execution
+	 *
+	 * @param goal the goal
+	 * @return the execution
+	 * @throws MojoExecutionException if the goal does not exist
+	 */
+	protected MojoExecution goalExecution( final String goal ) throws MojoExecutionException
+	{
+		@SuppressWarnings( "rawtypes" )
+		final Map pluginCtx = getPluginContext( );
+
+		final PluginDescriptor pluginDescriptor = ( PluginDescriptor ) pluginCtx.get( "pluginDescriptor" );
+		final MojoDescriptor mojo = pluginDescriptor.getMojo( goal );
+		if ( mojo == null )
 		{
-			throw new MojoExecutionException(
-				"Cloud not execute goal, please execute goal " + goal + " by yourself", e );
+			throw new MojoExecutionException( "Could not find goal '" + goal + "' in plugin " ); // +
 		}
+		final Xpp3Dom mojoConfig = toXpp3Dom( mojo.getMojoConfiguration( ) );
+		final Xpp3Dom existingConfig =
+			toXpp3Dom( this.mojoExecution.getConfiguration( ), mojo.getParameterMap( ).keySet( ) );
+		final Xpp3Dom mergedConfiguration =
+			existingConfig != null ? Xpp3DomUtils.mergeXpp3Dom( existingConfig, mojoConfig )
+				: mojoConfig;
+		final MojoExecution exec = new MojoExecution( mojo, this.mojoExecution.getExecutionId( ) );
+		exec.setConfiguration( mergedConfiguration );
+		return exec;
 	}
 
 	/**
@@ -285,20 +489,193 @@ public abstract class AbstractRequestMojo extends AbstractModuleMojo
 	protected String getBaseUrl( ) throws MojoExecutionException
 	{
 
-		final String version = "1".equals( this.project.getVersion( ) ) ? "1.0.0" : this.project.getVersion( );
 		final StringBuilder sb = new StringBuilder( );
 		sb.append( this.host ).append( "/yambas/rest/modules/" );
 		sb.append( getOneModuleName( ) );
-		sb.append( "/v/" ).append( version );
+		sb.append( "/v/" ).append( getModuleVersion( ) );
 		return sb.toString( );
 	}
 
 	/**
+	 * @return the version of the module, 1.0.0 for the project version 1
+	 */
+	protected String getModuleVersion( )
+	{
+		return "1".equals( this.project.getVersion( ) ) ? "1.0.0" : this.project.getVersion( );
+	}
+
+	/**
+	 * Executes this goal in the nm daemon, starting the daemon if none is running or if it runs another version of the
+	 * plugin. The daemon executes the goal with the parameters of this execution, so it retries, refreshes session
+	 * tokens and traces like the goal would in the build; its request metrics are added to the ones of this goal.
+	 *
+	 * @param goal the goal, upload or download
+	 * @param overrides parameters of the goal to execute differently in the daemon
+	 * @throws IOException if the daemon could not be started or the goal failed
+	 * @throws MojoExecutionException
+	 */
+	protected void executeInDaemon( final String goal, final JSONObject overrides )
+		throws IOException, MojoExecutionException
+	{
+		final JSONObject params = DaemonGoals.parameters( goal, this );
+		for ( final String key : overrides.keySet( ) )
+		{
+			params.put( key, overrides.get( key ) );
+		}
+
+		final List<File> classpath = new ArrayList<>( );
+		for ( final URL url : this.pluginDescriptor.getClassRealm( ).getURLs( ) )
+		{
+			classpath.add( FileUtils.toFile( url ) );
+		}
+		final NMDaemonClient client = new NMDaemonClient( this.daemonPort, NMDaemonClient.defaultTokenFile( ) );
+		client.ensureRunning( classpath, getLog( ) );
+		getLog( ).info( "Executing " + goal + " in nm daemon on port " + this.daemonPort );
+		final JSONObject result = client.execute( goal, params, getLog( ) );
+		this.metrics.add( result.optJSONObject( "metrics" ) );
+	}
+
+	/**
+	 * Executes a request with the configured retry policy and deadline. Only idempotent requests (like GET or PUT)
+	 * are retried.
+	 *
+	 * @param operation name of the operation for logging
+	 * @param idempotent whether the request may be repeated
+	 * @param attempt the request; retryable status codes have to be signaled with a {@link HttpResponseException}
+	 * @return the result of the request
+	 * @throws IOException
+	 * @throws MojoExecutionException
+	 */
+	protected <T> T executeWithRetry( final String operation, final boolean idempotent,
+		final RetryPolicy.Attempt<T> attempt ) throws IOException, MojoExecutionException
+	{
+		return this.retryPolicy.execute( operation, idempotent, ( attemptNo, attemptDeadline ) -> {
+			try (final Span span = Tracer.start( operation ).setKind( Span.KIND_CLIENT ))
+			{
+				span.setAttribute( "nm.attempt", attemptNo );
+				try
+				{
+					return attempt.run( attemptNo, attemptDeadline );
+				}
+				catch ( final SessionAuth.TokenExpiredException e )
+				{
+					/* yambas rejected the request before processing it, so even non idempotent requests are
+					 * repeated */
+					getLog( ).debug( operation + ": session token expired, repeating with a new one" );
+					return attempt.run( attemptNo, attemptDeadline );
+				}
+				catch ( final IOException | MojoExecutionException | RuntimeException e )
+				{
+					span.recordError( e );
+					throw e;
+				}
+				finally
+				{
+					span.setAttribute( "http.status_code", this.metrics.getLastStatusCode( ) );
+				}
+			}
+		}, this.deadline, this.metrics, getLog( ) );
+	}
+
+	/**
+	 * Checks whether a request was rejected because of an expired session token. Requests executed with
+	 * {@link #executeWithRetry(String, boolean, RetryPolicy.Attempt)} are repeated with a new token then.
+	 *
+	 * @param statusCode the status code of the response
+	 * @param authHeaderValue the authorization the request was sent with
+	 * @throws SessionAuth.TokenExpiredException if the session token expired
+	 */
+	protected void checkAuthorization( final int statusCode, final String authHeaderValue )
+		throws SessionAuth.TokenExpiredException
+	{
+		if ( this.auth != null )
+		{
+			this.auth.checkAuthorized( statusCode, authHeaderValue );
+		}
+	}
+
+	/**
+	 * @return the retry policy of this execution
+	 */
+	protected RetryPolicy getRetryPolicy( )
+	{
+		return this.retryPolicy;
+	}
+
+	/**
+	 * Applies the timeouts of the given deadline to the connection
+	 *
+	 * @param connection the connection
+	 * @param attemptDeadline the deadline of the current attempt
+	 */
+	protected static void applyTimeouts( final HttpURLConnection connection, final RequestDeadline attemptDeadline )
+	{
+		connection.setConnectTimeout( attemptDeadline.connectTimeout( ) );
+		connection.setReadTimeout( attemptDeadline.readTimeout( ) );
+	}
+
+	/**
+	 * Applies the timeouts of the given deadline to the request
+	 *
+	 * @param request the request
+	 * @param attemptDeadline the deadline of the current attempt
+	 * @return the request
+	 */
+	protected static Request applyTimeouts( final Request request, final RequestDeadline attemptDeadline )
+	{
+		return request.connectTimeout( attemptDeadline.connectTimeout( ) )
+			.socketTimeout( attemptDeadline.readTimeout( ) );
+	}
+
+	/**
+	 * Creates a progress reporter for an up- or download of this goal
 	 *
-	 * @return the value of the authorization header (including the "Basic " prefix)
+	 * @param label the label to prefix the progress messages with
+	 * @param totalBytes the expected number of bytes or a negative value if unknown
+	 * @return the progress reporter
+	 */
+	protected TransferProgress createTransferProgress( final String label, final long totalBytes )
+	{
+		final RequestMetrics transferMetrics = this.metrics;
+		return new TransferProgress( getLog( ), label, totalBytes, this.progressInterval, this.quiet )
+		{
+			@Override
+			public void finish( )
+			{
+				super.finish( );
+				transferMetrics.recordTransferredBytes( getTransferredBytes( ) );
+			}
+		}.limitTo( BandwidthLimiter.shared( this.bandwidthLimit ) );
+	}
+
+	/**
+	 * @return the value of the authorization header, either with the session token (see {@link #sessionToken}) or
+	 *         with the credentials (including the "Basic " prefix)
 	 * @throws MojoExecutionException
 	 */
 	protected String getUserAuthHeaderValue( ) throws MojoExecutionException
+	{
+		return getSessionAuth( ).authorization( this.deadline != null ? this.deadline : RequestDeadline.of( 0,
+			this.connectTimeout, this.readTimeout ), getLog( ) );
+	}
+
+	/**
+	 * @return the authorization of the requests of this goal, shared by all goals of the build session
+	 * @throws MojoExecutionException
+	 */
+	protected SessionAuth getSessionAuth( ) throws MojoExecutionException
+	{
+		if ( this.auth == null )
+		{
+			final String basicAuthorization = getBasicAuthHeaderValue( );
+			this.auth = this.sessionToken ? SessionAuth.forSession( this.session,
+				URI.create( this.host + this.tokenPath ), basicAuthorization, this.system ) :
+				SessionAuth.basic( basicAuthorization );
+		}
+		return this.auth;
+	}
+
+	private String getBasicAuthHeaderValue( ) throws MojoExecutionException
 	{
 		if ( StringUtils.isEmpty( this.customerName ) && StringUtils.isEmpty( this.customerEmail ) )
 		{
@@ -320,15 +697,69 @@ public abstract class AbstractRequestMojo extends AbstractModuleMojo
 	 */
 	protected static boolean overwriteSSLContext( )
 	{
-		if ( System.getProperty( "javax.net.ssl.keyStore" ) != null )
-		{
-			return false;
-		}
-		if ( Boolean.getBoolean( "doNotOverwriteSSLContext" ) )
+		return HttpTransport.trustAll( );
+	}
+
+	/**
+	 * @return the SSL context and HTTP client for the requests of this goal
+	 */
+	protected static HttpTransport getTransport( )
+	{
+		return HttpTransport.get( );
+	}
+
+	/**
+	 * Executes a request with the HTTP client of the plugin, sending the trace context along
+	 *
+	 * @param request the request
+	 * @return the response
+	 * @throws IOException
+	 */
+	protected static Response send( final Request request ) throws IOException
+	{
+		Tracer.propagate( request::addHeader );
+		return getTransport( ).executor( ).execute( request );
+	}
+
+	/**
+	 * Reads the status and headers of a response without buffering its body like {@link Response#returnResponse()};
+	 * the body of an error response is replaced by its summary of at most {@link #responseBodyLimit} bytes, the body
+	 * of a successful response is discarded
+	 *
+	 * @param response the response
+	 * @return the status, headers and error summary of the response
+	 * @throws IOException
+	 */
+	protected HttpResponse returnResponse( final Response response ) throws IOException
+	{
+		return response.handleResponse( httpResponse -> {
+			final StatusLine status = httpResponse.getStatusLine( );
+			final BasicHttpResponse result = new BasicHttpResponse( status );
+			result.setHeaders( httpResponse.getAllHeaders( ) );
+			if ( status.getStatusCode( ) < 200 || status.getStatusCode( ) > 299 )
+			{
+				final String summary = ResponseBody.summary( httpResponse.getEntity( ), this.responseBodyLimit );
+				result.setEntity(
+					new StringEntity( summary, ContentType.create( ContentType.TEXT_PLAIN.getMimeType( ), "UTF-8" ) ) );
+			}
+			return result;
+		} );
+	}
+
+	/**
+	 * @param status the status of an error response
+	 * @param response the response read with {@link #returnResponse(Response)}
+	 * @return the reason phrase and the summary of the body of the response
+	 * @throws IOException
+	 */
+	protected static String errorMessage( final StatusLine status, final HttpResponse response ) throws IOException
+	{
+		final String summary =
+			response.getEntity( ) != null ? EntityUtils.toString( response.getEntity( ), StandardCharsets.UTF_8 ) : "";
+		if ( StringUtils.isBlank( status.getReasonPhrase( ) ) )
 		{
-			return false;
+			return summary;
 		}
-
-		return true;
+		return StringUtils.isBlank( summary ) ? status.getReasonPhrase( ) : status.getReasonPhrase( ) + ": " + summary;
 	}
 }
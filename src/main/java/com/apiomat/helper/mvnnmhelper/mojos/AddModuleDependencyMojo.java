@@ -22,7 +22,6 @@ import org.apache.http.StatusLine;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.client.fluent.Response;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -36,7 +35,7 @@ import java.net.URI;
  *
  * @author thum
  */
-@Mojo( name = "addDependency", defaultPhase = LifecyclePhase.NONE )
+@Mojo( name = "addDependency", defaultPhase = LifecyclePhase.NONE, threadSafe = true )
 public class AddModuleDependencyMojo extends AbstractRequestMojo
 {
 	/**
@@ -69,22 +68,29 @@ public class AddModuleDependencyMojo extends AbstractRequestMojo
 		final NameValuePair moduleVersionParam =
 			new BasicNameValuePair( "parentModuleVersion", this.usedModuleVersion );
 
-		final Response response =
-			Request.Post( buildHostUrl( ) )
-				.addHeader( "X-apiomat-system", this.system )
-				.addHeader( "Authorization", getUserAuthHeaderValue( ) )
-				.bodyForm( moduleNameParam, moduleVersionParam )
-				.execute( );
-		final HttpResponse httpResponse = response.returnResponse( );
+		final URI hostUrl = buildHostUrl( );
+		/* adding a parent module is not idempotent, so it is executed only once */
+		final HttpResponse httpResponse =
+			executeWithRetry( "Adding module dependency", false, ( attemptNo, deadline ) -> {
+				final String authHeaderValue = getUserAuthHeaderValue( );
+				final Response response = send( applyTimeouts( Request.Post( hostUrl ), deadline )
+					.addHeader( "X-apiomat-system", this.system )
+					.addHeader( "Authorization", authHeaderValue )
+					.bodyForm( moduleNameParam, moduleVersionParam ) );
+				final HttpResponse result = returnResponse( response );
+				checkAuthorization( result.getStatusLine( ).getStatusCode( ), authHeaderValue );
+				return result;
+			} );
 		final StatusLine status = httpResponse.getStatusLine( );
+		this.metrics.recordStatusCode( status.getStatusCode( ) );
 		if ( status.getStatusCode( ) >= 200 && status.getStatusCode( ) <= 299 )
 		{
 			getLog( ).info( "Successfully added dependency" );
+			this.metrics.recordMessage( "Successfully added dependency" );
 		}
 		else
 		{
-			final String message = StringUtils.isNotBlank( status.getReasonPhrase( ) ) ? status.getReasonPhrase( )
-				: EntityUtils.toString( httpResponse.getEntity( ) );
+			final String message = errorMessage( status, httpResponse );
 			throw new MojoExecutionException( "Failed to add dependency for module with status " +
 				status.getStatusCode( ) + ":" + message );
 		}
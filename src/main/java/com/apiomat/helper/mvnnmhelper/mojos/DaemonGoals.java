@@ -0,0 +1,244 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.mojos;
+
+import com.apiomat.helper.mvnnmhelper.http.RequestMetrics;
+import com.apiomat.helper.mvnnmhelper.trace.Span;
+import com.apiomat.helper.mvnnmhelper.trace.Tracer;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes the upload and download goals in the nm daemon with the same code as in the build: the client forwards
+ * the parameters of its goal, the daemon configures a goal of its own with them and executes it, including the
+ * retries, deadlines, session tokens and tracing of the goal.
+ *
+ * Only the parameters listed here cross the socket, on both sides: the connection and transfer settings, the
+ * parameters of the goal itself, the resolved module name, the trace context and the base directory, artifact id and
+ * version of the project. The credentials are among them, the daemon authenticates the requests of the goal; the
+ * daemon only listens on the loopback interface and only answers requests carrying the token of its user (see
+ * {@link com.apiomat.helper.mvnnmhelper.daemon.NMDaemon}). The parameters of the build, like the daemon and result
+ * settings, stay in the build. A new parameter is not forwarded until it is added here.
+ *
+ * @author thum
+ */
+public final class DaemonGoals
+{
+	private static final String PROJECT = "project";
+
+	/** the parameters of every request goal */
+	private static final List<String> REQUEST_PARAMETERS = Arrays.asList( "moduleName", "sourceDirectory", "traceFile",
+		"traceEndpoint", "traceParent", "host", "system", "customerName", "customerEmail", "customerPassword",
+		"sessionToken", "tokenPath", "quiet", "progressInterval", "bandwidthLimit", "responseBodyLimit",
+		"retryMaxAttempts", "retryBackoff", "retryMaxBackoff", "retryStatusCodes", "attemptTimeout", "connectTimeout",
+		"readTimeout", "requestDeadline" );
+
+	private static final Map<String, List<String>> GOAL_PARAMETERS = new HashMap<>( );
+
+	static
+	{
+		GOAL_PARAMETERS.put( "upload", Arrays.asList( "moduleJarPath", "outputDirectory", "finalName", "update",
+			"noDownload", "retryUploads", "asyncUpload", "asyncPollInterval", "asyncTimeout", "deltaUpload",
+			"uploadManifests" ) );
+		GOAL_PARAMETERS.put( "download", Arrays.asList( "merge", "eclipse", "overwriteHooks", "deltaDownload",
+			"downloadManifests" ) );
+	}
+
+	private DaemonGoals( )
+	{
+	}
+
+	/**
+	 * @param goal the goal, upload or download
+	 * @param mojo the goal to execute in the daemon
+	 * @return the forwarded parameters of the goal and its project, with the resolved module name and the current
+	 *         trace context
+	 * @throws MojoExecutionException if the goal is unknown
+	 */
+	static JSONObject parameters( final String goal, final AbstractRequestMojo mojo ) throws MojoExecutionException
+	{
+		final JSONObject params = new JSONObject( );
+		try
+		{
+			for ( final Field field : fields( goal, mojo.getClass( ) ) )
+			{
+				final Object value = field.get( mojo );
+				if ( value != null )
+				{
+					params.put( field.getName( ),
+						value instanceof File ? ( ( File ) value ).getAbsolutePath( ) : value );
+				}
+			}
+		}
+		catch ( final IllegalAccessException e )
+		{
+			throw new MojoExecutionException( "Could not read the parameters of the goal", e );
+		}
+		params.put( "moduleName", mojo.getOneModuleName( ) );
+		final Span span = Tracer.current( );
+		if ( span != null && span.isRecording( ) )
+		{
+			params.put( "traceParent", span.traceparent( ) );
+		}
+		final JSONObject project = new JSONObject( );
+		project.put( "basedir", mojo.project.getBasedir( ).getAbsolutePath( ) );
+		project.put( "artifactId", mojo.project.getArtifactId( ) );
+		project.put( "version", mojo.project.getVersion( ) );
+		params.put( PROJECT, project );
+		return params;
+	}
+
+	/**
+	 * Executes a goal forwarded by a client
+	 *
+	 * @param goal the goal, upload or download
+	 * @param params the parameters, see {@link #parameters(String, AbstractRequestMojo)}
+	 * @param log the log of the goal
+	 * @return the metrics of the requests of the goal
+	 * @throws MojoExecutionException if the goal is unknown or failed
+	 */
+	public static RequestMetrics execute( final String goal, final JSONObject params, final Log log )
+		throws MojoExecutionException
+	{
+		final AbstractRequestMojo mojo;
+		switch ( goal )
+		{
+			case "upload":
+				mojo = new UploadNMMojo( );
+				break;
+			case "download":
+				mojo = new DownloadNMMojo( );
+				break;
+			default:
+				throw new MojoExecutionException( "Unknown goal " + goal );
+		}
+		mojo.setLog( log );
+		try
+		{
+			/* other parameters sent by the client are ignored */
+			for ( final Field field : fields( goal, mojo.getClass( ) ) )
+			{
+				if ( params.has( field.getName( ) ) )
+				{
+					field.set( mojo, value( field.getType( ), params, field.getName( ) ) );
+				}
+			}
+		}
+		catch ( final IllegalAccessException | RuntimeException e )
+		{
+			throw new MojoExecutionException( "Invalid parameters for goal " + goal + ": " + e.getMessage( ), e );
+		}
+		mojo.project = project( params.optJSONObject( PROJECT ) );
+		/* the daemon must not forward the goal again, the client writes the result */
+		mojo.useDaemon = false;
+		mojo.writeResults = false;
+		try
+		{
+			mojo.execute( );
+		}
+		finally
+		{
+			/* the tracer of the goal is scoped to the goal, there is no session in the daemon */
+			Tracer.uninstall( mojo );
+		}
+		return mojo.metrics;
+	}
+
+	/**
+	 * @return the forwarded parameters of the goal
+	 * @throws MojoExecutionException if the goal is unknown
+	 */
+	private static List<Field> fields( final String goal, final Class<?> type ) throws MojoExecutionException
+	{
+		final List<String> goalParameters = GOAL_PARAMETERS.get( goal );
+		if ( goalParameters == null )
+		{
+			throw new MojoExecutionException( "Unknown goal " + goal );
+		}
+		final List<Field> fields = new ArrayList<>( );
+		for ( final String name : REQUEST_PARAMETERS )
+		{
+			fields.add( field( type, name ) );
+		}
+		for ( final String name : goalParameters )
+		{
+			fields.add( field( type, name ) );
+		}
+		return fields;
+	}
+
+	private static Field field( final Class<?> type, final String name )
+	{
+		for ( Class<?> c = type; c != AbstractMojo.class; c = c.getSuperclass( ) )
+		{
+			try
+			{
+				final Field field = c.getDeclaredField( name );
+				field.setAccessible( true );
+				return field;
+			}
+			catch ( final NoSuchFieldException e )
+			{
+				/* declared by a super class */
+			}
+		}
+		throw new IllegalStateException( "No parameter " + name + " in " + type.getName( ) );
+	}
+
+	private static Object value( final Class<?> type, final JSONObject params, final String name )
+	{
+		if ( type == File.class )
+		{
+			return new File( params.getString( name ) );
+		}
+		if ( type == boolean.class || type == Boolean.class )
+		{
+			return params.getBoolean( name );
+		}
+		if ( type == int.class || type == Integer.class )
+		{
+			return params.getInt( name );
+		}
+		if ( type == long.class || type == Long.class )
+		{
+			return params.getLong( name );
+		}
+		return params.getString( name );
+	}
+
+	private static MavenProject project( final JSONObject json )
+	{
+		final MavenProject project = new MavenProject( );
+		if ( json != null )
+		{
+			project.setFile( new File( json.getString( "basedir" ), "pom.xml" ) );
+			project.setArtifactId( json.optString( "artifactId" ) );
+			project.setVersion( json.optString( "version" ) );
+		}
+		return project;
+	}
+}
@@ -15,45 +15,55 @@
  */
 package com.apiomat.helper.mvnnmhelper.mojos;
 
+import com.apiomat.helper.mvnnmhelper.http.RequestDeadline;
+import com.apiomat.helper.mvnnmhelper.http.ResponseBody;
+import com.apiomat.helper.mvnnmhelper.transfer.JarDelta;
+import com.apiomat.helper.mvnnmhelper.transfer.JarEntryManifest;
+import com.apiomat.helper.mvnnmhelper.transfer.ModuleArchive;
+import com.apiomat.helper.mvnnmhelper.transfer.TransferProgress;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.io.filefilter.FileFileFilter;
-import org.apache.commons.io.filefilter.FileFilterUtils;
-import org.apache.commons.io.filefilter.IOFileFilter;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.fluent.Request;
 import org.apache.http.client.fluent.Response;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.conn.ConnectionReleaseTrigger;
+import org.apache.http.entity.ContentType;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.utils.StringUtils;
+import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
+import java.util.Set;
 
 /**
  * Goal to download the native module.
  *
  * @author thum
  */
-@Mojo( name = "download", defaultPhase = LifecyclePhase.NONE )
+@Mojo( name = "download", defaultPhase = LifecyclePhase.NONE, threadSafe = true )
 public class DownloadNMMojo extends AbstractRequestMojo
 {
+	/** status codes with which yambas signals that it does not support delta downloads */
+	private static final Set<Integer> DELTA_UNSUPPORTED_STATUS_CODES =
+		new HashSet<>( Arrays.asList( 404, 405, 415, 501 ) );
+
 	/**
 	 * Property to indicate whether the generated parts and the previously uploaded jar should be merged, or only the
 	 * generated parts should be returned
@@ -73,113 +83,187 @@ public class DownloadNMMojo extends AbstractRequestMojo
 	@Parameter( defaultValue = "false", property = "overwriteHooks" )
 	protected String overwriteHooks;
 
+	/**
+	 * whether to download only the files which differ from the local ones, if yambas supports it
+	 */
+	@Parameter( defaultValue = "false", property = "nmDeltaDownload" )
+	protected boolean deltaDownload;
+
+	/**
+	 * directory storing the entries of the last downloaded archive per module directory for delta downloads
+	 */
+	@Parameter( defaultValue = "${user.home}/.m2/nm-download-manifests", property = "nmDownloadManifests" )
+	protected File downloadManifests;
+
 	@Override
 	public void executeRequest( ) throws MojoExecutionException, ClientProtocolException, IOException
 	{
+		if ( this.useDaemon )
+		{
+			downloadInDaemon( );
+			return;
+		}
 		getLog( ).info( "Downloading updated native module" );
-		final File destinationFile = new File( this.project.getBasedir( ), "nm.zip" );
-		final Response response =
-			Request.Get( buildHostUrl( ) ).addHeader( "Authorization", getUserAuthHeaderValue( ) ).execute( );
-		response.saveContent( destinationFile );
-
-		final File tmpDir = new File( this.project.getBasedir( ), "tmp" );
-		FileUtils.forceMkdir( tmpDir );
-		copyFilesToTemp( this.project.getBasedir( ), tmpDir, Boolean.parseBoolean( this.overwriteHooks ) );
-		unzipFile( destinationFile, this.project.getBasedir( ) );
-		copyFilesFromTemp( this.project.getBasedir( ), tmpDir );
-		FileUtils.deleteQuietly( tmpDir );
-		FileUtils.deleteQuietly( destinationFile );
-
+		/* a file of its own per execution, another execution may download the same module at the same time */
+		final File destinationFile = File.createTempFile( "nm-", ".zip", this.project.getBasedir( ) );
+		try
+		{
+			download( destinationFile );
+		}
+		finally
+		{
+			FileUtils.deleteQuietly( destinationFile );
+		}
 	}
 
-	/**
-	 * Copies all existing module files from baseDir to the tmpDir
-	 *
-	 * @param baseDir
-	 * @param tmpDir
-	 * @param overwriteHooks
-	 * @throws IOException
-	 */
-	protected static void copyFilesToTemp( final File baseDir, final File tmpDir, final boolean overwriteHooks )
-		throws IOException
+	private void download( final File destinationFile ) throws IOException, MojoExecutionException
 	{
-		final File sdkProps = new File( baseDir, "sdk.properties" );
-		if ( sdkProps.exists( ) )
+		final File manifestFile = this.deltaDownload ? JarEntryManifest.fileFor( this.downloadManifests,
+			getOneModuleName( ), this.host, this.system, this.project.getVersion( ), this.merge, this.eclipse,
+			this.project.getBasedir( ).getAbsolutePath( ) ) : null;
+		final JarEntryManifest previous = this.deltaDownload ? JarEntryManifest.load( manifestFile ) : null;
+		final boolean delta = previous != null && downloadDelta( previous, destinationFile );
+		if ( delta == false )
 		{
-			FileUtils.copyFileToDirectory( sdkProps, tmpDir );
+			final URI hostUrl = buildHostUrl( "/asset" );
+			executeWithRetry( "Download of native module", true, ( attemptNo, deadline ) -> {
+				final String authHeaderValue = getUserAuthHeaderValue( );
+				final Response response = send( applyTimeouts( Request.Get( hostUrl ), deadline )
+					.addHeader( "Authorization", authHeaderValue ) );
+				return response.handleResponse(
+					httpResponse -> saveContent( httpResponse, destinationFile, authHeaderValue, deadline ) );
+			} );
 		}
+		final JarEntryManifest downloaded = JarEntryManifest.of( destinationFile );
+		final List<String> deleted = delta ? JarDelta.readDeleted( destinationFile ) : Collections.emptyList( );
+		this.metrics.recordFiles( downloaded.getEntries( ).size( ) + deleted.size( ) );
 
-		final File readmeMd = new File( baseDir, "readme.md" );
-		if ( readmeMd.exists( ) )
+		ModuleArchive.extract( destinationFile, this.project.getBasedir( ), Boolean.parseBoolean( this.overwriteHooks ),
+			deleted );
+
+		if ( manifestFile != null )
 		{
-			FileUtils.copyFileToDirectory( readmeMd, tmpDir );
+			( delta ? previous.withChanges( downloaded, deleted ) : downloaded ).save( manifestFile );
 		}
-		final File gitignore = new File( baseDir, ".gitignore" );
-		if ( gitignore.exists( ) )
+		this.metrics.recordMessage( ( delta ? "Downloaded " : "Downloaded all " ) + downloaded.getEntries( ).size( ) +
+			" files of module " + getOneModuleName( ) );
+	}
+
+	private void downloadInDaemon( ) throws IOException, MojoExecutionException
+	{
+		executeInDaemon( "download", new JSONObject( ) );
+	}
+
+	/**
+	 * Sends the CRCs of the local files of the last downloaded archive and downloads a delta zip with the files which
+	 * differ and the names of the files which no longer exist (see {@link JarDelta})
+	 *
+	 * @param previous the entries of the last downloaded archive
+	 * @param destinationFile the file to store the delta zip in
+	 * @return false if yambas does not support delta downloads
+	 * @throws IOException
+	 * @throws MojoExecutionException
+	 */
+	private boolean downloadDelta( final JarEntryManifest previous, final File destinationFile )
+		throws IOException, MojoExecutionException
+	{
+		final JarEntryManifest local =
+			JarEntryManifest.ofFiles( this.project.getBasedir( ), previous.getEntries( ).keySet( ) );
+		final URI hostUrl = buildHostUrl( "/asset/delta" );
+		final String body = local.toJson( ).toString( );
+		try
 		{
-			FileUtils.copyFileToDirectory( gitignore, tmpDir );
+			/* POST only transports the manifest, the request does not change anything and may be repeated */
+			executeWithRetry( "Delta download of native module", true, ( attemptNo, deadline ) -> {
+				final String authHeaderValue = getUserAuthHeaderValue( );
+				final Response response = send( applyTimeouts( Request.Post( hostUrl ), deadline )
+					.addHeader( "Authorization", authHeaderValue )
+					.bodyString( body, ContentType.APPLICATION_JSON ) );
+				return response.handleResponse(
+					httpResponse -> saveContent( httpResponse, destinationFile, authHeaderValue, deadline ) );
+			} );
+			return true;
 		}
-		final List<IOFileFilter> fileFilter = new ArrayList<>( );
-		if ( overwriteHooks == false )
+		catch ( final HttpResponseException e )
 		{
-			fileFilter.add( FileFilterUtils.suffixFileFilter( "HooksTransient.java" ) );
-			fileFilter.add( FileFilterUtils.suffixFileFilter( "HooksNonTransient.java" ) );
-			fileFilter.add( FileFilterUtils.suffixFileFilter( "Hooks.java" ) );
+			if ( DELTA_UNSUPPORTED_STATUS_CODES.contains( e.getStatusCode( ) ) == false )
+			{
+				throw e;
+			}
+			getLog( ).info( "Delta download not supported (" + e.getStatusCode( ) + "), downloading the module" );
+			return false;
 		}
-		fileFilter.add( FileFilterUtils.nameFileFilter( "RestClass.java" ) );
-		final IOFileFilter allHooksFilter = FileFilterUtils.or( fileFilter.stream( ).toArray( IOFileFilter[ ]::new ) );
-		final IOFileFilter allHooksFiles = FileFilterUtils.and( FileFileFilter.FILE, allHooksFilter );
-
-		/* Create a filter for either directories or hook files */
-		final FileFilter filter = FileFilterUtils.or( DirectoryFileFilter.DIRECTORY, allHooksFiles );
-
-		FileUtils.copyDirectory( new File( baseDir, "src" ), tmpDir, filter );
 	}
 
 	/**
-	 * Copies all existing module files from tmpDir to baseDir
+	 * Writes the response body to the destination file and reports the progress of the download
 	 *
-	 * @param baseDir
-	 * @param tmpDir
+	 * @param httpResponse the response
+	 * @param destinationFile the file to store the body in
+	 * @param authHeaderValue the authorization the request was sent with
+	 * @param deadline the deadline after which the download is aborted
+	 * @return the destination file
 	 * @throws IOException
 	 */
-	protected static void copyFilesFromTemp( final File baseDir, final File tmpDir ) throws IOException
+	@SuppressWarnings( "try" ) /* the deadline watch is only closed */
+	private File saveContent( final HttpResponse httpResponse, final File destinationFile,
+		final String authHeaderValue, final RequestDeadline deadline ) throws IOException
 	{
-		final File sdkProps = new File( tmpDir, "sdk.properties" );
-		if ( sdkProps.exists( ) )
+		final StatusLine status = httpResponse.getStatusLine( );
+		this.metrics.recordStatusCode( status.getStatusCode( ) );
+		checkAuthorization( status.getStatusCode( ), authHeaderValue );
+		if ( status.getStatusCode( ) >= 300 )
 		{
-			FileUtils.copyFileToDirectory( sdkProps, baseDir );
+			/* only the summary is read, the connection of a larger body is aborted instead of reading it to its end */
+			final String summary = ResponseBody.summary( httpResponse.getEntity( ), this.responseBodyLimit );
+			throw new HttpResponseException( status.getStatusCode( ), StringUtils.isBlank( summary ) ?
+				status.getReasonPhrase( ) : status.getReasonPhrase( ) + ": " + summary );
 		}
-
-		final File readmeMd = new File( tmpDir, "readme.md" );
-		if ( readmeMd.exists( ) )
+		final HttpEntity entity = httpResponse.getEntity( );
+		try (final OutputStream out = new FileOutputStream( destinationFile ))
 		{
-			FileUtils.copyFileToDirectory( readmeMd, baseDir );
+			if ( entity != null )
+			{
+				final TransferProgress progress =
+					createTransferProgress( "Downloading native module", entity.getContentLength( ) );
+				try (final InputStream in = entity.getContent( );
+					final RequestDeadline.Watch watch = deadline.watch( ( ) -> abortConnection( in ) ))
+				{
+					progress.copy( in, out );
+				}
+				progress.finish( );
+			}
 		}
-		final File gitignore = new File( tmpDir, ".gitignore" );
-		if ( gitignore.exists( ) )
+		return destinationFile;
+	}
+
+	/**
+	 * Aborts the connection of a running download, closing the stream would read the remaining content instead
+	 */
+	private static void abortConnection( final InputStream in )
+	{
+		if ( in instanceof ConnectionReleaseTrigger )
 		{
-			FileUtils.copyFileToDirectory( gitignore, baseDir );
+			try
+			{
+				( ( ConnectionReleaseTrigger ) in ).abortConnection( );
+			}
+			catch ( final IOException e )
+			{
+				/* ignore, the download fails anyway */
+			}
 		}
-		final List<IOFileFilter> fileFilter = new ArrayList<>( );
-		fileFilter.add( FileFilterUtils.suffixFileFilter( "HooksTransient.java" ) );
-		fileFilter.add( FileFilterUtils.suffixFileFilter( "HooksNonTransient.java" ) );
-		fileFilter.add( FileFilterUtils.suffixFileFilter( "Hooks.java" ) );
-		fileFilter.add( FileFilterUtils.nameFileFilter( "RestClass.java" ) );
-		final IOFileFilter allHooksFilter = FileFilterUtils.or( fileFilter.stream( ).toArray( IOFileFilter[ ]::new ) );
-		final IOFileFilter allHooksFiles = FileFilterUtils.and( FileFileFilter.FILE, allHooksFilter );
-		// Create a filter for either directories or hook files
-		final FileFilter filter = FileFilterUtils.or( DirectoryFileFilter.DIRECTORY, allHooksFiles );
-
-		FileUtils.copyDirectory( tmpDir, new File( baseDir, "src" ), filter );
 	}
 
-	private URI buildHostUrl( ) throws MojoExecutionException
+	/**
+	 * @param path the path below the module version, like "/asset"
+	 */
+	private URI buildHostUrl( final String path ) throws MojoExecutionException
 	{
 		try
 		{
 			final StringBuilder sb = new StringBuilder( );
-			sb.append( getBaseUrl( ) ).append( "/asset" );
+			sb.append( getBaseUrl( ) ).append( path );
 
 			final URIBuilder bldr = new URIBuilder( sb.toString( ) );
 			if ( StringUtils.isNotBlank( this.system ) )
@@ -202,39 +286,4 @@ public class DownloadNMMojo extends AbstractRequestMojo
 		}
 	}
 
-	/**
-	 * unzips a given file to the given output directory
-	 *
-	 * @param file
-	 *        the zip file (or jar) to unzip
-	 * @param outputDir
-	 *        the output-directory to unzip the files to
-	 * @throws ZipException
-	 * @throws IOException
-	 */
-	protected static void unzipFile( final File file, final File outputDir ) throws ZipException, IOException
-	{
-		try (final ZipFile zipFile = new ZipFile( file ))
-		{
-			final Enumeration<? extends ZipEntry> entries = zipFile.entries( );
-			while ( entries.hasMoreElements( ) )
-			{
-				final ZipEntry entry = entries.nextElement( );
-				final File entryDestination = new File( outputDir, entry.getName( ) );
-				if ( entry.isDirectory( ) )
-				{
-					entryDestination.mkdirs( );
-				}
-				else
-				{
-					entryDestination.getParentFile( ).mkdirs( );
-					try (final InputStream in = zipFile.getInputStream( entry );
-						final OutputStream out = new FileOutputStream( entryDestination ))
-					{
-						IOUtils.copy( in, out );
-					}
-				}
-			}
-		}
-	}
 }
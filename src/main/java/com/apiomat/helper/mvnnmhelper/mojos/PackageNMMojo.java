@@ -38,7 +38,7 @@ import java.lang.reflect.Field;
  * @author thum
  */
 @Mojo( name = "package", defaultPhase = LifecyclePhase.PACKAGE, requiresProject = true,
-	requiresDependencyResolution = ResolutionScope.RUNTIME )
+	requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true )
 public class PackageNMMojo extends JarMojo
 {
 	private static final String[ ] DEFAULT_EXCLUDES = new String[ ] { "**/package.html" };
@@ -131,7 +131,7 @@ public class PackageNMMojo extends JarMojo
 		}
 		catch ( final NoSuchFieldException | SecurityException | IllegalArgumentException | IllegalAccessException e )
 		{
-			e.printStackTrace( );
+			getLog( ).warn( "Could not read field " + fieldName + " of the jar plugin", e );
 		}
 		return null;
 	}
@@ -23,7 +23,7 @@ import org.apache.maven.plugins.annotations.Mojo;
  *
  * @author thum
  */
-@Mojo( name = "release", defaultPhase = LifecyclePhase.NONE )
+@Mojo( name = "release", defaultPhase = LifecyclePhase.NONE, threadSafe = true )
 public class ReleaseNMMojo extends AbstractReleaseStateMojo
 {
 	@Override
@@ -23,7 +23,7 @@ import org.apache.maven.plugins.annotations.Mojo;
  *
  * @author thum
  */
-@Mojo( name = "unrelease", defaultPhase = LifecyclePhase.NONE )
+@Mojo( name = "unrelease", defaultPhase = LifecyclePhase.NONE, threadSafe = true )
 public class UnreleaseNMMojo extends AbstractReleaseStateMojo
 {
 	@Override
@@ -34,7 +34,7 @@ import java.util.List;
  *
  * @author thum
  */
-@Mojo( name = "updateAfterDatamodelChange", defaultPhase = LifecyclePhase.NONE )
+@Mojo( name = "updateAfterDatamodelChange", defaultPhase = LifecyclePhase.NONE, threadSafe = true )
 public class UpdateAfterDataModelChangeNMMojo extends AbstractRequestMojo
 {
 	@Override
@@ -15,22 +15,44 @@
  */
 package com.apiomat.helper.mvnnmhelper.mojos;
 
-import com.apiomat.helper.mvnnmhelper.ModuleUpdateManager;
-import com.apiomat.helper.mvnnmhelper.VersionCompareHelper;
+import com.apiomat.helper.mvnnmhelper.JarManifestCache;
+import com.apiomat.helper.mvnnmhelper.UpdatePlan;
+import com.apiomat.helper.mvnnmhelper.NMVersion;
+import com.apiomat.helper.mvnnmhelper.NMVersionRange;
+import com.apiomat.helper.mvnnmhelper.WorkspaceMigration;
+import com.apiomat.helper.mvnnmhelper.migration.MigrationChain;
+import com.apiomat.helper.mvnnmhelper.migration.MigrationContext;
+import com.apiomat.helper.mvnnmhelper.migration.MigrationEngine;
+import com.apiomat.helper.mvnnmhelper.migration.MigrationRegistry;
+import com.apiomat.helper.mvnnmhelper.trace.Span;
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.plexus.util.StringUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Goal to update the module contents to the specified yambas version
+ * Goal to update the module contents to the specified yambas version. If a workspace is given, all modules found
+ * within the workspace are updated instead of the current project.
  *
  * @author thum
  */
-@Mojo( name = "updateVersion", defaultPhase = LifecyclePhase.GENERATE_SOURCES )
+@Mojo( name = "updateVersion", defaultPhase = LifecyclePhase.GENERATE_SOURCES, requiresProject = false,
+	threadSafe = true )
 public class UpdateVersionNMMojo extends AbstractModuleMojo
 {
 
@@ -46,6 +68,69 @@ public class UpdateVersionNMMojo extends AbstractModuleMojo
 	@Parameter( defaultValue = "${project.name}", property = "toVersion" )
 	protected String toVersion;
 
+	/**
+	 * range of versions whose migrations are executed, like [2.5,3.3); overrides fromVersion and toVersion
+	 */
+	@Parameter( property = "nmVersionRange" )
+	protected String versionRange;
+
+	/**
+	 * directory containing the module checkouts to update; if set, all modules found within are updated instead of
+	 * the current project
+	 */
+	@Parameter( property = "nmWorkspace" )
+	protected File workspace;
+
+	/**
+	 * maximum depth of directories to search for modules within the workspace
+	 */
+	@Parameter( defaultValue = "3", property = "nmWorkspaceDepth" )
+	protected int workspaceDepth;
+
+	/**
+	 * maximum number of modules updated in parallel
+	 */
+	@Parameter( defaultValue = "4", property = "nmWorkspaceThreads" )
+	protected int workspaceThreads;
+
+	/**
+	 * what to do if the update of a module in the workspace fails: continue (update all other modules and fail at the
+	 * end), abort (do not start further updates and fail at the end) or ignore (only report the failure)
+	 */
+	@Parameter( defaultValue = "continue", property = "nmWorkspaceFailurePolicy" )
+	protected String workspaceFailurePolicy;
+
+	/**
+	 * maximum number of migration steps executed in parallel for one module; only steps touching different files
+	 * run in parallel
+	 */
+	@Parameter( defaultValue = "2", property = "nmMigrationThreads" )
+	protected int migrationThreads;
+
+	/**
+	 * if true, the module is not changed; instead the planned changes are logged and written to the plan file
+	 */
+	@Parameter( defaultValue = "false", property = "nmDryRun" )
+	protected boolean dryRun;
+
+	/**
+	 * file the plan of a dry run is written to
+	 */
+	@Parameter( defaultValue = "${project.build.directory}/nm-update-plan.json", property = "nmPlanFile" )
+	protected File planFile;
+
+	/**
+	 * plan written by a dry run; if set, the planned changes are executed without scanning the modules again
+	 */
+	@Parameter( property = "nmExecutePlan" )
+	protected File executePlan;
+
+	/**
+	 * file caching the manifests of module libraries between builds, so unchanged jars are not opened again
+	 */
+	@Parameter( defaultValue = "${user.home}/.m2/nm-jar-manifests.json", property = "nmManifestCache" )
+	protected File manifestCacheFile;
+
 	@Override
 	public void execute( ) throws MojoExecutionException
 	{
@@ -55,107 +140,254 @@ public class UpdateVersionNMMojo extends AbstractModuleMojo
 			getLog( ).info( "Execution skipped" );
 			return;
 		}
+		try (final Span span = startTrace( "nm:updateVersion" ))
+		{
+			try
+			{
+				update( );
+			}
+			catch ( final MojoExecutionException | RuntimeException e )
+			{
+				span.recordError( e );
+				throw e;
+			}
+		}
+	}
 
-		/* INTERNAL NOTE: always work with the basePath, when working on the filesystem, as the task may be called
-		 * internally in yambas and therefore have another workdir than the specified basepath */
-		final File basePath = this.project.getBasedir( );
+	private void update( ) throws MojoExecutionException
+	{
+		if ( this.executePlan != null )
+		{
+			executePlanFile( );
+			return;
+		}
 
-		int[ ] fromVerArr = null;
-		int[ ] toVerArr = null;
+		/* the chain of migrations is computed once, also when updating a whole workspace */
+		final MigrationChain chain =
+			MigrationRegistry.load( getClass( ).getClassLoader( ) ).chain( getVersionRange( ) );
+		if ( chain.isEmpty( ) )
+		{
+			getLog( ).info( "No migrations to execute" );
+			return;
+		}
+		getLog( ).info( "Migrations: " + chain );
+		final MigrationEngine engine = new MigrationEngine( this.migrationThreads );
+		final JarManifestCache manifestCache =
+			JarManifestCache.load( this.manifestCacheFile, Runtime.getRuntime( ).availableProcessors( ) );
+		try
+		{
+			migrate( chain, engine, manifestCache );
+		}
+		finally
+		{
+			try
+			{
+				manifestCache.save( );
+			}
+			catch ( final IOException e )
+			{
+				getLog( ).warn( "Could not write manifest cache " + this.manifestCacheFile + ": " + e.getMessage( ) );
+			}
+		}
+	}
 
-		if ( StringUtils.isNotBlank( this.fromVersion ) )
+	private void migrate( final MigrationChain chain, final MigrationEngine engine,
+		final JarManifestCache manifestCache ) throws MojoExecutionException
+	{
+		if ( this.workspace != null && this.dryRun )
 		{
-			fromVerArr = VersionCompareHelper.parseNumbers( this.fromVersion );
+			planWorkspace( chain, engine, manifestCache );
+			return;
 		}
-		if ( StringUtils.isNotBlank( this.toVersion ) )
+		if ( this.workspace != null )
 		{
-			toVerArr = VersionCompareHelper.parseNumbers( this.toVersion );
+			updateWorkspace( chain, engine, manifestCache );
+			return;
 		}
-		if ( fromVerArr == null && toVerArr == null )
+		/* INTERNAL NOTE: always work with the basePath, when working on the filesystem, as the task may be called
+		 * internally in yambas and therefore have another workdir than the specified basepath */
+		final File basePath = this.project.getBasedir( );
+		printDashLine( );
+		final MigrationContext context =
+			new MigrationContext( basePath, getOneModuleName( ), getLog( ), manifestCache );
+		if ( this.dryRun )
 		{
-			/* return if both versions are not set/unparseable */
-			throw new MojoExecutionException(
-				"Error: You haven't set any version property (or not properly). " +
-					"Please add either \"fromVersion\" or \"toVersion\" as parameter. " +
-					"The value should be in the form of \"2.5.0\"" );
+			final UpdatePlan plan = engine.plan( chain, context );
+			plan.log( getLog( ) );
+			writePlanFile( plan.toJson( ) );
+			return;
 		}
-		if ( fromVerArr == null )
-		{ /* if from version is not set, set it to 0,0,0 */
-			getLog( )
-				.warn( "Warning: No or unparseable \"fromVersion\" property found. " +
-					"Will fallback to value \"0.0.0\". Any available update until version " + intToStr( toVerArr ) +
-					" will be executed." );
-			fromVerArr = new int[ ] { 0, 0, 0 };
+		engine.run( chain, context );
+	}
+
+	private void planWorkspace( final MigrationChain chain, final MigrationEngine engine,
+		final JarManifestCache manifestCache ) throws MojoExecutionException
+	{
+		final Map<File, UpdatePlan> plans = new ConcurrentHashMap<>( );
+		runOnWorkspace( getWorkspaceModules( ), ( moduleDir, moduleName, log ) -> {
+			final UpdatePlan plan =
+				engine.plan( chain, new MigrationContext( moduleDir, moduleName, log, manifestCache ) );
+			plan.log( log );
+			plans.put( moduleDir, plan );
+		} );
+		final JSONArray modules = new JSONArray( );
+		plans.entrySet( ).stream( ).sorted( Map.Entry.comparingByKey( ) )
+			.forEach( entry -> modules.put( entry.getValue( ).toJson( ) ) );
+		writePlanFile( new JSONObject( ).put( "modules", modules ) );
+	}
+
+	private void writePlanFile( final JSONObject plan ) throws MojoExecutionException
+	{
+		try
+		{
+			FileUtils.writeStringToFile( this.planFile, plan.toString( 2 ), StandardCharsets.UTF_8 );
 		}
-		if ( toVerArr == null )
+		catch ( final IOException e )
 		{
-			getLog( ).warn( "Warning: No or unparseable \"toVersion\" property found. " +
-				"Will fallback to value \"999.999.999\" Any available update after version " + intToStr( fromVerArr ) +
-				" will be executed." );
-			/* if to version is not set, set it to 999,999,999 */
-			toVerArr = new int[ ] { 999, 999, 999 };
+			throw new MojoExecutionException( "Could not write plan " + this.planFile.getAbsolutePath( ), e );
 		}
-		getLog( ).info( "Updating from: " + intToStr( fromVerArr ) + " toVersionArray: " + intToStr( toVerArr ) );
+		getLog( ).info( "Plan written to " + this.planFile.getAbsolutePath( ) +
+			", execute it with -DnmExecutePlan=" + this.planFile.getPath( ) );
+	}
 
-		final ModuleUpdateManager updateManager = new ModuleUpdateManager( basePath, getOneModuleName( ), getLog( ) );
-		if ( checkUpdate( fromVerArr, toVerArr, new int[ ] { 2, 5, 0 } ) )
+	private void executePlanFile( ) throws MojoExecutionException
+	{
+		final JSONObject json;
+		try
 		{
-			printDashLine( );
-			getLog( ).info( "Updating to 2.5.0" );
-			updateManager.removeStaticClasses250( );
-			updateManager.cleanJarsFor250( );
+			json = new JSONObject( FileUtils.readFileToString( this.executePlan, StandardCharsets.UTF_8 ) );
 		}
-		if ( checkUpdate( fromVerArr, toVerArr, new int[ ] { 3, 3, 0 } ) )
+		catch ( final IOException | JSONException e )
+		{
+			throw new MojoExecutionException( "Could not read plan " + this.executePlan.getAbsolutePath( ), e );
+		}
+		final JSONArray modules = json.optJSONArray( "modules" );
+		if ( modules == null )
 		{
-			printDashLine( );
-			getLog( ).info( "Updating to 3.3.0" );
-			updateManager.cleanJarsFor330( );
 			try
 			{
-				getLog( ).info( "Disable deprecated methods in hook classes" );
-				updateManager.cleanHookClassesFor330( );
+				UpdatePlan.fromJson( json ).execute( getLog( ) );
 			}
-			catch ( final Exception e )
+			catch ( final IOException | JSONException e )
 			{
-				getLog( ).info( "Error cleaning Hook Classes for version 3.3.0. Reason: " + e.toString( ) );
+				throw new MojoExecutionException( "Could not execute plan " + this.executePlan.getAbsolutePath( ), e );
 			}
+			return;
+		}
+		final Map<File, UpdatePlan> plans = new HashMap<>( );
+		final List<File> moduleDirs = new ArrayList<>( );
+		for ( int i = 0; i < modules.length( ); i++ )
+		{
+			final UpdatePlan plan = UpdatePlan.fromJson( modules.getJSONObject( i ) );
+			plans.put( plan.getBasePath( ), plan );
+			moduleDirs.add( plan.getBasePath( ) );
 		}
+		runOnWorkspace( moduleDirs, ( moduleDir, moduleName, log ) -> plans.get( moduleDir ).execute( log ) );
+	}
 
+	private List<File> getWorkspaceModules( ) throws MojoExecutionException
+	{
+		if ( this.workspace.isDirectory( ) == false )
+		{
+			throw new MojoExecutionException( "Workspace " + this.workspace.getAbsolutePath( ) + " does not exist" );
+		}
+		final List<File> modules = WorkspaceMigration.discoverModules( this.workspace, this.workspaceDepth );
+		getLog( ).info( "Found " + modules.size( ) + " modules in workspace " + this.workspace.getAbsolutePath( ) );
+		return modules;
 	}
 
-	/**
-	 * Prints out 80 dashes
-	 */
-	private void printDashLine( )
+	private void updateWorkspace( final MigrationChain chain, final MigrationEngine engine,
+		final JarManifestCache manifestCache ) throws MojoExecutionException
 	{
-		getLog( ).info( "-------------------------------------------------------------------------------" );
+		runOnWorkspace( getWorkspaceModules( ), ( moduleDir, moduleName, log ) -> engine.run( chain,
+			new MigrationContext( moduleDir, moduleName, log, manifestCache ) ) );
+	}
+
+	private void runOnWorkspace( final List<File> modules, final WorkspaceMigration.ModuleStep step )
+		throws MojoExecutionException
+	{
+		final WorkspaceMigration.FailurePolicy failurePolicy;
+		try
+		{
+			failurePolicy =
+				WorkspaceMigration.FailurePolicy.valueOf( this.workspaceFailurePolicy.toUpperCase( Locale.ROOT ) );
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			throw new MojoExecutionException( "Unknown failure policy " + this.workspaceFailurePolicy +
+				", use one of continue, abort or ignore" );
+		}
+		final WorkspaceMigration migration = new WorkspaceMigration( getLog( ), this.workspaceThreads, failurePolicy );
+		final List<WorkspaceMigration.ModuleResult> results;
+		try
+		{
+			results = migration.run( modules, step );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new MojoExecutionException( "Workspace update was interrupted", e );
+		}
+		if ( migration.report( results ) )
+		{
+			throw new MojoExecutionException( "Update of some modules in workspace failed, see report above" );
+		}
 	}
 
-	private static String intToStr( final int[ ] input )
+	/**
+	 * @return the range of target versions of the migrations to execute, from the versionRange or the from and to
+	 *         version
+	 * @throws MojoExecutionException if no version is set or the version range is invalid
+	 */
+	private NMVersionRange getVersionRange( ) throws MojoExecutionException
 	{
-		final StringBuilder sb = new StringBuilder( 2 * input.length + 1 );
-		for ( int i = 0; i < input.length; i++ )
+		if ( StringUtils.isNotBlank( this.versionRange ) )
+		{
+			try
+			{
+				final NMVersionRange range = NMVersionRange.parse( this.versionRange );
+				getLog( ).info( "Updating to versions in range: " + range );
+				return range;
+			}
+			catch ( final IllegalArgumentException e )
+			{
+				throw new MojoExecutionException( "Error: " + e.getMessage( ), e );
+			}
+		}
+		final NMVersion from = NMVersion.parse( this.fromVersion );
+		final NMVersion to = NMVersion.parse( this.toVersion );
+		if ( from == null && to == null )
+		{
+			/* return if both versions are not set/unparseable */
+			throw new MojoExecutionException(
+				"Error: You haven't set any version property (or not properly). " +
+					"Please add either \"fromVersion\" or \"toVersion\" as parameter. " +
+					"The value should be in the form of \"2.5.0\"" );
+		}
+		if ( from == null )
 		{
-			sb.append( input[ i ] ).append( '.' );
+			getLog( )
+				.warn( "Warning: No or unparseable \"fromVersion\" property found. " +
+					"Any available update until version " + to + " will be executed." );
 		}
-		return sb.toString( ).substring( 0, 2 * input.length - 1 );
+		if ( to == null )
+		{
+			getLog( ).warn( "Warning: No or unparseable \"toVersion\" property found. " +
+				"Any available update after version " + from + " will be executed." );
+		}
+		getLog( ).info( "Updating from: " + ( from == null ? "-" : from ) + " to: " + ( to == null ? "-" : to ) );
+		if ( to != null && to.isSnapshot( ) )
+		{
+			getLog( ).info( "Including the migrations to " + to.getRelease( ) + " for the snapshot " + to );
+		}
+		return NMVersionRange.between( from, to );
 	}
 
-	private static boolean checkUpdate( final int[ ] fromVersionArr, final int[ ] toVersionArr,
-		final int[ ] currentVersionCheck )
+	/**
+	 * Prints out 80 dashes
+	 */
+	private void printDashLine( )
 	{
-		/* update if the version from which the update was started is lower than the current version to check the
-		 * updates for */
-		final boolean isCheckVerNewerThanFrom =
-			VersionCompareHelper.isNewer( fromVersionArr[ 0 ], fromVersionArr[ 1 ], fromVersionArr[ 2 ], 0,
-				currentVersionCheck[ 0 ], currentVersionCheck[ 1 ], currentVersionCheck[ 2 ], 0 );
-
-		/* and if the version to check currently is equal or older than the version to which the update should be
-		 * made */
-		final boolean isTargetNewerOrEq =
-			VersionCompareHelper.isNewerOrEqual( currentVersionCheck[ 0 ], currentVersionCheck[ 1 ],
-				currentVersionCheck[ 2 ], 0, toVersionArr[ 0 ], toVersionArr[ 1 ], toVersionArr[ 2 ], 0 );
-
-		return isCheckVerNewerThanFrom && isTargetNewerOrEq;
+		getLog( ).info( "-------------------------------------------------------------------------------" );
 	}
 }
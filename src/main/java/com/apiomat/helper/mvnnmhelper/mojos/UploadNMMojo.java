@@ -15,32 +15,75 @@
  */
 package com.apiomat.helper.mvnnmhelper.mojos;
 
+import com.apiomat.helper.mvnnmhelper.PrefixedLog;
+import com.apiomat.helper.mvnnmhelper.SessionEndHooks;
+import com.apiomat.helper.mvnnmhelper.http.PendingUploads;
+import com.apiomat.helper.mvnnmhelper.http.RequestDeadline;
+import com.apiomat.helper.mvnnmhelper.http.RequestMetrics;
+import com.apiomat.helper.mvnnmhelper.http.ResponseBody;
+import com.apiomat.helper.mvnnmhelper.http.RetryPolicy;
+import com.apiomat.helper.mvnnmhelper.http.UploadStatusPoller;
+import com.apiomat.helper.mvnnmhelper.trace.Span;
+import com.apiomat.helper.mvnnmhelper.trace.Tracer;
+import com.apiomat.helper.mvnnmhelper.transfer.JarDelta;
+import com.apiomat.helper.mvnnmhelper.transfer.JarEntryManifest;
+import com.apiomat.helper.mvnnmhelper.transfer.TransferProgress;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.PluginConfigurationException;
+import org.apache.maven.plugin.PluginContainerException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.utils.StringUtils;
+import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipFile;
 
 /**
  * Goal to upload a native module artifact
  *
  * @author thum
  */
-@Mojo( name = "upload", defaultPhase = LifecyclePhase.DEPLOY )
+@Mojo( name = "upload", defaultPhase = LifecyclePhase.DEPLOY, threadSafe = true )
 public class UploadNMMojo extends AbstractRequestMojo
 {
+	/** response header with which yambas advertises that it accepts delta uploads */
+	static final String DELTA_SUPPORT_HEADER = "X-apiomat-delta-upload";
+
+	/** status codes with which a delta upload is rejected, e.g. as yambas no longer has the jar the delta is for */
+	private static final Set<Integer> DELTA_REJECTED_STATUS_CODES =
+		new HashSet<>( Arrays.asList( 404, 405, 409, 412, 415, 501 ) );
+
+	/** the answer of yambas to an upload */
+	private static final class UploadResult
+	{
+		/** the status resource if the upload is processed asynchronously */
+		private final URI statusUri;
+		private final boolean deltaSupported;
+
+		UploadResult( final URI statusUri, final boolean deltaSupported )
+		{
+			this.statusUri = statusUri;
+			this.deltaSupported = deltaSupported;
+		}
+	}
+
 	/**
 	 * the path where the jar should be stored (build directory)
 	 */
@@ -59,6 +102,45 @@ public class UploadNMMojo extends AbstractRequestMojo
 	@Parameter( defaultValue = "false", property = "noDownload" )
 	protected boolean noDownload;
 
+	/**
+	 * whether a failed upload may be retried. Only enable this if repeating an upload has no side effects on the
+	 * yambas instance (e.g. with update=overwrite)
+	 */
+	@Parameter( defaultValue = "false", property = "nmRetryUploads" )
+	protected boolean retryUploads;
+
+	/**
+	 * whether to continue the build while yambas processes the upload; the chained download starts in the
+	 * background as soon as yambas reports completion, the build waits for all pending uploads in the last module
+	 */
+	@Parameter( defaultValue = "false", property = "nmAsyncUpload" )
+	protected boolean asyncUpload;
+
+	/**
+	 * interval in milliseconds between two polls of the processing state of an asynchronous upload, unless yambas
+	 * asks for a different one
+	 */
+	@Parameter( defaultValue = "2000", property = "nmAsyncPollInterval" )
+	protected long asyncPollInterval;
+
+	/**
+	 * maximum time in milliseconds to wait for yambas to process an asynchronous upload, 0 for no limit
+	 */
+	@Parameter( defaultValue = "1800000", property = "nmAsyncTimeout" )
+	protected long asyncTimeout;
+
+	/**
+	 * whether to upload only the entries of the jar which changed since the last upload, if yambas supports it
+	 */
+	@Parameter( defaultValue = "false", property = "nmDeltaUpload" )
+	protected boolean deltaUpload;
+
+	/**
+	 * directory storing the entries of the last uploaded jar per host, system, module and version for delta uploads
+	 */
+	@Parameter( defaultValue = "${user.home}/.m2/nm-upload-manifests", property = "nmUploadManifests" )
+	protected File uploadManifests;
+
 	/**
 	 * Directory containing the generated JAR.
 	 */
@@ -74,13 +156,226 @@ public class UploadNMMojo extends AbstractRequestMojo
 	@Override
 	public void executeRequest( ) throws MojoExecutionException, IOException
 	{
-
-		final URI hostUrl = buildHostUrl( );
+		final File jarFile = getJarFile( this.moduleJarPath, this.finalName, "NM" );
+		if ( jarFile.exists( ) == false )
+		{
+			throw new MojoExecutionException( "Can't find module jar in " + jarFile.getAbsolutePath( ) );
+		}
+		if ( this.useDaemon )
+		{
+			uploadInDaemon( );
+			return;
+		}
+		final URI hostUrl = buildHostUrl( "" );
 		final URL url = hostUrl.toURL( );
 
-		final HttpURLConnection connection = ( HttpURLConnection ) url.openConnection( );
+		final JarEntryManifest manifest = this.deltaUpload ? JarEntryManifest.of( jarFile ) : null;
+		final File manifestFile = this.deltaUpload ? JarEntryManifest.fileFor( this.uploadManifests,
+			getOneModuleName( ), this.host, this.system, this.project.getVersion( ) ) : null;
+		UploadResult result = this.deltaUpload ? uploadDelta( jarFile, manifest, manifestFile ) : null;
+		if ( result == null )
+		{
+			result = executeWithRetry( "Upload of " + jarFile.getName( ), this.retryUploads,
+				( attemptNo, deadline ) -> upload( url, jarFile, null, deadline ) );
+			try (final ZipFile zip = new ZipFile( jarFile ))
+			{
+				this.metrics.recordFiles( zip.size( ) );
+			}
+			this.metrics.recordMessage( "Uploaded " + jarFile.getName( ) );
+		}
+		final JarEntryManifest uploaded =
+			manifest != null ? manifest.withDeltaSupported( result.deltaSupported ) : null;
+		/* the next delta is computed against the manifest, so it is only saved once yambas processed the upload */
+		final boolean pending = this.asyncUpload && result.statusUri != null;
+		if ( uploaded != null && pending == false )
+		{
+			uploaded.save( manifestFile );
+		}
+		if ( this.asyncUpload )
+		{
+			awaitInBackground( pending ? hostUrl.resolve( result.statusUri ) : null, pending ? uploaded : null,
+				manifestFile );
+		}
+		else if ( this.noDownload == false )
+		{
+			executeGoal( "download" );
+		}
+		/* the uploads of other modules which failed in the meantime fail the build now */
+		PendingUploads.checkFinished( getLog( ) );
+	}
+
+	private void uploadInDaemon( ) throws IOException, MojoExecutionException
+	{
+		if ( this.asyncUpload )
+		{
+			getLog( ).warn( "Asynchronous uploads are not supported by the nm daemon, waiting for yambas" );
+		}
+		/* the download goal is executed in the build, which forwards it to the daemon itself */
+		final JSONObject overrides = new JSONObject( );
+		overrides.put( "asyncUpload", false );
+		overrides.put( "noDownload", true );
+		executeInDaemon( "upload", overrides );
+		if ( this.noDownload == false )
+		{
+			executeGoal( "download" );
+		}
+	}
+
+	/**
+	 * Uploads the entries which changed since the last upload
+	 *
+	 * @param jarFile the jar
+	 * @param manifest the entries of the jar
+	 * @param manifestFile the file storing the entries of the last uploaded jar
+	 * @return the answer of yambas, null if the whole jar has to be uploaded
+	 * @throws IOException
+	 * @throws MojoExecutionException
+	 */
+	private UploadResult uploadDelta( final File jarFile, final JarEntryManifest manifest, final File manifestFile )
+		throws IOException, MojoExecutionException
+	{
+		final JarEntryManifest previous = JarEntryManifest.load( manifestFile );
+		if ( previous == null || previous.isDeltaSupported( ) == false )
+		{
+			getLog( ).debug( "No previous upload with delta support known, uploading the whole jar" );
+			return null;
+		}
+		final JarDelta delta = JarDelta.between( previous, manifest );
+		final File deltaFile = File.createTempFile(
+			jarFile.getName( ).substring( 0, jarFile.getName( ).length( ) - ".jar".length( ) ) + "-", "-delta.zip",
+			jarFile.getParentFile( ) );
+		try
+		{
+			delta.write( jarFile, deltaFile );
+			if ( deltaFile.length( ) >= jarFile.length( ) )
+			{
+				getLog( ).debug( "Delta is not smaller than the jar, uploading the whole jar" );
+				return null;
+			}
+			getLog( ).info( "Uploading " + delta.getChanged( ).size( ) + " changed and " +
+				delta.getDeleted( ).size( ) + " deleted entries of " + jarFile.getName( ) );
+			final URL url = buildHostUrl( "/delta" ).toURL( );
+			final UploadResult result = executeWithRetry( "Delta upload of " + jarFile.getName( ), this.retryUploads,
+				( attemptNo, deadline ) -> upload( url, deltaFile, delta.getBaseFingerprint( ), deadline ) );
+			this.metrics.recordFiles( delta.getChanged( ).size( ) + delta.getDeleted( ).size( ) );
+			this.metrics.recordMessage( "Uploaded " + delta.getChanged( ).size( ) + " changed and " +
+				delta.getDeleted( ).size( ) + " deleted entries of " + jarFile.getName( ) );
+			return result;
+		}
+		catch ( final HttpResponseException e )
+		{
+			if ( DELTA_REJECTED_STATUS_CODES.contains( e.getStatusCode( ) ) == false )
+			{
+				throw e;
+			}
+			getLog( ).info( "Delta upload rejected (" + e.getStatusCode( ) + "), uploading the whole jar" );
+			return null;
+		}
+		finally
+		{
+			FileUtils.deleteQuietly( deltaFile );
+		}
+	}
+
+	/**
+	 * Waits for yambas to process the upload and downloads the module afterwards, while the build continues
+	 *
+	 * @param statusUri the status resource of the upload, null if yambas already processed it
+	 * @param manifest the entries of the uploaded jar, saved once yambas processed the upload; may be null
+	 * @param manifestFile the file to save the entries in
+	 * @throws MojoExecutionException
+	 */
+	@SuppressWarnings( "try" ) /* the span of the background wait is only closed */
+	private void awaitInBackground( final URI statusUri, final JarEntryManifest manifest, final File manifestFile )
+		throws MojoExecutionException
+	{
+		final String name = getOneModuleName( );
+		final Log log = new PrefixedLog( getLog( ), "[" + name + "] " );
+		final UploadStatusPoller poller = statusUri == null ? null :
+			new UploadStatusPoller( statusUri, getSessionAuth( ), this.asyncPollInterval );
+		final RequestDeadline deadline = RequestDeadline.of( this.asyncTimeout, this.connectTimeout, this.readTimeout );
+		final MojoExecution downloadExecution = this.noDownload ? null : goalExecution( "download" );
+		final DownloadNMMojo download = this.noDownload ? null : createDownload( downloadExecution, log );
+		final RetryPolicy retryPolicy = getRetryPolicy( );
+		final RequestMetrics metrics = this.metrics;
+		final Span parent = Tracer.current( );
+		/* the build waits for all pending uploads once all projects are built, in whatever order they ran */
+		final Log sessionLog = getLog( );
+		SessionEndHooks.register( this.session, PendingUploads.class.getName( ),
+			( ) -> PendingUploads.awaitAll( sessionLog ) );
+		PendingUploads.submit( name, ( ) -> {
+			try (final Span span = Tracer.start( "await upload processing", parent ))
+			{
+				if ( poller != null )
+				{
+					poller.await( retryPolicy, deadline, metrics, log );
+					log.info( "Upload processed by yambas" );
+				}
+				if ( manifest != null )
+				{
+					manifest.save( manifestFile );
+				}
+				if ( download != null )
+				{
+					try
+					{
+						download.execute( );
+					}
+					finally
+					{
+						this.mavenPluginManager.releaseMojo( download, downloadExecution );
+					}
+				}
+			}
+		} );
+		if ( poller != null )
+		{
+			log.info( "Upload accepted, continuing the build while yambas processes it" );
+		}
+	}
+
+	/**
+	 * @param exec the execution of the download goal, see {@link #goalExecution(String)}
+	 * @param log the log of the download
+	 * @return the download goal, configured by Maven with all its parameters like {@link #executeGoal(String)} would
+	 *         configure it, to be executed outside of the build thread
+	 * @throws MojoExecutionException
+	 */
+	private DownloadNMMojo createDownload( final MojoExecution exec, final Log log ) throws MojoExecutionException
+	{
+		try
+		{
+			/* goals are looked up by the role of the Mojo interface, not by their class */
+			final DownloadNMMojo download = ( DownloadNMMojo ) this.mavenPluginManager
+				.getConfiguredMojo( org.apache.maven.plugin.Mojo.class, this.session, exec );
+			download.setLog( log );
+			return download;
+		}
+		catch ( final PluginConfigurationException | PluginContainerException e )
+		{
+			throw new MojoExecutionException( "Could not configure goal download", e );
+		}
+	}
+
+	/**
+	 * @param baseFingerprint the fingerprint of the jar a delta applies to, null if the whole jar is uploaded
+	 * @return the answer of yambas, containing the status resource of the upload if yambas accepted it for
+	 *         asynchronous processing
+	 */
+	@SuppressWarnings( "try" ) /* the deadline watch is only closed */
+	private UploadResult upload( final URL url, final File jarFile, final String baseFingerprint,
+		final RequestDeadline deadline ) throws IOException, MojoExecutionException
+	{
+		final HttpURLConnection connection = getTransport( ).configure( ( HttpURLConnection ) url.openConnection( ) );
+		applyTimeouts( connection, deadline );
 		connection.setDoOutput( true );
-		connection.setRequestProperty( "Content-Type", "application/octet-stream" );
+		connection.setRequestProperty( "Content-Type",
+			baseFingerprint == null ? "application/octet-stream" : "application/zip" );
+		if ( baseFingerprint != null )
+		{
+			/* yambas rejects the delta with 412 if its jar is not the one the delta was computed against */
+			connection.setRequestProperty( "If-Match", "\"" + baseFingerprint + "\"" );
+		}
 		connection.setRequestMethod( "POST" );
 		if ( this.system != null )
 		{
@@ -92,66 +387,69 @@ public class UploadNMMojo extends AbstractRequestMojo
 		// Don't use a cached copy.
 		connection.setUseCaches( false );
 
-		connection.setRequestProperty( "Authorization", getUserAuthHeaderValue( ) );
-
-		final File jarFile = getJarFile( this.moduleJarPath, this.finalName, "NM" );
-		if ( jarFile.exists( ) == false )
+		final String authHeaderValue = getUserAuthHeaderValue( );
+		connection.setRequestProperty( "Authorization", authHeaderValue );
+		Tracer.propagate( connection::setRequestProperty );
+		if ( this.asyncUpload )
 		{
-			throw new MojoExecutionException( "Can't find module jar in " + jarFile.getAbsolutePath( ) );
+			/* yambas answers 202 with the status resource in the Location header instead of compiling first */
+			connection.setRequestProperty( "Prefer", "respond-async" );
 		}
-		final OutputStream writer = connection.getOutputStream( );
-		final FileInputStream fis = new FileInputStream( jarFile );
-		final byte[] buf = new byte[ 1024 ];
-		System.out.print( "Writing bytes " );
-		for ( int c = fis.read( buf ); c != -1; c = fis.read( buf ) )
-		{
-			writer.write( buf, 0, c );
-			System.out.print( "." );
-		}
-		writer.flush( );
-		writer.close( );
-		fis.close( );
-		System.out.println( "" );
-		final int responseCode = connection.getResponseCode( );
-		if ( responseCode != HttpURLConnection.HTTP_CREATED )
-		{
-			try (final InputStream is =
-				( 200 <= responseCode && responseCode <= 299 ) ? connection.getInputStream( )
-					: connection.getErrorStream( ))
+
+		/* disconnecting cancels the running transfer or the wait for the response if the deadline is exceeded */
+		try (final RequestDeadline.Watch watch = deadline.watch( connection::disconnect ))
+		{
+			/* stream the jar instead of letting the connection buffer the whole body, so the progress is real */
+			connection.setFixedLengthStreamingMode( jarFile.length( ) );
+			final TransferProgress progress =
+				createTransferProgress( "Uploading " + jarFile.getName( ), jarFile.length( ) );
+			try (final OutputStream writer = connection.getOutputStream( );
+				final FileInputStream fis = new FileInputStream( jarFile ))
+			{
+				progress.copy( fis, writer );
+				writer.flush( );
+			}
+			progress.finish( );
+			final int responseCode = connection.getResponseCode( );
+			this.metrics.recordStatusCode( responseCode );
+			checkAuthorization( responseCode, authHeaderValue );
+			final String location = connection.getHeaderField( "Location" );
+			final boolean deltaSupported = Boolean.parseBoolean( connection.getHeaderField( DELTA_SUPPORT_HEADER ) );
+			if ( responseCode == HttpURLConnection.HTTP_ACCEPTED && this.asyncUpload && location != null )
 			{
-				String reason = "";
-				if ( is != null )
+				return new UploadResult( URI.create( location ), deltaSupported );
+			}
+			if ( responseCode != HttpURLConnection.HTTP_CREATED )
+			{
+				try (final InputStream is =
+					( 200 <= responseCode && responseCode <= 299 ) ? connection.getInputStream( )
+						: connection.getErrorStream( ))
 				{
-					final StringBuilder inputStringBuilder = new StringBuilder( );
-					final BufferedReader bufferedReader =
-						new BufferedReader( new InputStreamReader( is, "UTF-8" ) );
-					String line = bufferedReader.readLine( );
-					while ( line != null )
+					final String reason = ResponseBody.summary( is, connection.getContentType( ),
+						connection.getContentLengthLong( ), this.responseBodyLimit );
+					final String message = "Return code did not match 201: " + connection.getResponseMessage( ) + "(" +
+						connection.getResponseCode( ) + ") Reason: " + reason;
+					if ( getRetryPolicy( ).isRetryableStatus( responseCode ) ||
+						baseFingerprint != null && DELTA_REJECTED_STATUS_CODES.contains( responseCode ) )
 					{
-						inputStringBuilder.append( line );
-						inputStringBuilder.append( '\n' );
-						line = bufferedReader.readLine( );
+						throw new HttpResponseException( responseCode, message );
 					}
-					reason = inputStringBuilder.toString( );
-					bufferedReader.close( );
+					throw new MojoExecutionException( message );
 				}
-				throw new MojoExecutionException(
-					"Return code did not match 201: " + connection.getResponseMessage( ) + "(" +
-						connection.getResponseCode( ) + ") Reason: " + reason );
 			}
-		}
-		else if ( this.noDownload == false )
-		{
-			executeGoal( "download" );
+			return new UploadResult( null, deltaSupported );
 		}
 	}
 
-	private URI buildHostUrl( )
+	/**
+	 * @param path the path below the asset resource, like "/delta", or an empty string
+	 */
+	private URI buildHostUrl( final String path )
 	{
 		try
 		{
 			final StringBuilder sb = new StringBuilder( );
-			sb.append( this.host ).append( "/yambas/rest/modules/asset" );
+			sb.append( this.host ).append( "/yambas/rest/modules/asset" ).append( path );
 			final URIBuilder bldr = new URIBuilder( sb.toString( ) );
 			if ( StringUtils.isNotBlank( this.system ) )
 			{
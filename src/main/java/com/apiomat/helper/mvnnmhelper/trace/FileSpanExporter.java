@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.trace;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Appends the spans to a file, one OTLP JSON request per line like the file exporter of the OpenTelemetry collector
+ * writes them, so traces can be recorded offline and imported later
+ *
+ * @author thum
+ */
+public class FileSpanExporter implements SpanExporter
+{
+	private final File file;
+
+	/**
+	 * @param file the file to append to
+	 */
+	public FileSpanExporter( final File file )
+	{
+		this.file = file;
+	}
+
+	@Override
+	public void export( final List<Span> spans ) throws IOException
+	{
+		final String line = SpanExporter.toOtlpJson( spans ).toString( ) + "\n";
+		/* the goals of a parallel build append to the same file */
+		synchronized ( FileSpanExporter.class )
+		{
+			FileUtils.writeStringToFile( this.file, line, StandardCharsets.UTF_8, true );
+		}
+	}
+}
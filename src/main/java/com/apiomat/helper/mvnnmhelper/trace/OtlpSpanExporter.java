@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.trace;
+
+import com.apiomat.helper.mvnnmhelper.http.HttpTransport;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.fluent.Request;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Sends the spans to an OTLP/HTTP endpoint, like the one of an OpenTelemetry collector
+ * (http://localhost:4318/v1/traces), in the JSON encoding
+ *
+ * @author thum
+ */
+public class OtlpSpanExporter implements SpanExporter
+{
+	private static final int TIMEOUT_MILLIS = 10000;
+
+	private final URI endpoint;
+
+	/**
+	 * @param endpoint the traces resource of the endpoint
+	 */
+	public OtlpSpanExporter( final URI endpoint )
+	{
+		this.endpoint = endpoint;
+	}
+
+	@Override
+	public void export( final List<Span> spans ) throws IOException
+	{
+		final Request request = Request.Post( this.endpoint ).connectTimeout( TIMEOUT_MILLIS )
+			.socketTimeout( TIMEOUT_MILLIS )
+			.bodyString( SpanExporter.toOtlpJson( spans ).toString( ), ContentType.APPLICATION_JSON );
+		HttpTransport.get( ).executor( ).execute( request ).handleResponse( response -> {
+			EntityUtils.consume( response.getEntity( ) );
+			final int statusCode = response.getStatusLine( ).getStatusCode( );
+			if ( statusCode < 200 || statusCode > 299 )
+			{
+				throw new HttpResponseException( statusCode, response.getStatusLine( ).getReasonPhrase( ) );
+			}
+			return null;
+		} );
+	}
+}
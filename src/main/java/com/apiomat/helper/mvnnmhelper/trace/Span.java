@@ -0,0 +1,252 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.trace;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A timed operation of a trace, like a goal execution or a single HTTP request. Spans are started with
+ * {@link Tracer#start(String)} and become the current span of their thread until they are closed, so spans started
+ * meanwhile are their children. Closing a span ends it; a span which is not recorded (tracing disabled) does nothing.
+ *
+ * @author thum
+ */
+public final class Span implements AutoCloseable
+{
+	/** the kind of spans sending a request to another service */
+	public static final int KIND_CLIENT = 3;
+
+	private static final int KIND_INTERNAL = 1;
+	private static final int STATUS_ERROR = 2;
+
+	/** the span returned while tracing is disabled */
+	static final Span NOOP = new Span( null, null, null, null, null, null );
+
+	private final Tracer tracer;
+	private final String name;
+	private final String traceId;
+	private final String spanId;
+	private final String parentSpanId;
+	private final Span root;
+	private final Span previous;
+	private final long startEpochNanos = System.currentTimeMillis( ) * 1000000L;
+	private final long startNanos = System.nanoTime( );
+	private final Map<String, Object> attributes = new LinkedHashMap<>( );
+
+	private int kind = KIND_INTERNAL;
+	private String error;
+	private long endEpochNanos;
+
+	/* the finished spans of the local trace, exported together with the root span */
+	private List<Span> finished = new ArrayList<>( );
+
+	Span( final Tracer tracer, final String name, final String traceId, final String spanId, final String parentSpanId,
+		final Span root )
+	{
+		this.tracer = tracer;
+		this.name = name;
+		this.traceId = traceId;
+		this.spanId = spanId;
+		this.parentSpanId = parentSpanId;
+		this.root = root == null ? this : root;
+		this.previous = tracer != null ? Tracer.current( ) : null;
+	}
+
+	/**
+	 * @return whether the span is recorded and exported
+	 */
+	public boolean isRecording( )
+	{
+		return this.tracer != null;
+	}
+
+	/**
+	 * @param key the name of the attribute, like "http.status_code"
+	 * @param value the value, a string, number or boolean
+	 * @return this span
+	 */
+	public synchronized Span setAttribute( final String key, final Object value )
+	{
+		if ( this.tracer != null && value != null )
+		{
+			this.attributes.put( key, value );
+		}
+		return this;
+	}
+
+	/**
+	 * @param kind the kind of the span, like {@link #KIND_CLIENT}
+	 * @return this span
+	 */
+	public synchronized Span setKind( final int kind )
+	{
+		if ( this.tracer != null )
+		{
+			this.kind = kind;
+		}
+		return this;
+	}
+
+	/**
+	 * Marks the span as failed
+	 *
+	 * @param failure the error
+	 */
+	public synchronized void recordError( final Throwable failure )
+	{
+		if ( this.tracer != null )
+		{
+			this.error = failure.getClass( ).getSimpleName( ) + ": " + failure.getMessage( );
+		}
+	}
+
+	/**
+	 * @return the id of the trace, 32 hex digits
+	 */
+	public String getTraceId( )
+	{
+		return this.traceId;
+	}
+
+	/**
+	 * @return the id of the span, 16 hex digits
+	 */
+	public String getSpanId( )
+	{
+		return this.spanId;
+	}
+
+	/**
+	 * @return the id of the parent span, null for the root span of a trace
+	 */
+	public String getParentSpanId( )
+	{
+		return this.parentSpanId;
+	}
+
+	/**
+	 * @return the W3C trace context of this span, like "00-{trace id}-{span id}-01"
+	 */
+	public String traceparent( )
+	{
+		return "00-" + this.traceId + "-" + this.spanId + "-01";
+	}
+
+	/**
+	 * Ends the span; the spans of a local trace are exported when its root span ends
+	 */
+	@Override
+	public void close( )
+	{
+		if ( this.tracer == null )
+		{
+			return;
+		}
+		synchronized ( this )
+		{
+			if ( this.endEpochNanos != 0 )
+			{
+				return;
+			}
+			this.endEpochNanos = this.startEpochNanos + System.nanoTime( ) - this.startNanos;
+		}
+		if ( Tracer.current( ) == this )
+		{
+			Tracer.makeCurrent( this.previous );
+		}
+		final List<Span> batch;
+		synchronized ( this.root )
+		{
+			if ( this.root.finished == null )
+			{
+				/* the root already ended, like for the download of an upload processed in the background */
+				batch = new ArrayList<>( );
+			}
+			else if ( this.root == this )
+			{
+				batch = this.finished;
+				this.finished = null;
+			}
+			else
+			{
+				this.root.finished.add( this );
+				return;
+			}
+		}
+		batch.add( this );
+		this.tracer.export( batch );
+	}
+
+	/**
+	 * @return the span in the OTLP JSON encoding
+	 */
+	synchronized JSONObject toJson( )
+	{
+		final JSONObject json = new JSONObject( );
+		json.put( "traceId", this.traceId );
+		json.put( "spanId", this.spanId );
+		if ( this.parentSpanId != null )
+		{
+			json.put( "parentSpanId", this.parentSpanId );
+		}
+		json.put( "name", this.name );
+		json.put( "kind", this.kind );
+		/* 64 bit integers are strings in the OTLP JSON encoding */
+		json.put( "startTimeUnixNano", String.valueOf( this.startEpochNanos ) );
+		json.put( "endTimeUnixNano", String.valueOf( this.endEpochNanos ) );
+		final JSONArray attrs = new JSONArray( );
+		for ( final Map.Entry<String, Object> attribute : this.attributes.entrySet( ) )
+		{
+			attrs.put( new JSONObject( ).put( "key", attribute.getKey( ) )
+				.put( "value", toValue( attribute.getValue( ) ) ) );
+		}
+		json.put( "attributes", attrs );
+		if ( this.error != null )
+		{
+			json.put( "status", new JSONObject( ).put( "code", STATUS_ERROR ).put( "message", this.error ) );
+		}
+		return json;
+	}
+
+	private static JSONObject toValue( final Object value )
+	{
+		if ( value instanceof Boolean )
+		{
+			return new JSONObject( ).put( "boolValue", value );
+		}
+		if ( value instanceof Integer || value instanceof Long )
+		{
+			return new JSONObject( ).put( "intValue", String.valueOf( value ) );
+		}
+		if ( value instanceof Number )
+		{
+			return new JSONObject( ).put( "doubleValue", value );
+		}
+		return new JSONObject( ).put( "stringValue", String.valueOf( value ) );
+	}
+
+	@Override
+	public String toString( )
+	{
+		return this.name + " " + ( this.tracer != null ? traceparent( ) : "(not recorded)" );
+	}
+}
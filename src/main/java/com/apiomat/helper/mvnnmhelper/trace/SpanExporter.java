@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.trace;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Exports finished spans, like to a file or an OTLP endpoint
+ *
+ * @author thum
+ */
+public interface SpanExporter
+{
+	/**
+	 * @param spans the finished spans
+	 * @throws IOException
+	 */
+	void export( List<Span> spans ) throws IOException;
+
+	/**
+	 * @param spans the spans
+	 * @return the spans as OTLP ExportTraceServiceRequest in the JSON encoding
+	 */
+	static JSONObject toOtlpJson( final List<Span> spans )
+	{
+		final JSONArray jsonSpans = new JSONArray( );
+		for ( final Span span : spans )
+		{
+			jsonSpans.put( span.toJson( ) );
+		}
+		final JSONObject serviceName = new JSONObject( ).put( "key", "service.name" )
+			.put( "value", new JSONObject( ).put( "stringValue", "nm-maven-plugin" ) );
+		final JSONObject resourceSpans = new JSONObject( )
+			.put( "resource", new JSONObject( ).put( "attributes", new JSONArray( ).put( serviceName ) ) )
+			.put( "scopeSpans", new JSONArray( ).put( new JSONObject( )
+				.put( "scope", new JSONObject( ).put( "name", "com.apiomat.helper.mvnnmhelper" ) )
+				.put( "spans", jsonSpans ) ) );
+		return new JSONObject( ).put( "resourceSpans", new JSONArray( ).put( resourceSpans ) );
+	}
+}
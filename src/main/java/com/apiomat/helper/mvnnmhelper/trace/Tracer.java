@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.trace;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Traces the goals of the plugin in the OpenTelemetry data model, so the time spent in the plugin and in yambas can be
+ * attributed within the trace of a CI pipeline. Tracing is disabled until a tracer is installed with
+ * {@link #install(Object, String, SpanExporter, String, Log)} for a build, like a Maven session, which uninstalls it
+ * with {@link #uninstall(Object)} when it ends; until then {@link #start(String)} returns a span which does
+ * nothing. The trace context is sent to yambas in the W3C traceparent header.
+ *
+ * @author thum
+ */
+public final class Tracer
+{
+	/** the header carrying the trace context */
+	public static final String TRACEPARENT_HEADER = "traceparent";
+
+	private static final Pattern TRACEPARENT =
+		Pattern.compile( "[0-9a-f]{2}-([0-9a-f]{32})-([0-9a-f]{16})-[0-9a-f]{2}" );
+
+	private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>( );
+
+	private static volatile Tracer active;
+
+	private final Object scope;
+	private final String config;
+	private final SpanExporter exporter;
+	private final String remoteTraceId;
+	private final String remoteSpanId;
+	private final Log log;
+
+	private Tracer( final Object scope, final String config, final SpanExporter exporter, final String remoteParent,
+		final Log log )
+	{
+		this.scope = scope;
+		this.config = config;
+		this.exporter = exporter;
+		final Matcher matcher = remoteParent != null ? TRACEPARENT.matcher( remoteParent.trim( ) ) : null;
+		final boolean valid = matcher != null && matcher.matches( );
+		this.remoteTraceId = valid ? matcher.group( 1 ) : null;
+		this.remoteSpanId = valid ? matcher.group( 2 ) : null;
+		this.log = log;
+	}
+
+	/**
+	 * Enables tracing for all goals of the JVM; the goals of a build with the same configuration share the tracer
+	 *
+	 * @param scope the build, like the Maven session; the tracer of another build is replaced, so a long-lived JVM
+	 *        does not attach a build to the trace, export target or log of a previous one
+	 * @param config describes the configuration, like the export target; a tracer with another configuration or
+	 *        remote parent is replaced
+	 * @param exporter the exporter, only used if there is no tracer with the same configuration yet
+	 * @param remoteParent the trace context of the caller, like the TRACEPARENT of the CI job, or null
+	 * @param log the log for export failures
+	 */
+	public static synchronized void install( final Object scope, final String config, final SpanExporter exporter,
+		final String remoteParent, final Log log )
+	{
+		final String key = config + " " + remoteParent;
+		if ( active == null || active.scope != scope || active.config.equals( key ) == false )
+		{
+			active = new Tracer( scope, key, exporter, remoteParent, log );
+		}
+	}
+
+	/**
+	 * Disables tracing at the end of a build
+	 *
+	 * @param scope the build; the tracer of another build is kept
+	 */
+	public static synchronized void uninstall( final Object scope )
+	{
+		if ( active != null && active.scope == scope )
+		{
+			active = null;
+		}
+	}
+
+	/**
+	 * Disables tracing
+	 */
+	public static synchronized void uninstall( )
+	{
+		active = null;
+	}
+
+	/**
+	 * Starts a span as child of the current span of this thread and makes it the current span
+	 *
+	 * @param name the name of the span
+	 * @return the span, which must be closed
+	 */
+	public static Span start( final String name )
+	{
+		return start( name, current( ) );
+	}
+
+	/**
+	 * Starts a span as child of the given span and makes it the current span of this thread; used for work handed to
+	 * other threads
+	 *
+	 * @param name the name of the span
+	 * @param parent the parent span, null to start a new local trace
+	 * @return the span, which must be closed
+	 */
+	public static Span start( final String name, final Span parent )
+	{
+		final Tracer tracer = active;
+		if ( tracer == null )
+		{
+			return Span.NOOP;
+		}
+		final Span span;
+		if ( parent != null && parent.isRecording( ) )
+		{
+			span = new Span( tracer, name, parent.getTraceId( ), randomId( 8 ), parent.getSpanId( ), parent );
+		}
+		else
+		{
+			span = new Span( tracer, name, tracer.remoteTraceId != null ? tracer.remoteTraceId : randomId( 16 ),
+				randomId( 8 ), tracer.remoteSpanId, null );
+		}
+		makeCurrent( span );
+		return span;
+	}
+
+	/**
+	 * @return the current span of this thread, null if there is none
+	 */
+	public static Span current( )
+	{
+		return CURRENT.get( );
+	}
+
+	/**
+	 * Adds the trace context of the current span to a request
+	 *
+	 * @param header sets a header of the request, like request::addHeader
+	 */
+	public static void propagate( final BiConsumer<String, String> header )
+	{
+		final Span span = current( );
+		if ( span != null && span.isRecording( ) )
+		{
+			header.accept( TRACEPARENT_HEADER, span.traceparent( ) );
+		}
+	}
+
+	static void makeCurrent( final Span span )
+	{
+		if ( span == null )
+		{
+			CURRENT.remove( );
+		}
+		else
+		{
+			CURRENT.set( span );
+		}
+	}
+
+	void export( final List<Span> spans )
+	{
+		try
+		{
+			this.exporter.export( spans );
+		}
+		catch ( final IOException e )
+		{
+			/* tracing never fails the build */
+			this.log.warn( "Could not export " + spans.size( ) + " trace span(s): " + e.getMessage( ) );
+		}
+	}
+
+	private static String randomId( final int bytes )
+	{
+		final StringBuilder sb = new StringBuilder( bytes * 2 );
+		for ( int i = 0; i < bytes; i++ )
+		{
+			sb.append( String.format( "%02x", ThreadLocalRandom.current( ).nextInt( 256 ) ) );
+		}
+		return sb.toString( );
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.transfer;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the bandwidth of up- and downloads with a token bucket. All transfers of the JVM with the same limit share
+ * one bucket, like the modules of a parallel build or the builds served by the nm daemon, so the limit applies to
+ * their sum. The transfers take their chunks in turns, so each gets an equal share and none starves the others.
+ *
+ * @author thum
+ */
+public final class BandwidthLimiter
+{
+	/** the buckets by their limit in bytes per second */
+	private static final ConcurrentMap<Long, BandwidthLimiter> SHARED = new ConcurrentHashMap<>( );
+
+	/** the bucket holds the bytes of a tenth of a second, so bursts stay short */
+	private static final int BURSTS_PER_SECOND = 10;
+
+	private final long bytesPerSecond;
+	private final long capacity;
+
+	/* a fair lock, the transfers waiting for tokens are served in the order they asked */
+	private final ReentrantLock lock = new ReentrantLock( true );
+
+	private long tokens;
+	private long lastRefillNanos = System.nanoTime( );
+
+	BandwidthLimiter( final long bytesPerSecond )
+	{
+		this.bytesPerSecond = bytesPerSecond;
+		this.capacity = Math.max( 1, bytesPerSecond / BURSTS_PER_SECOND );
+		this.tokens = this.capacity;
+	}
+
+	/**
+	 * @param kilobytesPerSecond the limit of all transfers sharing it, 0 or less for no limit
+	 * @return the limiter shared by all transfers with this limit, null for no limit
+	 */
+	public static BandwidthLimiter shared( final long kilobytesPerSecond )
+	{
+		return kilobytesPerSecond > 0 ? SHARED.computeIfAbsent( kilobytesPerSecond * 1024, BandwidthLimiter::new ) :
+			null;
+	}
+
+	/**
+	 * Waits until the given number of bytes may be transferred
+	 *
+	 * @param bytes the number of bytes, like the size of the next chunk
+	 * @throws InterruptedIOException if the thread was interrupted while waiting
+	 */
+	public void acquire( final int bytes ) throws InterruptedIOException
+	{
+		this.lock.lock( );
+		try
+		{
+			refill( );
+			/* the chunk is taken first, so a chunk larger than the bucket leaves a debt instead of never fitting */
+			this.tokens -= bytes;
+			if ( this.tokens < 0 )
+			{
+				/* waiting while holding the lock lets the other transfers queue up behind this one */
+				sleepNanos( TimeUnit.SECONDS.toNanos( -this.tokens ) / this.bytesPerSecond );
+				refill( );
+			}
+		}
+		finally
+		{
+			this.lock.unlock( );
+		}
+	}
+
+	/**
+	 * @return the limit in bytes per second
+	 */
+	public long getBytesPerSecond( )
+	{
+		return this.bytesPerSecond;
+	}
+
+	private void refill( )
+	{
+		final long now = System.nanoTime( );
+		final long elapsedNanos = now - this.lastRefillNanos;
+		/* the whole elapsed time counts while the bucket is not full, including the debt of a chunk larger than it */
+		final long nanosUntilFull =
+			( this.capacity - this.tokens ) * TimeUnit.SECONDS.toNanos( 1 ) / this.bytesPerSecond;
+		if ( elapsedNanos >= nanosUntilFull )
+		{
+			/* longer idle times add nothing */
+			this.tokens = this.capacity;
+			this.lastRefillNanos = now;
+			return;
+		}
+		final long added = elapsedNanos * this.bytesPerSecond / TimeUnit.SECONDS.toNanos( 1 );
+		if ( added > 0 )
+		{
+			this.tokens += added;
+			/* only the time of the added tokens is consumed, the remainder counts for the next refill */
+			this.lastRefillNanos += added * TimeUnit.SECONDS.toNanos( 1 ) / this.bytesPerSecond;
+		}
+	}
+
+	private static void sleepNanos( final long nanos ) throws InterruptedIOException
+	{
+		try
+		{
+			TimeUnit.NANOSECONDS.sleep( nanos );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new InterruptedIOException( "Interrupted while waiting for bandwidth" );
+		}
+	}
+}
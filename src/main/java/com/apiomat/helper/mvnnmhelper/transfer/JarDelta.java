@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.transfer;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The difference between the last uploaded jar and a new one. The delta is sent as a zip containing the added and
+ * changed entries of the new jar and a descriptor ({@value #DESCRIPTOR}) with the fingerprint of the jar it applies
+ * to and the names of the deleted entries; the server rebuilds the new jar from its copy of the last one. Delta
+ * downloads use the same format the other way round.
+ *
+ * @author thum
+ */
+public final class JarDelta
+{
+	/** name of the descriptor entry in the delta zip */
+	public static final String DESCRIPTOR = "META-INF/nm-delta.json";
+
+	private final String baseFingerprint;
+	private final List<String> changed;
+	private final List<String> deleted;
+
+	private JarDelta( final String baseFingerprint, final List<String> changed, final List<String> deleted )
+	{
+		this.baseFingerprint = baseFingerprint;
+		this.changed = Collections.unmodifiableList( changed );
+		this.deleted = Collections.unmodifiableList( deleted );
+	}
+
+	/**
+	 * @param base the manifest of the last uploaded jar
+	 * @param current the manifest of the new jar
+	 * @return the entries to send and to delete
+	 */
+	public static JarDelta between( final JarEntryManifest base, final JarEntryManifest current )
+	{
+		final List<String> changed = new ArrayList<>( );
+		for ( final Map.Entry<String, JarEntryManifest.Entry> entry : current.getEntries( ).entrySet( ) )
+		{
+			if ( entry.getValue( ).equals( base.getEntries( ).get( entry.getKey( ) ) ) == false )
+			{
+				changed.add( entry.getKey( ) );
+			}
+		}
+		final List<String> deleted = new ArrayList<>( );
+		for ( final String name : base.getEntries( ).keySet( ) )
+		{
+			if ( current.getEntries( ).containsKey( name ) == false )
+			{
+				deleted.add( name );
+			}
+		}
+		return new JarDelta( base.fingerprint( ), changed, deleted );
+	}
+
+	/**
+	 * Reads the names of the deleted entries from a delta zip
+	 *
+	 * @param deltaFile the delta zip
+	 * @return the names of the deleted entries, empty if the zip has no descriptor
+	 * @throws IOException
+	 */
+	public static List<String> readDeleted( final File deltaFile ) throws IOException
+	{
+		final List<String> deleted = new ArrayList<>( );
+		try (final ZipFile zipFile = new ZipFile( deltaFile ))
+		{
+			final ZipEntry descriptor = zipFile.getEntry( DESCRIPTOR );
+			if ( descriptor != null )
+			{
+				try (final InputStream in = zipFile.getInputStream( descriptor ))
+				{
+					final JSONArray deletedJson =
+						new JSONObject( IOUtils.toString( in, StandardCharsets.UTF_8 ) ).getJSONArray( "deleted" );
+					for ( int i = 0; i < deletedJson.length( ); i++ )
+					{
+						deleted.add( deletedJson.getString( i ) );
+					}
+				}
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * @return the fingerprint of the jar the delta applies to
+	 */
+	public String getBaseFingerprint( )
+	{
+		return this.baseFingerprint;
+	}
+
+	/**
+	 * @return the names of the added and changed entries
+	 */
+	public List<String> getChanged( )
+	{
+		return this.changed;
+	}
+
+	/**
+	 * @return the names of the deleted entries
+	 */
+	public List<String> getDeleted( )
+	{
+		return this.deleted;
+	}
+
+	/**
+	 * Writes the delta zip
+	 *
+	 * @param jar the new jar to take the changed entries from
+	 * @param deltaFile the file to write the delta to
+	 * @throws IOException
+	 */
+	public void write( final File jar, final File deltaFile ) throws IOException
+	{
+		try (final ZipFile zipFile = new ZipFile( jar );
+			final ZipOutputStream out = new ZipOutputStream( new FileOutputStream( deltaFile ) ))
+		{
+			final JSONObject descriptor = new JSONObject( );
+			descriptor.put( "base", this.baseFingerprint );
+			descriptor.put( "deleted", new JSONArray( this.deleted ) );
+			out.putNextEntry( new ZipEntry( DESCRIPTOR ) );
+			out.write( descriptor.toString( ).getBytes( StandardCharsets.UTF_8 ) );
+			out.closeEntry( );
+
+			for ( final String name : this.changed )
+			{
+				final ZipEntry entry = zipFile.getEntry( name );
+				final ZipEntry copy = new ZipEntry( name );
+				copy.setTime( entry.getTime( ) );
+				out.putNextEntry( copy );
+				try (final InputStream in = zipFile.getInputStream( entry ))
+				{
+					IOUtils.copy( in, out );
+				}
+				out.closeEntry( );
+			}
+		}
+	}
+}
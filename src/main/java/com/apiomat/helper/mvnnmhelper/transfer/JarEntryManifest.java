@@ -0,0 +1,314 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.transfer;
+
+import com.apiomat.helper.mvnnmhelper.AtomicFiles;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The names, CRCs and sizes of the entries of a jar. The manifest of the last uploaded jar is stored per host, system,
+ * module and version, so the next upload only has to send the entries which changed since (see {@link JarDelta}).
+ * Likewise the manifest of the last downloaded archive tells which local files the server may send a delta for.
+ * Reading a manifest only reads the central directory of the jar, no entry is decompressed.
+ *
+ * @author thum
+ */
+public final class JarEntryManifest
+{
+	private static final int FORMAT_VERSION = 1;
+
+	/** CRC and size of a single entry */
+	public static final class Entry
+	{
+		private final long crc;
+		private final long size;
+
+		Entry( final long crc, final long size )
+		{
+			this.crc = crc;
+			this.size = size;
+		}
+
+		/**
+		 * @return the CRC-32 of the uncompressed entry
+		 */
+		public long getCrc( )
+		{
+			return this.crc;
+		}
+
+		/**
+		 * @return the uncompressed size of the entry
+		 */
+		public long getSize( )
+		{
+			return this.size;
+		}
+
+		@Override
+		public boolean equals( final Object obj )
+		{
+			return obj instanceof Entry && ( ( Entry ) obj ).crc == this.crc && ( ( Entry ) obj ).size == this.size;
+		}
+
+		@Override
+		public int hashCode( )
+		{
+			return Long.hashCode( this.crc ) * 31 + Long.hashCode( this.size );
+		}
+	}
+
+	private final SortedMap<String, Entry> entries;
+	private final boolean deltaSupported;
+
+	private JarEntryManifest( final SortedMap<String, Entry> entries, final boolean deltaSupported )
+	{
+		this.entries = Collections.unmodifiableSortedMap( entries );
+		this.deltaSupported = deltaSupported;
+	}
+
+	/**
+	 * @param jar the jar
+	 * @return the manifest of the entries of the jar
+	 * @throws IOException if the jar is not readable
+	 */
+	public static JarEntryManifest of( final File jar ) throws IOException
+	{
+		final SortedMap<String, Entry> entries = new TreeMap<>( );
+		try (final ZipFile zipFile = new ZipFile( jar ))
+		{
+			final Enumeration<? extends ZipEntry> zipEntries = zipFile.entries( );
+			while ( zipEntries.hasMoreElements( ) )
+			{
+				final ZipEntry entry = zipEntries.nextElement( );
+				entries.put( entry.getName( ), new Entry( entry.getCrc( ), entry.getSize( ) ) );
+			}
+		}
+		return new JarEntryManifest( entries, false );
+	}
+
+	/**
+	 * Reads the CRCs and sizes of local files, like the files of a module extracted from a downloaded archive
+	 *
+	 * @param baseDir the directory the names are relative to
+	 * @param names the names of the files, with / as separator; names ending with / denote directories
+	 * @return the manifest of the files; missing files are left out
+	 * @throws IOException if a file is not readable
+	 */
+	public static JarEntryManifest ofFiles( final File baseDir, final Collection<String> names ) throws IOException
+	{
+		final SortedMap<String, Entry> entries = new TreeMap<>( );
+		for ( final String name : names )
+		{
+			final File file = new File( baseDir, name );
+			if ( name.endsWith( "/" ) )
+			{
+				if ( file.isDirectory( ) )
+				{
+					entries.put( name, new Entry( 0, 0 ) );
+				}
+			}
+			else if ( file.isFile( ) )
+			{
+				entries.put( name, new Entry( FileUtils.checksumCRC32( file ), file.length( ) ) );
+			}
+		}
+		return new JarEntryManifest( entries, false );
+	}
+
+	/**
+	 * @param dir the directory the manifests are stored in
+	 * @param moduleName the module name
+	 * @param key what else identifies the manifest, like host, system and version
+	 * @return the file storing the manifest
+	 */
+	public static File fileFor( final File dir, final String moduleName, final String... key )
+	{
+		return new File( dir,
+			moduleName + "-" + sha256( moduleName + "\n" + String.join( "\n", key ) ).substring( 0, 16 ) + ".json" );
+	}
+
+	/**
+	 * Parses a manifest sent as JSON, like {"entries":{"a.class":{"crc":1,"size":2}}}
+	 *
+	 * @param json the JSON object
+	 * @return the manifest
+	 * @throws JSONException if the JSON is malformed
+	 */
+	public static JarEntryManifest fromJson( final JSONObject json )
+	{
+		final SortedMap<String, Entry> entries = new TreeMap<>( );
+		final JSONObject entriesJson = json.getJSONObject( "entries" );
+		for ( final String name : entriesJson.keySet( ) )
+		{
+			final JSONObject entry = entriesJson.getJSONObject( name );
+			entries.put( name, new Entry( entry.getLong( "crc" ), entry.getLong( "size" ) ) );
+		}
+		return new JarEntryManifest( entries, json.optBoolean( "deltaSupported" ) );
+	}
+
+	/**
+	 * @return the manifest as JSON, readable with {@link #fromJson(JSONObject)}
+	 */
+	public JSONObject toJson( )
+	{
+		final JSONObject entriesJson = new JSONObject( );
+		for ( final Map.Entry<String, Entry> entry : this.entries.entrySet( ) )
+		{
+			final JSONObject entryJson = new JSONObject( );
+			entryJson.put( "crc", entry.getValue( ).crc );
+			entryJson.put( "size", entry.getValue( ).size );
+			entriesJson.put( entry.getKey( ), entryJson );
+		}
+		final JSONObject json = new JSONObject( );
+		json.put( "version", FORMAT_VERSION );
+		json.put( "deltaSupported", this.deltaSupported );
+		json.put( "entries", entriesJson );
+		return json;
+	}
+
+	/**
+	 * Loads a stored manifest
+	 *
+	 * @param file the file
+	 * @return the manifest, null if the file is missing or unreadable
+	 */
+	public static JarEntryManifest load( final File file )
+	{
+		if ( file.isFile( ) == false )
+		{
+			return null;
+		}
+		try
+		{
+			final JSONObject json = new JSONObject( FileUtils.readFileToString( file, StandardCharsets.UTF_8 ) );
+			if ( json.optInt( "version" ) != FORMAT_VERSION )
+			{
+				return null;
+			}
+			return fromJson( json );
+		}
+		catch ( final IOException | JSONException e )
+		{
+			/* treated like a missing manifest, the next upload is a full one */
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the manifest
+	 *
+	 * @param file the file
+	 * @throws IOException
+	 */
+	public void save( final File file ) throws IOException
+	{
+		final JSONObject json = toJson( );
+
+		/* concurrent builds never read a partially written manifest */
+		AtomicFiles.write( file, json.toString( ) );
+	}
+
+	/**
+	 * @param supported whether the server the jar was uploaded to accepts delta uploads
+	 * @return a copy of this manifest with the given delta support
+	 */
+	public JarEntryManifest withDeltaSupported( final boolean supported )
+	{
+		return new JarEntryManifest( new TreeMap<>( this.entries ), supported );
+	}
+
+	/**
+	 * @param changed the added and changed entries
+	 * @param deleted the names of the deleted entries
+	 * @return a copy of this manifest with the given changes applied
+	 */
+	public JarEntryManifest withChanges( final JarEntryManifest changed, final Collection<String> deleted )
+	{
+		final SortedMap<String, Entry> result = new TreeMap<>( this.entries );
+		result.keySet( ).removeAll( deleted );
+		result.putAll( changed.entries );
+		result.remove( JarDelta.DESCRIPTOR );
+		return new JarEntryManifest( result, this.deltaSupported );
+	}
+
+	/**
+	 * @return whether the server the jar was uploaded to accepts delta uploads
+	 */
+	public boolean isDeltaSupported( )
+	{
+		return this.deltaSupported;
+	}
+
+	/**
+	 * @return the entries by name, sorted by name
+	 */
+	public SortedMap<String, Entry> getEntries( )
+	{
+		return this.entries;
+	}
+
+	/**
+	 * @return a hash over all entry names, CRCs and sizes; two jars with the same contents have the same fingerprint
+	 *         regardless of the order of their entries
+	 */
+	public String fingerprint( )
+	{
+		final StringBuilder sb = new StringBuilder( );
+		for ( final Map.Entry<String, Entry> entry : this.entries.entrySet( ) )
+		{
+			sb.append( entry.getKey( ) ).append( '\t' ).append( entry.getValue( ).crc ).append( '\t' )
+				.append( entry.getValue( ).size ).append( '\n' );
+		}
+		return sha256( sb.toString( ) );
+	}
+
+	private static String sha256( final String text )
+	{
+		try
+		{
+			final byte[ ] hash =
+				MessageDigest.getInstance( "SHA-256" ).digest( text.getBytes( StandardCharsets.UTF_8 ) );
+			final StringBuilder hex = new StringBuilder( hash.length * 2 );
+			for ( final byte b : hash )
+			{
+				hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+			}
+			return hex.toString( );
+		}
+		catch ( final NoSuchAlgorithmException e )
+		{
+			/* every JRE has to support SHA-256 */
+			throw new IllegalStateException( e );
+		}
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.transfer;
+
+import com.apiomat.helper.mvnnmhelper.trace.Span;
+import com.apiomat.helper.mvnnmhelper.trace.Tracer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.filefilter.DirectoryFileFilter;
+import org.apache.commons.io.filefilter.FileFileFilter;
+import org.apache.commons.io.filefilter.FileFilterUtils;
+import org.apache.commons.io.filefilter.IOFileFilter;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts a downloaded module archive into the module directory. Files the developer owns, like the hook classes,
+ * the sdk.properties or the readme, are kept unless hooks should be overwritten.
+ *
+ * @author thum
+ */
+public final class ModuleArchive
+{
+	/**
+	 * extractions into the same module directory are serialized, into different directories they run in parallel; the
+	 * lock of a directory is removed once no extraction holds or waits for it, so a long-running daemon does not keep
+	 * one per module directory
+	 */
+	private static final ConcurrentMap<String, DirectoryLock> LOCKS = new ConcurrentHashMap<>( );
+
+	/** counts the extractions holding or waiting for the lock, guarded by the map */
+	private static final class DirectoryLock
+	{
+		private int users;
+	}
+
+	private ModuleArchive( )
+	{
+	}
+
+	/**
+	 * Extracts the archive into the module directory, keeping the files the developer owns
+	 *
+	 * @param archive the downloaded archive, a full one or a delta (see {@link JarDelta})
+	 * @param baseDir the module directory
+	 * @param overwriteHooks whether to overwrite the local hook classes with the ones from the archive
+	 * @param deleted the names of files to delete, like the ones listed in a delta
+	 * @throws IOException if the extraction failed; the saved files are kept in a temporary directory then
+	 */
+	@SuppressWarnings( "try" ) /* the spans of the steps are only closed */
+	public static void extract( final File archive, final File baseDir, final boolean overwriteHooks,
+		final Collection<String> deleted ) throws IOException
+	{
+		try (final Span span = Tracer.start( "extract module archive" ))
+		{
+			span.setAttribute( "nm.archive.bytes", archive.length( ) ).setAttribute( "nm.deleted", deleted.size( ) );
+			final String path = baseDir.getCanonicalPath( );
+			final DirectoryLock lock = LOCKS.compute( path, ( p, l ) -> {
+				final DirectoryLock result = l != null ? l : new DirectoryLock( );
+				result.users++;
+				return result;
+			} );
+			try
+			{
+				synchronized ( lock )
+				{
+					/* each extraction saves the local files in its own directory */
+					final File tmpDir = Files.createTempDirectory( baseDir.toPath( ), "nm-tmp-" ).toFile( );
+					try
+					{
+						try (final Span copy = Tracer.start( "copy local files to temp" ))
+						{
+							copyFilesToTemp( baseDir, tmpDir, overwriteHooks );
+						}
+						try (final Span unzip = Tracer.start( "unzip module archive" ))
+						{
+							unzipFile( archive, baseDir );
+						}
+						deleteFiles( baseDir, deleted );
+						try (final Span copy = Tracer.start( "copy local files from temp" ))
+						{
+							copyFilesFromTemp( baseDir, tmpDir );
+						}
+					}
+					catch ( final IOException e )
+					{
+						span.recordError( e );
+						throw new IOException( e.getMessage( ) + " (the local files are saved in " + tmpDir + ")", e );
+					}
+					/* only deleted on success, otherwise the saved hooks are still there */
+					FileUtils.deleteQuietly( tmpDir );
+				}
+			}
+			finally
+			{
+				LOCKS.computeIfPresent( path, ( p, l ) -> --l.users == 0 ? null : l );
+			}
+		}
+	}
+
+	/**
+	 * @return the number of module directories an extraction holds or waits for the lock of
+	 */
+	static int lockedDirectories( )
+	{
+		return LOCKS.size( );
+	}
+
+	/**
+	 * Deletes the files the server removed from the module; files outside of the base directory are ignored
+	 *
+	 * @param baseDir the base directory of the module
+	 * @param names the names of the removed files, relative to the base directory
+	 * @throws IOException
+	 */
+	public static void deleteFiles( final File baseDir, final Collection<String> names ) throws IOException
+	{
+		final String basePath = baseDir.getCanonicalPath( ) + File.separator;
+		for ( final String name : names )
+		{
+			final File file = new File( baseDir, name );
+			if ( file.getCanonicalPath( ).startsWith( basePath ) )
+			{
+				FileUtils.deleteQuietly( file );
+			}
+		}
+	}
+
+	/**
+	 * Copies all existing module files from baseDir to the tmpDir
+	 *
+	 * @param baseDir
+	 * @param tmpDir
+	 * @param overwriteHooks
+	 * @throws IOException
+	 */
+	public static void copyFilesToTemp( final File baseDir, final File tmpDir, final boolean overwriteHooks )
+		throws IOException
+	{
+		final File sdkProps = new File( baseDir, "sdk.properties" );
+		if ( sdkProps.exists( ) )
+		{
+			FileUtils.copyFileToDirectory( sdkProps, tmpDir );
+		}
+
+		final File readmeMd = new File( baseDir, "readme.md" );
+		if ( readmeMd.exists( ) )
+		{
+			FileUtils.copyFileToDirectory( readmeMd, tmpDir );
+		}
+		final File gitignore = new File( baseDir, ".gitignore" );
+		if ( gitignore.exists( ) )
+		{
+			FileUtils.copyFileToDirectory( gitignore, tmpDir );
+		}
+		final List<IOFileFilter> fileFilter = new ArrayList<>( );
+		if ( overwriteHooks == false )
+		{
+			fileFilter.add( FileFilterUtils.suffixFileFilter( "HooksTransient.java" ) );
+			fileFilter.add( FileFilterUtils.suffixFileFilter( "HooksNonTransient.java" ) );
+			fileFilter.add( FileFilterUtils.suffixFileFilter( "Hooks.java" ) );
+		}
+		fileFilter.add( FileFilterUtils.nameFileFilter( "RestClass.java" ) );
+		final IOFileFilter allHooksFilter = FileFilterUtils.or( fileFilter.stream( ).toArray( IOFileFilter[ ]::new ) );
+		final IOFileFilter allHooksFiles = FileFilterUtils.and( FileFileFilter.FILE, allHooksFilter );
+
+		/* Create a filter for either directories or hook files */
+		final FileFilter filter = FileFilterUtils.or( DirectoryFileFilter.DIRECTORY, allHooksFiles );
+
+		FileUtils.copyDirectory( new File( baseDir, "src" ), tmpDir, filter );
+	}
+
+	/**
+	 * Copies all existing module files from tmpDir to baseDir
+	 *
+	 * @param baseDir
+	 * @param tmpDir
+	 * @throws IOException
+	 */
+	public static void copyFilesFromTemp( final File baseDir, final File tmpDir ) throws IOException
+	{
+		final File sdkProps = new File( tmpDir, "sdk.properties" );
+		if ( sdkProps.exists( ) )
+		{
+			FileUtils.copyFileToDirectory( sdkProps, baseDir );
+		}
+
+		final File readmeMd = new File( tmpDir, "readme.md" );
+		if ( readmeMd.exists( ) )
+		{
+			FileUtils.copyFileToDirectory( readmeMd, baseDir );
+		}
+		final File gitignore = new File( tmpDir, ".gitignore" );
+		if ( gitignore.exists( ) )
+		{
+			FileUtils.copyFileToDirectory( gitignore, baseDir );
+		}
+		final List<IOFileFilter> fileFilter = new ArrayList<>( );
+		fileFilter.add( FileFilterUtils.suffixFileFilter( "HooksTransient.java" ) );
+		fileFilter.add( FileFilterUtils.suffixFileFilter( "HooksNonTransient.java" ) );
+		fileFilter.add( FileFilterUtils.suffixFileFilter( "Hooks.java" ) );
+		fileFilter.add( FileFilterUtils.nameFileFilter( "RestClass.java" ) );
+		final IOFileFilter allHooksFilter = FileFilterUtils.or( fileFilter.stream( ).toArray( IOFileFilter[ ]::new ) );
+		final IOFileFilter allHooksFiles = FileFilterUtils.and( FileFileFilter.FILE, allHooksFilter );
+		// Create a filter for either directories or hook files
+		final FileFilter filter = FileFilterUtils.or( DirectoryFileFilter.DIRECTORY, allHooksFiles );
+
+		FileUtils.copyDirectory( tmpDir, new File( baseDir, "src" ), filter );
+	}
+
+	/**
+	 * unzips a given file to the given output directory
+	 *
+	 * @param file
+	 *        the zip file (or jar) to unzip
+	 * @param outputDir
+	 *        the output-directory to unzip the files to
+	 * @throws ZipException
+	 * @throws IOException
+	 */
+	public static void unzipFile( final File file, final File outputDir ) throws ZipException, IOException
+	{
+		try (final ZipFile zipFile = new ZipFile( file ))
+		{
+			final Enumeration<? extends ZipEntry> entries = zipFile.entries( );
+			while ( entries.hasMoreElements( ) )
+			{
+				final ZipEntry entry = entries.nextElement( );
+				if ( JarDelta.DESCRIPTOR.equals( entry.getName( ) ) )
+				{
+					continue;
+				}
+				final File entryDestination = new File( outputDir, entry.getName( ) );
+				if ( entry.isDirectory( ) )
+				{
+					entryDestination.mkdirs( );
+				}
+				else
+				{
+					entryDestination.getParentFile( ).mkdirs( );
+					try (final InputStream in = zipFile.getInputStream( entry );
+						final OutputStream out = new FileOutputStream( entryDestination ))
+					{
+						IOUtils.copy( in, out );
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.transfer;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the progress of an up- or download over the maven log. Progress messages are rate limited to one message
+ * per interval, so the log does not get flooded on fast connections.
+ *
+ * @author thum
+ */
+public class TransferProgress
+{
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Log log;
+	private final String label;
+	private final long totalBytes;
+	private final long intervalNanos;
+	private final boolean quiet;
+	private final long startNanos;
+
+	private long transferredBytes;
+	private long lastReportNanos;
+	private BandwidthLimiter limiter;
+
+	/**
+	 * @param log the log to report to
+	 * @param label the label to prefix the messages with, like "Uploading MyModule-NM.jar"
+	 * @param totalBytes the expected number of bytes or a negative value if unknown
+	 * @param intervalMillis minimal interval between two progress messages
+	 * @param quiet if true, no intermediate progress is reported and the summary is only logged on debug level
+	 */
+	public TransferProgress( final Log log, final String label, final long totalBytes, final long intervalMillis,
+		final boolean quiet )
+	{
+		this.log = Objects.requireNonNull( log );
+		this.label = label;
+		this.totalBytes = totalBytes;
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos( Math.max( 0, intervalMillis ) );
+		this.quiet = quiet;
+		this.startNanos = System.nanoTime( );
+		this.lastReportNanos = this.startNanos;
+	}
+
+	/**
+	 * Limits the bandwidth of {@link #copy(InputStream, OutputStream)}
+	 *
+	 * @param bandwidthLimiter the limiter, shared with the other transfers; null for no limit
+	 * @return this progress
+	 */
+	public TransferProgress limitTo( final BandwidthLimiter bandwidthLimiter )
+	{
+		this.limiter = bandwidthLimiter;
+		return this;
+	}
+
+	/**
+	 * Adds the given amount of transferred bytes and logs the progress if the interval has elapsed
+	 *
+	 * @param bytes number of bytes transferred since the last call
+	 */
+	public void update( final long bytes )
+	{
+		this.transferredBytes += bytes;
+		if ( this.quiet )
+		{
+			return;
+		}
+		final long now = System.nanoTime( );
+		if ( now - this.lastReportNanos >= this.intervalNanos )
+		{
+			this.lastReportNanos = now;
+			this.log.info( this.label + ": " + describe( now ) );
+		}
+	}
+
+	/**
+	 * Logs the summary of the transfer
+	 */
+	public void finish( )
+	{
+		final long now = System.nanoTime( );
+		final String message = this.label + " finished: " + formatBytes( this.transferredBytes ) + " in " +
+			formatDuration( now - this.startNanos ) + " (" + formatRate( now ) + ")";
+		if ( this.quiet )
+		{
+			this.log.debug( message );
+		}
+		else
+		{
+			this.log.info( message );
+		}
+	}
+
+	/**
+	 * Copies the input to the output stream and reports the progress while doing so, within the bandwidth limit (see
+	 * {@link #limitTo(BandwidthLimiter)}). The streams are not closed.
+	 *
+	 * @param in the stream to read from
+	 * @param out the stream to write to
+	 * @return the number of copied bytes
+	 * @throws IOException
+	 */
+	public long copy( final InputStream in, final OutputStream out ) throws IOException
+	{
+		final byte[ ] buf = new byte[ BUFFER_SIZE ];
+		long count = 0;
+		for ( int c = in.read( buf ); c != -1; c = in.read( buf ) )
+		{
+			if ( this.limiter != null )
+			{
+				this.limiter.acquire( c );
+			}
+			out.write( buf, 0, c );
+			count += c;
+			update( c );
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of bytes transferred so far
+	 */
+	public long getTransferredBytes( )
+	{
+		return this.transferredBytes;
+	}
+
+	/**
+	 * @return the milliseconds elapsed since the transfer started
+	 */
+	public long getElapsedMillis( )
+	{
+		return TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - this.startNanos );
+	}
+
+	private String describe( final long now )
+	{
+		final StringBuilder sb = new StringBuilder( formatBytes( this.transferredBytes ) );
+		if ( this.totalBytes > 0 )
+		{
+			sb.append( " / " ).append( formatBytes( this.totalBytes ) );
+			sb.append( " (" ).append( this.transferredBytes * 100 / this.totalBytes ).append( "%)" );
+		}
+		sb.append( ", " ).append( formatRate( now ) );
+		final long elapsedNanos = now - this.startNanos;
+		if ( this.totalBytes > 0 && this.transferredBytes > 0 && elapsedNanos > 0 )
+		{
+			final double nanosPerByte = ( double ) elapsedNanos / this.transferredBytes;
+			final long remainingNanos =
+				( long ) ( nanosPerByte * Math.max( 0, this.totalBytes - this.transferredBytes ) );
+			sb.append( ", ETA " ).append( formatDuration( remainingNanos ) );
+		}
+		return sb.toString( );
+	}
+
+	private String formatRate( final long now )
+	{
+		final long elapsedNanos = now - this.startNanos;
+		if ( elapsedNanos <= 0 )
+		{
+			return "-- MB/s";
+		}
+		final double mbPerSecond =
+			this.transferredBytes / ( 1024.0 * 1024.0 ) / ( elapsedNanos / ( double ) TimeUnit.SECONDS.toNanos( 1 ) );
+		return String.format( Locale.ENGLISH, "%.2f MB/s", mbPerSecond );
+	}
+
+	/**
+	 * @param bytes number of bytes
+	 * @return human readable representation of the given number of bytes, like "1.5 MB"
+	 */
+	public static String formatBytes( final long bytes )
+	{
+		if ( bytes < 1024 )
+		{
+			return bytes + " B";
+		}
+		if ( bytes < 1024 * 1024 )
+		{
+			return String.format( Locale.ENGLISH, "%.1f KB", bytes / 1024.0 );
+		}
+		return String.format( Locale.ENGLISH, "%.1f MB", bytes / ( 1024.0 * 1024.0 ) );
+	}
+
+	private static String formatDuration( final long nanos )
+	{
+		final long seconds = TimeUnit.NANOSECONDS.toSeconds( nanos );
+		if ( seconds < 1 )
+		{
+			return TimeUnit.NANOSECONDS.toMillis( nanos ) + "ms";
+		}
+		if ( seconds < 60 )
+		{
+			return seconds + "s";
+		}
+		return seconds / 60 + "m " + seconds % 60 + "s";
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+/**
+ * Tests the rewrite of the hook classes for 3.3.0
+ *
+ * @author thum
+ */
+public class HookClassRewriterTest
+{
+	private static final String OLD_HOOK =
+		"public class %s {\n	@Override\n	public void beforeGet( Request r ) { }\n}\n";
+	private static final String NEW_HOOK =
+		"public class %s {\n	@Override\n	public void beforeGet( String id, Request r ) { }\n}\n";
+
+	/**
+	 * Tests that only hook classes with the deprecated method are rewritten, also when processed in parallel
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRewritesOnlyDeprecatedHooks( ) throws Exception
+	{
+		final File nmDir = Files.createTempDir( );
+		try
+		{
+			for ( int i = 0; i < 20; i++ )
+			{
+				final String name = "Model" + i + "HooksNonTransient";
+				write( nmDir, "pkg" + i % 3 + "/" + name + ".java",
+					String.format( i % 2 == 0 ? OLD_HOOK : NEW_HOOK, name ) );
+			}
+			/* not a hook class, although it contains the deprecated method */
+			write( nmDir, "pkg0/Model0.java", String.format( OLD_HOOK, "Model0" ) );
+			write( nmDir, "pkg0/Model0HooksNonTransient.txt", String.format( OLD_HOOK, "Model0" ) );
+
+			assertEquals( 20, HookClassRewriter.findHookClasses( nmDir ).size( ) );
+			assertTrue( HookClassRewriter.needsRewrite( nmDir ) );
+
+			final UpdatePlan plan = new UpdatePlan( nmDir );
+			new HookClassRewriter( 4 ).plan( nmDir, plan );
+			assertEquals( 10, plan.getActions( ).size( ) );
+			assertEquals( "pkg0/Model0HooksNonTransient.java", plan.getActions( ).get( 0 ).getPath( ) );
+			plan.execute( new SystemStreamLog( ) );
+
+			assertFalse( HookClassRewriter.needsRewrite( nmDir ) );
+			assertTrue( FileUtils.fileRead( new File( nmDir, "pkg0/Model0HooksNonTransient.java" ) )
+				.contains( "Removed deprecated beforeGet" ) );
+			assertEquals( String.format( NEW_HOOK, "Model1HooksNonTransient" ),
+				FileUtils.fileRead( new File( nmDir, "pkg1/Model1HooksNonTransient.java" ) ) );
+			assertEquals( String.format( OLD_HOOK, "Model0" ),
+				FileUtils.fileRead( new File( nmDir, "pkg0/Model0.java" ) ) );
+
+			final UpdatePlan again = new UpdatePlan( nmDir );
+			new HookClassRewriter( 4 ).plan( nmDir, again );
+			assertTrue( again.isEmpty( ) );
+		}
+		finally
+		{
+			FileUtils.deleteDirectory( nmDir );
+		}
+	}
+
+	/**
+	 * Tests that classes without the deprecated method stay unchanged
+	 */
+	@Test
+	public void testRewriteContent( )
+	{
+		final String noBeforeGet = "public class A { public void afterGet( Request r ) { } }";
+		assertEquals( noBeforeGet, HookClassRewriter.rewrite( noBeforeGet ) );
+		final String qualified = "@Override\npublic void beforeGet( java.lang.String id, Request r ) { }";
+		assertEquals( qualified, HookClassRewriter.rewrite( qualified ) );
+		assertFalse( HookClassRewriter.rewrite( "@Override\npublic void beforeGet( Request r ) { }" )
+			.contains( "@Override" ) );
+	}
+
+	private static void write( final File dir, final String path, final String content ) throws Exception
+	{
+		final File file = new File( dir, path );
+		file.getParentFile( ).mkdirs( );
+		FileUtils.fileWrite( file, "UTF-8", content );
+	}
+}
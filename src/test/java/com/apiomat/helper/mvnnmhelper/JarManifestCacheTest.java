@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+/**
+ * Tests the cache of jar manifests
+ *
+ * @author thum
+ */
+public class JarManifestCacheTest
+{
+	/**
+	 * Tests that manifests are read in parallel, persisted and only read again if the jar changed
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCachesManifests( ) throws Exception
+	{
+		final File dir = Files.createTempDir( );
+		try
+		{
+			final List<File> jars = new ArrayList<>( );
+			for ( int i = 0; i < 10; i++ )
+			{
+				final File jar = new File( dir, "lib" + i + ".jar" );
+				writeJar( jar, i % 2 == 0 ? "Aom-IsUsedModuleLib" : "Aom-Other", "1" );
+				jars.add( jar );
+			}
+			final File noJar = new File( dir, "broken.jar" );
+			FileUtils.fileWrite( noJar.getAbsolutePath( ), "no jar" );
+			jars.add( noJar );
+
+			final File cacheFile = new File( dir, "cache/manifests.json" );
+			final JarManifestCache cache = JarManifestCache.load( cacheFile, 4 );
+			final Map<File, Map<String, String>> attributes = cache.getMainAttributes( jars );
+			assertEquals( jars, new ArrayList<>( attributes.keySet( ) ) );
+			assertEquals( "1", attributes.get( jars.get( 0 ) ).get( "Aom-IsUsedModuleLib" ) );
+			assertTrue( ModuleUpdateManager.isUsedModuleLib( attributes.get( jars.get( 0 ) ) ) );
+			assertFalse( ModuleUpdateManager.isUsedModuleLib( attributes.get( jars.get( 1 ) ) ) );
+			assertTrue( attributes.get( noJar ).isEmpty( ) );
+			cache.save( );
+			assertTrue( cacheFile.isFile( ) );
+
+			/* same size and modification time: the persisted entry is used without opening the jar */
+			final File jar = jars.get( 0 );
+			final long lastModified = jar.lastModified( );
+			final byte[ ] garbage = new byte[ ( int ) jar.length( ) ];
+			java.nio.file.Files.write( jar.toPath( ), garbage );
+			jar.setLastModified( lastModified );
+			final JarManifestCache reloaded = JarManifestCache.load( cacheFile, 4 );
+			assertEquals( "1", reloaded.getMainAttributes( jar ).get( "Aom-IsUsedModuleLib" ) );
+
+			/* changed jar: it is read again */
+			writeJar( jar, "Aom-IsUsedModuleLib", "2" );
+			jar.setLastModified( lastModified + 2000 );
+			assertEquals( "2", reloaded.getMainAttributes( jar ).get( "Aom-IsUsedModuleLib" ) );
+
+			/* a corrupt cache file results in an empty cache */
+			FileUtils.fileWrite( cacheFile.getAbsolutePath( ), "{" );
+			assertEquals( "2", JarManifestCache.load( cacheFile, 1 ).getMainAttributes( jar )
+				.get( "Aom-IsUsedModuleLib" ) );
+		}
+		finally
+		{
+			FileUtils.deleteDirectory( dir );
+		}
+	}
+
+	private static void writeJar( final File jar, final String attribute, final String value ) throws Exception
+	{
+		final Manifest manifest = new Manifest( );
+		manifest.getMainAttributes( ).put( Attributes.Name.MANIFEST_VERSION, "1.0" );
+		manifest.getMainAttributes( ).putValue( attribute, value );
+		try (final JarOutputStream out = new JarOutputStream( new FileOutputStream( jar ), manifest ))
+		{
+			out.flush( );
+		}
+	}
+}
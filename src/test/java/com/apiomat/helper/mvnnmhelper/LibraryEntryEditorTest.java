@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the editors of the library entries in the .classpath and the pom.xml
+ *
+ * @author thum
+ */
+public class LibraryEntryEditorTest
+{
+	private static final List<String> REMOVE = Arrays.asList( "old-1.0.jar", "gone.jar" );
+	private static final List<String> ADD = Arrays.asList( "new-2.0.jar", "kept.jar" );
+
+	/**
+	 * Tests that entries are found regardless of attribute order, quotes and whitespace and comments are left alone
+	 */
+	@Test
+	public void testClasspath( )
+	{
+		final String content = "<?xml version=\"1.0\"?>\n<classpath>\n" +
+			"\t<classpathentry kind=\"src\" path=\"src\"/>\n" +
+			"\t<classpathentry path='lib/old-1.0.jar'   kind = 'lib' />\n" +
+			"\t<!-- <classpathentry kind=\"lib\" path=\"lib/gone.jar\"/> -->\n" +
+			"\t<classpathentry kind=\"lib\" path=\"lib/gone.jar\">\n\t\t<attributes/>\n\t</classpathentry>\n" +
+			"\t<classpathentry kind=\"lib\" path=\"lib/kept.jar\"/>\n" +
+			"</classpath>\n";
+		assertEquals( "<?xml version=\"1.0\"?>\n<classpath>\n" +
+			"\t<classpathentry kind=\"src\" path=\"src\"/>\n" +
+			"\t<!-- <classpathentry kind=\"lib\" path=\"lib/gone.jar\"/> -->\n" +
+			"\t<classpathentry kind=\"lib\" path=\"lib/kept.jar\"/>\n" +
+			"\t<classpathentry kind=\"lib\" path=\"lib/new-2.0.jar\"/>\n" +
+			"</classpath>\n", ClasspathEditor.edit( content, REMOVE, ADD ) );
+
+		final String updated = ClasspathEditor.edit( content, REMOVE, ADD );
+		assertSame( updated, ClasspathEditor.edit( updated, REMOVE, ADD ) );
+	}
+
+	/**
+	 * Tests single line and CRLF files
+	 */
+	@Test
+	public void testClasspathLayouts( )
+	{
+		assertEquals( "<classpath><classpathentry kind=\"src\" path=\"src\"/>" +
+			"<classpathentry kind=\"lib\" path=\"lib/new-2.0.jar\"/>" +
+			"<classpathentry kind=\"lib\" path=\"lib/kept.jar\"/></classpath>",
+			ClasspathEditor.edit( "<classpath><classpathentry kind=\"src\" path=\"src\"/>" +
+				"<classpathentry kind=\"lib\" path=\"lib/gone.jar\"/></classpath>", REMOVE, ADD ) );
+		assertEquals( "<classpath>\r\n  <classpathentry kind=\"lib\" path=\"lib/kept.jar\"/>\r\n" +
+			"  <classpathentry kind=\"lib\" path=\"lib/new-2.0.jar\"/>\r\n</classpath>",
+			ClasspathEditor.edit( "<classpath>\r\n  <classpathentry kind=\"lib\" path=\"lib/old-1.0.jar\"/>\r\n" +
+				"  <classpathentry kind=\"lib\" path=\"lib/kept.jar\"/>\r\n</classpath>", REMOVE, ADD ) );
+	}
+
+	/**
+	 * Tests that system dependencies are found regardless of whitespace and only project dependencies count as present
+	 */
+	@Test
+	public void testPom( )
+	{
+		final String content = "<project>\n" +
+			"\t<dependencyManagement>\n\t\t<dependencies>\n" +
+			"\t\t\t<dependency>\n\t\t\t\t<groupId>kept</groupId>\n" +
+			"\t\t\t\t<systemPath>${project.basedir}/lib/kept.jar</systemPath>\n\t\t\t</dependency>\n" +
+			"\t\t</dependencies>\n\t</dependencyManagement>\n" +
+			"\t<dependencies>\n" +
+			"\t\t<dependency>\n\t\t\t<groupId>junit</groupId>\n\t\t</dependency>\n" +
+			"\t\t<dependency>\n\t\t\t<scope>system</scope>\n" +
+			"\t\t\t<systemPath>\n\t\t\t\t${project.basedir}/lib/old-1.0.jar\n\t\t\t</systemPath>\n" +
+			"\t\t</dependency>\n" +
+			"\t\t<!-- <dependency><systemPath>${project.basedir}/lib/gone.jar</systemPath></dependency> -->\n" +
+			"\t\t<dependency><systemPath>${project.basedir}/lib/new-2.0.jar</systemPath></dependency>\n" +
+			"\t</dependencies>\n" +
+			"</project>\n";
+		assertEquals( "<project>\n" +
+			"\t<dependencyManagement>\n\t\t<dependencies>\n" +
+			"\t\t\t<dependency>\n\t\t\t\t<groupId>kept</groupId>\n" +
+			"\t\t\t\t<systemPath>${project.basedir}/lib/kept.jar</systemPath>\n\t\t\t</dependency>\n" +
+			"\t\t</dependencies>\n\t</dependencyManagement>\n" +
+			"\t<dependencies>\n" +
+			"\t\t<dependency>\n\t\t\t<groupId>junit</groupId>\n\t\t</dependency>\n" +
+			"\t\t<!-- <dependency><systemPath>${project.basedir}/lib/gone.jar</systemPath></dependency> -->\n" +
+			"\t\t<dependency><systemPath>${project.basedir}/lib/new-2.0.jar</systemPath></dependency>\n" +
+			"\t\t<dependency>\n\t\t\t<groupId>kept</groupId>\n\t\t\t<artifactId>kept</artifactId>\n" +
+			"\t\t\t<version>1.0.0</version>\n\t\t\t<scope>system</scope>\n" +
+			"\t\t\t<systemPath>${project.basedir}/lib/kept.jar</systemPath>\n\t\t</dependency>\n" +
+			"\t</dependencies>\n" +
+			"</project>\n", PomDependencyEditor.edit( content, REMOVE, ADD ) );
+
+		final String updated = PomDependencyEditor.edit( content, REMOVE, ADD );
+		assertSame( updated, PomDependencyEditor.edit( updated, REMOVE, ADD ) );
+	}
+
+	/**
+	 * Tests poms without dependencies and single line poms
+	 */
+	@Test
+	public void testPomLayouts( )
+	{
+		final List<String> add = Collections.singletonList( "new-2.0.jar" );
+		assertEquals( "<project>\n\t<dependencies>\n\t\t<dependency>\n\t\t\t<groupId>new</groupId>\n" +
+			"\t\t\t<artifactId>new</artifactId>\n\t\t\t<version>2.0</version>\n\t\t\t<scope>system</scope>\n" +
+			"\t\t\t<systemPath>${project.basedir}/lib/new-2.0.jar</systemPath>\n\t\t</dependency>\n" +
+			"\t</dependencies>\n</project>\n",
+			PomDependencyEditor.edit( "<project>\n</project>\n", REMOVE, add ) );
+		assertEquals( "<project>\r\n\t<dependencies>\r\n\t\t<dependency>\r\n\t\t\t<groupId>new</groupId>\r\n" +
+			"\t\t\t<artifactId>new</artifactId>\r\n\t\t\t<version>2.0</version>\r\n\t\t\t<scope>system</scope>\r\n" +
+			"\t\t\t<systemPath>${project.basedir}/lib/new-2.0.jar</systemPath>\r\n\t\t</dependency>\r\n" +
+			"\t</dependencies>\r\n</project>",
+			PomDependencyEditor.edit( "<project>\r\n\t<dependencies/>\r\n</project>", REMOVE, add ) );
+		assertEquals( "<project><dependencies><dependency><groupId>new</groupId><artifactId>new</artifactId>" +
+			"<version>2.0</version><scope>system</scope><systemPath>${project.basedir}/lib/new-2.0.jar</systemPath>" +
+			"</dependency></dependencies></project>",
+			PomDependencyEditor.edit( "<project><dependencies><dependency><systemPath>lib/gone.jar</systemPath>" +
+				"</dependency></dependencies></project>", REMOVE, add ) );
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+/**
+ * Tests the resolution of module names
+ *
+ * @author thum
+ */
+public class ModuleNameResolverTest
+{
+	/**
+	 * Tests the order of the sources and that the name is resolved once per project
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testResolve( ) throws Exception
+	{
+		final File dir = Files.createTempDir( );
+		try
+		{
+			final File srcDir = new File( dir, "src" );
+			final File moduleDir = new File( srcDir, "com/apiomat/nativemodule/mymodule" );
+			moduleDir.mkdirs( );
+			FileUtils.fileWrite( new File( moduleDir, "MyModule.java" ).getAbsolutePath( ), "class MyModule {}" );
+
+			final Model model = new Model( );
+			model.setArtifactId( "MyModule" );
+			final MavenProject project = new MavenProject( model );
+			project.setFile( new File( dir, "pom.xml" ) );
+			final SystemStreamLog log = new SystemStreamLog( );
+
+			assertEquals( ModuleNameResolver.Source.PARAMETER,
+				ModuleNameResolver.resolve( project, "Configured", srcDir, log ).getSource( ) );
+
+			final ModuleNameResolver.Resolution fromClass = ModuleNameResolver.resolve( project, null, srcDir, log );
+			assertEquals( "MyModule", fromClass.getName( ) );
+			assertEquals( ModuleNameResolver.Source.MODULE_CLASS, fromClass.getSource( ) );
+
+			/* memoized for the project, even if the sources change */
+			FileUtils.fileWrite( new File( dir, "sdk.properties" ).getAbsolutePath( ), "moduleName=FromProps\n" );
+			assertSame( fromClass, ModuleNameResolver.resolve( project, "", srcDir, log ) );
+
+			final ModuleNameResolver.Resolution fromProps = ModuleNameResolver.resolve( dir, srcDir, "MyModule" );
+			assertEquals( "FromProps", fromProps.getName( ) );
+			assertEquals( ModuleNameResolver.Source.SDK_PROPERTIES, fromProps.getSource( ) );
+
+			final ModuleNameResolver.Resolution fallback =
+				ModuleNameResolver.resolve( new File( dir, "missing" ), srcDir, "OtherModule" );
+			assertEquals( "OtherModule", fallback.getName( ) );
+			assertEquals( ModuleNameResolver.Source.ARTIFACT_ID, fallback.getSource( ) );
+		}
+		finally
+		{
+			FileUtils.deleteDirectory( dir );
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.artifact.versioning.ComparableVersion;
+import org.junit.Test;
+
+/**
+ * Tests versions with qualifiers and version ranges
+ *
+ * @author thum
+ */
+public class NMVersionTest
+{
+	/**
+	 * Tests that qualifiers are ordered like Maven orders them
+	 */
+	@Test
+	public void testOrdering( )
+	{
+		final List<String> ordered = Arrays.asList( "2.5", "3.3.0-alpha1", "3.3.0-beta", "3.3.0-rc1",
+			"3.3.0-SNAPSHOT", "3.3.0", "3.3.0-sp1", "3.3.0.1", "3.3.1", "3.10.0" );
+		for ( int i = 0; i < ordered.size( ); i++ )
+		{
+			for ( int j = 0; j < ordered.size( ); j++ )
+			{
+				final NMVersion a = NMVersion.of( ordered.get( i ) );
+				final NMVersion b = NMVersion.of( ordered.get( j ) );
+				assertEquals( ordered.get( i ) + " vs " + ordered.get( j ), Integer.signum( Integer.compare( i, j ) ),
+					Integer.signum( a.compareTo( b ) ) );
+				assertEquals( Integer.signum( new ComparableVersion( ordered.get( i ) )
+					.compareTo( new ComparableVersion( ordered.get( j ) ) ) ), Integer.signum( a.compareTo( b ) ) );
+			}
+		}
+		assertEquals( NMVersion.of( "3.3" ), NMVersion.of( "3.3.0" ) );
+		assertEquals( NMVersion.of( "3.3" ).hashCode( ), NMVersion.of( "3.3.0" ).hashCode( ) );
+		assertEquals( NMVersion.of( "3.3.0.Final" ), NMVersion.of( "3.3.0" ) );
+		assertTrue( NMVersion.of( "3.3.0-SNAPSHOT" ).isSnapshot( ) );
+		assertTrue( NMVersion.of( "3.3.0-SNAPSHOT" ).isOlderThan( NMVersion.of( "3.3.0" ) ) );
+		assertArrayEquals( new int[ ] { 3, 3, 0, 0 }, NMVersion.of( "3.3.0-rc1" ).getNumbers( ) );
+	}
+
+	/**
+	 * Tests that parsed versions are interned and invalid ones rejected
+	 */
+	@Test
+	public void testParse( )
+	{
+		assertSame( NMVersion.of( "3.3.0-SNAPSHOT" ), NMVersion.of( " 3.3.0-SNAPSHOT" ) );
+		assertSame( NMVersion.of( "3.3.0" ), NMVersion.of( new int[ ] { 3, 3, 0 } ) );
+		assertNull( NMVersion.parse( null ) );
+		assertNull( NMVersion.parse( "" ) );
+		assertNull( NMVersion.parse( "latest" ) );
+	}
+
+	/**
+	 * Tests versions the packed form cannot hold, a single number or numbers above 65534
+	 */
+	@Test
+	public void testUnpackable( )
+	{
+		assertEquals( NMVersion.of( "3" ), NMVersion.of( "3.0.0" ) );
+		assertArrayEquals( new int[ ] { 3, 0, 0, 0 }, NMVersion.of( "3" ).getNumbers( ) );
+		assertTrue( NMVersion.of( "3" ).isOlderThan( NMVersion.of( "3.3" ) ) );
+		assertTrue( NMVersion.of( "3-SNAPSHOT" ).isOlderThan( NMVersion.of( "3" ) ) );
+
+		final NMVersion timestamp = NMVersion.of( "3.3.0.70000" );
+		assertArrayEquals( new int[ ] { 3, 3, 0, 70000 }, timestamp.getNumbers( ) );
+		assertTrue( timestamp.isNewerThan( NMVersion.of( "3.3.0.1" ) ) );
+		assertTrue( timestamp.isOlderThan( NMVersion.of( "3.3.1" ) ) );
+		assertTrue( NMVersion.of( "70000.1" ).isNewerThan( NMVersion.of( "65534.1" ) ) );
+		assertSame( timestamp, NMVersion.of( new int[ ] { 3, 3, 0, 70000 } ) );
+	}
+
+	/**
+	 * Tests version ranges
+	 */
+	@Test
+	public void testRange( )
+	{
+		final NMVersionRange range = NMVersionRange.parse( "[2.5,3.3)" );
+		assertTrue( range.contains( NMVersion.of( "2.5.0" ) ) );
+		assertTrue( range.contains( NMVersion.of( "3.3.0-SNAPSHOT" ) ) );
+		assertFalse( range.contains( NMVersion.of( "3.3.0" ) ) );
+		assertFalse( range.contains( NMVersion.of( "2.4.9" ) ) );
+		assertEquals( "[2.5,3.3)", range.toString( ) );
+
+		final NMVersionRange multi = NMVersionRange.parse( "(,2.0], [3.3,)" );
+		assertTrue( multi.contains( NMVersion.of( "1.0" ) ) );
+		assertFalse( multi.contains( NMVersion.of( "2.5" ) ) );
+		assertTrue( multi.contains( NMVersion.of( "4.0" ) ) );
+		assertEquals( "(,2.0],[3.3,)", multi.toString( ) );
+
+		assertTrue( NMVersionRange.parse( "[3.3]" ).contains( NMVersion.of( "3.3.0" ) ) );
+		assertTrue( NMVersionRange.parse( "3.3.0" ).contains( NMVersion.of( "3.3" ) ) );
+		assertFalse( NMVersionRange.parse( "3.3.0" ).contains( NMVersion.of( "3.3.1" ) ) );
+
+		final NMVersionRange update = NMVersionRange.between( NMVersion.of( "2.0.0" ), NMVersion.of( "3.3.0" ) );
+		assertFalse( update.contains( NMVersion.of( "2.0.0" ) ) );
+		assertTrue( update.contains( NMVersion.of( "3.3.0" ) ) );
+		assertTrue(
+			NMVersionRange.between( null, NMVersion.of( "3.3.0-SNAPSHOT" ) ).contains( NMVersion.of( "3.3.0" ) ) );
+		assertSame( NMVersion.of( "3.3.0" ), NMVersion.of( "3.3.0-SNAPSHOT" ).getRelease( ) );
+
+		final NMVersionRange from = NMVersionRange.parse( "[3,)" );
+		assertTrue( from.contains( NMVersion.of( "3.0.0" ) ) );
+		assertTrue( from.contains( NMVersion.of( "3.3.0.70000" ) ) );
+		assertFalse( from.contains( NMVersion.of( "2.5" ) ) );
+		assertEquals( "[3,)", from.toString( ) );
+
+		final NMVersionRange upTo = NMVersionRange.parse( "(,2]" );
+		assertTrue( upTo.contains( NMVersion.of( "2.0.0" ) ) );
+		assertTrue( upTo.contains( NMVersion.of( "1" ) ) );
+		assertFalse( upTo.contains( NMVersion.of( "2.0.1" ) ) );
+		assertTrue( NMVersionRange.parse( "[3]" ).contains( NMVersion.of( "3.0" ) ) );
+
+		for ( final String invalid : new String[ ] { "", "[3.3", "[3.3,2.5]", "(3.3)", "[a,b]", "[2.5,3.3) x" } )
+		{
+			try
+			{
+				NMVersionRange.parse( invalid );
+				assertTrue( "Expected " + invalid + " to be rejected", false );
+			}
+			catch ( final IllegalArgumentException e )
+			{
+				/* expected */
+			}
+		}
+	}
+}
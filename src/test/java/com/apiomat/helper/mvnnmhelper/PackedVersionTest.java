@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the packed version and the helper methods built on it
+ *
+ * @author thum
+ */
+public class PackedVersionTest
+{
+	/**
+	 * Tests parsing of the version formats parseNumbers always accepted
+	 */
+	@Test
+	public void testParse( )
+	{
+		assertEquals( PackedVersion.of( 3, 3, 0, 0 ), PackedVersion.parse( "3.3.0" ) );
+		assertEquals( PackedVersion.of( 2, 5, 0, 0 ), PackedVersion.parse( "2.5" ) );
+		assertEquals( PackedVersion.of( 2, 5, 0, 1 ), PackedVersion.parse( "2.5.0.1" ) );
+		assertEquals( PackedVersion.of( 2, 5, 0, 1 ), PackedVersion.parse( "2.5.0.1.7" ) );
+		assertEquals( PackedVersion.of( 3, 3, 0, 0 ), PackedVersion.parse( "3.3.0-SNAPSHOT" ) );
+		assertEquals( PackedVersion.of( 3, 3, 0, 1 ), PackedVersion.parse( "3.3.0-1" ) );
+		assertEquals( PackedVersion.of( 999, 999, 999, 0 ), PackedVersion.parse( "999.999.999" ) );
+		assertEquals( PackedVersion.of( 65534, 0, 0, 0 ), PackedVersion.parse( "65534.0" ) );
+
+		assertEquals( PackedVersion.INVALID, PackedVersion.parse( null ) );
+		assertEquals( PackedVersion.INVALID, PackedVersion.parse( "" ) );
+		assertEquals( PackedVersion.INVALID, PackedVersion.parse( "3" ) );
+		assertEquals( PackedVersion.INVALID, PackedVersion.parse( "v3.3.0" ) );
+		assertEquals( PackedVersion.INVALID, PackedVersion.parse( "65535.0" ) );
+		assertEquals( PackedVersion.INVALID, PackedVersion.parse( "3.99999999999" ) );
+
+		assertArrayEquals( new int[ ] { 3, 3, 0, 0 }, VersionCompareHelper.parseNumbers( "3.3.0" ) );
+		assertNull( VersionCompareHelper.parseNumbers( "latest" ) );
+	}
+
+	/**
+	 * Tests the accessors and the string representation
+	 */
+	@Test
+	public void testLanes( )
+	{
+		final long version = PackedVersion.of( 40000, 2, 3, 4 );
+		assertEquals( 40000, PackedVersion.major( version ) );
+		assertEquals( 2, PackedVersion.minor( version ) );
+		assertEquals( 3, PackedVersion.hotfix( version ) );
+		assertEquals( 4, PackedVersion.patch( version ) );
+		assertEquals( "40000.2.3.4", PackedVersion.toString( version ) );
+		assertEquals( "3.3.0", PackedVersion.toString( PackedVersion.of( new int[ ] { 3, 3 } ) ) );
+		try
+		{
+			PackedVersion.of( 1, -1, 0, 0 );
+			assertTrue( "negative numbers must be rejected", false );
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			/* expected */
+		}
+	}
+
+	/**
+	 * Tests that packed comparison matches comparing the numbers one by one, including majors using the sign bit
+	 */
+	@Test
+	public void testCompare( )
+	{
+		final int[ ] numbers = new int[ ] { 0, 1, 2, 9, 10, 999, 32767, 32768, 65534 };
+		for ( final int major1 : numbers )
+		{
+			for ( final int major2 : numbers )
+			{
+				for ( int minor1 = 0; minor1 < 3; minor1++ )
+				{
+					for ( int minor2 = 0; minor2 < 3; minor2++ )
+					{
+						final long v1 = PackedVersion.of( major1, minor1, 0, minor2 );
+						final long v2 = PackedVersion.of( major2, minor2, 0, minor1 );
+						final int expected = major1 != major2 ? Integer.compare( major1, major2 ) :
+							minor1 != minor2 ? Integer.compare( minor1, minor2 ) : Integer.compare( minor2, minor1 );
+						assertEquals( Integer.signum( expected ), Integer.signum( PackedVersion.compare( v1, v2 ) ) );
+					}
+				}
+			}
+		}
+		assertTrue( VersionCompareHelper.isNewer( 2, 5, 0, 0, 3, 3, 0, 0 ) );
+		assertFalse( VersionCompareHelper.isNewer( 3, 3, 0, 0, 3, 3, 0, 0 ) );
+		assertTrue( VersionCompareHelper.isNewerOrEqual( 3, 3, 0, 0, 3, 3, 0, 0 ) );
+		assertTrue( VersionCompareHelper.isOlder( 3, 3, 0, 1, 3, 3, 0, 0 ) );
+		assertTrue( VersionCompareHelper.isOlderOrEqual( 3, 3, 0, 0, 3, 3, 0, 0 ) );
+		assertFalse( VersionCompareHelper.isOlder( 2, 5, 0, 0, 3, 0, 0, 0 ) );
+	}
+
+	/**
+	 * Tests that numbers too large for a packed version, like a timestamp as patch level, are parsed and compared
+	 * number by number
+	 */
+	@Test
+	public void testLargeNumbers( )
+	{
+		assertArrayEquals( new int[ ] { 3, 3, 0, 20190815 }, VersionCompareHelper.parseNumbers( "3.3.0.20190815" ) );
+		assertArrayEquals( new int[ ] { 65535, 0, 0, 0 }, VersionCompareHelper.parseNumbers( "65535.0" ) );
+		assertArrayEquals( new int[ ] { 3, 70000, 1, 0 }, VersionCompareHelper.parseNumbers( "3.70000.1-SNAPSHOT" ) );
+		assertNull( VersionCompareHelper.parseNumbers( "3.99999999999" ) );
+		assertNull( VersionCompareHelper.parseNumbers( "20190815" ) );
+
+		assertFalse( VersionCompareHelper.isNewer( 3, 3, 0, 20190815, 3, 3, 0, 1 ) );
+		assertTrue( VersionCompareHelper.isOlder( 3, 3, 0, 20190815, 3, 3, 0, 1 ) );
+		assertTrue( VersionCompareHelper.isNewer( 3, 3, 0, 20190815, 3, 3, 0, 20190816 ) );
+		assertTrue( VersionCompareHelper.isNewerOrEqual( 3, 3, 0, 20190815, 3, 3, 0, 20190815 ) );
+		assertTrue( VersionCompareHelper.isOlderOrEqual( 3, 3, 0, 20190815, 3, 3, 0, 20190815 ) );
+		assertTrue( VersionCompareHelper.isNewer( 3, 3, 0, 20190815, 3, 4, 0, 0 ) );
+		assertTrue( VersionCompareHelper.isNewer( 65534, 0, 0, 0, 70000, 0, 0, 0 ) );
+		assertTrue( VersionCompareHelper.isOlder( 70000, 0, 0, 0, 3, 3, 0, 0 ) );
+		assertTrue( VersionCompareHelper.isEqual( 3, 3, 0, 20190815, 3, 3, 0, 20190815 ) );
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+/**
+ * Tests the streaming rewrite of the pom.xml
+ *
+ * @author thum
+ */
+public class Pom330RewriterTest
+{
+	private final ModuleUpdateManager mum = new ModuleUpdateManager( new File( "." ), "Test", new SystemStreamLog( ) );
+
+	private final Pom330Rewriter rewriter = new Pom330Rewriter( "Test", this.mum.dependencies330,
+		this.mum.jarsToRemove330, Collections.<File> emptyList( ), new SystemStreamLog( ) );
+
+	/**
+	 * Tests that unchanged parts keep their formatting and comments and that a second rewrite changes nothing
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPreservesFormatting( ) throws Exception
+	{
+		final String pom = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<!-- license -->\n" +
+			"<project xmlns=\"http://maven.apache.org/POM/4.0.0\"\n" +
+			"  xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n" +
+			"  <modelVersion>4.0.0</modelVersion>\n" +
+			"  <version>1</version>\n" +
+			"  <!-- keep me -->\n" +
+			"  <description><![CDATA[a <b>module</b>]]> &amp; more</description>\n" +
+			"  <dependencies>\n" +
+			"    <dependency>\n" +
+			"      <groupId>anttask</groupId>\n" +
+			"      <artifactId>anttask</artifactId>\n" +
+			"      <scope>system</scope>\n" +
+			"      <systemPath>${project.basedir}/lib/anttask-1.0.0.jar</systemPath>\n" +
+			"    </dependency>\n" +
+			"    <dependency><!-- inline -->\n" +
+			"      <groupId>junit</groupId>\n" +
+			"    </dependency>\n" +
+			"  </dependencies>\n" +
+			"</project>\n" +
+			"<!-- trailer -->\n";
+
+		final Pom330Rewriter.Result result = this.rewriter.rewrite( pom );
+		assertTrue( result.isChanged( ) );
+		final String content = result.getContent( );
+		assertTrue( content.startsWith( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- license -->\n" +
+			"<project xmlns=\"http://maven.apache.org/POM/4.0.0\"\n  xmlns:xsi=" ) );
+		assertTrue( content.contains( "  <version>1.0.0</version>\n  <!-- keep me -->\n" ) );
+		assertTrue( content.contains( "<![CDATA[a <b>module</b>]]> &amp; more" ) );
+		assertTrue( content.contains( "  <dependencies>\n    <dependency><!-- inline -->\n" ) );
+		assertFalse( content.contains( "anttask" ) );
+		assertTrue( content.contains( "    <dependency>\n      <groupId>com.sun.jersey</groupId>\n" ) );
+		assertTrue( content.contains( "  </dependencies>\n  <name>Test</name>\n  <build>\n    <plugins>\n" ) );
+		assertTrue( content.endsWith( "  </build>\n</project>\n<!-- trailer -->\n" ) );
+
+		final Model model = new MavenXpp3Reader( ).read( new StringReader( content ) );
+		assertEquals( "1.0.0", model.getVersion( ) );
+		assertEquals( 5, model.getDependencies( ).size( ) );
+		final Plugin plugin = model.getBuild( ).getPlugins( ).get( 0 );
+		assertEquals( "nm-maven-plugin", plugin.getArtifactId( ) );
+
+		assertFalse( this.rewriter.rewrite( content ).isChanged( ) );
+	}
+
+	/**
+	 * Tests that missing build and plugins elements are created and windows line separators are kept
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCreatesPluginsElement( ) throws Exception
+	{
+		final String pom = "<project>\r\n\t<name>Test</name>\r\n\t<build>\r\n\t\t<finalName>x</finalName>\r\n" +
+			"\t</build>\r\n\t<dependencies/>\r\n</project>";
+
+		final String content = this.rewriter.rewrite( pom ).getContent( );
+		assertTrue( content.contains( "\t\t<finalName>x</finalName>\r\n\t\t<plugins>\r\n\t\t\t<plugin>\r\n" ) );
+		assertFalse( content.replace( "\r\n", "" ).contains( "\n" ) );
+
+		final Model model = new MavenXpp3Reader( ).read( new StringReader( content ) );
+		assertEquals( "nm-maven-plugin", model.getBuild( ).getPlugins( ).get( 0 ).getArtifactId( ) );
+		assertEquals( 4, model.getDependencies( ).size( ) );
+		assertFalse( this.rewriter.rewrite( content ).isChanged( ) );
+	}
+
+	/**
+	 * Rewrites a generated pom with thousands of system dependencies and used module libraries, like the ones of
+	 * aggregator modules, and checks that all of them are matched
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLargePom( ) throws Exception
+	{
+		final int count = 5000;
+		final List<File> usedLibs = new ArrayList<>( );
+		final StringBuilder pom = new StringBuilder( "<project>\n\t<name>Test</name>\n\t<dependencies>\n" );
+		for ( int i = 0; i < count; i++ )
+		{
+			usedLibs.add( new File( "lib", "Lib" + i + ".jar" ) );
+			pom.append( "\t\t<dependency>\n\t\t\t<groupId>g</groupId>\n\t\t\t<artifactId>Lib" ).append( i )
+				.append( "</artifactId>\n\t\t\t<version>1.0.0</version>\n\t\t\t<scope>system</scope>\n" )
+				.append( "\t\t\t<systemPath>${project.basedir}/lib/Lib" ).append( i )
+				.append( ".jar</systemPath>\n\t\t</dependency>\n" );
+		}
+		pom.append( "\t</dependencies>\n</project>\n" );
+
+		final Pom330Rewriter largeRewriter = new Pom330Rewriter( "Test", this.mum.dependencies330,
+			this.mum.jarsToRemove330, usedLibs, new SystemStreamLog( ) );
+		final long start = System.nanoTime( );
+		final Pom330Rewriter.Result result = largeRewriter.rewrite( pom.toString( ) );
+		System.out.println( "Rewrote pom with " + count + " dependencies in " +
+			TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - start ) + "ms" );
+
+		assertEquals( count, result.getRenamedLibs( ).size( ) );
+		assertEquals( new File( "lib", "Lib4711-1.0.0.jar" ), result.getRenamedLibs( ).get( usedLibs.get( 4711 ) ) );
+		final Model model = new MavenXpp3Reader( ).read( new StringReader( result.getContent( ) ) );
+		assertEquals( count + 4, model.getDependencies( ).size( ) );
+	}
+
+	/**
+	 * Tests that the suffix index finds the first added key which is a suffix
+	 */
+	@Test
+	public void testSuffixIndex( )
+	{
+		final Pom330Rewriter.SuffixIndex<Integer> index = new Pom330Rewriter.SuffixIndex<>( );
+		index.add( "MyJDBC.jar", 1 );
+		index.add( "JDBC.jar", 2 );
+		index.add( "JDBC.jar", 3 );
+		assertEquals( Integer.valueOf( 1 ), index.findSuffixOf( "${project.basedir}/lib/MyJDBC.jar" ) );
+		assertEquals( Integer.valueOf( 2 ), index.findSuffixOf( "lib/OtherJDBC.jar" ) );
+		assertEquals( Integer.valueOf( 2 ), index.findSuffixOf( "JDBC.jar" ) );
+		assertNull( index.findSuffixOf( "DBC.jar" ) );
+	}
+}
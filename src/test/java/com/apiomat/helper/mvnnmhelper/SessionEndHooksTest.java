@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.execution.AbstractExecutionListener;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+/**
+ * Tests the hooks run at the end of a Maven session
+ *
+ * @author thum
+ */
+public class SessionEndHooksTest
+{
+	/**
+	 * Tests that the hooks run once, the listener of the session is still called and a failing hook fails the build
+	 */
+	@Test
+	public void testHooksRunAtSessionEnd( )
+	{
+		final AtomicInteger listenerCalls = new AtomicInteger( );
+		final DefaultMavenExecutionRequest request = new DefaultMavenExecutionRequest( );
+		request.setExecutionListener( new AbstractExecutionListener( )
+		{
+			@Override
+			public void sessionEnded( final ExecutionEvent event )
+			{
+				listenerCalls.incrementAndGet( );
+			}
+		} );
+		final MavenSession session =
+			new MavenSession( null, request, new DefaultMavenExecutionResult( ), new ArrayList<MavenProject>( ) );
+
+		final AtomicInteger hookCalls = new AtomicInteger( );
+		SessionEndHooks.register( session, "count", hookCalls::incrementAndGet );
+		SessionEndHooks.register( session, "count", hookCalls::incrementAndGet );
+		SessionEndHooks.register( session, "fail", ( ) -> {
+			throw new MojoExecutionException( "Upload of MyModule failed" );
+		} );
+
+		session.getRequest( ).getExecutionListener( ).sessionEnded( event( session ) );
+
+		assertEquals( 1, hookCalls.get( ) );
+		assertEquals( 1, listenerCalls.get( ) );
+		assertTrue( session.getResult( ).hasExceptions( ) );
+		assertEquals( "Upload of MyModule failed", session.getResult( ).getExceptions( ).get( 0 ).getMessage( ) );
+	}
+
+	private static ExecutionEvent event( final MavenSession session )
+	{
+		return new ExecutionEvent( )
+		{
+			@Override
+			public Type getType( )
+			{
+				return Type.SessionEnded;
+			}
+
+			@Override
+			public MavenSession getSession( )
+			{
+				return session;
+			}
+
+			@Override
+			public MavenProject getProject( )
+			{
+				return null;
+			}
+
+			@Override
+			public MojoExecution getMojoExecution( )
+			{
+				return null;
+			}
+
+			@Override
+			public Exception getException( )
+			{
+				return null;
+			}
+		};
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.io.RawInputStreamFacade;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.apiomat.helper.mvnnmhelper.UpdatePlan.ActionType;
+import com.apiomat.helper.mvnnmhelper.migration.MigrationChain;
+import com.apiomat.helper.mvnnmhelper.migration.MigrationContext;
+import com.apiomat.helper.mvnnmhelper.migration.MigrationEngine;
+import com.apiomat.helper.mvnnmhelper.migration.MigrationRegistry;
+import com.google.common.io.Files;
+
+/**
+ * Tests planning a module update without changing the module and executing the plan later on
+ *
+ * @author thum
+ */
+public class UpdatePlanTest
+{
+	private static final String HOOKS = "package com.apiomat.nativemodule.test;\n" +
+		"public class ModelHooksNonTransient {\n" +
+		"	@Override\n	public void beforeGet( Request r ) { }\n}\n";
+
+	/**
+	 * Tests that a dry run changes nothing and that the plan, written as JSON, executes all planned operations
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDryRunAndExecute( ) throws Exception
+	{
+		final File moduleDir = createModule( );
+		try
+		{
+			final File pomFile = new File( moduleDir, "pom.xml" );
+			final String pom = FileUtils.fileRead( pomFile );
+			final UpdatePlan plan = plan( moduleDir, 2, 0, 0 );
+
+			/* nothing changed yet */
+			assertEquals( pom, FileUtils.fileRead( pomFile ) );
+			assertTrue( new File( moduleDir, "lib/anttask-1.0.0.jar" ).exists( ) );
+			assertTrue( new File( moduleDir, "src/com/apiomat/nativemodule/interfaces/dmap" ).exists( ) );
+
+			/* the 3.3.0 pom update is merged into the write of the 2.5.0 update */
+			assertEquals( 1, plan.getActions( ).stream( ).filter( a -> a.getPath( ).equals( "pom.xml" ) ).count( ) );
+			assertEquals( 1, plan.getCount( ActionType.MOVE ) );
+			assertEquals( 5, plan.getCount( ActionType.DELETE ) );
+			assertEquals( 3, plan.getCount( ActionType.WRITE ) );
+			assertEquals( 3 + 2, plan.getBytes( ActionType.DELETE ) );
+
+			final JSONObject json = new JSONObject( plan.toJson( ).toString( ) );
+			assertEquals( 5, json.getJSONObject( "summary" ).getInt( "delete" ) );
+			UpdatePlan.fromJson( json ).execute( new SystemStreamLog( ) );
+
+			assertFalse( new File( moduleDir, "lib/anttask-1.0.0.jar" ).exists( ) );
+			assertFalse( new File( moduleDir, "lib/JDBC.jar" ).exists( ) );
+			assertTrue( new File( moduleDir, "lib/JDBC-1.0.0.jar" ).exists( ) );
+			assertFalse( new File( moduleDir, "src/com/apiomat/nativemodule/interfaces" ).exists( ) );
+			assertFalse( FileUtils.fileRead( new File( moduleDir, ".classpath" ) ).contains( "anttask" ) );
+			assertTrue( FileUtils.fileRead( pomFile ).contains( "nm-maven-plugin" ) );
+			assertTrue( FileUtils.fileRead( new File( moduleDir,
+				"src/com/apiomat/nativemodule/test/ModelHooksNonTransient.java" ) ).contains( "Removed deprecated" ) );
+
+			/* nothing left to do for 3.3.0, the 2.5.0 steps would add their libraries again */
+			assertTrue( plan( moduleDir, 2, 5, 0 ).isEmpty( ) );
+		}
+		finally
+		{
+			FileUtils.deleteDirectory( moduleDir );
+		}
+	}
+
+	/**
+	 * Tests that a plan is not executed if a file changed since the plan was created
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRejectsStalePlan( ) throws Exception
+	{
+		final File moduleDir = createModule( );
+		try
+		{
+			final UpdatePlan plan = plan( moduleDir, 2, 0, 0 );
+			final File pomFile = new File( moduleDir, "pom.xml" );
+			FileUtils.fileAppend( pomFile.getAbsolutePath( ), "\n" );
+			try
+			{
+				plan.execute( new SystemStreamLog( ) );
+				fail( "Stale plan was executed" );
+			}
+			catch ( final IOException e )
+			{
+				assertTrue( e.getMessage( ).contains( "pom.xml" ) );
+			}
+			assertTrue( new File( moduleDir, "lib/anttask-1.0.0.jar" ).exists( ) );
+		}
+		finally
+		{
+			FileUtils.deleteDirectory( moduleDir );
+		}
+	}
+
+	private static UpdatePlan plan( final File moduleDir, final int... fromVersion ) throws Exception
+	{
+		final MigrationChain chain = MigrationRegistry.load( UpdatePlanTest.class.getClassLoader( ) )
+			.chain( fromVersion, new int[ ] { 3, 3, 0 } );
+		return new MigrationEngine( 1 ).plan( chain,
+			new MigrationContext( moduleDir, "JDBC", new SystemStreamLog( ) ) );
+	}
+
+	private File createModule( ) throws IOException
+	{
+		final File moduleDir = Files.createTempDir( );
+		try (InputStream is = getClass( ).getResourceAsStream( "pom.xml" ))
+		{
+			FileUtils.copyStreamToFile( new RawInputStreamFacade( is ), new File( moduleDir, "pom.xml" ) );
+		}
+		try (InputStream is = getClass( ).getResourceAsStream( "JDBC-DUMMY.jar" ))
+		{
+			FileUtils.copyStreamToFile( new RawInputStreamFacade( is ), new File( moduleDir, "lib/JDBC.jar" ) );
+		}
+		FileUtils.fileWrite( new File( moduleDir, "lib/anttask-1.0.0.jar" ).getAbsolutePath( ), "abc" );
+		FileUtils.fileWrite( new File( moduleDir, ".classpath" ).getAbsolutePath( ),
+			"<classpath><classpathentry kind=\"lib\" path=\"lib/anttask-1.0.0.jar\"/></classpath>" );
+		final File nmDir = new File( moduleDir, "src/com/apiomat/nativemodule" );
+		new File( nmDir, "interfaces/dmap" ).mkdirs( );
+		FileUtils.fileWrite( new File( nmDir, "interfaces/dmap/IDistributedMap.java" ).getAbsolutePath( ), "x" );
+		FileUtils.fileWrite( new File( nmDir, "IModel.java" ).getAbsolutePath( ), "y" );
+		new File( nmDir, "test" ).mkdirs( );
+		FileUtils.fileWrite( new File( nmDir, "test/ModelHooksNonTransient.java" ).getAbsolutePath( ), HOOKS );
+		return moduleDir;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.io.RawInputStreamFacade;
+import org.junit.Test;
+
+import com.apiomat.helper.mvnnmhelper.WorkspaceMigration.ModuleResult;
+import com.google.common.io.Files;
+
+/**
+ * Tests the migration of a workspace of modules
+ *
+ * @author thum
+ */
+public class WorkspaceMigrationTest
+{
+	/**
+	 * Tests that all modules are found and that a broken pom.xml does not stop the migration of the other modules
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFailureIsolation( ) throws Exception
+	{
+		final File workspace = Files.createTempDir( );
+		try
+		{
+			for ( final String module : new String[ ] { "a/ModuleA", "b/ModuleB", "ModuleC" } )
+			{
+				final File moduleDir = new File( workspace, module );
+				moduleDir.mkdirs( );
+				try (InputStream is = this.getClass( ).getResourceAsStream( "pom.xml" ))
+				{
+					FileUtils.copyStreamToFile( new RawInputStreamFacade( is ),
+						new File( moduleDir, "pom.xml" ) );
+				}
+				FileUtils.fileWrite( new File( moduleDir, "sdk.properties" ),
+					"moduleName=" + moduleDir.getName( ) );
+			}
+			FileUtils.fileWrite( new File( workspace, "b/ModuleB/pom.xml" ), "<project><broken></project>" );
+			/* not a module, and modules within target folders are ignored */
+			new File( workspace, "docs" ).mkdirs( );
+			new File( workspace, "a/ModuleA/target/classes" ).mkdirs( );
+
+			final List<File> modules = WorkspaceMigration.discoverModules( workspace, 2 );
+			assertEquals( 3, modules.size( ) );
+
+			final WorkspaceMigration migration =
+				new WorkspaceMigration( new SystemStreamLog( ), 2, WorkspaceMigration.FailurePolicy.CONTINUE );
+			final List<ModuleResult> results = migration.run( modules, ( moduleDir, moduleName, log ) -> {
+				final ModuleUpdateManager mum = new ModuleUpdateManager( moduleDir, moduleName, log );
+				mum.cleanJarsFor330( );
+			} );
+
+			for ( final ModuleResult result : results )
+			{
+				assertEquals( result.getModuleDir( ).getName( ), result.getModuleName( ) );
+				assertEquals( "ModuleB".equals( result.getModuleName( ) ) ? ModuleResult.Status.FAILED :
+					ModuleResult.Status.SUCCESS, result.getStatus( ) );
+			}
+			assertTrue( FileUtils.fileRead( new File( workspace, "ModuleC/pom.xml" ) ).contains( "nm-maven-plugin" ) );
+			assertTrue( migration.report( results ) );
+			assertFalse( new WorkspaceMigration( new SystemStreamLog( ), 2, WorkspaceMigration.FailurePolicy.IGNORE )
+				.report( results ) );
+		}
+		finally
+		{
+			FileUtils.deleteDirectory( workspace );
+		}
+	}
+}
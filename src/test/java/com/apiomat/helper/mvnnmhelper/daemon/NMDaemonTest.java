@@ -0,0 +1,317 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.daemon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests executing goals in the nm daemon against a stand-in server
+ *
+ * @author thum
+ */
+public class NMDaemonTest
+{
+	private static final long HUGE_ERROR_BODY = 64L * 1024 * 1024;
+
+	private final AtomicInteger uploadedBytes = new AtomicInteger( -1 );
+	private final AtomicReference<String> uploadQuery = new AtomicReference<>( );
+	private final AtomicReference<String> authorization = new AtomicReference<>( );
+	private final AtomicInteger unavailable = new AtomicInteger( );
+	private final BlockingQueue<Long> errorBodyWritten = new LinkedBlockingQueue<>( );
+	private HttpServer server;
+	private NMDaemon daemon;
+	private NMDaemonClient client;
+	private File dir;
+
+	/**
+	 * Starts a server accepting uploads and serving a module archive, and a daemon on a free port
+	 *
+	 * @throws Exception
+	 */
+	@Before
+	public void start( ) throws Exception
+	{
+		this.server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		this.server.createContext( "/yambas/rest/modules/asset", exchange -> {
+			this.authorization.set( exchange.getRequestHeaders( ).getFirst( "Authorization" ) );
+			this.uploadQuery.set( exchange.getRequestURI( ).getQuery( ) );
+			this.uploadedBytes.set( IOUtils.toByteArray( exchange.getRequestBody( ) ).length );
+			exchange.sendResponseHeaders( 201, -1 );
+			exchange.close( );
+		} );
+		this.server.createContext( "/yambas/rest/modules/MyModule/v/1.0.0/asset", exchange -> {
+			if ( this.unavailable.getAndDecrement( ) > 0 )
+			{
+				exchange.sendResponseHeaders( 503, -1 );
+				exchange.close( );
+				return;
+			}
+			final ByteArrayOutputStream zip = new ByteArrayOutputStream( );
+			try (final ZipOutputStream out = new ZipOutputStream( zip ))
+			{
+				out.putNextEntry( new ZipEntry( "src/MyModule.java" ) );
+				out.write( "class MyModule {}".getBytes( StandardCharsets.UTF_8 ) );
+				out.closeEntry( );
+			}
+			exchange.sendResponseHeaders( 200, zip.size( ) );
+			try (final OutputStream out = exchange.getResponseBody( ))
+			{
+				zip.writeTo( out );
+			}
+		} );
+		this.server.createContext( "/yambas/rest/modules/HugeErrorModule/v/1.0.0/asset", exchange -> {
+			final byte[ ] chunk = new byte[ 64 * 1024 ];
+			Arrays.fill( chunk, ( byte ) 'x' );
+			exchange.getResponseHeaders( ).set( "Content-Type", "text/plain" );
+			exchange.sendResponseHeaders( 500, HUGE_ERROR_BODY );
+			long written = 0;
+			try (final OutputStream out = exchange.getResponseBody( ))
+			{
+				while ( written < HUGE_ERROR_BODY )
+				{
+					out.write( chunk );
+					written += chunk.length;
+				}
+			}
+			catch ( final IOException e )
+			{
+				/* the client aborted the connection */
+			}
+			finally
+			{
+				this.errorBodyWritten.offer( written );
+			}
+		} );
+		this.server.start( );
+
+		this.dir = Files.createTempDir( );
+		final File tokenFile = new File( this.dir, "nm-daemon.token" );
+		this.daemon = new NMDaemon( 0, tokenFile, 0, "old" );
+		this.daemon.start( );
+		this.client = new NMDaemonClient( this.daemon.getPort( ), tokenFile );
+	}
+
+	/**
+	 * Stops the daemon and the server
+	 *
+	 * @throws IOException
+	 */
+	@After
+	public void stop( ) throws IOException
+	{
+		this.daemon.close( );
+		this.server.stop( 0 );
+		FileUtils.deleteDirectory( this.dir );
+	}
+
+	/**
+	 * Tests uploading a module jar through the daemon
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUpload( ) throws Exception
+	{
+		final File jar = new File( this.dir, "MyModule-NM.jar" );
+		try (final ZipOutputStream out = new ZipOutputStream( new FileOutputStream( jar ) ))
+		{
+			out.putNextEntry( new ZipEntry( "MyModule.class" ) );
+			out.closeEntry( );
+		}
+
+		final JSONObject params = params( this.dir );
+		params.put( "moduleJarPath", this.dir.getAbsolutePath( ) );
+		params.put( "finalName", "MyModule" );
+		params.put( "update", "overwrite" );
+		params.put( "noDownload", true );
+		final JSONObject result = this.client.execute( "upload", params, new SystemStreamLog( ) );
+
+		assertEquals( jar.length( ), this.uploadedBytes.get( ) );
+		assertEquals( "Basic dGVzdDpzZWNyZXQ=", this.authorization.get( ) );
+		assertTrue( this.uploadQuery.get( ).contains( "usedSystem=LIVE" ) );
+		assertEquals( 1, result.getJSONObject( "metrics" ).getInt( "requests" ) );
+		assertEquals( jar.length( ), result.getJSONObject( "metrics" ).getLong( "bytes" ) );
+	}
+
+	/**
+	 * Tests downloading and extracting a module through the daemon, with the retries of the download goal
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDownload( ) throws Exception
+	{
+		final File baseDir = new File( this.dir, "MyModule" );
+		new File( baseDir, "src" ).mkdirs( );
+		this.unavailable.set( 1 );
+
+		final JSONObject params = params( baseDir );
+		params.put( "merge", "true" );
+		params.put( "eclipse", "true" );
+		params.put( "overwriteHooks", "false" );
+		final JSONObject result = this.client.execute( "download", params, new SystemStreamLog( ) );
+
+		assertEquals( "class MyModule {}", FileUtils.fileRead( new File( baseDir, "src/MyModule.java" ) ) );
+		assertEquals( 1, result.getJSONObject( "metrics" ).getInt( "retries" ) );
+		assertEquals( 1, baseDir.list( ).length );
+	}
+
+	/**
+	 * Tests that failures of the server and requests without the token are reported to the client
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFailures( ) throws Exception
+	{
+		final JSONObject params = params( this.dir );
+		params.put( "moduleName", "OtherModule" );
+		try
+		{
+			this.client.execute( "download", params, new SystemStreamLog( ) );
+			fail( "Download of an unknown module should fail" );
+		}
+		catch ( final IOException e )
+		{
+			assertTrue( e.getMessage( ), e.getMessage( ).contains( "Not Found" ) );
+		}
+		assertTrue( this.client.isRunning( ) );
+
+		final File otherToken = new File( this.dir, "other.token" );
+		FileUtils.fileWrite( otherToken, "guessed" );
+		assertFalse( new NMDaemonClient( this.daemon.getPort( ), otherToken ).isRunning( ) );
+	}
+
+	/**
+	 * Tests that only the summary of a huge error body is read and the connection is aborted instead of reading the
+	 * rest of the body
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOversizedErrorBody( ) throws Exception
+	{
+		final JSONObject params = params( this.dir );
+		params.put( "moduleName", "HugeErrorModule" );
+		try
+		{
+			this.client.execute( "download", params, new SystemStreamLog( ) );
+			fail( "Download should fail" );
+		}
+		catch ( final IOException e )
+		{
+			assertTrue( e.getMessage( ), e.getMessage( ).contains( "truncated after 1024 of " + HUGE_ERROR_BODY ) );
+		}
+		final Long written = this.errorBodyWritten.poll( 10, TimeUnit.SECONDS );
+		assertTrue( "Server did not finish the response", written != null );
+		assertTrue( written + " bytes written", written < HUGE_ERROR_BODY );
+	}
+
+	/**
+	 * Tests that a daemon running another classpath is replaced by one running the classpath of the client
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testStaleDaemonIsReplaced( ) throws Exception
+	{
+		final List<File> classpath = new ArrayList<>( );
+		for ( final String path : System.getProperty( "java.class.path" ).split( File.pathSeparator ) )
+		{
+			classpath.add( new File( path ) );
+		}
+		final String id = NMDaemonClient.classpathId( classpath );
+		assertEquals( "old", this.client.runningId( ) );
+
+		try
+		{
+			this.client.ensureRunning( classpath, new SystemStreamLog( ) );
+			assertEquals( id, this.client.runningId( ) );
+		}
+		finally
+		{
+			this.client.stop( );
+		}
+		assertFalse( this.client.isRunning( ) );
+
+		final File jar = new File( this.dir, "plugin.jar" );
+		FileUtils.fileWrite( jar, "1.0" );
+		final String before = NMDaemonClient.classpathId( Arrays.asList( jar ) );
+		FileUtils.fileWrite( jar, "1.0.1" );
+		assertTrue( before.equals( NMDaemonClient.classpathId( Arrays.asList( jar ) ) ) == false );
+	}
+
+	/**
+	 * @param baseDir the base directory of the project
+	 * @return the parameters the build forwards to the daemon, see DaemonGoals
+	 */
+	private JSONObject params( final File baseDir )
+	{
+		final JSONObject params = new JSONObject( );
+		params.put( "host", "http://localhost:" + this.server.getAddress( ).getPort( ) );
+		params.put( "system", "LIVE" );
+		params.put( "customerName", "test" );
+		params.put( "customerPassword", "secret" );
+		params.put( "moduleName", "MyModule" );
+		params.put( "quiet", true );
+		params.put( "progressInterval", 2000 );
+		params.put( "responseBodyLimit", 1024 );
+		params.put( "retryMaxAttempts", 3 );
+		params.put( "retryBackoff", 10 );
+		params.put( "retryMaxBackoff", 100 );
+		params.put( "retryStatusCodes", "503" );
+		params.put( "connectTimeout", 5000 );
+		params.put( "readTimeout", 5000 );
+		final JSONObject project = new JSONObject( );
+		project.put( "basedir", baseDir.getAbsolutePath( ) );
+		project.put( "artifactId", "MyModule" );
+		project.put( "version", "1" );
+		params.put( "project", project );
+		return params;
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+/**
+ * Tests the machine readable results of goal executions
+ *
+ * @author thum
+ */
+public class ExecutionReportTest
+{
+	private File dir;
+
+	/**
+	 * Creates the directory for the results
+	 */
+	@Before
+	public void setUp( )
+	{
+		this.dir = Files.createTempDir( );
+	}
+
+	/**
+	 * Deletes the results
+	 *
+	 * @throws IOException
+	 */
+	@After
+	public void tearDown( ) throws IOException
+	{
+		FileUtils.deleteDirectory( this.dir );
+	}
+
+	/**
+	 * Tests that the result contains the metrics, the module and the outcome
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testResult( ) throws Exception
+	{
+		final RequestMetrics metrics = new RequestMetrics( "upload" );
+		metrics.recordRequest( );
+		metrics.recordAttempt( );
+		metrics.recordRetry( 500 );
+		metrics.recordAttempt( );
+		metrics.recordStatusCode( 201 );
+		metrics.recordTransferredBytes( 2048 );
+		metrics.recordFiles( 12 );
+		metrics.recordMessage( "Uploaded MyModule-NM.jar" );
+
+		final File file = new File( this.dir, "results/upload.json" );
+		ExecutionReport.write( file, ExecutionReport.result( metrics, "MyModule", "1.0.0", null ) );
+
+		final JSONObject result = new JSONObject( FileUtils.fileRead( file ) );
+		assertEquals( 1, result.getInt( "formatVersion" ) );
+		assertFalse( result.has( "version" ) );
+		assertEquals( "upload", result.getString( "goal" ) );
+		assertEquals( "MyModule", result.getString( "module" ) );
+		assertEquals( "1.0.0", result.getString( "moduleVersion" ) );
+		assertEquals( "success", result.getString( "outcome" ) );
+		assertFalse( result.has( "error" ) );
+		assertEquals( 201, result.getInt( "statusCode" ) );
+		assertEquals( 2, result.getInt( "attempts" ) );
+		assertEquals( 1, result.getInt( "retries" ) );
+		assertEquals( 500, result.getLong( "retryDelayMillis" ) );
+		assertEquals( 2048, result.getLong( "bytes" ) );
+		assertEquals( 12, result.getInt( "files" ) );
+		assertEquals( "Uploaded MyModule-NM.jar", result.getJSONArray( "messages" ).getString( 0 ) );
+		assertEquals( 1, this.dir.listFiles( )[ 0 ].list( ).length );
+	}
+
+	/**
+	 * Tests that the summary collects the results of one build and is replaced by the next build
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSummary( ) throws Exception
+	{
+		final File summaryFile = new File( this.dir, "nm-results.json" );
+		final RequestMetrics download = new RequestMetrics( "download" );
+		download.recordRequest( );
+		download.recordTransferredBytes( 100 );
+		final RequestMetrics release = new RequestMetrics( "release" );
+		release.recordRequest( );
+		release.recordRetry( 10 );
+
+		ExecutionReport.addToSummary( summaryFile, "1",
+			ExecutionReport.result( download, "ModuleA", "1.0.0", null ) );
+		ExecutionReport.addToSummary( summaryFile, "1",
+			ExecutionReport.result( release, "ModuleB", null, new IOException( "Service Unavailable" ) ) );
+
+		JSONObject summary = new JSONObject( FileUtils.fileRead( summaryFile ) );
+		assertEquals( 1, summary.getInt( "formatVersion" ) );
+		assertEquals( 2, summary.getJSONArray( "executions" ).length( ) );
+		assertEquals( "Service Unavailable",
+			summary.getJSONArray( "executions" ).getJSONObject( 1 ).getString( "error" ) );
+		final JSONObject totals = summary.getJSONObject( "totals" );
+		assertEquals( 2, totals.getInt( "executions" ) );
+		assertEquals( 1, totals.getInt( "failures" ) );
+		assertEquals( 2, totals.getInt( "requests" ) );
+		assertEquals( 1, totals.getInt( "retries" ) );
+		assertEquals( 100, totals.getLong( "bytes" ) );
+
+		ExecutionReport.addToSummary( summaryFile, "2",
+			ExecutionReport.result( download, "ModuleA", "1.0.0", null ) );
+		summary = new JSONObject( FileUtils.fileRead( summaryFile ) );
+		assertEquals( "2", summary.getString( "build" ) );
+		assertEquals( 1, summary.getJSONObject( "totals" ).getInt( "executions" ) );
+		assertEquals( 0, summary.getJSONObject( "totals" ).getInt( "failures" ) );
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.junit.Test;
+
+/**
+ * Tests the SSL configuration of the plugin
+ *
+ * @author thum
+ */
+public class HttpTransportTest
+{
+	/**
+	 * Tests that all threads share one transport per configuration
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOneTransportPerConfiguration( ) throws Exception
+	{
+		final ExecutorService threads = Executors.newFixedThreadPool( 8 );
+		try
+		{
+			final List<Callable<HttpTransport>> tasks = new ArrayList<>( );
+			for ( int i = 0; i < 32; i++ )
+			{
+				tasks.add( HttpTransport::get );
+			}
+			final HttpTransport transport = HttpTransport.get( );
+			for ( final Future<HttpTransport> result : threads.invokeAll( tasks ) )
+			{
+				assertSame( transport, result.get( ) );
+			}
+			assertSame( transport.getSocketFactory( ), HttpTransport.get( ).getSocketFactory( ) );
+		}
+		finally
+		{
+			threads.shutdown( );
+		}
+	}
+
+	/**
+	 * Tests that the trust-all context only applies to the connections of the plugin
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testJvmDefaultsUntouched( ) throws Exception
+	{
+		final SSLSocketFactory defaultFactory = HttpsURLConnection.getDefaultSSLSocketFactory( );
+		final HostnameVerifier defaultVerifier = HttpsURLConnection.getDefaultHostnameVerifier( );
+		final HttpTransport transport = HttpTransport.get( );
+		assertTrue( transport.isTrustAll( ) );
+
+		final HttpsURLConnection connection =
+			transport.configure( ( HttpsURLConnection ) new URL( "https://localhost:1/" ).openConnection( ) );
+		assertSame( transport.getSocketFactory( ), connection.getSSLSocketFactory( ) );
+		assertTrue( connection.getHostnameVerifier( ).verify( "any.host", null ) );
+
+		assertSame( defaultFactory, HttpsURLConnection.getDefaultSSLSocketFactory( ) );
+		assertSame( defaultVerifier, HttpsURLConnection.getDefaultHostnameVerifier( ) );
+		assertFalse( defaultFactory == connection.getSSLSocketFactory( ) );
+	}
+
+	/**
+	 * Tests that the fluent requests use the verifying client of the plugin in both SSL configurations
+	 */
+	@Test
+	public void testFluentRequestsVerify( )
+	{
+		final HttpTransport trustAll = HttpTransport.get( );
+		System.setProperty( "doNotOverwriteSSLContext", "true" );
+		try
+		{
+			final HttpTransport verifying = HttpTransport.get( );
+			assertTrue( trustAll.isTrustAll( ) );
+			assertFalse( verifying.isTrustAll( ) );
+			assertSame( trustAll.executor( ), verifying.executor( ) );
+		}
+		finally
+		{
+			System.clearProperty( "doNotOverwriteSSLContext" );
+		}
+	}
+}
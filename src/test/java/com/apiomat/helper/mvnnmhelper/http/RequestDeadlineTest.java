@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the request deadlines
+ *
+ * @author thum
+ */
+public class RequestDeadlineTest
+{
+	/**
+	 * Tests that the timeouts are shortened to the remaining time until the deadline
+	 */
+	@Test
+	public void testTimeoutsAreLimitedByDeadline( )
+	{
+		final RequestDeadline noDeadline = RequestDeadline.of( 0, 1000, 0 );
+		assertEquals( 1000, noDeadline.connectTimeout( ) );
+		assertEquals( 0, noDeadline.readTimeout( ) );
+
+		final RequestDeadline deadline = RequestDeadline.of( 500, 1000, 0 );
+		assertTrue( deadline.connectTimeout( ) <= 500 );
+		assertTrue( deadline.readTimeout( ) > 0 && deadline.readTimeout( ) <= 500 );
+
+		final RequestDeadline attempt = noDeadline.forAttempt( 200 );
+		assertTrue( attempt.hasDeadline( ) );
+		assertTrue( attempt.readTimeout( ) <= 200 );
+	}
+
+	/**
+	 * Tests that a hanging request is cancelled when the deadline is exceeded and not retried
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testHangingRequestIsCancelled( ) throws Exception
+	{
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final HttpServer server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		server.createContext( "/", exchange -> {
+			try
+			{
+				release.await( 30, TimeUnit.SECONDS );
+				exchange.sendResponseHeaders( 200, -1 );
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread( ).interrupt( );
+			}
+			exchange.close( );
+		} );
+		server.start( );
+		try
+		{
+			final URL url = new URL( "http://localhost:" + server.getAddress( ).getPort( ) + "/hang" );
+			final RetryPolicy policy = new RetryPolicy( 3, 10, 10, RetryPolicy.parseStatusCodes( "" ), 0 );
+			final RequestMetrics metrics = new RequestMetrics( "test" );
+			final long start = System.nanoTime( );
+			try
+			{
+				policy.execute( "hanging request", true, ( attemptNo, deadline ) -> {
+					final HttpURLConnection connection = ( HttpURLConnection ) url.openConnection( );
+					connection.setConnectTimeout( deadline.connectTimeout( ) );
+					/* no read timeout, only the watchdog can cancel the request */
+					try (final RequestDeadline.Watch watch = deadline.watch( connection::disconnect ))
+					{
+						return connection.getResponseCode( );
+					}
+				}, RequestDeadline.of( 300, 0, 0 ), metrics, new SystemStreamLog( ) );
+				fail( "Deadline should have been exceeded" );
+			}
+			catch ( final DeadlineExceededException e )
+			{
+				/* expected */
+			}
+			assertTrue( TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - start ) < 10000 );
+			assertEquals( 0, metrics.getRetries( ) );
+		}
+		finally
+		{
+			release.countDown( );
+			server.stop( 0 );
+		}
+	}
+}
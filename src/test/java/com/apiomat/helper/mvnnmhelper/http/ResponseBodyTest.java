@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.Test;
+
+/**
+ * Tests the limited reading and the summaries of response bodies
+ *
+ * @author thum
+ */
+public class ResponseBodyTest
+{
+	/**
+	 * Tests that a huge body is read only up to the limit and marked as truncated
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testTruncation( ) throws Exception
+	{
+		final byte[ ] huge = new byte[ 1024 * 1024 ];
+		Arrays.fill( huge, ( byte ) 'x' );
+		final ByteArrayInputStream in = new ByteArrayInputStream( huge );
+
+		final String summary = ResponseBody.summary( in, "text/plain", huge.length, 1024 );
+
+		assertTrue( summary, summary.endsWith( " ... [truncated after 1024 of 1048576 bytes]" ) );
+		assertEquals( 1024 + " ... [truncated after 1024 of 1048576 bytes]".length( ), summary.length( ) );
+		/* the limit and one byte to detect the truncation */
+		assertEquals( huge.length - 1025, in.available( ) );
+
+		final String text = ResponseBody.text( new StringEntity( "{\"access_token\":\"abc\"}" ), 1024 );
+		assertEquals( "{\"access_token\":\"abc\"}", text );
+	}
+
+	/**
+	 * Tests the summaries of HTML, JSON and binary bodies
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSummaries( ) throws Exception
+	{
+		final String html = "<html><head><title>502 Bad Gateway</title><style>body { color: red; }</style></head>" +
+			"<body>\n<h1>Bad Gateway</h1>\n\n<p>The proxy received an&nbsp;invalid response.</p>" +
+			"<script>var x = 1;</script></body></html>";
+		assertEquals( "502 Bad Gateway: Bad Gateway The proxy received an invalid response.",
+			ResponseBody.summary( new StringEntity( html, ContentType.TEXT_HTML ), 1024 ) );
+
+		final String json = "{\"message\":\"Module not found\",\"status\":404}";
+		assertEquals( "Module not found",
+			ResponseBody.summary( new StringEntity( json, ContentType.APPLICATION_JSON ), 1024 ) );
+		assertEquals( "[1,2]",
+			ResponseBody.summary( new StringEntity( "[1,2]", ContentType.APPLICATION_JSON ), 1024 ) );
+
+		final ByteArrayInputStream binary = new ByteArrayInputStream( new byte[ 2048 ] );
+		assertEquals( "[2048 bytes of application/octet-stream]",
+			ResponseBody.summary( binary, "application/octet-stream", 2048, 1024 ) );
+		assertEquals( 2048, binary.available( ) );
+
+		assertEquals( "Fehler: ungültig", ResponseBody.summary(
+			new ByteArrayInputStream( "Fehler: ungültig".getBytes( StandardCharsets.ISO_8859_1 ) ),
+			"text/plain; charset=ISO-8859-1", -1, 1024 ) );
+		assertEquals( "", ResponseBody.summary( null, 1024 ) );
+	}
+}
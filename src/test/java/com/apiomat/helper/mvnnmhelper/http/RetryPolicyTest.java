@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.HttpResponseException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+/**
+ * Tests the retry policy
+ *
+ * @author thum
+ */
+public class RetryPolicyTest
+{
+	private final RetryPolicy policy =
+		new RetryPolicy( 3, 1, 4, RetryPolicy.parseStatusCodes( "502, 503" ), 0 );
+
+	/**
+	 * Tests that retryable status codes are retried until the request succeeds
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetriesRetryableStatus( ) throws Exception
+	{
+		final RequestMetrics metrics = new RequestMetrics( "test" );
+		final AtomicInteger calls = new AtomicInteger( );
+		final String result = this.policy.execute( "test", true, ( attemptNo, deadline ) -> {
+			if ( calls.incrementAndGet( ) < 3 )
+			{
+				throw new HttpResponseException( 503, "unavailable" );
+			}
+			return "ok";
+		}, RequestDeadline.none( ), metrics, new SystemStreamLog( ) );
+
+		assertEquals( "ok", result );
+		assertEquals( 3, calls.get( ) );
+		assertEquals( 1, metrics.getRequests( ) );
+		assertEquals( 3, metrics.getAttempts( ) );
+		assertEquals( 2, metrics.getRetries( ) );
+	}
+
+	/**
+	 * Tests that other status codes and non idempotent requests are not retried
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDoesNotRetry( ) throws Exception
+	{
+		final RequestMetrics metrics = new RequestMetrics( "test" );
+		final AtomicInteger calls = new AtomicInteger( );
+		try
+		{
+			this.policy.execute( "test", true, ( attemptNo, deadline ) -> {
+				calls.incrementAndGet( );
+				throw new HttpResponseException( 500, "error" );
+			}, RequestDeadline.none( ), metrics, new SystemStreamLog( ) );
+			fail( "Exception expected" );
+		}
+		catch ( final HttpResponseException e )
+		{
+			assertEquals( 500, e.getStatusCode( ) );
+		}
+		try
+		{
+			this.policy.execute( "test", false, ( attemptNo, deadline ) -> {
+				calls.incrementAndGet( );
+				throw new HttpResponseException( 503, "unavailable" );
+			}, RequestDeadline.none( ), metrics, new SystemStreamLog( ) );
+			fail( "Exception expected" );
+		}
+		catch ( final HttpResponseException e )
+		{
+			assertEquals( 503, e.getStatusCode( ) );
+		}
+		assertEquals( 2, calls.get( ) );
+		assertEquals( 0, metrics.getRetries( ) );
+	}
+
+	/**
+	 * Tests that the backoff grows exponentially and stays within its bounds
+	 */
+	@Test
+	public void testBackoff( )
+	{
+		final RetryPolicy backoffPolicy = new RetryPolicy( 10, 100, 1000, RetryPolicy.parseStatusCodes( "" ), 0 );
+		for ( int i = 0; i < 100; i++ )
+		{
+			final long first = backoffPolicy.backoff( 1 );
+			assertTrue( first >= 50 && first <= 100 );
+			final long third = backoffPolicy.backoff( 3 );
+			assertTrue( third >= 200 && third <= 400 );
+			final long capped = backoffPolicy.backoff( 9 );
+			assertTrue( capped >= 500 && capped <= 1000 );
+		}
+	}
+}
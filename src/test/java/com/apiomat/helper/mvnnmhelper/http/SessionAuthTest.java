@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests exchanging the credentials for a session token against a stand-in server
+ *
+ * @author thum
+ */
+public class SessionAuthTest
+{
+	private static final String BASIC = "Basic dGVzdA==";
+
+	private final AtomicInteger issued = new AtomicInteger( );
+	private HttpServer server;
+
+	/**
+	 * Starts a server issuing a new token for each exchange with the right credentials
+	 *
+	 * @throws Exception
+	 */
+	@Before
+	public void startServer( ) throws Exception
+	{
+		this.server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		this.server.createContext( "/yambas/oauth/token", exchange -> {
+			if ( BASIC.equals( exchange.getRequestHeaders( ).getFirst( "Authorization" ) ) == false )
+			{
+				exchange.sendResponseHeaders( 401, -1 );
+				exchange.close( );
+				return;
+			}
+			final byte[ ] token = ( "{\"access_token\":\"t" + this.issued.incrementAndGet( ) +
+				"\",\"token_type\":\"Bearer\",\"expires_in\":3600}" ).getBytes( StandardCharsets.UTF_8 );
+			exchange.getResponseHeaders( ).add( "Content-Type", "application/json" );
+			exchange.sendResponseHeaders( 200, token.length );
+			try (final OutputStream out = exchange.getResponseBody( ))
+			{
+				out.write( token );
+			}
+		} );
+		this.server.start( );
+	}
+
+	/**
+	 * Stops the server
+	 */
+	@After
+	public void stopServer( )
+	{
+		this.server.stop( 0 );
+	}
+
+	/**
+	 * Tests that all goals of a session share one token and an expired token is exchanged again
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testTokenSharedAndRenewed( ) throws Exception
+	{
+		final Object session = new Object( );
+		final SessionAuth first = SessionAuth.forSession( session, uri( "/yambas/oauth/token" ), BASIC, "LIVE" );
+		final SessionAuth second = SessionAuth.forSession( session, uri( "/yambas/oauth/token" ), BASIC, "LIVE" );
+		assertSame( first, second );
+		assertEquals( "Bearer t1", first.authorization( deadline( ), new SystemStreamLog( ) ) );
+		assertEquals( "Bearer t1", second.authorization( deadline( ), new SystemStreamLog( ) ) );
+		assertEquals( 1, this.issued.get( ) );
+
+		first.checkAuthorized( 200, "Bearer t1" );
+		try
+		{
+			first.checkAuthorized( 401, "Bearer t1" );
+			fail( "A rejected token has to be renewed" );
+		}
+		catch ( final SessionAuth.TokenExpiredException e )
+		{
+			assertEquals( "Bearer t2", second.authorization( deadline( ), new SystemStreamLog( ) ) );
+		}
+		assertEquals( 2, first.getExchanges( ) );
+	}
+
+	/**
+	 * Tests that the credentials are sent if yambas does not support the exchange or rejects them
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFallbackToCredentials( ) throws Exception
+	{
+		final SessionAuth unsupported =
+			SessionAuth.forSession( new Object( ), uri( "/yambas/unknown" ), BASIC, "LIVE" );
+		assertEquals( BASIC, unsupported.authorization( deadline( ), new SystemStreamLog( ) ) );
+		assertEquals( BASIC, unsupported.authorization( deadline( ), new SystemStreamLog( ) ) );
+		assertEquals( 1, unsupported.getExchanges( ) );
+
+		/* wrong credentials are reported by the request itself, not repeated */
+		final SessionAuth rejected =
+			SessionAuth.forSession( new Object( ), uri( "/yambas/oauth/token" ), "Basic d3Jvbmc=", "LIVE" );
+		assertEquals( "Basic d3Jvbmc=", rejected.authorization( deadline( ), new SystemStreamLog( ) ) );
+		rejected.checkAuthorized( 401, "Basic d3Jvbmc=" );
+		assertEquals( 0, this.issued.get( ) );
+	}
+
+	private URI uri( final String path )
+	{
+		return URI.create( "http://localhost:" + this.server.getAddress( ).getPort( ) + path );
+	}
+
+	private static RequestDeadline deadline( )
+	{
+		return RequestDeadline.of( 0, 1000, 1000 );
+	}
+}
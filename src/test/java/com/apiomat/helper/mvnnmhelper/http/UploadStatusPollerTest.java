@@ -0,0 +1,223 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests waiting for asynchronously processed uploads against a stand-in server
+ *
+ * @author thum
+ */
+public class UploadStatusPollerTest
+{
+	private static final SessionAuth AUTH = SessionAuth.basic( "Basic dGVzdA==" );
+
+	private final CountDownLatch compiled = new CountDownLatch( 1 );
+	private final AtomicInteger polls = new AtomicInteger( );
+	private final AtomicBoolean longPollRequested = new AtomicBoolean( true );
+	private HttpServer server;
+
+	/**
+	 * Starts a server whose status resource reports "processing" until the module is compiled
+	 *
+	 * @throws Exception
+	 */
+	@Before
+	public void startServer( ) throws Exception
+	{
+		this.server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		this.server.createContext( "/status/ok", exchange -> {
+			this.polls.incrementAndGet( );
+			if ( exchange.getRequestHeaders( ).getFirst( "Prefer" ) == null )
+			{
+				this.longPollRequested.set( false );
+			}
+			final boolean done = this.compiled.getCount( ) == 0;
+			if ( done == false )
+			{
+				exchange.getResponseHeaders( ).add( "Retry-After", "0" );
+			}
+			exchange.sendResponseHeaders( done ? 201 : 202, -1 );
+			exchange.close( );
+		} );
+		this.server.createContext( "/status/failed", exchange -> {
+			final byte[ ] reason = "MyModule.java:12: cannot find symbol".getBytes( StandardCharsets.UTF_8 );
+			exchange.sendResponseHeaders( 400, reason.length );
+			try (final OutputStream out = exchange.getResponseBody( ))
+			{
+				out.write( reason );
+			}
+		} );
+		this.server.start( );
+	}
+
+	/**
+	 * Stops the server
+	 */
+	@After
+	public void stopServer( )
+	{
+		this.server.stop( 0 );
+	}
+
+	/**
+	 * Tests that the build continues while the upload is processed and the chained work starts after completion
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBuildContinuesWhileProcessing( ) throws Exception
+	{
+		final UploadStatusPoller poller = new UploadStatusPoller( uri( "/status/ok" ), AUTH, 10 );
+		final AtomicBoolean downloaded = new AtomicBoolean( );
+		PendingUploads.submit( "MyModule", ( ) -> {
+			poller.await( policy( ), RequestDeadline.of( 10000, 1000, 1000 ), new RequestMetrics( "upload" ),
+				new SystemStreamLog( ) );
+			downloaded.set( true );
+		} );
+
+		/* the next module is built meanwhile */
+		final long start = System.nanoTime( );
+		while ( this.polls.get( ) < 2 && TimeUnit.NANOSECONDS.toSeconds( System.nanoTime( ) - start ) < 10 )
+		{
+			Thread.sleep( 10 );
+		}
+		assertFalse( downloaded.get( ) );
+		assertEquals( 1, PendingUploads.size( ) );
+
+		this.compiled.countDown( );
+		PendingUploads.awaitAll( new SystemStreamLog( ) );
+		assertTrue( downloaded.get( ) );
+		assertTrue( this.polls.get( ) > 1 );
+		assertTrue( this.longPollRequested.get( ) );
+		assertEquals( 0, PendingUploads.size( ) );
+	}
+
+	/**
+	 * Tests that uploads sharing a label are all awaited and finished failures are reported without waiting
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFinishedFailuresAreNotLost( ) throws Exception
+	{
+		final CountDownLatch running = new CountDownLatch( 1 );
+		PendingUploads.submit( "Same", ( ) -> {
+			throw new IOException( "first failed" );
+		} );
+		PendingUploads.submit( "Same", running::await );
+		assertEquals( 2, PendingUploads.size( ) );
+
+		String reported = null;
+		final long start = System.nanoTime( );
+		while ( reported == null && TimeUnit.NANOSECONDS.toSeconds( System.nanoTime( ) - start ) < 10 )
+		{
+			try
+			{
+				PendingUploads.checkFinished( new SystemStreamLog( ) );
+				Thread.sleep( 10 );
+			}
+			catch ( final MojoExecutionException e )
+			{
+				reported = e.getCause( ).getMessage( );
+			}
+		}
+		assertEquals( "first failed", reported );
+		/* the running upload is still pending */
+		assertEquals( 1, PendingUploads.size( ) );
+		running.countDown( );
+		PendingUploads.awaitAll( new SystemStreamLog( ) );
+		assertEquals( 0, PendingUploads.size( ) );
+	}
+
+	/**
+	 * Tests that a failure reported by the server fails the build when the pending uploads are awaited
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFailureIsReported( ) throws Exception
+	{
+		final UploadStatusPoller poller = new UploadStatusPoller( uri( "/status/failed" ), AUTH, 10 );
+		PendingUploads.submit( "Broken", ( ) -> poller.await( policy( ), RequestDeadline.of( 10000, 1000, 1000 ),
+			new RequestMetrics( "upload" ), new SystemStreamLog( ) ) );
+		try
+		{
+			PendingUploads.awaitAll( new SystemStreamLog( ) );
+			fail( "The failed upload should have been reported" );
+		}
+		catch ( final MojoExecutionException e )
+		{
+			assertTrue( e.getMessage( ).contains( "Broken" ) );
+			assertTrue( e.getCause( ).getMessage( ).contains( "cannot find symbol" ) );
+		}
+	}
+
+	/**
+	 * Tests that waiting for a never finishing upload ends at the deadline
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeadline( ) throws Exception
+	{
+		final UploadStatusPoller poller = new UploadStatusPoller( uri( "/status/ok" ), AUTH, 50 );
+		final long start = System.nanoTime( );
+		try
+		{
+			poller.await( policy( ), RequestDeadline.of( 300, 1000, 1000 ), new RequestMetrics( "upload" ),
+				new SystemStreamLog( ) );
+			fail( "Deadline should have been exceeded" );
+		}
+		catch ( final DeadlineExceededException e )
+		{
+			/* expected */
+		}
+		assertTrue( TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - start ) < 10000 );
+	}
+
+	private URI uri( final String path )
+	{
+		return URI.create( "http://localhost:" + this.server.getAddress( ).getPort( ) + path );
+	}
+
+	private static RetryPolicy policy( )
+	{
+		return new RetryPolicy( 2, 10, 10, RetryPolicy.parseStatusCodes( "502,503,504" ), 0 );
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.migration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.io.RawInputStreamFacade;
+import org.junit.Test;
+
+import com.apiomat.helper.mvnnmhelper.NMVersion;
+import com.apiomat.helper.mvnnmhelper.NMVersionRange;
+import com.apiomat.helper.mvnnmhelper.UpdatePlan;
+import com.google.common.io.Files;
+
+/**
+ * Tests the migration registry and engine
+ *
+ * @author thum
+ */
+public class MigrationRegistryTest
+{
+	private final MigrationRegistry registry = MigrationRegistry.load( getClass( ).getClassLoader( ) );
+
+	/**
+	 * Tests that the applicable migrations are ordered and grouped into layers of disjoint file scopes
+	 */
+	@Test
+	public void testChain( )
+	{
+		assertEquals( 4, this.registry.getMigrations( ).size( ) );
+
+		final MigrationChain full = this.registry.chain( new int[ ] { 2, 0, 0 }, new int[ ] { 3, 3, 0 } );
+		assertEquals( "[2.5.0-static-classes, 2.5.0-jars] -> [3.3.0-jars, 3.3.0-hook-classes]", full.toString( ) );
+
+		final MigrationChain from250 = this.registry.chain( new int[ ] { 2, 5, 0 }, new int[ ] { 999, 999, 999 } );
+		assertEquals( "[3.3.0-jars, 3.3.0-hook-classes]", from250.toString( ) );
+
+		assertTrue( this.registry.chain( new int[ ] { 3, 3, 0 }, new int[ ] { 3, 4, 0 } ).isEmpty( ) );
+
+		assertEquals( full.toString( ), this.registry.chain( NMVersionRange.parse( "(2.0,3.3]" ) ).toString( ) );
+		assertEquals( "[2.5.0-static-classes, 2.5.0-jars]",
+			this.registry.chain( NMVersionRange.parse( "[2.5,3.3)" ) ).toString( ) );
+		/* a snapshot of 3.3.0 is older than 3.3.0, but an update to it needs the migrations to 3.3.0 */
+		assertEquals( "[2.5.0-static-classes, 2.5.0-jars]",
+			this.registry.chain( NMVersionRange.parse( "(2.0,3.3.0-SNAPSHOT]" ) ).toString( ) );
+		assertEquals( full.toString( ), this.registry
+			.chain( NMVersionRange.between( NMVersion.of( "2.0.0" ), NMVersion.of( "3.3.0-SNAPSHOT" ) ) ).toString( ) );
+		assertTrue( this.registry
+			.chain( NMVersionRange.between( NMVersion.of( "3.3.0-SNAPSHOT" ), NMVersion.of( "3.3.0" ) ) ).toString( )
+			.contains( "3.3.0-jars" ) );
+		assertEquals( from250.toString( ),
+			this.registry.chain( NMVersionRange.between( NMVersion.of( "2.5.0" ), null ) ).toString( ) );
+	}
+
+	/**
+	 * Tests that migrations without file scopes and with nested file scopes are not run in parallel
+	 */
+	@Test
+	public void testOverlaps( )
+	{
+		assertTrue( MigrationRegistry.overlaps( new CleanJars330( ), new CleanJars250( ) ) );
+		assertTrue( MigrationRegistry.overlaps( new CleanHookClasses330( ), migration( "src" ) ) );
+		assertTrue( MigrationRegistry.overlaps( new CleanHookClasses330( ), migration( ) ) );
+		assertFalse( MigrationRegistry.overlaps( new CleanHookClasses330( ), migration( "src/com/apiomat2" ) ) );
+	}
+
+	/**
+	 * Tests that migrations whose precondition is already satisfied are skipped
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSkipsMigratedModule( ) throws Exception
+	{
+		final File moduleDir = Files.createTempDir( );
+		try
+		{
+			try (InputStream is = getClass( ).getResourceAsStream( "/com/apiomat/helper/mvnnmhelper/pom.xml" ))
+			{
+				FileUtils.copyStreamToFile( new RawInputStreamFacade( is ), new File( moduleDir, "pom.xml" ) );
+			}
+			final MigrationChain chain = this.registry.chain( new int[ ] { 2, 5, 0 }, new int[ ] { 3, 3, 0 } );
+			final MigrationContext context = new MigrationContext( moduleDir, "Test", new SystemStreamLog( ) );
+			final MigrationEngine engine = new MigrationEngine( 2 );
+
+			assertEquals( Arrays.asList( "3.3.0-jars" ), engine.run( chain, context ) );
+			assertTrue( engine.run( chain, context ).isEmpty( ) );
+		}
+		finally
+		{
+			FileUtils.deleteDirectory( moduleDir );
+		}
+	}
+
+	/**
+	 * Tests that a migration failing with an error in a parallel layer fails the run with a MojoExecutionException
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testParallelMigrationFailsWithError( ) throws Exception
+	{
+		final Migration failing = new AbstractMigration( "failing", new int[ ] { 1, 0, 0 }, 0, "failing", "b" )
+		{
+			@Override
+			public boolean isRequired( final MigrationContext context )
+			{
+				return true;
+			}
+
+			@Override
+			public void migrate( final MigrationContext context )
+			{
+				throw new LinkageError( "broken" );
+			}
+
+			@Override
+			public void plan( final MigrationContext context, final UpdatePlan plan )
+			{
+				/* nothing to do */
+			}
+		};
+		final MigrationChain chain = new MigrationRegistry( Arrays.asList( migration( "a" ), failing ) )
+			.chain( new int[ ] { 0, 0, 0 }, new int[ ] { 1, 0, 0 } );
+		assertEquals( 1, chain.getLayers( ).size( ) );
+		final File moduleDir = Files.createTempDir( );
+		try
+		{
+			new MigrationEngine( 2 ).run( chain, new MigrationContext( moduleDir, "Test", new SystemStreamLog( ) ) );
+			fail( "The failing migration should fail the run" );
+		}
+		catch ( final MojoExecutionException e )
+		{
+			assertEquals( "Migration failing failed", e.getMessage( ) );
+			assertTrue( e.getCause( ) instanceof LinkageError );
+		}
+		finally
+		{
+			FileUtils.deleteDirectory( moduleDir );
+		}
+	}
+
+	private static Migration migration( final String... scopes )
+	{
+		return new AbstractMigration( "test", new int[ ] { 1, 0, 0 }, 0, "test", scopes )
+		{
+			@Override
+			public boolean isRequired( final MigrationContext context )
+			{
+				return true;
+			}
+
+			@Override
+			public void migrate( final MigrationContext context )
+			{
+				/* nothing to do */
+			}
+
+			@Override
+			public void plan( final MigrationContext context, final UpdatePlan plan )
+			{
+				/* nothing to do */
+			}
+		};
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.mojos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * Tests the parameters forwarded to the nm daemon
+ *
+ * @author thum
+ */
+public class DaemonGoalsTest
+{
+	/**
+	 * Tests that only the listed parameters of a goal are forwarded
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testParameters( ) throws Exception
+	{
+		final MavenProject project = new MavenProject( );
+		project.setFile( new File( "MyModule", "pom.xml" ) );
+		project.setArtifactId( "MyModule" );
+		project.setVersion( "1.0.0" );
+
+		final DownloadNMMojo download = new DownloadNMMojo( );
+		download.setLog( new SystemStreamLog( ) );
+		download.project = project;
+		download.moduleName = "MyModule";
+		download.host = "http://localhost";
+		download.customerPassword = "secret";
+		download.merge = "true";
+		download.daemonPort = 4711;
+		download.resultDirectory = new File( "results" );
+
+		final JSONObject params = DaemonGoals.parameters( "download", download );
+		assertEquals( "MyModule", params.getString( "moduleName" ) );
+		assertEquals( "http://localhost", params.getString( "host" ) );
+		assertEquals( "true", params.getString( "merge" ) );
+		assertEquals( "secret", params.getString( "customerPassword" ) );
+		assertEquals( "1.0.0", params.getJSONObject( "project" ).getString( "version" ) );
+		/* the settings of the build stay in the build */
+		assertFalse( params.has( "daemonPort" ) );
+		assertFalse( params.has( "resultDirectory" ) );
+		assertFalse( params.has( "useDaemon" ) );
+		assertFalse( params.has( "writeResults" ) );
+		/* the parameters of the upload are not forwarded with a download */
+		assertFalse( params.has( "asyncUpload" ) );
+
+		final UploadNMMojo upload = new UploadNMMojo( );
+		upload.setLog( new SystemStreamLog( ) );
+		upload.project = project;
+		upload.moduleName = "MyModule";
+		upload.asyncUpload = true;
+		assertTrue( DaemonGoals.parameters( "upload", upload ).getBoolean( "asyncUpload" ) );
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.mojos;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests executing many goals in parallel, like a parallel build (mvn -T) does, against a stand-in server
+ *
+ * @author thum
+ */
+public class ParallelExecutionTest
+{
+	private static final int MODULES = 8;
+	private static final int EXECUTIONS_PER_MODULE = 3;
+
+	private final AtomicInteger downloads = new AtomicInteger( );
+	private HttpServer server;
+	private ExecutorService serverThreads;
+	private File dir;
+
+	/**
+	 * Starts a server serving a different archive per module
+	 *
+	 * @throws Exception
+	 */
+	@Before
+	public void start( ) throws Exception
+	{
+		this.serverThreads = Executors.newCachedThreadPool( );
+		this.server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 50 );
+		this.server.setExecutor( this.serverThreads );
+		this.server.createContext( "/yambas/rest/modules/", exchange -> {
+			/* /yambas/rest/modules/{name}/v/1.0.0/asset */
+			final String name = exchange.getRequestURI( ).getPath( ).split( "/" )[ 4 ];
+			this.downloads.incrementAndGet( );
+			final ByteArrayOutputStream zip = new ByteArrayOutputStream( );
+			try (final ZipOutputStream out = new ZipOutputStream( zip ))
+			{
+				out.putNextEntry( new ZipEntry( "src/" + name + ".java" ) );
+				out.write( ( "class " + name + " {}" ).getBytes( StandardCharsets.UTF_8 ) );
+				out.closeEntry( );
+				out.putNextEntry( new ZipEntry( "src/" + name + "Hooks.java" ) );
+				out.write( "generated hooks".getBytes( StandardCharsets.UTF_8 ) );
+				out.closeEntry( );
+			}
+			exchange.sendResponseHeaders( 200, zip.size( ) );
+			try (final OutputStream out = exchange.getResponseBody( ))
+			{
+				zip.writeTo( out );
+			}
+		} );
+		this.server.start( );
+		this.dir = Files.createTempDir( );
+	}
+
+	/**
+	 * Stops the server
+	 *
+	 * @throws Exception
+	 */
+	@After
+	public void stop( ) throws Exception
+	{
+		this.server.stop( 0 );
+		this.serverThreads.shutdown( );
+		FileUtils.deleteDirectory( this.dir );
+	}
+
+	/**
+	 * Tests that parallel downloads of different modules, and of the same module, neither share temporary files nor
+	 * lose the local hook classes
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testParallelDownloads( ) throws Exception
+	{
+		final List<Callable<Void>> executions = new ArrayList<>( );
+		for ( int i = 0; i < MODULES; i++ )
+		{
+			final String name = "Module" + i;
+			final File baseDir = new File( this.dir, name );
+			new File( baseDir, "src" ).mkdirs( );
+			FileUtils.fileWrite( new File( baseDir, "src/" + name + "Hooks.java" ).getAbsolutePath( ), "my hooks" );
+			for ( int j = 0; j < EXECUTIONS_PER_MODULE; j++ )
+			{
+				executions.add( ( ) -> {
+					createDownload( name, baseDir ).execute( );
+					return null;
+				} );
+			}
+		}
+
+		final ExecutorService threads = Executors.newFixedThreadPool( executions.size( ) );
+		try
+		{
+			for ( final Future<Void> result : threads.invokeAll( executions ) )
+			{
+				result.get( );
+			}
+		}
+		finally
+		{
+			threads.shutdown( );
+		}
+
+		assertEquals( MODULES * EXECUTIONS_PER_MODULE, this.downloads.get( ) );
+		for ( int i = 0; i < MODULES; i++ )
+		{
+			final String name = "Module" + i;
+			final File baseDir = new File( this.dir, name );
+			assertEquals( "class " + name + " {}", FileUtils.fileRead( new File( baseDir, "src/" + name + ".java" ) ) );
+			assertEquals( "my hooks", FileUtils.fileRead( new File( baseDir, "src/" + name + "Hooks.java" ) ) );
+			/* no temporary files left */
+			assertEquals( Arrays.asList( "src" ), Arrays.asList( baseDir.list( ) ) );
+		}
+	}
+
+	private DownloadNMMojo createDownload( final String name, final File baseDir )
+	{
+		final MavenProject project = new MavenProject( );
+		project.setFile( new File( baseDir, "pom.xml" ) );
+		project.setVersion( "1.0.0" );
+
+		final DownloadNMMojo download = new DownloadNMMojo( );
+		download.setLog( new SystemStreamLog( ) );
+		download.project = project;
+		download.moduleName = name;
+		download.host = "http://localhost:" + this.server.getAddress( ).getPort( );
+		download.system = "LIVE";
+		download.customerName = "developer";
+		download.customerPassword = "secret";
+		download.quiet = true;
+		download.retryMaxAttempts = 1;
+		download.connectTimeout = 10000;
+		download.readTimeout = 10000;
+		return download;
+	}
+}
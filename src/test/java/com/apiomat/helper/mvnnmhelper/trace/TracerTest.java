@@ -0,0 +1,222 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.fluent.Request;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.apiomat.helper.mvnnmhelper.http.HttpTransport;
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the tracing of the goals with a file exporter and a stand-in OTLP endpoint
+ *
+ * @author thum
+ */
+public class TracerTest
+{
+	private static final String REMOTE_PARENT = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+
+	private final List<String> received = new CopyOnWriteArrayList<>( );
+	private HttpServer server;
+	private File dir;
+
+	/**
+	 * Starts a server recording the trace headers and exported traces
+	 *
+	 * @throws IOException
+	 */
+	@Before
+	public void start( ) throws IOException
+	{
+		this.server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		this.server.createContext( "/", exchange -> {
+			try (final InputStream in = exchange.getRequestBody( ))
+			{
+				final String body = IOUtils.toString( in, StandardCharsets.UTF_8 );
+				this.received.add( body.isEmpty( ) ? String.valueOf(
+					exchange.getRequestHeaders( ).getFirst( Tracer.TRACEPARENT_HEADER ) ) : body );
+			}
+			exchange.sendResponseHeaders( 200, -1 );
+			exchange.close( );
+		} );
+		this.server.start( );
+		this.dir = Files.createTempDir( );
+	}
+
+	/**
+	 * Disables tracing again
+	 *
+	 * @throws IOException
+	 */
+	@After
+	public void stop( ) throws IOException
+	{
+		Tracer.uninstall( );
+		this.server.stop( 0 );
+		FileUtils.deleteDirectory( this.dir );
+	}
+
+	/**
+	 * Tests that nested spans, also of other threads, are exported together as children of the remote parent
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFileExport( ) throws Exception
+	{
+		final File traceFile = new File( this.dir, "trace/spans.jsonl" );
+		Tracer.install( this, traceFile.getPath( ), new FileSpanExporter( traceFile ), REMOTE_PARENT,
+			new SystemStreamLog( ) );
+
+		try (final Span goal = Tracer.start( "nm:download" ))
+		{
+			try (final Span request = Tracer.start( "Download of native module" ).setKind( Span.KIND_CLIENT ))
+			{
+				request.setAttribute( "http.status_code", 503 ).recordError( new IOException( "Service Unavailable" ) );
+			}
+			assertSame( goal, Tracer.current( ) );
+			final Thread worker = new Thread( ( ) -> Tracer.start( "migration", goal ).close( ) );
+			worker.start( );
+			worker.join( );
+		}
+		assertNull( Tracer.current( ) );
+
+		final List<String> lines = FileUtils.loadFile( traceFile );
+		assertEquals( 1, lines.size( ) );
+		final JSONArray spans = new JSONObject( lines.get( 0 ) ).getJSONArray( "resourceSpans" ).getJSONObject( 0 )
+			.getJSONArray( "scopeSpans" ).getJSONObject( 0 ).getJSONArray( "spans" );
+		assertEquals( 3, spans.length( ) );
+		final JSONObject request = spans.getJSONObject( 0 );
+		final JSONObject goal = spans.getJSONObject( 2 );
+		assertEquals( "nm:download", goal.getString( "name" ) );
+		assertEquals( "b7ad6b7169203331", goal.getString( "parentSpanId" ) );
+		for ( int i = 0; i < spans.length( ); i++ )
+		{
+			assertEquals( "0af7651916cd43dd8448eb211c80319c", spans.getJSONObject( i ).getString( "traceId" ) );
+		}
+		assertEquals( goal.getString( "spanId" ), request.getString( "parentSpanId" ) );
+		assertEquals( goal.getString( "spanId" ), spans.getJSONObject( 1 ).getString( "parentSpanId" ) );
+		assertEquals( Span.KIND_CLIENT, request.getInt( "kind" ) );
+		assertEquals( 2, request.getJSONObject( "status" ).getInt( "code" ) );
+		assertEquals( "503", request.getJSONArray( "attributes" ).getJSONObject( 0 ).getJSONObject( "value" )
+			.getString( "intValue" ) );
+		assertFalse( goal.has( "status" ) );
+	}
+
+	/**
+	 * Tests that the trace context is sent with the requests and the spans are exported to the OTLP endpoint
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPropagationAndOtlpExport( ) throws Exception
+	{
+		final String url = "http://localhost:" + this.server.getAddress( ).getPort( );
+		try (final Span disabled = Tracer.start( "nm:release" ))
+		{
+			assertFalse( disabled.isRecording( ) );
+			send( Request.Get( url + "/yambas/rest/modules" ) );
+		}
+
+		Tracer.install( this, url, new OtlpSpanExporter( URI.create( url + "/v1/traces" ) ), null,
+			new SystemStreamLog( ) );
+		final String traceparent;
+		try (final Span goal = Tracer.start( "nm:release" ))
+		{
+			traceparent = goal.traceparent( );
+			send( Request.Get( url + "/yambas/rest/modules" ) );
+		}
+
+		assertEquals( 3, this.received.size( ) );
+		assertEquals( "null", this.received.get( 0 ) );
+		assertEquals( traceparent, this.received.get( 1 ) );
+		final JSONObject span = new JSONObject( this.received.get( 2 ) ).getJSONArray( "resourceSpans" )
+			.getJSONObject( 0 ).getJSONArray( "scopeSpans" ).getJSONObject( 0 ).getJSONArray( "spans" )
+			.getJSONObject( 0 );
+		assertEquals( "nm:release", span.getString( "name" ) );
+		assertFalse( span.has( "parentSpanId" ) );
+	}
+
+	/**
+	 * Tests that a tracer belongs to one build: a later build, or one with another remote parent, gets its own trace
+	 * and the end of a build disables tracing
+	 */
+	@Test
+	public void testScopedToBuild( )
+	{
+		final File traceFile = new File( this.dir, "spans.jsonl" );
+		final Object firstBuild = new Object( );
+		final Object secondBuild = new Object( );
+		Tracer.install( firstBuild, traceFile.getPath( ), new FileSpanExporter( traceFile ), REMOTE_PARENT,
+			new SystemStreamLog( ) );
+		try (final Span span = Tracer.start( "nm:download" ))
+		{
+			assertEquals( "0af7651916cd43dd8448eb211c80319c", span.getTraceId( ) );
+		}
+
+		final String otherParent = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+		Tracer.install( firstBuild, traceFile.getPath( ), new FileSpanExporter( traceFile ), otherParent,
+			new SystemStreamLog( ) );
+		try (final Span span = Tracer.start( "nm:download" ))
+		{
+			assertEquals( "4bf92f3577b34da6a3ce929d0e0e4736", span.getTraceId( ) );
+		}
+
+		Tracer.install( secondBuild, traceFile.getPath( ), new FileSpanExporter( traceFile ), null,
+			new SystemStreamLog( ) );
+		Tracer.uninstall( firstBuild );
+		try (final Span span = Tracer.start( "nm:download" ))
+		{
+			assertTrue( span.isRecording( ) );
+			assertFalse( "4bf92f3577b34da6a3ce929d0e0e4736".equals( span.getTraceId( ) ) );
+		}
+		Tracer.uninstall( secondBuild );
+		try (final Span span = Tracer.start( "nm:download" ))
+		{
+			assertFalse( span.isRecording( ) );
+		}
+	}
+
+	private static void send( final Request request ) throws IOException
+	{
+		Tracer.propagate( request::addHeader );
+		HttpTransport.get( ).executor( ).execute( request ).discardContent( );
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+/**
+ * Tests the bandwidth limit of transfers
+ *
+ * @author thum
+ */
+public class BandwidthLimiterTest
+{
+	private static final int BYTES_PER_SECOND = 1024 * 1024;
+
+	/**
+	 * Tests that a single transfer does not exceed the limit and the limiters are shared
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLimit( ) throws Exception
+	{
+		assertNull( BandwidthLimiter.shared( 0 ) );
+		assertSame( BandwidthLimiter.shared( 1024 ), BandwidthLimiter.shared( 1024 ) );
+		assertEquals( BYTES_PER_SECOND, BandwidthLimiter.shared( 1024 ).getBytesPerSecond( ) );
+
+		final BandwidthLimiter limiter = new BandwidthLimiter( BYTES_PER_SECOND );
+		final long start = System.nanoTime( );
+		final long copied = copy( limiter, BYTES_PER_SECOND / 2 );
+		final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - start );
+
+		assertEquals( BYTES_PER_SECOND / 2, copied );
+		/* half a second minus the initial burst of a tenth of a second */
+		assertTrue( "took " + elapsedMillis + "ms", elapsedMillis >= 350 );
+	}
+
+	/**
+	 * Tests a limit below the chunk size of a transfer, where each chunk leaves a debt in the bucket
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLimitBelowChunkSize( ) throws Exception
+	{
+		final BandwidthLimiter limiter = new BandwidthLimiter( 10 * 1024 );
+		final long start = System.nanoTime( );
+		copy( limiter, 24 * 1024 );
+		final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - start );
+
+		/* 2.4 seconds minus the initial burst of a tenth of a second; a growing debt would take 3.7 seconds */
+		assertTrue( "took " + elapsedMillis + "ms", elapsedMillis >= 2000 );
+		assertTrue( "took " + elapsedMillis + "ms", elapsedMillis < 3000 );
+	}
+
+	/**
+	 * Tests that concurrent transfers share the limit equally, so all of them finish at about the same time
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFairSharing( ) throws Exception
+	{
+		final BandwidthLimiter limiter = new BandwidthLimiter( BYTES_PER_SECOND );
+		final int transfers = 4;
+		final CountDownLatch ready = new CountDownLatch( transfers );
+		final long start = System.nanoTime( );
+		final List<Callable<Long>> tasks = new ArrayList<>( );
+		for ( int i = 0; i < transfers; i++ )
+		{
+			tasks.add( ( ) -> {
+				ready.countDown( );
+				ready.await( );
+				copy( limiter, BYTES_PER_SECOND / 4 );
+				return TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) - start );
+			} );
+		}
+		final ExecutorService threads = Executors.newFixedThreadPool( transfers );
+		try
+		{
+			final List<Long> finished = new ArrayList<>( );
+			for ( final Future<Long> result : threads.invokeAll( tasks ) )
+			{
+				finished.add( result.get( ) );
+			}
+			final long total = finished.stream( ).mapToLong( Long::longValue ).max( ).getAsLong( );
+			/* all four together are limited like a single transfer of a second */
+			assertTrue( "took " + total + "ms", total >= 850 );
+			for ( final long millis : finished )
+			{
+				/* one after another, the first would finish after a quarter; only the first burst is not shared */
+				assertTrue( "finished after " + millis + " of " + total + "ms", millis >= total / 2 );
+			}
+		}
+		finally
+		{
+			threads.shutdown( );
+		}
+	}
+
+	private static long copy( final BandwidthLimiter limiter, final int bytes ) throws Exception
+	{
+		final TransferProgress progress =
+			new TransferProgress( new SystemStreamLog( ), "Uploading", bytes, 0, true ).limitTo( limiter );
+		return progress.copy( new ByteArrayInputStream( new byte[ bytes ] ), new ByteArrayOutputStream( ) );
+	}
+}
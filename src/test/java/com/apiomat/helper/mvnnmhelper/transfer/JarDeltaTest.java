@@ -0,0 +1,303 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.plexus.util.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests delta uploads against a stand-in server which rebuilds the jar from the delta
+ *
+ * @author thum
+ */
+public class JarDeltaTest
+{
+	/**
+	 * Tests that the server rebuilds the new jar from the last one and the delta, and rejects stale deltas
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeltaUpload( ) throws Exception
+	{
+		final File dir = Files.createTempDir( );
+		final HttpServer server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		try
+		{
+			final byte[ ] lib = new byte[ 256 * 1024 ];
+			new Random( 42 ).nextBytes( lib );
+			final File v1 = jar( new File( dir, "v1.jar" ), "a.class", "A1".getBytes( StandardCharsets.UTF_8 ),
+				"b.class", "B1".getBytes( StandardCharsets.UTF_8 ), "lib/x.jar", lib );
+			final File v2 = jar( new File( dir, "v2.jar" ), "a.class", "A2".getBytes( StandardCharsets.UTF_8 ),
+				"c.class", "C1".getBytes( StandardCharsets.UTF_8 ), "lib/x.jar", lib );
+
+			/* the server has the last uploaded jar */
+			final File serverJar = new File( dir, "server.jar" );
+			FileUtils.copyFile( v1, serverJar );
+			server.createContext( "/delta", exchange -> {
+				final String expected = "\"" + JarEntryManifest.of( serverJar ).fingerprint( ) + "\"";
+				if ( expected.equals( exchange.getRequestHeaders( ).getFirst( "If-Match" ) ) == false )
+				{
+					exchange.sendResponseHeaders( 412, -1 );
+					exchange.close( );
+					return;
+				}
+				final File delta = new File( dir, "received.zip" );
+				try (final InputStream in = exchange.getRequestBody( );
+					final OutputStream out = new FileOutputStream( delta ))
+				{
+					IOUtils.copy( in, out );
+				}
+				rebuild( serverJar, delta );
+				exchange.getResponseHeaders( ).add( "X-apiomat-delta-upload", "true" );
+				exchange.sendResponseHeaders( 201, -1 );
+				exchange.close( );
+			} );
+			server.start( );
+
+			final JarDelta delta = JarDelta.between( JarEntryManifest.of( v1 ), JarEntryManifest.of( v2 ) );
+			assertEquals( Arrays.asList( "a.class", "c.class" ), delta.getChanged( ) );
+			assertEquals( Arrays.asList( "b.class" ), delta.getDeleted( ) );
+			final File deltaFile = new File( dir, "delta.zip" );
+			delta.write( v2, deltaFile );
+			assertTrue( deltaFile.length( ) * 10 < v2.length( ) );
+
+			final URL url = new URL( "http://localhost:" + server.getAddress( ).getPort( ) + "/delta" );
+			assertEquals( 201, post( url, deltaFile, delta.getBaseFingerprint( ) ) );
+			assertEquals( JarEntryManifest.of( v2 ).fingerprint( ), JarEntryManifest.of( serverJar ).fingerprint( ) );
+
+			/* the server no longer has the jar the delta was computed against */
+			assertEquals( 412, post( url, deltaFile, delta.getBaseFingerprint( ) ) );
+		}
+		finally
+		{
+			server.stop( 0 );
+			FileUtils.deleteDirectory( dir );
+		}
+	}
+
+	/**
+	 * Tests that a stand-in server answers the manifest of the local files with only the changed files
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeltaDownload( ) throws Exception
+	{
+		final File dir = Files.createTempDir( );
+		final HttpServer server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+		try
+		{
+			final byte[ ] lib = new byte[ 256 * 1024 ];
+			new Random( 42 ).nextBytes( lib );
+			final File v1 = jar( new File( dir, "v1.zip" ), "src/A.java", "A1".getBytes( StandardCharsets.UTF_8 ),
+				"src/B.java", "B1".getBytes( StandardCharsets.UTF_8 ), "lib/x.jar", lib );
+			final File archive = jar( new File( dir, "v2.zip" ), "src/A.java", "A2".getBytes( StandardCharsets.UTF_8 ),
+				"lib/x.jar", lib );
+
+			/* the module as extracted from the last download, with a local change */
+			final File moduleDir = new File( dir, "module" );
+			FileUtils.mkdir( new File( moduleDir, "src" ).getAbsolutePath( ) );
+			FileUtils.mkdir( new File( moduleDir, "lib" ).getAbsolutePath( ) );
+			FileUtils.fileWrite( new File( moduleDir, "src/A.java" ).getAbsolutePath( ), "UTF-8", "A1" );
+			FileUtils.fileWrite( new File( moduleDir, "src/B.java" ).getAbsolutePath( ), "UTF-8", "local" );
+			java.nio.file.Files.write( new File( moduleDir, "lib/x.jar" ).toPath( ), lib );
+
+			server.createContext( "/asset/delta", exchange -> {
+				final JarEntryManifest clientManifest;
+				try (final InputStream in = exchange.getRequestBody( ))
+				{
+					clientManifest =
+						JarEntryManifest.fromJson( new JSONObject( IOUtils.toString( in, StandardCharsets.UTF_8 ) ) );
+				}
+				final File delta = new File( dir, "sent.zip" );
+				JarDelta.between( clientManifest, JarEntryManifest.of( archive ) ).write( archive, delta );
+				exchange.sendResponseHeaders( 200, delta.length( ) );
+				try (final OutputStream out = exchange.getResponseBody( ))
+				{
+					java.nio.file.Files.copy( delta.toPath( ), out );
+				}
+			} );
+			server.start( );
+
+			final JarEntryManifest previous = JarEntryManifest.of( v1 );
+			final JarEntryManifest local = JarEntryManifest.ofFiles( moduleDir, previous.getEntries( ).keySet( ) );
+			final URL url = new URL( "http://localhost:" + server.getAddress( ).getPort( ) + "/asset/delta" );
+			final HttpURLConnection connection = ( HttpURLConnection ) url.openConnection( );
+			connection.setDoOutput( true );
+			connection.setRequestMethod( "POST" );
+			try (final OutputStream out = connection.getOutputStream( ))
+			{
+				out.write( local.toJson( ).toString( ).getBytes( StandardCharsets.UTF_8 ) );
+			}
+			assertEquals( 200, connection.getResponseCode( ) );
+			final File received = new File( dir, "nm.zip" );
+			try (final InputStream in = connection.getInputStream( ))
+			{
+				java.nio.file.Files.copy( in, received.toPath( ) );
+			}
+			assertTrue( received.length( ) * 10 < archive.length( ) );
+
+			final JarEntryManifest downloaded = JarEntryManifest.of( received );
+			assertEquals( new HashSet<>( Arrays.asList( JarDelta.DESCRIPTOR, "src/A.java" ) ),
+				downloaded.getEntries( ).keySet( ) );
+			assertEquals( Arrays.asList( "src/B.java" ), JarDelta.readDeleted( received ) );
+			final List<String> deleted = JarDelta.readDeleted( received );
+			assertEquals( JarEntryManifest.of( archive ).fingerprint( ),
+				previous.withChanges( downloaded, deleted ).fingerprint( ) );
+		}
+		finally
+		{
+			server.stop( 0 );
+			FileUtils.deleteDirectory( dir );
+		}
+	}
+
+	/**
+	 * Tests storing manifests per module and version
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSaveAndLoad( ) throws Exception
+	{
+		final File dir = Files.createTempDir( );
+		try
+		{
+			final File jar = jar( new File( dir, "m.jar" ), "a.class", new byte[ ] { 1, 2, 3 } );
+			final File file = JarEntryManifest.fileFor( dir, "MyModule", "http://localhost", "LIVE", "1.0.0" );
+			assertFalse(
+				file.equals( JarEntryManifest.fileFor( dir, "MyModule", "http://localhost", "TEST", "1.0.0" ) ) );
+			assertNull( JarEntryManifest.load( file ) );
+
+			final JarEntryManifest manifest = JarEntryManifest.of( jar );
+			manifest.withDeltaSupported( true ).save( file );
+			final JarEntryManifest loaded = JarEntryManifest.load( file );
+			assertTrue( loaded.isDeltaSupported( ) );
+			assertEquals( manifest.fingerprint( ), loaded.fingerprint( ) );
+			assertTrue( JarDelta.between( loaded, manifest ).getChanged( ).isEmpty( ) );
+
+			FileUtils.fileWrite( file.getAbsolutePath( ), "broken" );
+			assertNull( JarEntryManifest.load( file ) );
+		}
+		finally
+		{
+			FileUtils.deleteDirectory( dir );
+		}
+	}
+
+	private static int post( final URL url, final File file, final String baseFingerprint ) throws IOException
+	{
+		final HttpURLConnection connection = ( HttpURLConnection ) url.openConnection( );
+		connection.setDoOutput( true );
+		connection.setRequestMethod( "POST" );
+		connection.setRequestProperty( "If-Match", "\"" + baseFingerprint + "\"" );
+		try (final OutputStream out = connection.getOutputStream( ))
+		{
+			java.nio.file.Files.copy( file.toPath( ), out );
+		}
+		return connection.getResponseCode( );
+	}
+
+	/** what the server does: replaces the changed and deleted entries of its jar */
+	private static void rebuild( final File serverJar, final File deltaFile ) throws IOException
+	{
+		final Map<String, byte[ ]> entries = new LinkedHashMap<>( );
+		final Set<String> deleted = new HashSet<>( );
+		try (final ZipFile delta = new ZipFile( deltaFile ))
+		{
+			final JSONArray deletedJson = new JSONObject( IOUtils.toString(
+				delta.getInputStream( delta.getEntry( JarDelta.DESCRIPTOR ) ), StandardCharsets.UTF_8 ) )
+					.getJSONArray( "deleted" );
+			for ( int i = 0; i < deletedJson.length( ); i++ )
+			{
+				deleted.add( deletedJson.getString( i ) );
+			}
+			try (final ZipFile base = new ZipFile( serverJar ))
+			{
+				for ( final ZipEntry entry : Collections.list( base.entries( ) ) )
+				{
+					if ( deleted.contains( entry.getName( ) ) == false )
+					{
+						entries.put( entry.getName( ), IOUtils.toByteArray( base.getInputStream( entry ) ) );
+					}
+				}
+			}
+			for ( final ZipEntry entry : Collections.list( delta.entries( ) ) )
+			{
+				if ( JarDelta.DESCRIPTOR.equals( entry.getName( ) ) == false )
+				{
+					entries.put( entry.getName( ), IOUtils.toByteArray( delta.getInputStream( entry ) ) );
+				}
+			}
+		}
+		final Object[ ] namesAndContents = new Object[ entries.size( ) * 2 ];
+		int i = 0;
+		for ( final Map.Entry<String, byte[ ]> entry : entries.entrySet( ) )
+		{
+			namesAndContents[ i++ ] = entry.getKey( );
+			namesAndContents[ i++ ] = entry.getValue( );
+		}
+		jar( serverJar, namesAndContents );
+		assertFalse( entries.containsKey( JarDelta.DESCRIPTOR ) );
+	}
+
+	private static File jar( final File file, final Object... namesAndContents ) throws IOException
+	{
+		try (final ZipOutputStream out = new ZipOutputStream( new FileOutputStream( file ) ))
+		{
+			for ( int i = 0; i < namesAndContents.length; i += 2 )
+			{
+				out.putNextEntry( new ZipEntry( ( String ) namesAndContents[ i ] ) );
+				out.write( ( byte[ ] ) namesAndContents[ i + 1 ] );
+				out.closeEntry( );
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.transfer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+/**
+ * Tests extracting module archives
+ *
+ * @author thum
+ */
+public class ModuleArchiveTest
+{
+	/**
+	 * Tests that parallel extractions into the same and into different module directories keep the local hooks and
+	 * leave no lock behind
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testParallelExtractionsReleaseLocks( ) throws Exception
+	{
+		final File dir = Files.createTempDir( );
+		final ExecutorService threads = Executors.newFixedThreadPool( 8 );
+		try
+		{
+			final File archive = new File( dir, "module.zip" );
+			try (final ZipOutputStream out = new ZipOutputStream( new FileOutputStream( archive ) ))
+			{
+				out.putNextEntry( new ZipEntry( "src/MyModule.java" ) );
+				out.write( "class MyModule {}".getBytes( StandardCharsets.UTF_8 ) );
+				out.closeEntry( );
+			}
+			final List<Callable<Void>> extractions = new ArrayList<>( );
+			for ( int i = 0; i < 16; i++ )
+			{
+				final File baseDir = new File( dir, "Module" + i % 4 );
+				new File( baseDir, "src" ).mkdirs( );
+				FileUtils.fileWrite( new File( baseDir, "src/MyModuleHooks.java" ).getAbsolutePath( ), "my hooks" );
+				extractions.add( ( ) -> {
+					ModuleArchive.extract( archive, baseDir, false, Collections.emptyList( ) );
+					return null;
+				} );
+			}
+			for ( final Future<Void> result : threads.invokeAll( extractions ) )
+			{
+				result.get( );
+			}
+
+			assertEquals( 0, ModuleArchive.lockedDirectories( ) );
+			for ( int i = 0; i < 4; i++ )
+			{
+				final File baseDir = new File( dir, "Module" + i );
+				assertEquals( "class MyModule {}", FileUtils.fileRead( new File( baseDir, "src/MyModule.java" ) ) );
+				assertEquals( "my hooks", FileUtils.fileRead( new File( baseDir, "src/MyModuleHooks.java" ) ) );
+			}
+		}
+		finally
+		{
+			threads.shutdown( );
+			FileUtils.deleteDirectory( dir );
+		}
+	}
+}
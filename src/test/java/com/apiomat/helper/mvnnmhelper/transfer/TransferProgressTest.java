@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.apiomat.helper.mvnnmhelper.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+/**
+ * Tests the progress messages of transfers
+ *
+ * @author thum
+ */
+public class TransferProgressTest
+{
+	/**
+	 * Tests that progress messages are logged at most once per interval and the summary is always logged
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testInterval( ) throws Exception
+	{
+		final RecordingLog log = new RecordingLog( );
+		final TransferProgress throttled = new TransferProgress( log, "Uploading", 100 * 1024, 60000, false );
+		final long copied = throttled.copy( new ByteArrayInputStream( new byte[ 100 * 1024 ] ),
+			new ByteArrayOutputStream( ) );
+		assertEquals( 100 * 1024, copied );
+		assertEquals( 100 * 1024, throttled.getTransferredBytes( ) );
+		assertTrue( log.messages.toString( ), log.messages.isEmpty( ) );
+		throttled.finish( );
+		assertEquals( 1, log.messages.size( ) );
+		assertTrue( log.messages.get( 0 ),
+			log.messages.get( 0 ).startsWith( "info: Uploading finished: 100.0 KB in " ) );
+
+		log.messages.clear( );
+		final TransferProgress unthrottled = new TransferProgress( log, "Uploading", 3, 0, false );
+		unthrottled.update( 1 );
+		unthrottled.update( 1 );
+		unthrottled.update( 1 );
+		assertEquals( 3, log.messages.size( ) );
+	}
+
+	/**
+	 * Tests the size, percentage, throughput and remaining time in the progress messages
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFormatting( ) throws Exception
+	{
+		final RecordingLog log = new RecordingLog( );
+		final TransferProgress progress = new TransferProgress( log, "Uploading", 2 * 1024 * 1024, 0, false );
+		Thread.sleep( 20 );
+		progress.update( 1024 * 1024 );
+
+		assertEquals( 1, log.messages.size( ) );
+		assertTrue( log.messages.get( 0 ), log.messages.get( 0 )
+			.matches( "info: Uploading: 1\\.0 MB / 2\\.0 MB \\(50%\\), \\d+\\.\\d\\d MB/s, ETA \\d+(ms|s)" ) );
+
+		assertEquals( "0 B", TransferProgress.formatBytes( 0 ) );
+		assertEquals( "1023 B", TransferProgress.formatBytes( 1023 ) );
+		assertEquals( "1.5 KB", TransferProgress.formatBytes( 1536 ) );
+		assertEquals( "1.5 MB", TransferProgress.formatBytes( 3 * 512 * 1024 ) );
+		assertEquals( "2048.0 MB", TransferProgress.formatBytes( 2048L * 1024 * 1024 ) );
+	}
+
+	/**
+	 * Tests that a quiet transfer logs no progress and its summary only on debug level
+	 */
+	@Test
+	public void testQuiet( )
+	{
+		final RecordingLog log = new RecordingLog( );
+		final TransferProgress progress = new TransferProgress( log, "Downloading", 10, 0, true );
+		progress.update( 5 );
+		progress.update( 5 );
+		assertTrue( log.messages.toString( ), log.messages.isEmpty( ) );
+		assertEquals( 10, progress.getTransferredBytes( ) );
+
+		progress.finish( );
+		assertEquals( 1, log.messages.size( ) );
+		assertTrue( log.messages.get( 0 ),
+			log.messages.get( 0 ).startsWith( "debug: Downloading finished: 10 B in " ) );
+	}
+
+	/**
+	 * Tests the progress of a transfer without a known size, like a download without a content length
+	 */
+	@Test
+	public void testUnknownTotal( )
+	{
+		final RecordingLog log = new RecordingLog( );
+		final TransferProgress progress = new TransferProgress( log, "Downloading", -1, 0, false );
+		progress.update( 2048 );
+
+		assertEquals( 1, log.messages.size( ) );
+		final String message = log.messages.get( 0 );
+		assertTrue( message, message.matches( "info: Downloading: 2\\.0 KB, (\\d+\\.\\d\\d|--) MB/s" ) );
+		assertFalse( message, message.contains( "ETA" ) );
+	}
+
+	/** records the messages instead of printing them */
+	private static final class RecordingLog extends SystemStreamLog
+	{
+		private final List<String> messages = new ArrayList<>( );
+
+		@Override
+		public boolean isDebugEnabled( )
+		{
+			return true;
+		}
+
+		@Override
+		public void debug( final CharSequence content )
+		{
+			this.messages.add( "debug: " + content );
+		}
+
+		@Override
+		public void info( final CharSequence content )
+		{
+			this.messages.add( "info: " + content );
+		}
+	}
+}